@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The arrival times of an open-loop run, shared by all client threads.
+ *
+ * <br>
+ * Operations arrive at a fixed rate, either evenly spaced or as a Poisson
+ * process, no matter how long earlier operations took. Each client thread
+ * takes the next arrival, waits for it and runs the operation; if all
+ * clients are busy the operation starts late and the delay counts towards
+ * its latency, which is measured from the arrival time. The clients are
+ * thus a worker pool serving a queue of arrivals.
+ */
+final class ArrivalSchedule {
+
+  /** Operations are issued when the previous one of the same client completes. */
+  static final String CLOSED = "closed";
+
+  /** Operations arrive evenly spaced. */
+  static final String CONSTANT = "constant";
+
+  /** Operations arrive as a Poisson process. */
+  static final String POISSON = "poisson";
+
+  private final boolean poisson;
+  private final double meanGapNs;
+  private final long opcount;
+  private final AtomicLong issued = new AtomicLong();
+  /** Poisson arrival time of the next operation, relative to the start. */
+  private final AtomicLong last = new AtomicLong();
+  private final CountDownLatch ready;
+  private volatile long startNs;
+
+  /**
+   * @param model {@link #CONSTANT} or {@link #POISSON}.
+   * @param opsPerSec The arrival rate.
+   * @param opcount The number of operations to issue, 0 for no limit.
+   * @param workers The number of client threads taking arrivals.
+   */
+  ArrivalSchedule(String model, double opsPerSec, long opcount, int workers) {
+    if (POISSON.equals(model)) {
+      poisson = true;
+    } else if (CONSTANT.equals(model)) {
+      poisson = false;
+    } else {
+      throw new IllegalArgumentException("Unknown arrival model: " + model);
+    }
+    if (opsPerSec <= 0) {
+      throw new IllegalArgumentException("Open-loop arrivals need a target throughput");
+    }
+    this.meanGapNs = 1e9 / opsPerSec;
+    this.opcount = opcount;
+    this.ready = new CountDownLatch(workers);
+  }
+
+  /**
+   * Called by every client once it is initialized. The schedule starts when
+   * the last client is ready, so slow initialization is not counted as
+   * latency.
+   */
+  void awaitStart() throws InterruptedException {
+    leave();
+    ready.await();
+  }
+
+  /** Called instead of {@link #awaitStart} by a client that failed to initialize. */
+  void leave() {
+    synchronized (ready) {
+      ready.countDown();
+      if (ready.getCount() == 0 && startNs == 0) {
+        startNs = System.nanoTime();
+      }
+    }
+  }
+
+  /**
+   * Returns the intended start time of the next operation in
+   * System.nanoTime() terms, or -1 once all operations have been issued.
+   */
+  long next() {
+    long n = issued.getAndIncrement();
+    if (opcount > 0 && n >= opcount) {
+      return -1;
+    }
+    if (!poisson) {
+      return startNs + (long) (n * meanGapNs);
+    }
+    long gap = (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanGapNs);
+    return startNs + last.getAndAdd(gap);
+  }
+}
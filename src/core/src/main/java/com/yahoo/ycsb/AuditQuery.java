@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * Which entries of the audit log a regulator asks for, see
+ * {@link DB#queryLog}: those about one user, about one key, written in a time
+ * window, or of one operation.
+ *
+ * <br>
+ * Audit entries are taken to hold the time, the operation, e.g. READ or
+ * ERASEUSER, and its subject: the key, the user, or FIELD=value for the
+ * metadata operations.
+ */
+public final class AuditQuery {
+  /** What a query selects by; each is measured under its own name. */
+  public enum Kind {
+    USER("AUDITUSER"),
+    KEY("AUDITKEY"),
+    TIME("AUDITTIME"),
+    OPERATION("AUDITOPERATION");
+
+    private final String measurement;
+    private final String matchesmeasurement;
+
+    Kind(String measurement) {
+      this.measurement = measurement;
+      this.matchesmeasurement = measurement + "-MATCHES";
+    }
+
+    /** The name the query is measured under. */
+    public String getMeasurement() {
+      return measurement;
+    }
+
+    /** The name the number of entries a query selected is summarized under. */
+    public String getMatchesMeasurement() {
+      return matchesmeasurement;
+    }
+  }
+
+  private final Kind kind;
+  private final String value;
+  private final String metavalue;
+  private final long from;
+  private final long to;
+
+  private AuditQuery(Kind kind, String value, long from, long to) {
+    this.kind = kind;
+    this.value = value;
+    this.metavalue = kind == Kind.USER ? "USR=" + value : null;
+    this.from = from;
+    this.to = to;
+  }
+
+  /** The entries about a user: its erasures and exports, and metadata operations on its USR value. */
+  public static AuditQuery byUser(String user) {
+    return new AuditQuery(Kind.USER, user, 0, 0);
+  }
+
+  /** The entries about a record key. */
+  public static AuditQuery byKey(String key) {
+    return new AuditQuery(Kind.KEY, key, 0, 0);
+  }
+
+  /** The entries written from fromMillis, inclusive, to toMillis, exclusive. */
+  public static AuditQuery byTime(long fromMillis, long toMillis) {
+    return new AuditQuery(Kind.TIME, null, fromMillis, toMillis);
+  }
+
+  /** The entries of an operation, e.g. READ. */
+  public static AuditQuery byOperation(String operation) {
+    return new AuditQuery(Kind.OPERATION, operation, 0, 0);
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  /** The user, key or operation asked for; null for a time window. */
+  public String getValue() {
+    return value;
+  }
+
+  public long getFrom() {
+    return from;
+  }
+
+  public long getTo() {
+    return to;
+  }
+
+  /**
+   * Whether an audit entry is selected.
+   *
+   * @param timestamp When it was written, in milliseconds since the epoch.
+   * @param operation Its operation.
+   * @param subject What it accessed.
+   */
+  public boolean matches(long timestamp, String operation, String subject) {
+    switch (kind) {
+    case USER:
+      return value.equals(subject) || metavalue.equals(subject);
+    case KEY:
+      return value.equals(subject);
+    case TIME:
+      return timestamp >= from && timestamp < to;
+    case OPERATION:
+      return value.equals(operation);
+    default:
+      throw new AssertionError(kind);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return kind == Kind.TIME ? kind + " " + from + ".." + to : kind + " " + value;
+  }
+}
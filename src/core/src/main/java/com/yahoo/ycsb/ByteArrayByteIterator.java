@@ -16,6 +16,8 @@
  */
 package com.yahoo.ycsb;
 
+import java.util.Arrays;
+
 /**
  *  A ByteIterator that iterates through a byte array.
  */
@@ -51,6 +53,21 @@ public class ByteArrayByteIterator extends ByteIterator {
     return ret;
   }
 
+  @Override
+  public int nextBuf(byte[] buf, int bufOff) {
+    int n = Math.min(buf.length - bufOff, len - off);
+    System.arraycopy(str, off, buf, bufOff, n);
+    off += n;
+    return bufOff + n;
+  }
+
+  @Override
+  public byte[] toArray() {
+    byte[] ret = Arrays.copyOfRange(str, off, len);
+    off = len;
+    return ret;
+  }
+
   @Override
   public long bytesLeft() {
     return len - off;
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MetricsServer;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.apache.htrace.core.Tracer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What the client itself costs per operation, measured by running the
+ * workload against {@link NoopDB} before the benchmark: the CPU time and
+ * the bytes allocated by the client threads, from the ThreadMXBean, the
+ * throughput the client cannot exceed, and the latency it adds to every
+ * measured operation, e.g. by generating the values the database reads.
+ */
+final class Calibration {
+  private final int threads;
+  private final long operations;
+  private final long wallNanos;
+  private final long cpuNanos;
+  /** -1 if the JVM cannot count the bytes allocated by a thread. */
+  private final long allocatedBytes;
+  /** By operation, in us. */
+  private final Map<String, Double> averageLatencies;
+
+  private Calibration(int threads, long operations, long wallNanos, long cpuNanos, long allocatedBytes,
+      Map<String, Double> averageLatencies) {
+    this.threads = threads;
+    this.operations = operations;
+    this.wallNanos = wallNanos;
+    this.cpuNanos = cpuNanos;
+    this.allocatedBytes = allocatedBytes;
+    this.averageLatencies = averageLatencies;
+  }
+
+  /**
+   * Runs new instances of the configured workload with the given number of
+   * threads and operations, once to warm up the JIT and once measured. The
+   * measurements singleton is used for the runs, so the caller has to reset
+   * it afterwards.
+   */
+  static Calibration run(Properties props, int threadcount, int opcount, Tracer tracer)
+      throws WorkloadException {
+    Properties calibrationProps = new Properties();
+    calibrationProps.putAll(props);
+    calibrationProps.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+    calibrationProps.setProperty(Measurements.MEASUREMENT_INTERVAL, "op");
+    calibrationProps.remove(Measurements.EVENT_LOG_PROPERTY);
+    calibrationProps.remove(MetricsServer.PORT_PROPERTY);
+    runOnce(calibrationProps, threadcount, opcount, tracer);
+    return runOnce(calibrationProps, threadcount, opcount, tracer);
+  }
+
+  private static Calibration runOnce(Properties calibrationProps, int threadcount, int opcount, Tracer tracer)
+      throws WorkloadException {
+    Measurements.setProperties(calibrationProps);
+
+    Workload workload;
+    try {
+      workload = (Workload) Client.class.getClassLoader()
+          .loadClass(calibrationProps.getProperty(Client.WORKLOAD_PROPERTY)).newInstance();
+    } catch (Exception e) {
+      throw new WorkloadException("Could not load the workload to calibrate", e);
+    }
+    workload.init(calibrationProps);
+
+    boolean dotransactions =
+        Boolean.valueOf(calibrationProps.getProperty(Client.DO_TRANSACTIONS_PROPERTY, "true"));
+    CountDownLatch completeLatch = new CountDownLatch(threadcount);
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean.isThreadCpuTimeSupported() && !bean.isThreadCpuTimeEnabled()) {
+      bean.setThreadCpuTimeEnabled(true);
+    }
+    final AtomicLong cpuNanos = new AtomicLong();
+    final AtomicLong allocatedBytes = new AtomicLong(allocatedBytes(bean) < 0 ? -1 : 0);
+    List<Thread> threads = new ArrayList<>(threadcount);
+    List<ClientThread> clients = new ArrayList<>(threadcount);
+    for (int threadid = 0; threadid < threadcount; threadid++) {
+      DB db;
+      try {
+        db = DBFactory.newDB(NoopDB.class.getName(), calibrationProps, tracer);
+      } catch (UnknownDBException e) {
+        throw new IllegalStateException(e);
+      }
+      int threadopcount = opcount / threadcount + (threadid < opcount % threadcount ? 1 : 0);
+      final ClientThread client = new ClientThread(db, dotransactions, workload, calibrationProps, threadopcount,
+          -1, completeLatch);
+      client.setThreadId(threadid);
+      client.setThreadCount(threadcount);
+      clients.add(client);
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          long cpu = bean.getCurrentThreadCpuTime();
+          long allocated = allocatedBytes(bean);
+          client.run();
+          cpuNanos.addAndGet(bean.getCurrentThreadCpuTime() - cpu);
+          if (allocated >= 0) {
+            allocatedBytes.addAndGet(allocatedBytes(bean) - allocated);
+          }
+        }
+      }, "CalibrationThread-" + threadid));
+    }
+
+    long start = System.nanoTime();
+    for (Thread t : threads) {
+      t.start();
+    }
+    long operations = 0;
+    for (int i = 0; i < threads.size(); i++) {
+      try {
+        threads.get(i).join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      operations += clients.get(i).getOpsDone();
+    }
+    long wallNanos = System.nanoTime() - start;
+    workload.cleanup();
+
+    final Map<String, Double> averageLatencies = new HashMap<>();
+    try {
+      Measurements.getMeasurements().exportMeasurements(new Capture(averageLatencies));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return new Calibration(threadcount, operations, wallNanos, cpuNanos.get(), allocatedBytes.get(),
+        averageLatencies);
+  }
+
+  /** The bytes allocated by the current thread, or -1 if they are not counted. */
+  private static long allocatedBytes(ThreadMXBean bean) {
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+      if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+        return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  /** The most operations per second the client can issue with this workload and thread count. */
+  double getCeiling() {
+    return wallNanos == 0 ? 0 : operations * 1e9 / wallNanos;
+  }
+
+  double getCpuNanosPerOp() {
+    return operations == 0 ? 0 : (double) cpuNanos / operations;
+  }
+
+  /** -1 if the JVM cannot count allocations. */
+  double getAllocatedBytesPerOp() {
+    return operations == 0 || allocatedBytes < 0 ? -1 : (double) allocatedBytes / operations;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("client ceiling %.0f ops/sec with %d threads, %.0f ns CPU and %.0f bytes allocated per "
+        + "operation", getCeiling(), threads, getCpuNanosPerOp(), getAllocatedBytesPerOp());
+  }
+
+  /**
+   * Writes the calibration and the share of the client in the benchmark run,
+   * and returns an exporter that adds the client's share to the average
+   * latency of each operation.
+   *
+   * @param threadcount The threads of the benchmark run.
+   * @param opcount The operations done by the benchmark run.
+   * @param runtime The duration of the benchmark run in ms.
+   */
+  MeasurementsExporter export(final MeasurementsExporter exporter, int threadcount, int opcount, long runtime)
+      throws IOException {
+    exporter.write("CALIBRATION", "Operations", operations);
+    exporter.write("CALIBRATION", "CeilingThroughput(ops/sec)", getCeiling());
+    exporter.write("CALIBRATION", "CpuTimePerOp(ns)", getCpuNanosPerOp());
+    if (allocatedBytes >= 0) {
+      exporter.write("CALIBRATION", "AllocatedBytesPerOp", getAllocatedBytesPerOp());
+    }
+    if (opcount > 0) {
+      // The time a client thread spent per operation in the benchmark run.
+      double threadNanosPerOp = runtime * 1e6 * threadcount / opcount;
+      exporter.write("CALIBRATION", "ClientShare(%)", 100 * getCpuNanosPerOp() / threadNanosPerOp);
+    }
+    return new Annotator(exporter, averageLatencies);
+  }
+
+  /** Keeps the average latency of each operation. */
+  private static final class Capture implements MeasurementsExporter {
+    private final Map<String, Double> averageLatencies;
+
+    Capture(Map<String, Double> averageLatencies) {
+      this.averageLatencies = averageLatencies;
+    }
+
+    @Override
+    public void write(String metric, String measurement, int i) {
+      write(metric, measurement, (double) i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, long i) {
+      write(metric, measurement, (double) i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, double d) {
+      if ("AverageLatency(us)".equals(measurement)) {
+        averageLatencies.put(metric, d);
+      }
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close.
+    }
+  }
+
+  /** Follows the average latency of each calibrated operation with the client's share of it. */
+  private static final class Annotator implements MeasurementsExporter {
+    private final MeasurementsExporter exporter;
+    private final Map<String, Double> averageLatencies;
+
+    Annotator(MeasurementsExporter exporter, Map<String, Double> averageLatencies) {
+      this.exporter = exporter;
+      this.averageLatencies = averageLatencies;
+    }
+
+    @Override
+    public void write(String metric, String measurement, int i) throws IOException {
+      exporter.write(metric, measurement, i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, long i) throws IOException {
+      exporter.write(metric, measurement, i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, double d) throws IOException {
+      exporter.write(metric, measurement, d);
+      Double client = averageLatencies.get(metric);
+      if (client != null && "AverageLatency(us)".equals(measurement)) {
+        exporter.write(metric, "ClientAverageLatency(us)", client);
+        if (d > 0) {
+          exporter.write(metric, "ClientShare(%)", Math.min(100, 100 * client / d));
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      exporter.close();
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package com.yahoo.ycsb;
 
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MetricsServer;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 import org.apache.htrace.core.HTraceConfiguration;
@@ -32,6 +33,7 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * Turn seconds remaining into more useful units.
@@ -117,6 +119,40 @@ public final class Client {
    */
   public static final String THREAD_COUNT_PROPERTY = "threadcount";
 
+  /**
+   * How operations are issued: "closed" for back to back per client thread,
+   * throttled to the target, or "constant" or "poisson" for open-loop
+   * arrivals at the target rate, dispatched to the client threads.
+   */
+  public static final String ARRIVAL_PROPERTY = "arrival";
+  public static final String ARRIVAL_PROPERTY_DEFAULT = ArrivalSchedule.CLOSED;
+
+  /**
+   * The threads the clients run on: "platform" for one OS thread per client,
+   * "virtual" for virtual threads (Java 21 or later).
+   */
+  public static final String THREAD_MODEL_PROPERTY = "threadmodel";
+  public static final String THREAD_MODEL_PROPERTY_DEFAULT = ThreadModel.PLATFORM;
+
+  /**
+   * With virtual threads, report clients that block while pinned to their
+   * carrier thread: "none", "short" or "full" stack traces.
+   */
+  public static final String TRACE_PINNING_PROPERTY = "threadmodel.tracepinning";
+  public static final String TRACE_PINNING_PROPERTY_DEFAULT = "none";
+
+  /**
+   * Whether to first run the workload against {@link NoopDB} to measure
+   * what the client costs per operation, and report the client's share of
+   * the benchmark's latencies.
+   */
+  public static final String CALIBRATE_PROPERTY = "calibrate";
+  public static final String CALIBRATE_PROPERTY_DEFAULT = "false";
+
+  /** The number of operations of the calibration run, which is preceded by as many to warm up. */
+  public static final String CALIBRATE_OPERATION_COUNT_PROPERTY = "calibrate.operationcount";
+  public static final String CALIBRATE_OPERATION_COUNT_PROPERTY_DEFAULT = "100000";
+
   /**
    * Indicates how many inserts to do if less than recordcount.
    * Useful for partitioning the load among multiple servers if the client is the bottleneck.
@@ -211,8 +247,8 @@ public final class Client {
    *
    * @throws IOException Either failed to write to output stream or failed to close it.
    */
-  private static void exportMeasurements(Properties props, int opcount, long runtime)
-      throws IOException {
+  private static void exportMeasurements(Properties props, int opcount, long runtime, int threadcount,
+                                         Calibration calibration) throws IOException {
     MeasurementsExporter exporter = null;
     try {
       // if no destination file is provided the results will be written to stdout
@@ -265,6 +301,10 @@ public final class Client {
         exporter.write("MIN_SYS_LOAD_AVG", "Load", statusthread.getMinLoadAvg());
       }
 
+      if (calibration != null) {
+        exporter = calibration.export(exporter, threadcount, opcount, runtime);
+      }
+
       Measurements.getMeasurements().exportMeasurements(exporter);
     } finally {
       if (exporter != null) {
@@ -294,9 +334,23 @@ public final class Client {
       targetperthreadperms = targetperthread / 1000.0;
     }
 
+    ThreadModel threadModel = getThreadModel(props);
+
     Thread warningthread = setupWarningThread();
     warningthread.start();
 
+    String arrival = props.getProperty(ARRIVAL_PROPERTY, ARRIVAL_PROPERTY_DEFAULT);
+    boolean openLoop = !ArrivalSchedule.CLOSED.equals(arrival);
+    if (openLoop) {
+      // Open-loop latency is only meaningful from the intended start.
+      if (props.getProperty(Measurements.MEASUREMENT_INTERVAL, "op").equals("op")) {
+        props.setProperty(Measurements.MEASUREMENT_INTERVAL, "intended");
+      }
+      targetperthreadperms = -1;
+    }
+
+    Calibration calibration = calibrate(props, threadcount);
+
     Measurements.setProperties(props);
 
     Workload workload = getWorkload(props);
@@ -311,19 +365,16 @@ public final class Client {
     final List<ClientThread> clients = initDb(dbname, props, threadcount, targetperthreadperms,
         workload, tracer, completeLatch);
 
+    if (openLoop) {
+      setupArrivalSchedule(arrival, target, clients);
+    }
+
     if (status) {
-      boolean standardstatus = false;
-      if (props.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "").compareTo("timeseries") == 0) {
-        standardstatus = true;
-      }
-      int statusIntervalSeconds = Integer.parseInt(props.getProperty("status.interval", "10"));
-      boolean trackJVMStats = props.getProperty(Measurements.MEASUREMENT_TRACK_JVM_PROPERTY,
-          Measurements.MEASUREMENT_TRACK_JVM_PROPERTY_DEFAULT).equals("true");
-      statusthread = new StatusThread(completeLatch, clients, label, standardstatus, statusIntervalSeconds,
-          trackJVMStats);
-      statusthread.start();
+      startStatusThread(props, completeLatch, clients, label);
     }
 
+    MetricsServer metricsServer = startMetricsServer(props, clients);
+
     Thread terminator = null;
     long st;
     long en;
@@ -332,8 +383,10 @@ public final class Client {
     try (final TraceScope span = tracer.newScope(CLIENT_WORKLOAD_SPAN)) {
 
       final Map<Thread, ClientThread> threads = new HashMap<>(threadcount);
+      int clientid = 0;
       for (ClientThread client : clients) {
-        threads.put(new Thread(tracer.wrap(client, "ClientThread")), client);
+        threads.put(threadModel.newThread(tracer.wrap(client, "ClientThread"), "ClientThread-" + clientid++),
+            client);
       }
 
       st = System.currentTimeMillis();
@@ -389,7 +442,7 @@ public final class Client {
 
     try {
       try (final TraceScope span = tracer.newScope(CLIENT_EXPORT_MEASUREMENTS_SPAN)) {
-        exportMeasurements(props, opsDone, en - st);
+        exportMeasurements(props, opsDone, en - st, threadcount, calibration);
       }
     } catch (IOException e) {
       System.err.println("Could not export measurements, error: " + e.getMessage());
@@ -397,9 +450,114 @@ public final class Client {
       System.exit(-1);
     }
 
+    if (metricsServer != null) {
+      metricsServer.stop();
+    }
+
     System.exit(0);
   }
 
+  private static void startStatusThread(Properties props, CountDownLatch completeLatch, List<ClientThread> clients,
+                                        String label) {
+    boolean standardstatus = false;
+    if (props.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "").compareTo("timeseries") == 0) {
+      standardstatus = true;
+    }
+    int statusIntervalSeconds = Integer.parseInt(props.getProperty("status.interval", "10"));
+    boolean trackJVMStats = props.getProperty(Measurements.MEASUREMENT_TRACK_JVM_PROPERTY,
+        Measurements.MEASUREMENT_TRACK_JVM_PROPERTY_DEFAULT).equals("true");
+    statusthread = new StatusThread(completeLatch, clients, label, standardstatus, statusIntervalSeconds,
+        trackJVMStats);
+    statusthread.start();
+  }
+
+  /** Runs the calibration if asked for, returns null otherwise. */
+  private static Calibration calibrate(Properties props, int threadcount) {
+    if (!Boolean.parseBoolean(props.getProperty(CALIBRATE_PROPERTY, CALIBRATE_PROPERTY_DEFAULT))) {
+      return null;
+    }
+    int opcount = Integer.parseInt(props.getProperty(CALIBRATE_OPERATION_COUNT_PROPERTY,
+        CALIBRATE_OPERATION_COUNT_PROPERTY_DEFAULT));
+    System.err.println("Calibrating the client with " + opcount + " operations against " + NoopDB.class.getName());
+    Tracer tracer = new Tracer.Builder("YCSB calibration").conf(getHTraceConfiguration(props)).build();
+    try {
+      Calibration calibration = Calibration.run(props, threadcount, opcount, tracer);
+      System.err.println("Calibration: " + calibration);
+      return calibration;
+    } catch (WorkloadException e) {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      System.exit(0);
+      return null;
+    }
+  }
+
+  private static MetricsServer startMetricsServer(Properties props, final List<ClientThread> clients) {
+    String port = props.getProperty(MetricsServer.PORT_PROPERTY);
+    if (port == null) {
+      return null;
+    }
+    LongSupplier opsDone = new LongSupplier() {
+      @Override
+      public long getAsLong() {
+        long ops = 0;
+        for (ClientThread client : clients) {
+          ops += client.getOpsDone();
+        }
+        return ops;
+      }
+    };
+    try {
+      MetricsServer server = new MetricsServer(
+          props.getProperty(MetricsServer.HOST_PROPERTY, MetricsServer.HOST_PROPERTY_DEFAULT),
+          Integer.parseInt(port), Measurements.getMeasurements(), opsDone);
+      server.start();
+      return server;
+    } catch (IOException | NumberFormatException e) {
+      System.err.println("Could not start metrics server on port " + port + ": " + e);
+      System.exit(-1);
+      return null;
+    }
+  }
+
+  private static void setupArrivalSchedule(String arrival, int target, List<ClientThread> clients) {
+    long opcount = 0;
+    for (ClientThread client : clients) {
+      opcount += client.getOpsTodo();
+    }
+    ArrivalSchedule schedule;
+    try {
+      schedule = new ArrivalSchedule(arrival, target, opcount, clients.size());
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(-1);
+      return;
+    }
+    for (ClientThread client : clients) {
+      client.setArrivalSchedule(schedule);
+    }
+    System.err.println("Open-loop " + arrival + " arrivals at " + target + " ops/sec.");
+  }
+
+  private static ThreadModel getThreadModel(Properties props) {
+    ThreadModel threadModel;
+    try {
+      threadModel = ThreadModel.forName(props.getProperty(THREAD_MODEL_PROPERTY, THREAD_MODEL_PROPERTY_DEFAULT));
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(-1);
+      return null;
+    }
+    if (threadModel.isVirtual()) {
+      String tracePinning = props.getProperty(TRACE_PINNING_PROPERTY, TRACE_PINNING_PROPERTY_DEFAULT);
+      if (!"none".equals(tracePinning)) {
+        ThreadModel.tracePinnedThreads(tracePinning);
+      }
+      System.err.println("Running clients on virtual threads.");
+    }
+    return threadModel;
+  }
+
   private static List<ClientThread> initDb(String dbname, Properties props, int threadcount,
                                            double targetperthreadperms, Workload workload, Tracer tracer,
                                            CountDownLatch completeLatch) {
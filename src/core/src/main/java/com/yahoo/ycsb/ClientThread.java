@@ -14,6 +14,10 @@ public class ClientThread implements Runnable {
   private final CountDownLatch completeLatch;
 
   private static boolean spinSleep;
+  /** Whether this client runs on a virtual thread, which must not spin on its carrier. */
+  private boolean virtualThread;
+  /** Shared open-loop arrivals, or null when throttling per thread. */
+  private ArrivalSchedule schedule;
   private DB db;
   private boolean dotransactions;
   private Workload workload;
@@ -64,17 +68,29 @@ public class ClientThread implements Runnable {
     threadcount = threadCount;
   }
 
+  /**
+   * Makes this client take its operations from an open-loop schedule
+   * instead of issuing them back to back.
+   */
+  void setArrivalSchedule(ArrivalSchedule arrivalSchedule) {
+    schedule = arrivalSchedule;
+  }
+
   public int getOpsDone() {
     return opsdone;
   }
 
   @Override
   public void run() {
+    virtualThread = ThreadModel.isCurrentVirtual();
     try {
       db.init();
     } catch (DBException e) {
       e.printStackTrace();
       e.printStackTrace(System.out);
+      if (schedule != null) {
+        schedule.leave();
+      }
       return;
     }
 
@@ -83,6 +99,14 @@ public class ClientThread implements Runnable {
     } catch (WorkloadException e) {
       e.printStackTrace();
       e.printStackTrace(System.out);
+      if (schedule != null) {
+        schedule.leave();
+      }
+      return;
+    }
+
+    if (schedule != null) {
+      runOpenLoop();
       return;
     }
 
@@ -141,10 +165,58 @@ public class ClientThread implements Runnable {
     }
   }
 
-  private static void sleepUntil(long deadline) {
+  /**
+   * Runs operations as they arrive on the shared schedule. The intended
+   * start time is the arrival time, so time spent waiting for a free client
+   * counts towards the operation's latency.
+   */
+  private void runOpenLoop() {
+    try {
+      schedule.awaitStart();
+      while (!workload.isStopRequested()) {
+        long intended = schedule.next();
+        if (intended < 0) {
+          break;
+        }
+        sleepUntil(intended);
+        measurements.setIntendedStartTimeNs(intended);
+        boolean more = dotransactions ? workload.doTransaction(db, workloadstate)
+            : workload.doInsert(db, workloadstate);
+        if (!more) {
+          break;
+        }
+        opsdone++;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      System.exit(0);
+    }
+
+    try {
+      measurements.setIntendedStartTimeNs(0);
+      db.cleanup();
+    } catch (DBException e) {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+    } finally {
+      completeLatch.countDown();
+    }
+  }
+
+  /**
+   * Parks until the deadline. Parking a virtual thread releases its carrier;
+   * with spin.sleep a virtual thread yields instead of busy waiting so the
+   * other clients on the carrier keep running.
+   */
+  private void sleepUntil(long deadline) {
     while (System.nanoTime() < deadline) {
       if (!spinSleep) {
         LockSupport.parkNanos(deadline - System.nanoTime());
+      } else if (virtualThread) {
+        Thread.yield();
       }
     }
   }
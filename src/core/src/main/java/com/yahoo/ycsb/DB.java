@@ -43,6 +43,16 @@ import java.util.Vector;
  * recommend you explain the semantics you chose when presenting performance results.
  */
 public abstract class DB {
+  /**
+   * The fieldnum of the USR metadata field, which names the data subject of a record.
+   */
+  public static final int USER_FIELD = 2;
+
+  /**
+   * The fieldnum of the PUR metadata field, which names the purpose a record may be used for.
+   */
+  public static final int PURPOSE_FIELD = 0;
+
   /**
    * Properties for configuring this DB.
    */
@@ -140,5 +150,101 @@ public abstract class DB {
   public abstract Status delete(String table, String key);
   public abstract Status deleteMeta(String table, int fieldnum, String cond, String keymatch);
 
+  /**
+   * Erase all records of a data subject, as for a right-to-erasure request, and check that none
+   * is left. The default is built from readMeta and deleteMeta on the USR field, which fetches
+   * every record of the user and takes three round trips; bindings that can delete by user in
+   * one request, and write the audit record for it themselves, should override it.
+   *
+   * @param table The name of the table
+   * @param user The value of the USR field of the records to erase.
+   * @param removed Counts the records removed.
+   * @return The result of the operation; UNEXPECTED_STATE if records of the user remain.
+   */
+  public Status eraseUser(String table, String user, RecordCount removed) {
+    Vector<HashMap<String, ByteIterator>> found = new Vector<HashMap<String, ByteIterator>>();
+    // Bindings may report a readMeta that matches nothing as NOT_FOUND; here it is an empty result.
+    Status res = readMeta(table, USER_FIELD, user, "*", found);
+    if (!res.isOk() && !res.equals(Status.NOT_FOUND)) {
+      return res;
+    }
+    if (found.isEmpty()) {
+      return Status.OK;
+    }
+    res = deleteMeta(table, USER_FIELD, user, "*");
+    if (!res.isOk()) {
+      return res;
+    }
+    removed.add(found.size());
+    found.clear();
+    res = readMeta(table, USER_FIELD, user, "*", found);
+    if (!res.isOk() && !res.equals(Status.NOT_FOUND)) {
+      return res;
+    }
+    return found.isEmpty() ? Status.OK : Status.UNEXPECTED_STATE;
+  }
+
+  /**
+   * Withdraw consent for a purpose across all records that have it, by setting their PUR field to
+   * replacement. The default counts the records with readMeta and rewrites them with one
+   * updateMeta; bindings that can rewrite and count in one server-side request should override
+   * it.
+   *
+   * @param table The name of the table
+   * @param purpose The value of the PUR field of the records to rewrite.
+   * @param replacement The new value of their PUR field.
+   * @param rewritten Counts the records rewritten.
+   * @return The result of the operation.
+   */
+  public Status withdrawConsent(String table, String purpose, String replacement, RecordCount rewritten) {
+    Vector<HashMap<String, ByteIterator>> found = new Vector<HashMap<String, ByteIterator>>();
+    Status res = readMeta(table, PURPOSE_FIELD, purpose, "*", found);
+    if (!res.isOk()) {
+      return res;
+    }
+    res = updateMeta(table, PURPOSE_FIELD, purpose, "*", "PUR", replacement);
+    if (res.isOk()) {
+      rewritten.add(found.size());
+    }
+    return res;
+  }
+
+  /**
+   * Export all records of a data subject, as for a right-of-access request, streaming them to
+   * sink one at a time. The default reads them all with readMeta first, so it holds all of them
+   * at once; bindings that can iterate over a cursor should override it.
+   *
+   * @param table The name of the table
+   * @param user The value of the USR field of the records to export.
+   * @param sink Takes each record.
+   * @return The result of the operation.
+   */
+  public Status exportUser(String table, String user, RecordSink sink) {
+    Vector<HashMap<String, ByteIterator>> found = new Vector<HashMap<String, ByteIterator>>();
+    Status res = readMeta(table, USER_FIELD, user, "*", found);
+    if (!res.isOk()) {
+      return res;
+    }
+    for (HashMap<String, ByteIterator> record : found) {
+      sink.accept(record);
+    }
+    return res;
+  }
+
+  /**
+   * Search the most recent entries of the audit log, as a regulator would. The default cannot
+   * filter, so it reads the logCount most recent entries with readLog and counts no matches;
+   * bindings that keep an audit log they can search should override it.
+   *
+   * @param table The name of the table
+   * @param query Which entries to select.
+   * @param logCount The number of most recent entries to search.
+   * @param matched Counts the entries selected.
+   * @return The result of the operation.
+   */
+  public Status queryLog(String table, AuditQuery query, int logCount, RecordCount matched) {
+    return readLog(table, logCount);
+  }
+
   public abstract Status verifyTTL(String table, long recordcount);
 }
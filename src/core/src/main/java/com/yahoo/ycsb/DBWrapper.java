@@ -53,6 +53,10 @@ public class DBWrapper extends DB {
   private final String scopeStringDeleteMeta;
   private final String scopeStringUpdateMeta;
   private final String scopeStringVerifyTTL;
+  private final String scopeStringEraseUser;
+  private final String scopeStringExportUser;
+  private final String scopeStringWithdrawConsent;
+  private final String scopeStringQueryLog;
 
   public DBWrapper(final DB db, final Tracer tracer) {
     this.db = db;
@@ -71,6 +75,10 @@ public class DBWrapper extends DB {
     scopeStringUpdateMeta = simple + "#updatemeta";
     scopeStringVerifyTTL = simple + "#verifyttl";
     scopeStringReadLog = simple + "#readlog";
+    scopeStringEraseUser = simple + "#eraseuser";
+    scopeStringExportUser = simple + "#exportuser";
+    scopeStringWithdrawConsent = simple + "#withdrawconsent";
+    scopeStringQueryLog = simple + "#querylog";
   }
 
   /**
@@ -123,7 +131,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       db.cleanup();
       long en = System.nanoTime();
-      measure("CLEANUP", Status.OK, ist, st, en);
+      measure("CLEANUP", null, Status.OK, ist, st, en);
     }
   }
 
@@ -144,7 +152,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.read(table, key, fields, result);
       long en = System.nanoTime();
-      measure("READ", res, ist, st, en);
+      measure("READ", key, res, ist, st, en);
       measurements.reportStatus("READ", res);
       return res;
     }
@@ -168,14 +176,16 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.scan(table, startkey, recordcount, fields, result);
       long en = System.nanoTime();
-      measure("SCAN", res, ist, st, en);
+      measure("SCAN", startkey, res, ist, st, en);
       measurements.reportStatus("SCAN", res);
       return res;
     }
   }
 
-  private void measure(String op, Status result, long intendedStartTimeNanos,
+  private void measure(String op, String key, Status result, long intendedStartTimeNanos,
                        long startTimeNanos, long endTimeNanos) {
+    measurements.logEvent(op, result, intendedStartTimeNanos, startTimeNanos, endTimeNanos,
+        key == null ? 0 : key.hashCode());
     String measurementName = op;
     if (result == null || !result.isOk()) {
       if (this.reportLatencyForEachError ||
@@ -185,8 +195,9 @@ public class DBWrapper extends DB {
         measurementName = op + "-FAILED";
       }
     }
-    measurements.measure(measurementName,
-        (int) ((endTimeNanos - startTimeNanos) / 1000));
+    int latency = (int) ((endTimeNanos - startTimeNanos) / 1000);
+    measurements.measure(measurementName, latency);
+    measurements.measureStatus(op, result, latency);
     measurements.measureIntended(measurementName,
         (int) ((endTimeNanos - intendedStartTimeNanos) / 1000));
   }
@@ -207,7 +218,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.update(table, key, values);
       long en = System.nanoTime();
-      measure("UPDATE", res, ist, st, en);
+      measure("UPDATE", key, res, ist, st, en);
       measurements.reportStatus("UPDATE", res);
       return res;
     }
@@ -230,7 +241,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.insert(table, key, values);
       long en = System.nanoTime();
-      measure("INSERT", res, ist, st, en);
+      measure("INSERT", key, res, ist, st, en);
       measurements.reportStatus("INSERT", res);
       return res;
     }
@@ -243,7 +254,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.insertTTL(table, key, values, ttl);
       long en = System.nanoTime();
-      measure("INSERT", res, ist, st, en);
+      measure("INSERT", key, res, ist, st, en);
       measurements.reportStatus("INSERT", res);
       return res;
     }
@@ -262,7 +273,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.delete(table, key);
       long en = System.nanoTime();
-      measure("DELETE", res, ist, st, en);
+      measure("DELETE", key, res, ist, st, en);
       measurements.reportStatus("DELETE", res);
       return res;
     }
@@ -275,7 +286,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.readMeta(table, fieldnum, cond, keymatch, result);
       long en = System.nanoTime();
-      measure("READMETA", res, ist, st, en);
+      measure("READMETA", null, res, ist, st, en);
       measurements.reportStatus("READMETA", res);
       return res;
     }
@@ -288,7 +299,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.updateMeta(table, fieldnum, cond, keymatch, fieldkey, fieldvalue);
       long en = System.nanoTime();
-      measure("UPDATEMETA", res, ist, st, en);
+      measure("UPDATEMETA", null, res, ist, st, en);
       measurements.reportStatus("UPDATEMETA", res);
       return res;
     }
@@ -300,19 +311,108 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.deleteMeta(table, fieldnum, cond, keymatch);
       long en = System.nanoTime();
-      measure("DELETEMETA", res, ist, st, en);
+      measure("DELETEMETA", null, res, ist, st, en);
       measurements.reportStatus("DELETEMETA", res);
       return res;
     }
   }
 
+  /**
+   * Erase all records of a data subject. The whole erasure is measured as ERASEUSER, and the
+   * number of records it removed is summarized as ERASEUSER-RECORDS.
+   */
+  public Status eraseUser(String table, String user, RecordCount removed) {
+    try (final TraceScope span = tracer.newScope(scopeStringEraseUser)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      long before = removed.get();
+      Status res = db.eraseUser(table, user, removed);
+      long en = System.nanoTime();
+      measure("ERASEUSER", user, res, ist, st, en);
+      measurements.reportStatus("ERASEUSER", res);
+      long records = removed.get() - before;
+      measurements.summarize("ERASEUSER-RECORDS", "records", records);
+      return res;
+    }
+  }
+
+  /**
+   * Withdraw consent for a purpose. The whole rewrite is measured as WITHDRAWCONSENT; the number
+   * of records it rewrote is summarized as WITHDRAWCONSENT-RECORDS and how many it rewrote per
+   * second as WITHDRAWCONSENT-RECORDS-PER-SEC.
+   */
+  public Status withdrawConsent(String table, String purpose, String replacement, RecordCount rewritten) {
+    try (final TraceScope span = tracer.newScope(scopeStringWithdrawConsent)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      long before = rewritten.get();
+      Status res = db.withdrawConsent(table, purpose, replacement, rewritten);
+      long en = System.nanoTime();
+      measure("WITHDRAWCONSENT", purpose, res, ist, st, en);
+      measurements.reportStatus("WITHDRAWCONSENT", res);
+      long records = rewritten.get() - before;
+      measurements.summarize("WITHDRAWCONSENT-RECORDS", "records", records);
+      measurements.summarize("WITHDRAWCONSENT-RECORDS-PER-SEC", "records/s",
+          records * 1000000000L / Math.max(en - st, 1));
+      return res;
+    }
+  }
+
+  /**
+   * Export all records of a data subject. The whole export is measured as EXPORTUSER, the time
+   * until the first record arrived as EXPORTUSER-FIRST-RECORD, and the bytes of field values
+   * exported are summarized as EXPORTUSER-BYTES.
+   */
+  public Status exportUser(String table, String user, RecordSink sink) {
+    try (final TraceScope span = tracer.newScope(scopeStringExportUser)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      MeasuredSink measured = new MeasuredSink(sink);
+      Status res = db.exportUser(table, user, measured);
+      long en = System.nanoTime();
+      measure("EXPORTUSER", user, res, ist, st, en);
+      measurements.reportStatus("EXPORTUSER", res);
+      if (measured.records > 0) {
+        measurements.measure("EXPORTUSER-FIRST-RECORD", (int) ((measured.first - st) / 1000));
+      }
+      measurements.summarize("EXPORTUSER-BYTES", "bytes", measured.bytes);
+      return res;
+    }
+  }
+
+  /**
+   * Notes when the first record arrives and counts the bytes of all of them, before passing
+   * them on.
+   */
+  private static final class MeasuredSink implements RecordSink {
+    private final RecordSink sink;
+    private long records;
+    private long first;
+    private long bytes;
+
+    MeasuredSink(RecordSink sink) {
+      this.sink = sink;
+    }
+
+    @Override
+    public void accept(Map<String, ByteIterator> record) {
+      if (records++ == 0) {
+        first = System.nanoTime();
+      }
+      for (ByteIterator value : record.values()) {
+        bytes += value.bytesLeft();
+      }
+      sink.accept(record);
+    }
+  }
+
   public Status verifyTTL(String table, long recordcount) {
     try (final TraceScope span = tracer.newScope(scopeStringVerifyTTL)) {
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.verifyTTL(table, recordcount);
       long en = System.nanoTime();
-      measure("VERIFYTTL", res, ist, st, en);
+      measure("VERIFYTTL", null, res, ist, st, en);
       measurements.reportStatus("VERIFYTTL", res);
       return res;
     }
@@ -324,9 +424,29 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       Status res = db.readLog(table, logcount);
       long en = System.nanoTime();
-      measure("READLOG", res, ist, st, en);
+      measure("READLOG", null, res, ist, st, en);
       measurements.reportStatus("READLOG", res);
       return res;
     }
   }
+
+  /**
+   * Search the audit log. Each kind of query is measured under its own name, e.g. AUDITUSER,
+   * and the number of entries it selected is summarized under that name with -MATCHES appended.
+   */
+  public Status queryLog(String table, AuditQuery query, int logCount, RecordCount matched) {
+    try (final TraceScope span = tracer.newScope(scopeStringQueryLog)) {
+      final String name = query.getKind().getMeasurement();
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      long before = matched.get();
+      Status res = db.queryLog(table, query, logCount, matched);
+      long en = System.nanoTime();
+      measure(name, query.getValue(), res, ist, st, en);
+      measurements.reportStatus(name, res);
+      long records = matched.get() - before;
+      measurements.summarize(query.getKind().getMatchesMeasurement(), "entries", records);
+      return res;
+    }
+  }
 }
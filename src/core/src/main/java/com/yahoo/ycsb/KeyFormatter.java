@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formats record keys, e.g. "key00042", from their number.
+ *
+ * <br>
+ * Each thread formats into its own buffer, so the only allocation per key
+ * is the String itself. Optionally the keys of the first records are
+ * precomputed into a table and formatting them allocates nothing.
+ *
+ * <br>
+ * Bindings that need a key as bytes can call {@link #bytesOf(String)},
+ * which reuses the bytes of the key the thread formatted last instead of
+ * encoding the String again.
+ */
+public final class KeyFormatter {
+
+  /** The most keys a table can hold. */
+  public static final int MAX_TABLE_SIZE = 1 << 24;
+
+  /** What a thread formatted last. */
+  private static final class Buffer {
+    private byte[] bytes = new byte[64];
+    /** Long.MIN_VALUE has 19 digits and a sign. */
+    private final byte[] digits = new byte[20];
+    private int length;
+    /** The key formatted last; compared by identity. */
+    private String key;
+    /** The bytes of that key, if they were asked for or came from the table. */
+    private byte[] keyBytes;
+  }
+
+  private static final ThreadLocal<Buffer> BUFFER = new ThreadLocal<Buffer>() {
+    @Override
+    protected Buffer initialValue() {
+      return new Buffer();
+    }
+  };
+
+  private final byte[] prefix;
+  /** How to decode keys; ISO-8859-1 is the fastest and equals UTF-8 for ASCII prefixes. */
+  private final Charset charset;
+  private final int zeropadding;
+  private final boolean hashed;
+  private String[] tableKeys;
+  private byte[][] tableBytes;
+
+  /**
+   * @param prefix Prepended to every key.
+   * @param zeropadding The number of digits the key number is padded to with zeros.
+   * @param hashed Whether to hash the key number first, so keys are not inserted in order.
+   */
+  public KeyFormatter(String prefix, int zeropadding, boolean hashed) {
+    this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+    this.charset = prefix.length() == this.prefix.length ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+    this.zeropadding = zeropadding;
+    this.hashed = hashed;
+  }
+
+  /**
+   * Precomputes the keys of the key numbers below count. Each key takes
+   * about 100 bytes of heap.
+   */
+  public void precompute(int count) {
+    if (count < 0 || count > MAX_TABLE_SIZE) {
+      throw new IllegalArgumentException("Cannot precompute " + count + " keys, at most " + MAX_TABLE_SIZE);
+    }
+    String[] keys = new String[count];
+    byte[][] bytes = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      keys[i] = formatNew(i);
+      bytes[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+    }
+    tableKeys = keys;
+    tableBytes = bytes;
+  }
+
+  /** Returns the key of the given key number. */
+  public String format(long keynum) {
+    Buffer buffer = BUFFER.get();
+    if (tableKeys != null && keynum >= 0 && keynum < tableKeys.length) {
+      buffer.key = tableKeys[(int) keynum];
+      buffer.keyBytes = tableBytes[(int) keynum];
+      return buffer.key;
+    }
+    buffer.length = formatInto(keynum, buffer);
+    buffer.key = newString(buffer.bytes, buffer.length);
+    buffer.keyBytes = null;
+    return buffer.key;
+  }
+
+  private String formatNew(long keynum) {
+    Buffer buffer = new Buffer();
+    return newString(buffer.bytes, formatInto(keynum, buffer));
+  }
+
+  /**
+   * Returns the key of the given key number as bytes. Keys from the table
+   * are shared and must not be modified.
+   */
+  public byte[] toBytes(long keynum) {
+    if (tableBytes != null && keynum >= 0 && keynum < tableBytes.length) {
+      return tableBytes[(int) keynum];
+    }
+    Buffer buffer = BUFFER.get();
+    int length = formatInto(keynum, buffer);
+    byte[] bytes = new byte[length];
+    System.arraycopy(buffer.bytes, 0, bytes, 0, length);
+    return bytes;
+  }
+
+  /** Returns the key of the given key number as a ByteIterator. */
+  public ByteIterator toByteIterator(long keynum) {
+    return new ByteArrayByteIterator(toBytes(keynum));
+  }
+
+  /**
+   * Returns the bytes of a key, in UTF-8. If it is the key this thread
+   * formatted last, its bytes are not encoded again; they may be shared
+   * and must not be modified.
+   */
+  public static byte[] bytesOf(String key) {
+    Buffer buffer = BUFFER.get();
+    if (key != buffer.key) {
+      return key.getBytes(StandardCharsets.UTF_8);
+    }
+    if (buffer.keyBytes == null) {
+      byte[] bytes = new byte[buffer.length];
+      System.arraycopy(buffer.bytes, 0, bytes, 0, buffer.length);
+      buffer.keyBytes = bytes;
+    }
+    return buffer.keyBytes;
+  }
+
+  /** Writes the key into the buffer of the thread, returns its length. */
+  private int formatInto(long keynum, Buffer buffer) {
+    if (hashed) {
+      keynum = Utils.hash(keynum);
+    }
+    byte[] digits = buffer.digits;
+    // From the last digit, negative to also cover Long.MIN_VALUE.
+    long value = keynum < 0 ? keynum : -keynum;
+    int first = digits.length;
+    do {
+      long quotient = value / 10;
+      digits[--first] = (byte) ('0' + (quotient * 10 - value));
+      value = quotient;
+    } while (value != 0);
+    if (keynum < 0) {
+      digits[--first] = '-';
+    }
+    int count = digits.length - first;
+
+    int length = prefix.length + Math.max(zeropadding, count);
+    if (buffer.bytes.length < length) {
+      buffer.bytes = new byte[Math.max(length, buffer.bytes.length * 2)];
+    }
+    byte[] out = buffer.bytes;
+    System.arraycopy(prefix, 0, out, 0, prefix.length);
+    int pos = prefix.length;
+    for (int i = count; i < zeropadding; i++) {
+      out[pos++] = '0';
+    }
+    System.arraycopy(digits, first, out, pos, count);
+    return length;
+  }
+
+  private String newString(byte[] bytes, int length) {
+    return new String(bytes, 0, length, charset);
+  }
+}
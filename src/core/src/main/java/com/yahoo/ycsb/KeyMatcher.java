@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The keymatch of {@link DB#readMeta}, {@link DB#updateMeta} and
+ * {@link DB#deleteMeta} as a Redis style key pattern: "*" matches everything,
+ * "prefix*" a key prefix, other patterns are matched as globs, for bindings
+ * that match keys themselves.
+ */
+public final class KeyMatcher {
+  /** Matches every key. */
+  public static final KeyMatcher ALL = new KeyMatcher("", null);
+
+  /** How many compiled glob patterns are kept; prefixes are cheap enough to not cache. */
+  private static final int GLOB_CACHE_SIZE = 64;
+
+  private static final Map<String, KeyMatcher> GLOBS = Collections.synchronizedMap(
+      new LinkedHashMap<String, KeyMatcher>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, KeyMatcher> eldest) {
+          return size() > GLOB_CACHE_SIZE;
+        }
+      });
+
+  private final String prefix;
+  private final Pattern pattern;
+
+  private KeyMatcher(String prefix, Pattern pattern) {
+    this.prefix = prefix;
+    this.pattern = pattern;
+  }
+
+  /** Returns the matcher of a key pattern; null or empty matches everything. */
+  public static KeyMatcher of(String glob) {
+    if (glob == null || glob.isEmpty() || "*".equals(glob)) {
+      return ALL;
+    }
+    if (glob.indexOf('*') == glob.length() - 1 && glob.indexOf('?') < 0 && glob.indexOf('[') < 0) {
+      return new KeyMatcher(glob.substring(0, glob.length() - 1), null);
+    }
+    KeyMatcher matcher = GLOBS.get(glob);
+    if (matcher == null) {
+      matcher = new KeyMatcher(null, compile(glob));
+      GLOBS.put(glob, matcher);
+    }
+    return matcher;
+  }
+
+  private static Pattern compile(String glob) {
+    StringBuilder regex = new StringBuilder();
+    for (char c : glob.toCharArray()) {
+      if (c == '*') {
+        regex.append(".*");
+      } else if (c == '?') {
+        regex.append('.');
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  public boolean matches(String key) {
+    return pattern == null ? key.startsWith(prefix) : pattern.matcher(key).matches();
+  }
+}
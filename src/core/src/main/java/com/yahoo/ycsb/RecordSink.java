@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.Map;
+
+/**
+ * Takes the records a DB streams back one at a time, e.g. from
+ * {@link DB#exportUser}, so no call has to hold all of them at once.
+ */
+public interface RecordSink {
+  /**
+   * Takes one record. The DB may reuse the map and its iterators once this returns.
+   *
+   * @param record A map of field/value pairs.
+   */
+  void accept(Map<String, ByteIterator> record);
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates the threads that run the {@link ClientThread}s.
+ *
+ * <br>
+ * With {@link #PLATFORM} every client gets its own OS thread. With
+ * {@link #VIRTUAL} the clients run on virtual threads, so thousands of
+ * clients blocked on I/O cost little more than their stacks. Virtual
+ * threads need Java 21 or later; since YCSB is built for older runtimes
+ * they are created through reflection.
+ */
+public final class ThreadModel {
+
+  /** One OS thread per client. */
+  public static final String PLATFORM = "platform";
+
+  /** One virtual thread per client. */
+  public static final String VIRTUAL = "virtual";
+
+  /** Builder.unstarted(Runnable) of Thread.ofVirtual(), or null if there are no virtual threads. */
+  private static final Method UNSTARTED;
+  private static final Method NAME;
+  private static final Method OF_VIRTUAL;
+  private static final Method IS_VIRTUAL;
+
+  static {
+    Method unstarted = null;
+    Method name = null;
+    Method ofVirtual = null;
+    Method isVirtual = null;
+    try {
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      isVirtual = Thread.class.getMethod("isVirtual");
+      name = builder.getMethod("name", String.class);
+      unstarted = builder.getMethod("unstarted", Runnable.class);
+    } catch (ReflectiveOperationException e) {
+      // Older runtime, only platform threads.
+      unstarted = null;
+    }
+    UNSTARTED = unstarted;
+    NAME = name;
+    OF_VIRTUAL = ofVirtual;
+    IS_VIRTUAL = isVirtual;
+  }
+
+  private final boolean virtual;
+
+  private ThreadModel(boolean virtual) {
+    this.virtual = virtual;
+  }
+
+  /**
+   * @param model {@link #PLATFORM} or {@link #VIRTUAL}.
+   * @throws IllegalArgumentException if the model is unknown or this runtime has no virtual threads.
+   */
+  public static ThreadModel forName(String model) {
+    if (PLATFORM.equals(model)) {
+      return new ThreadModel(false);
+    }
+    if (VIRTUAL.equals(model)) {
+      if (!isVirtualSupported()) {
+        throw new IllegalArgumentException("Virtual threads need Java 21 or later, running on "
+            + System.getProperty("java.version"));
+      }
+      return new ThreadModel(true);
+    }
+    throw new IllegalArgumentException("Unknown thread model: " + model);
+  }
+
+  public static boolean isVirtualSupported() {
+    return UNSTARTED != null;
+  }
+
+  /** Whether the calling thread is a virtual thread. */
+  public static boolean isCurrentVirtual() {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (Boolean) IS_VIRTUAL.invoke(Thread.currentThread());
+    } catch (ReflectiveOperationException e) {
+      return false;
+    }
+  }
+
+  public boolean isVirtual() {
+    return virtual;
+  }
+
+  /** Returns an unstarted thread running r. */
+  public Thread newThread(Runnable r, String name) {
+    if (!virtual) {
+      return new Thread(r, name);
+    }
+    try {
+      Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+      return (Thread) UNSTARTED.invoke(builder, r);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create virtual thread", e);
+    }
+  }
+
+  /**
+   * Makes the JVM print the stack of a virtual thread whenever it blocks
+   * while pinned to its carrier thread, e.g. inside a synchronized block.
+   * Must be called before the first virtual thread is created, and has no
+   * effect on runtimes where synchronized no longer pins.
+   *
+   * @param mode "short" or "full".
+   */
+  public static void tracePinnedThreads(String mode) {
+    if (System.getProperty("jdk.tracePinnedThreads") == null) {
+      System.setProperty("jdk.tracePinnedThreads", mode);
+    }
+  }
+}
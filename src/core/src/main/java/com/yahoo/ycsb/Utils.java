@@ -23,16 +23,81 @@ import java.lang.management.OperatingSystemMXBean;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Utility functions.
  */
 public final class Utils {
+  /** Set once any thread has been seeded, so unseeded runs skip the thread local lookup. */
+  private static volatile boolean seeded;
+  private static final ThreadLocal<Random> SEEDED_RANDOM = new ThreadLocal<>();
+
   private Utils() {
     // not used
   }
 
+  /**
+   * SplitMix64, which like ThreadLocalRandom is neither synchronized nor
+   * shared, but can be seeded.
+   */
+  private static final class SeededRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private long state;
+
+    SeededRandom(long seed) {
+      super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+      state = seed;
+    }
+
+    @Override
+    protected int next(int bits) {
+      return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+      state += 0x9E3779B97F4A7C15L;
+      long z = state;
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+    }
+
+    @Override
+    public double nextDouble() {
+      return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+  }
+
+  /**
+   * Returns the random numbers of the calling thread. Generators draw from
+   * here; they are those of ThreadLocalRandom unless the thread was seeded.
+   */
+  public static Random random() {
+    if (seeded) {
+      Random random = SEEDED_RANDOM.get();
+      if (random != null) {
+        return random;
+      }
+    }
+    return ThreadLocalRandom.current();
+  }
+
+  /**
+   * Makes the random numbers of the calling thread repeatable, from now on.
+   * @param seed The seed, which should differ between threads.
+   */
+  public static void seedThread(long seed) {
+    SEEDED_RANDOM.set(new SeededRandom(seed));
+    seeded = true;
+  }
+
   /**
    * Hash an integer value.
    */
@@ -222,7 +287,7 @@ public final class Utils {
    */
   public static <T> T [] shuffleArray(final T[] array) {
     for (int i = array.length -1; i > 0; i--) {
-      final int idx = ThreadLocalRandom.current().nextInt(i + 1);
+      final int idx = random().nextInt(i + 1);
       final T temp = array[idx];
       array[idx] = array[i];
       array[i] = temp;
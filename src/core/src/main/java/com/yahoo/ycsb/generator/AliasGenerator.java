@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.generator;
+
+import com.yahoo.ycsb.Utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses from a discrete set of weighted values in constant time, using
+ * Vose's alias method.
+ *
+ * <br>
+ * The table is built once: every value owns a column of equal width, split
+ * between the value itself and one alias that takes up the rest. A draw picks
+ * a column and a point in it from a single random number, and allocates
+ * nothing, so unlike {@link DiscreteGenerator} the cost does not grow with the
+ * number of values.
+ */
+public class AliasGenerator<V> extends Generator<V> {
+  private final Object[] values;
+  /** The share of each column that belongs to its own value. */
+  private final double[] probability;
+  private final int[] alias;
+  private V lastvalue;
+
+  /**
+   * @param weights The weight of each value, in the iteration order of the
+   *        map. Values with a weight of zero or less are left out.
+   */
+  public AliasGenerator(Map<V, Double> weights) {
+    List<Object> chosen = new ArrayList<>();
+    List<Double> chosenweights = new ArrayList<>();
+    double sum = 0;
+    for (Map.Entry<V, Double> entry : weights.entrySet()) {
+      if (entry.getValue() > 0) {
+        chosen.add(entry.getKey());
+        chosenweights.add(entry.getValue());
+        sum += entry.getValue();
+      }
+    }
+    int n = chosen.size();
+    values = chosen.toArray();
+    probability = new double[n];
+    alias = new int[n];
+
+    double[] scaled = new double[n];
+    Deque<Integer> small = new ArrayDeque<>();
+    Deque<Integer> large = new ArrayDeque<>();
+    for (int i = 0; i < n; i++) {
+      scaled[i] = chosenweights.get(i) * n / sum;
+      if (scaled[i] < 1) {
+        small.push(i);
+      } else {
+        large.push(i);
+      }
+    }
+    while (!small.isEmpty() && !large.isEmpty()) {
+      int s = small.pop();
+      int l = large.pop();
+      probability[s] = scaled[s];
+      alias[s] = l;
+      scaled[l] = (scaled[l] + scaled[s]) - 1;
+      if (scaled[l] < 1) {
+        small.push(l);
+      } else {
+        large.push(l);
+      }
+    }
+    // What is left is full up to rounding errors.
+    while (!large.isEmpty()) {
+      probability[large.pop()] = 1;
+    }
+    while (!small.isEmpty()) {
+      probability[small.pop()] = 1;
+    }
+  }
+
+  /**
+   * Returns the next value, or null if no value has a positive weight.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public V nextValue() {
+    int n = values.length;
+    if (n == 0) {
+      return null;
+    }
+    double r = Utils.random().nextDouble() * n;
+    int column = Math.min((int) r, n - 1);
+    V value = (V) values[r - column < probability[column] ? column : alias[column]];
+    lastvalue = value;
+    return value;
+  }
+
+  @Override
+  public V lastValue() {
+    if (lastvalue == null) {
+      lastvalue = nextValue();
+    }
+    return lastvalue;
+  }
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A binary log with one entry per operation, written by a background
+ * thread. Client threads copy their events into a lock-free ring buffer;
+ * if the writer falls behind and the ring is full, events are dropped and
+ * counted rather than stalling the benchmark.
+ *
+ * <br>
+ * The file starts with {@link #MAGIC}, the wall clock time in ms and the
+ * matching System.nanoTime(). Each of the following {@link #EVENT_BYTES}
+ * byte events holds the operation and status codes, the thread id, the
+ * intended and actual start in ns since the header time, the latency in ns
+ * and the hash of the key. On close the names of the operation and status
+ * codes are appended, followed by their offset and {@link #TRAILER_MAGIC}.
+ * {@link EventLogAnalyzer} reads the file.
+ */
+public final class EventLog {
+  static final long MAGIC = 0x5943534245565431L; // "YCSBEVT1"
+  static final long TRAILER_MAGIC = 0x5943534245454E44L; // "YCSBEEND"
+  static final int HEADER_BYTES = 24;
+  static final int EVENT_BYTES = 40;
+
+  /** Longs per event in the ring. */
+  private static final int SLOT_LONGS = 5;
+  private static final int WRITE_BATCH = 1024;
+
+  private final FileChannel channel;
+  private final long baseNanos;
+  private final long[] ring;
+  private final AtomicLongArray published;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private volatile long tail;
+  private final AtomicLong dropped = new AtomicLong();
+  private long written;
+
+  private final ConcurrentHashMap<String, Integer> opCodes = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Integer> statusCodes = new ConcurrentHashMap<>();
+  private final List<String> opNames = new ArrayList<>();
+  private final List<String> statusNames = new ArrayList<>();
+
+  private final Thread writer;
+  private volatile boolean closed;
+
+  /**
+   * @param file Where to write the log; an existing file is overwritten.
+   * @param capacity Number of events the ring holds, rounded up to a power of two.
+   */
+  public EventLog(File file, int capacity) throws IOException {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.mask = size - 1;
+    this.ring = new long[size * SLOT_LONGS];
+    this.published = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      published.set(i, -1);
+    }
+    this.channel = new FileOutputStream(file).getChannel();
+    this.baseNanos = System.nanoTime();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putLong(MAGIC).putLong(System.currentTimeMillis()).putLong(baseNanos).flip();
+    writeFully(header);
+
+    writer = new Thread("EventLogWriter") {
+      @Override
+      public void run() {
+        drainUntilClosed();
+      }
+    };
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Adds an event to the log.
+   *
+   * @param intendedStartNanos The intended start, or 0 if it is not known.
+   */
+  public void log(String op, String status, long intendedStartNanos, long startNanos, long endNanos,
+      long keyHash) {
+    long seq;
+    do {
+      seq = head.get();
+      if (seq - tail > mask) {
+        dropped.incrementAndGet();
+        return;
+      }
+    } while (!head.compareAndSet(seq, seq + 1));
+
+    int slot = (int) (seq & mask);
+    int base = slot * SLOT_LONGS;
+    long codes = ((long) code(opCodes, opNames, op) << 48)
+        | ((long) code(statusCodes, statusNames, status) << 32)
+        | (Thread.currentThread().getId() & 0xFFFFFFFFL);
+    ring[base] = codes;
+    ring[base + 1] = (intendedStartNanos == 0 ? startNanos : intendedStartNanos) - baseNanos;
+    ring[base + 2] = startNanos - baseNanos;
+    ring[base + 3] = endNanos - startNanos;
+    ring[base + 4] = keyHash;
+    // Publishing the sequence makes the slot's contents visible to the writer.
+    published.set(slot, seq);
+  }
+
+  private int code(ConcurrentHashMap<String, Integer> codes, List<String> names, String name) {
+    Integer code = codes.get(name);
+    if (code == null) {
+      synchronized (names) {
+        code = codes.get(name);
+        if (code == null) {
+          code = names.size();
+          names.add(name);
+          codes.put(name, code);
+        }
+      }
+    }
+    return code;
+  }
+
+  private void drainUntilClosed() {
+    ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BATCH * EVENT_BYTES);
+    try {
+      while (true) {
+        boolean wasClosed = closed;
+        int n = drain(out);
+        if (n == 0) {
+          if (wasClosed) {
+            return;
+          }
+          LockSupport.parkNanos(1000000);
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Could not write event log: " + e);
+    }
+  }
+
+  /** Writes up to {@link #WRITE_BATCH} published events, returns how many. */
+  private int drain(ByteBuffer out) throws IOException {
+    out.clear();
+    long seq = tail;
+    int n = 0;
+    while (n < WRITE_BATCH) {
+      int slot = (int) (seq & mask);
+      if (published.get(slot) != seq) {
+        break;
+      }
+      int base = slot * SLOT_LONGS;
+      long codes = ring[base];
+      out.putShort((short) (codes >>> 48));
+      out.putShort((short) (codes >>> 32));
+      out.putInt((int) codes);
+      out.putLong(ring[base + 1]);
+      out.putLong(ring[base + 2]);
+      out.putLong(ring[base + 3]);
+      out.putLong(ring[base + 4]);
+      seq++;
+      n++;
+    }
+    if (n > 0) {
+      // Free the slots before the write, producers only need them copied.
+      tail = seq;
+      out.flip();
+      writeFully(out);
+      written += n;
+    }
+    return n;
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /** Writes the remaining events and the trailer and closes the file. */
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    long trailerOffset = channel.position();
+    ByteBuffer trailer = ByteBuffer.allocate(16 + names(opNames).length + names(statusNames).length);
+    trailer.put(names(opNames)).put(names(statusNames));
+    trailer.putLong(trailerOffset).putLong(TRAILER_MAGIC).flip();
+    writeFully(trailer);
+    channel.close();
+  }
+
+  private static byte[] names(List<String> names) {
+    synchronized (names) {
+      int size = 4;
+      List<byte[]> encoded = new ArrayList<>();
+      for (String name : names) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        encoded.add(bytes);
+        size += 2 + bytes.length;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(size);
+      buffer.putInt(encoded.size());
+      for (byte[] bytes : encoded) {
+        buffer.putShort((short) bytes.length).put(bytes);
+      }
+      return buffer.array();
+    }
+  }
+
+  /** The number of events written; only complete after {@link #close()}. */
+  public long getWritten() {
+    return written;
+  }
+
+  public long getDropped() {
+    return dropped.get();
+  }
+}
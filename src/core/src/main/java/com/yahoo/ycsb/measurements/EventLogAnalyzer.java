@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Command line tool that reads {@link EventLog} files and prints latency
+ * percentiles, status counts and a throughput timeline per operation, for
+ * each file and, given several files, for all of them together.
+ *
+ * <pre>
+ * java -cp core.jar:HdrHistogram.jar com.yahoo.ycsb.measurements.EventLogAnalyzer \
+ *     [-interval seconds] [-intended] [-percentiles 50,99,99.9] file...
+ * </pre>
+ *
+ * With -intended latencies are measured from the intended start of each
+ * operation instead of its actual start.
+ */
+public final class EventLogAnalyzer {
+
+  /** What was seen of one operation. */
+  static final class OpStats {
+    private final Histogram latencies = new Histogram(3);
+    private final Map<String, Long> statuses = new TreeMap<>();
+    private final Map<Long, Long> timeline = new TreeMap<>();
+
+    Histogram getLatencies() {
+      return latencies;
+    }
+
+    Map<String, Long> getStatuses() {
+      return statuses;
+    }
+
+    /** Operations started in each interval, by interval number. */
+    Map<Long, Long> getTimeline() {
+      return timeline;
+    }
+
+    void add(OpStats other) {
+      latencies.add(other.latencies);
+      merge(statuses, other.statuses);
+      merge(timeline, other.timeline);
+    }
+
+    private static <K> void merge(Map<K, Long> into, Map<K, Long> from) {
+      for (Map.Entry<K, Long> entry : from.entrySet()) {
+        Long count = into.get(entry.getKey());
+        into.put(entry.getKey(), (count == null ? 0 : count) + entry.getValue());
+      }
+    }
+  }
+
+  /** The statistics of one or more event logs. */
+  static final class Analysis {
+    private final Map<String, OpStats> ops = new TreeMap<>();
+    private long events;
+    private long durationNanos;
+
+    Map<String, OpStats> getOps() {
+      return ops;
+    }
+
+    long getEvents() {
+      return events;
+    }
+
+    OpStats op(String name) {
+      OpStats stats = ops.get(name);
+      if (stats == null) {
+        stats = new OpStats();
+        ops.put(name, stats);
+      }
+      return stats;
+    }
+
+    void add(Analysis other) {
+      for (Map.Entry<String, OpStats> entry : other.ops.entrySet()) {
+        op(entry.getKey()).add(entry.getValue());
+      }
+      events += other.events;
+      durationNanos += other.durationNanos;
+    }
+  }
+
+  private EventLogAnalyzer() {
+    // Not instantiable.
+  }
+
+  /**
+   * Reads an event log.
+   *
+   * @param intervalNanos Length of the timeline intervals.
+   * @param intended Whether to measure latency from the intended start.
+   */
+  static Analysis analyze(File file, long intervalNanos, boolean intended) throws IOException {
+    List<String> opNames = new ArrayList<>();
+    List<String> statusNames = new ArrayList<>();
+    long eventsEnd = readTrailer(file, opNames, statusNames);
+
+    Analysis analysis = new Analysis();
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+      if (in.readLong() != EventLog.MAGIC) {
+        throw new IOException(file + " is not an event log");
+      }
+      in.readLong();
+      in.readLong();
+      long events = (eventsEnd - EventLog.HEADER_BYTES) / EventLog.EVENT_BYTES;
+      OpStats[] byCode = new OpStats[opNames.size()];
+      for (long i = 0; i < events; i++) {
+        int op = in.readShort();
+        int status = in.readShort();
+        in.readInt();
+        long intendedStart = in.readLong();
+        long start = in.readLong();
+        long latency = in.readLong();
+        in.readLong();
+
+        if (byCode[op] == null) {
+          byCode[op] = analysis.op(opNames.get(op));
+        }
+        OpStats stats = byCode[op];
+        long measured = intended ? start + latency - intendedStart : latency;
+        stats.latencies.recordValue(Math.max(0, measured / 1000));
+        increment(stats.statuses, statusNames.get(status));
+        increment(stats.timeline, (intended ? intendedStart : start) / intervalNanos);
+        first = Math.min(first, start);
+        last = Math.max(last, start + latency);
+      }
+      analysis.events = events;
+    } catch (EOFException e) {
+      throw new IOException(file + " is truncated", e);
+    }
+    analysis.durationNanos = analysis.events == 0 ? 0 : last - first;
+    return analysis;
+  }
+
+  /** Reads the operation and status names, returns where the events end. */
+  private static long readTrailer(File file, List<String> opNames, List<String> statusNames) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      if (raf.length() < EventLog.HEADER_BYTES + 16) {
+        throw new IOException(file + " is not an event log");
+      }
+      raf.seek(raf.length() - 16);
+      long trailerOffset = raf.readLong();
+      if (raf.readLong() != EventLog.TRAILER_MAGIC) {
+        throw new IOException(file + " was not closed properly");
+      }
+      raf.seek(trailerOffset);
+      readNames(raf, opNames);
+      readNames(raf, statusNames);
+      return trailerOffset;
+    }
+  }
+
+  private static void readNames(RandomAccessFile raf, List<String> names) throws IOException {
+    int count = raf.readInt();
+    for (int i = 0; i < count; i++) {
+      byte[] bytes = new byte[raf.readShort()];
+      raf.readFully(bytes);
+      names.add(new String(bytes, StandardCharsets.UTF_8));
+    }
+  }
+
+  private static <K> void increment(Map<K, Long> counts, K key) {
+    Long count = counts.get(key);
+    counts.put(key, count == null ? 1 : count + 1);
+  }
+
+  static void print(Analysis analysis, List<Double> percentiles, long intervalNanos, PrintStream out) {
+    double seconds = analysis.durationNanos / 1e9;
+    out.println("[OVERALL], Operations, " + analysis.events);
+    out.println("[OVERALL], RunTime(ms), " + analysis.durationNanos / 1000000);
+    if (seconds > 0) {
+      out.println("[OVERALL], Throughput(ops/sec), " + analysis.events / seconds);
+    }
+    for (Map.Entry<String, OpStats> entry : analysis.ops.entrySet()) {
+      String op = "[" + entry.getKey() + "], ";
+      Histogram h = entry.getValue().latencies;
+      out.println(op + "Operations, " + h.getTotalCount());
+      out.println(op + "AverageLatency(us), " + h.getMean());
+      out.println(op + "MinLatency(us), " + h.getMinValue());
+      out.println(op + "MaxLatency(us), " + h.getMaxValue());
+      for (double p : percentiles) {
+        out.println(op + "p" + (p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p))
+            + "(us), " + h.getValueAtPercentile(p));
+      }
+      for (Map.Entry<String, Long> status : entry.getValue().statuses.entrySet()) {
+        out.println(op + "Return=" + status.getKey() + ", " + status.getValue());
+      }
+    }
+    double intervalSeconds = intervalNanos / 1e9;
+    for (Map.Entry<String, OpStats> entry : analysis.ops.entrySet()) {
+      for (Map.Entry<Long, Long> interval : entry.getValue().timeline.entrySet()) {
+        out.println("[" + entry.getKey() + "], Throughput(ops/sec) at " + interval.getKey() * intervalSeconds
+            + " s, " + interval.getValue() / intervalSeconds);
+      }
+    }
+  }
+
+  private static void usage() {
+    System.err.println("Usage: EventLogAnalyzer [-interval seconds] [-intended] [-percentiles 50,99,99.9] file...");
+    System.exit(1);
+  }
+
+  public static void main(String[] args) throws IOException {
+    long intervalNanos = 10000000000L;
+    boolean intended = false;
+    List<Double> percentiles = new ArrayList<>();
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if ("-interval".equals(args[i]) && i + 1 < args.length) {
+        intervalNanos = (long) (Double.parseDouble(args[++i]) * 1e9);
+      } else if ("-intended".equals(args[i])) {
+        intended = true;
+      } else if ("-percentiles".equals(args[i]) && i + 1 < args.length) {
+        for (String p : args[++i].split(",")) {
+          percentiles.add(Double.parseDouble(p));
+        }
+      } else if (args[i].startsWith("-")) {
+        usage();
+      } else {
+        files.add(new File(args[i]));
+      }
+    }
+    if (files.isEmpty() || intervalNanos <= 0) {
+      usage();
+    }
+    if (percentiles.isEmpty()) {
+      percentiles.add(50.0);
+      percentiles.add(95.0);
+      percentiles.add(99.0);
+      percentiles.add(99.9);
+    }
+
+    Analysis all = new Analysis();
+    for (File file : files) {
+      Analysis analysis = analyze(file, intervalNanos, intended);
+      System.out.println("# " + file);
+      print(analysis, percentiles, intervalNanos, System.out);
+      all.add(analysis);
+    }
+    if (files.size() > 1) {
+      System.out.println("# all runs");
+      print(all, percentiles, intervalNanos, System.out);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Values a binding or workload wants to expose while the benchmark runs,
+ * e.g. how far behind a TTL sweeper is. Gauges are only read when the
+ * metrics endpoint is scraped.
+ */
+public final class Gauges {
+  private static final ConcurrentHashMap<String, DoubleSupplier> GAUGES = new ConcurrentHashMap<>();
+
+  private Gauges() {
+    // Not instantiable.
+  }
+
+  /**
+   * Registers a gauge, replacing any gauge of the same name.
+   *
+   * @param name Lower case words separated by underscores, e.g. memstore_ttl_lag_ms.
+   */
+  public static void register(String name, DoubleSupplier gauge) {
+    GAUGES.put(name, gauge);
+  }
+
+  public static void unregister(String name) {
+    GAUGES.remove(name);
+  }
+
+  /** Returns the gauges by name. */
+  public static Map<String, DoubleSupplier> getGauges() {
+    return Collections.unmodifiableMap(new TreeMap<>(GAUGES));
+  }
+}
@@ -20,7 +20,12 @@ package com.yahoo.ycsb.measurements;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -36,6 +41,7 @@ public class Measurements {
     HDRHISTOGRAM,
     HDRHISTOGRAM_AND_HISTOGRAM,
     HDRHISTOGRAM_AND_RAW,
+    SHARDED_HDRHISTOGRAM,
     TIMESERIES,
     RAW
   }
@@ -49,11 +55,33 @@ public class Measurements {
   public static final String MEASUREMENT_TRACK_JVM_PROPERTY = "measurement.trackjvm";
   public static final String MEASUREMENT_TRACK_JVM_PROPERTY_DEFAULT = "false";
 
+  /**
+   * If set, every operation is also written to this binary event log, see
+   * {@link EventLog} and {@link EventLogAnalyzer}.
+   */
+  public static final String EVENT_LOG_PROPERTY = "measurement.eventlog";
+
+  /** Number of events buffered for the event log writer. */
+  public static final String EVENT_LOG_BUFFER_PROPERTY = "measurement.eventlog.buffer";
+  public static final String EVENT_LOG_BUFFER_PROPERTY_DEFAULT = "65536";
+
+  /**
+   * Whether to also keep the latencies of every operation split by the
+   * status it returned, exported as operation:status.
+   */
+  public static final String STATUS_BREAKDOWN_PROPERTY = "measurement.statusbreakdown";
+  public static final String STATUS_BREAKDOWN_PROPERTY_DEFAULT = "false";
+
   private static Measurements singleton = null;
   private static Properties measurementproperties = null;
 
-  public static void setProperties(Properties props) {
+  /**
+   * Sets the properties of the singleton, dropping the singleton created
+   * with earlier properties, if any.
+   */
+  public static synchronized void setProperties(Properties props) {
     measurementproperties = props;
+    singleton = null;
   }
 
   /**
@@ -71,6 +99,11 @@ public class Measurements {
   private final MeasurementType measurementType;
   private final int measurementInterval;
   private final Properties props;
+  private final EventLog eventLog;
+  private final ConcurrentHashMap<String, StatusBreakdown> statusBreakdowns;
+  private final boolean exportStatusBreakdowns;
+  private final List<Double> statusBreakdownPercentiles;
+  private final ConcurrentHashMap<String, ValueSummary> valueSummaries = new ConcurrentHashMap<>();
 
   /**
    * Create a new object with the specified properties.
@@ -95,6 +128,9 @@ public class Measurements {
     case "hdrhistogram+raw":
       measurementType = MeasurementType.HDRHISTOGRAM_AND_RAW;
       break;
+    case "shardedhdrhistogram":
+      measurementType = MeasurementType.SHARDED_HDRHISTOGRAM;
+      break;
     case "timeseries":
       measurementType = MeasurementType.TIMESERIES;
       break;
@@ -119,6 +155,30 @@ public class Measurements {
     default:
       throw new IllegalArgumentException("unknown " + MEASUREMENT_INTERVAL + "=" + mIntervalString);
     }
+
+    exportStatusBreakdowns = Boolean.parseBoolean(
+        this.props.getProperty(STATUS_BREAKDOWN_PROPERTY, STATUS_BREAKDOWN_PROPERTY_DEFAULT));
+    // The metrics endpoint serves its latencies from the breakdown.
+    if (exportStatusBreakdowns || this.props.getProperty(MetricsServer.PORT_PROPERTY) != null) {
+      statusBreakdowns = new ConcurrentHashMap<>();
+      statusBreakdownPercentiles = OneMeasurementHdrHistogram.getPercentileValues(this.props.getProperty(
+          OneMeasurementHdrHistogram.PERCENTILES_PROPERTY, OneMeasurementHdrHistogram.PERCENTILES_PROPERTY_DEFAULT));
+    } else {
+      statusBreakdowns = null;
+      statusBreakdownPercentiles = null;
+    }
+
+    String eventLogPath = this.props.getProperty(EVENT_LOG_PROPERTY);
+    if (eventLogPath == null || eventLogPath.isEmpty()) {
+      eventLog = null;
+    } else {
+      try {
+        eventLog = new EventLog(new File(eventLogPath), Integer.parseInt(
+            this.props.getProperty(EVENT_LOG_BUFFER_PROPERTY, EVENT_LOG_BUFFER_PROPERTY_DEFAULT)));
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to open event log " + eventLogPath, e);
+      }
+    }
   }
 
   private OneMeasurement constructOneMeasurement(String name) {
@@ -135,6 +195,8 @@ public class Measurements {
       return new TwoInOneMeasurement(name,
           new OneMeasurementHdrHistogram("Hdr" + name, props),
           new OneMeasurementRaw("Raw" + name, props));
+    case SHARDED_HDRHISTOGRAM:
+      return new OneMeasurementShardedHdrHistogram(name, props);
     case TIMESERIES:
       return new OneMeasurementTimeSeries(name, props);
     case RAW:
@@ -156,6 +218,10 @@ public class Measurements {
     }
   }
 
+  private final ThreadLocal<Namespace> tlNamespace = new ThreadLocal<>();
+  /** Whether any thread has set a namespace; the others skip the thread local until then. */
+  private volatile boolean namespaced;
+
   private final ThreadLocal<StartTimeHolder> tlIntendedStartTime = new ThreadLocal<Measurements.StartTimeHolder>() {
     protected StartTimeHolder initialValue() {
       return new StartTimeHolder();
@@ -163,14 +229,59 @@ public class Measurements {
   };
 
   public void setIntendedStartTimeNs(long time) {
-    if (measurementInterval == 0) {
+    if (measurementInterval == 0 && eventLog == null) {
       return;
     }
     tlIntendedStartTime.get().time = time;
   }
 
+  /**
+   * Names the measurements of one thread of a composite workload, so that
+   * its operations are reported as namespace.operation, e.g. CUSTOMER.READ.
+   * Applies to the calling thread only; null removes it again.
+   */
+  public void setNamespace(String namespace) {
+    if (namespace == null) {
+      tlNamespace.remove();
+      return;
+    }
+    namespaced = true;
+    tlNamespace.set(new Namespace(namespace));
+  }
+
+  /** The name the calling thread reports an operation under. */
+  private String qualify(String operation) {
+    if (!namespaced) {
+      return operation;
+    }
+    Namespace namespace = tlNamespace.get();
+    return namespace == null ? operation : namespace.qualify(operation);
+  }
+
+  /**
+   * The namespace of one thread with the names it has built, so measuring an
+   * operation does not concatenate strings each time.
+   */
+  private static final class Namespace {
+    private final String prefix;
+    private final HashMap<String, String> names = new HashMap<>();
+
+    Namespace(String namespace) {
+      prefix = namespace + ".";
+    }
+
+    String qualify(String operation) {
+      String name = names.get(operation);
+      if (name == null) {
+        name = prefix + operation;
+        names.put(operation, name);
+      }
+      return name;
+    }
+  }
+
   public long getIntendedtartTimeNs() {
-    if (measurementInterval == 0) {
+    if (measurementInterval == 0 && eventLog == null) {
       return 0L;
     }
     return tlIntendedStartTime.get().startTime();
@@ -185,7 +296,7 @@ public class Measurements {
       return;
     }
     try {
-      OneMeasurement m = getOpMeasurement(operation);
+      OneMeasurement m = getOpMeasurement(qualify(operation));
       m.measure(latency);
     } catch (java.lang.ArrayIndexOutOfBoundsException e) {
       // This seems like a terribly hacky way to cover up for a bug in the measurement code
@@ -204,7 +315,7 @@ public class Measurements {
       return;
     }
     try {
-      OneMeasurement m = getOpIntendedMeasurement(operation);
+      OneMeasurement m = getOpIntendedMeasurement(qualify(operation));
       m.measure(latency);
     } catch (java.lang.ArrayIndexOutOfBoundsException e) {
       // This seems like a terribly hacky way to cover up for a bug in the measurement code
@@ -239,13 +350,74 @@ public class Measurements {
     return m;
   }
 
+  /**
+   * Report the latency of a single operation by the status it returned, if
+   * the status breakdown is enabled.
+   */
+  public void measureStatus(String operation, Status status, int latency) {
+    if (statusBreakdowns == null || status == null) {
+      return;
+    }
+    operation = qualify(operation);
+    StatusBreakdown b = statusBreakdowns.get(operation);
+    if (b == null) {
+      b = new StatusBreakdown(operation, statusBreakdownPercentiles);
+      StatusBreakdown oldB = statusBreakdowns.putIfAbsent(operation, b);
+      if (oldB != null) {
+        b = oldB;
+      }
+    }
+    b.measure(status, latency);
+  }
+
+  /**
+   * The latencies by operation and status, empty unless the status breakdown is enabled.
+   */
+  public Collection<StatusBreakdown> getStatusBreakdowns() {
+    return statusBreakdowns == null ? Collections.<StatusBreakdown>emptyList() : statusBreakdowns.values();
+  }
+
+  /**
+   * Report a count or size for a single operation, e.g. the records an erasure removed. It is
+   * summarized apart from the latencies, with its own unit.
+   *
+   * @param name The metric, e.g. ERASEUSER-RECORDS.
+   * @param unit What the value counts, e.g. records.
+   */
+  public void summarize(String name, String unit, long value) {
+    name = qualify(name);
+    ValueSummary s = valueSummaries.get(name);
+    if (s == null) {
+      s = new ValueSummary(name, unit);
+      ValueSummary oldS = valueSummaries.putIfAbsent(name, s);
+      if (oldS != null) {
+        s = oldS;
+      }
+    }
+    s.add(value);
+  }
+
+  /**
+   * Write a single operation to the event log, if there is one.
+   *
+   * @param keyHash Hash of the key the operation accessed, or 0.
+   */
+  public void logEvent(String operation, Status status, long intendedStartTimeNs, long startTimeNs,
+      long endTimeNs, long keyHash) {
+    if (eventLog != null) {
+      eventLog.log(qualify(operation), status == null ? "null" : status.getName(), intendedStartTimeNs, startTimeNs,
+          endTimeNs, keyHash);
+    }
+  }
+
   /**
    * Report a return code for a single DB operation.
    */
   public void reportStatus(final String operation, final Status status) {
+    final String name = qualify(operation);
     OneMeasurement m = measurementInterval == 1 ?
-        getOpIntendedMeasurement(operation) :
-        getOpMeasurement(operation);
+        getOpIntendedMeasurement(name) :
+        getOpMeasurement(name);
     m.reportStatus(status);
   }
 
@@ -262,6 +434,20 @@ public class Measurements {
     for (OneMeasurement measurement : opToIntendedMesurementMap.values()) {
       measurement.exportMeasurements(exporter);
     }
+    if (exportStatusBreakdowns) {
+      for (StatusBreakdown breakdown : getStatusBreakdowns()) {
+        breakdown.exportMeasurements(exporter);
+      }
+    }
+    for (ValueSummary summary : valueSummaries.values()) {
+      summary.exportMeasurements(exporter);
+    }
+    if (eventLog != null) {
+      // Measurements are exported once, when all operations are done.
+      eventLog.close();
+      exporter.write("EVENTLOG", "Events", eventLog.getWritten());
+      exporter.write("EVENTLOG", "Dropped", eventLog.getDropped());
+    }
   }
 
   /**
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.ycsb.Utils;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Serves live benchmark metrics in the Prometheus text format on
+ * /metrics, using the HTTP server built into the JDK.
+ *
+ * <br>
+ * Latencies come from the per status breakdown of {@link Measurements},
+ * whose recorders are wait-free, so a scrape never blocks the client
+ * threads.
+ */
+public class MetricsServer {
+
+  /** Port to serve the metrics on; not set to disable the endpoint. */
+  public static final String PORT_PROPERTY = "metrics.port";
+
+  /** Address to listen on. */
+  public static final String HOST_PROPERTY = "metrics.host";
+  public static final String HOST_PROPERTY_DEFAULT = "0.0.0.0";
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private final HttpServer server;
+  private final Measurements measurements;
+  private final LongSupplier opsDone;
+  private final long startMs = System.currentTimeMillis();
+
+  /**
+   * @param opsDone The number of operations done by all client threads.
+   */
+  public MetricsServer(String host, int port, Measurements measurements, LongSupplier opsDone) throws IOException {
+    this.measurements = measurements;
+    this.opsDone = opsDone;
+    server = HttpServer.create(new InetSocketAddress(host, port), 0);
+    server.createContext("/metrics", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    });
+  }
+
+  public void start() {
+    server.start();
+    System.err.println("Serving metrics on http://" + server.getAddress().getHostString() + ":"
+        + server.getAddress().getPort() + "/metrics");
+  }
+
+  public void stop() {
+    server.stop(0);
+  }
+
+  /** The port the server listens on, useful when started on port 0. */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /** Returns the current metrics in the Prometheus text format. */
+  String scrape() {
+    StringBuilder out = new StringBuilder(4096);
+
+    long elapsedMs = System.currentTimeMillis() - startMs;
+    long ops = opsDone.getAsLong();
+    header(out, "ycsb_operations_total", "counter", "Operations done by all client threads.");
+    out.append("ycsb_operations_total ").append(ops).append('\n');
+    header(out, "ycsb_throughput_ops_per_second", "gauge", "Average throughput since the start.");
+    out.append("ycsb_throughput_ops_per_second ").append(elapsedMs > 0 ? ops * 1000.0 / elapsedMs : 0).append('\n');
+
+    header(out, "ycsb_latency_microseconds", "summary", "Latency by operation and returned status.");
+    for (StatusBreakdown breakdown : measurements.getStatusBreakdowns()) {
+      for (Map.Entry<String, Histogram> entry : breakdown.getHistograms().entrySet()) {
+        String labels = "operation=\"" + escape(breakdown.getName()) + "\",status=\"" + escape(entry.getKey()) + "\"";
+        Histogram h = entry.getValue();
+        for (double q : QUANTILES) {
+          out.append("ycsb_latency_microseconds{").append(labels).append(",quantile=\"").append(q).append("\"} ")
+              .append(h.getValueAtPercentile(q * 100)).append('\n');
+        }
+        out.append("ycsb_latency_microseconds_sum{").append(labels).append("} ")
+            .append(h.getMean() * h.getTotalCount()).append('\n');
+        out.append("ycsb_latency_microseconds_count{").append(labels).append("} ")
+            .append(h.getTotalCount()).append('\n');
+      }
+    }
+
+    Map<String, Long[]> gcs = Utils.getGCStatst();
+    header(out, "ycsb_gc_collections_total", "counter", "Garbage collections by collector.");
+    for (Map.Entry<String, Long[]> gc : gcs.entrySet()) {
+      out.append("ycsb_gc_collections_total{collector=\"").append(escape(gc.getKey())).append("\"} ")
+          .append(gc.getValue()[0]).append('\n');
+    }
+    header(out, "ycsb_gc_time_seconds_total", "counter", "Time spent in garbage collection by collector.");
+    for (Map.Entry<String, Long[]> gc : gcs.entrySet()) {
+      out.append("ycsb_gc_time_seconds_total{collector=\"").append(escape(gc.getKey())).append("\"} ")
+          .append(gc.getValue()[1] / 1000.0).append('\n');
+    }
+    MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    header(out, "ycsb_heap_used_bytes", "gauge", "Used heap memory.");
+    out.append("ycsb_heap_used_bytes ").append(heap.getUsed()).append('\n');
+
+    for (Map.Entry<String, DoubleSupplier> gauge : Gauges.getGauges().entrySet()) {
+      String name = "ycsb_" + gauge.getKey().replaceAll("[^a-zA-Z0-9_]", "_");
+      header(out, name, "gauge", null);
+      out.append(name).append(' ').append(gauge.getValue().getAsDouble()).append('\n');
+    }
+    return out.toString();
+  }
+
+  private static void header(StringBuilder out, String name, String type, String help) {
+    if (help != null) {
+      out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static String escape(String label) {
+    return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
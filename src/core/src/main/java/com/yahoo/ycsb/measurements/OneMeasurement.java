@@ -21,6 +21,7 @@ import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -74,9 +75,21 @@ public abstract class OneMeasurement {
    */
   public abstract void exportMeasurements(MeasurementsExporter exporter) throws IOException;
 
-  protected final void exportStatusCounts(MeasurementsExporter exporter) throws IOException {
+  /**
+   * Returns how often each status was reported. Subclasses that count
+   * statuses themselves override this together with {@link #reportStatus}.
+   */
+  protected Map<Status, Long> getStatusCounts() {
+    Map<Status, Long> counts = new HashMap<>();
     for (Map.Entry<Status, AtomicInteger> entry : returncodes.entrySet()) {
-      exporter.write(getName(), "Return=" + entry.getKey().getName(), entry.getValue().get());
+      counts.put(entry.getKey(), (long) entry.getValue().get());
+    }
+    return counts;
+  }
+
+  protected final void exportStatusCounts(MeasurementsExporter exporter) throws IOException {
+    for (Map.Entry<Status, Long> entry : getStatusCounts().entrySet()) {
+      exporter.write(getName(), "Return=" + entry.getKey().getName(), entry.getValue());
     }
   }
 }
@@ -42,6 +42,7 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
   private final PrintStream log;
   private final HistogramLogWriter histogramLogWriter;
 
+  /** Null when a subclass records the values itself. */
   private final Recorder histogram;
   private Histogram totalHistogram;
 
@@ -68,6 +69,14 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
   private final List<Double> percentiles;
 
   public OneMeasurementHdrHistogram(String name, Properties props) {
+    this(name, props, true);
+  }
+
+  /**
+   * @param recording Whether to record into a {@link Recorder} of this class; subclasses that
+   *                  override measure and getIntervalHistogram pass false to not allocate it.
+   */
+  protected OneMeasurementHdrHistogram(String name, Properties props, boolean recording) {
     super(name);
     percentiles = getPercentileValues(props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT));
     verbose = Boolean.valueOf(props.getProperty(VERBOSE_PROPERTY, String.valueOf(false)));
@@ -90,7 +99,7 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
       histogramLogWriter.setBaseTime(now);
       histogramLogWriter.outputLegend();
     }
-    histogram = new Recorder(3);
+    histogram = recording ? new Recorder(3) : null;
   }
 
   /**
@@ -164,8 +173,16 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
         + d.format(intervalHistogram.getValueAtPercentile(99.99)) + "]";
   }
 
+  /**
+   * Returns the values recorded since the last call. Subclasses that record
+   * into their own histograms override this together with {@link #measure}.
+   */
+  protected Histogram getIntervalHistogram() {
+    return histogram.getIntervalHistogram();
+  }
+
   private Histogram getIntervalHistogramAndAccumulate() {
-    Histogram intervalHistogram = histogram.getIntervalHistogram();
+    Histogram intervalHistogram = getIntervalHistogram();
     // add this to the total time histogram.
     if (totalHistogram == null) {
       totalHistogram = intervalHistogram;
@@ -181,7 +198,7 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
    * @param percentileString - comma delimited string of Integer values
    * @return An Integer List of percentile values
    */
-  private List<Double> getPercentileValues(String percentileString) {
+  static List<Double> getPercentileValues(String percentileString) {
     List<Double> percentileValues = new ArrayList<>();
 
     try {
@@ -205,7 +222,7 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
    * @param i number
    * @return ordinal string
    */
-  private String ordinal(Double i) {
+  static String ordinal(Double i) {
     String[] suffixes = new String[]{"th", "st", "nd", "rd", "th", "th", "th", "th", "th", "th"};
     Integer j = i.intValue();
     if (i % 1 == 0) {
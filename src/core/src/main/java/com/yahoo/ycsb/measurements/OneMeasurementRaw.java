@@ -19,13 +19,11 @@ package com.yahoo.ycsb.measurements;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.Properties;
 
 /**
@@ -34,41 +32,6 @@ import java.util.Properties;
  *
  */
 public class OneMeasurementRaw extends OneMeasurement {
-  /**
-   * One raw data point, two fields: timestamp (ms) when the datapoint is
-   * inserted, and the value.
-   */
-  class RawDataPoint {
-    private final long timestamp;
-    private final int value;
-
-    public RawDataPoint(int value) {
-      this.timestamp = System.currentTimeMillis();
-      this.value = value;
-    }
-
-    public long timeStamp() {
-      return timestamp;
-    }
-
-    public int value() {
-      return value;
-    }
-  }
-
-  class RawDataPointComparator implements Comparator<RawDataPoint> {
-    @Override
-    public int compare(RawDataPoint p1, RawDataPoint p2) {
-      if (p1.value() < p2.value()) {
-        return -1;
-      } else if (p1.value() == p2.value()) {
-        return 0;
-      } else {
-        return 1;
-      }
-    }
-  }
-
   /**
    * Optionally, user can configure an output file to save the raw data points.
    * Default is none, raw results will be written to stdout.
@@ -88,11 +51,25 @@ public class OneMeasurementRaw extends OneMeasurement {
   public static final String NO_SUMMARY_STATS = "measurement.raw.no_summary";
   public static final String NO_SUMMARY_STATS_DEFAULT = "false";
 
+  /**
+   * Optionally, user can configure a directory where data points are moved
+   * to memory-mapped files once more than measurement.raw.max_heap_samples
+   * are held in memory. Default is none, all data points stay on the heap.
+   */
+  public static final String SPILL_DIR = "measurement.raw.spill_dir";
+  public static final String SPILL_DIR_DEFAULT = "";
+
+  public static final String MAX_HEAP_SAMPLES = "measurement.raw.max_heap_samples";
+  public static final String MAX_HEAP_SAMPLES_DEFAULT = "16777216";
+
+  private static final double[] PERCENTILES = {0.01, 0.05, 0.5, 0.9, 0.95, 0.99, 0.999, 0.9999};
+  private static final String[] PERCENTILE_NAMES = {"p1", "p5", "p50", "p90", "p95", "p99", "p99.9", "p99.99"};
+
   private final PrintStream outputStream;
 
   private boolean noSummaryStats = false;
 
-  private LinkedList<RawDataPoint> measurements;
+  private final RawLatencyBuffer measurements;
   private long totalLatency = 0;
 
   // A window of stats to print summary for at the next getSummary() call.
@@ -126,7 +103,18 @@ public class OneMeasurementRaw extends OneMeasurement {
     noSummaryStats = Boolean.parseBoolean(props.getProperty(NO_SUMMARY_STATS,
         NO_SUMMARY_STATS_DEFAULT));
 
-    measurements = new LinkedList<>();
+    File spillFile = null;
+    String spillDir = props.getProperty(SPILL_DIR, SPILL_DIR_DEFAULT);
+    if (!spillDir.isEmpty()) {
+      try {
+        spillFile = File.createTempFile("ycsb-raw-" + name + "-", ".bin", new File(spillDir));
+        spillFile.deleteOnExit();
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to create raw data spill file", e);
+      }
+    }
+    measurements = new RawLatencyBuffer(spillFile,
+        Long.parseLong(props.getProperty(MAX_HEAP_SAMPLES, MAX_HEAP_SAMPLES_DEFAULT)));
   }
 
   @Override
@@ -135,7 +123,7 @@ public class OneMeasurementRaw extends OneMeasurement {
     windowTotalLatency += latency;
     windowOperations++;
 
-    measurements.add(new RawDataPoint(latency));
+    measurements.add(System.currentTimeMillis(), latency);
   }
 
   @Override
@@ -146,16 +134,20 @@ public class OneMeasurementRaw extends OneMeasurement {
 
     outputStream.println(getName() +
         " latency raw data: op, timestamp(ms), latency(us)");
-    for (RawDataPoint point : measurements) {
-      outputStream.println(
-          String.format("%s,%d,%d", getName(), point.timeStamp(),
-              point.value()));
-    }
+    final StringBuilder line = new StringBuilder();
+    measurements.forEach(new RawLatencyBuffer.Visitor() {
+      @Override
+      public void visit(long timestamp, int latency) {
+        line.setLength(0);
+        line.append(getName()).append(',').append(timestamp).append(',').append(latency);
+        outputStream.println(line);
+      }
+    });
     if (outputStream != System.out) {
       outputStream.close();
     }
 
-    int totalOps = measurements.size();
+    long totalOps = measurements.size();
     exporter.write(getName(), "Total Operations", totalOps);
     if (totalOps > 0 && !noSummaryStats) {
       exporter.write(getName(),
@@ -163,28 +155,21 @@ public class OneMeasurementRaw extends OneMeasurement {
       exporter.write(getName(), "Average",
           (double) totalLatency / (double) totalOps);
 
-      Collections.sort(measurements, new RawDataPointComparator());
-
-      exporter.write(getName(), "Min", measurements.get(0).value());
-      exporter.write(
-          getName(), "Max", measurements.get(totalOps - 1).value());
-      exporter.write(
-          getName(), "p1", measurements.get((int) (totalOps * 0.01)).value());
-      exporter.write(
-          getName(), "p5", measurements.get((int) (totalOps * 0.05)).value());
-      exporter.write(
-          getName(), "p50", measurements.get((int) (totalOps * 0.5)).value());
-      exporter.write(
-          getName(), "p90", measurements.get((int) (totalOps * 0.9)).value());
-      exporter.write(
-          getName(), "p95", measurements.get((int) (totalOps * 0.95)).value());
-      exporter.write(
-          getName(), "p99", measurements.get((int) (totalOps * 0.99)).value());
-      exporter.write(getName(), "p99.9",
-          measurements.get((int) (totalOps * 0.999)).value());
-      exporter.write(getName(), "p99.99",
-          measurements.get((int) (totalOps * 0.9999)).value());
+      long[] ranks = new long[PERCENTILES.length + 2];
+      ranks[0] = 0;
+      ranks[1] = totalOps - 1;
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        ranks[i + 2] = (long) (totalOps * PERCENTILES[i]);
+      }
+      int[] values = measurements.select(ranks);
+
+      exporter.write(getName(), "Min", values[0]);
+      exporter.write(getName(), "Max", values[1]);
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        exporter.write(getName(), PERCENTILE_NAMES[i], values[i + 2]);
+      }
     }
+    measurements.close();
 
     exportStatusCounts(exporter);
   }
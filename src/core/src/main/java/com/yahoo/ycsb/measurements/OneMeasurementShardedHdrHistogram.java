@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A HdrHistogram measurement where every thread records into its own
+ * histogram and status counters. The shards are only merged when the
+ * StatusThread or the exporter reads them, so threads measuring the same
+ * operation never write to shared memory.
+ */
+public class OneMeasurementShardedHdrHistogram extends OneMeasurementHdrHistogram {
+
+  /** The values recorded by one thread. */
+  private static final class Shard {
+    private final SingleWriterRecorder recorder = new SingleWriterRecorder(3);
+    /** Only written by the owning thread. */
+    private final ConcurrentHashMap<Status, AtomicLong> returncodes = new ConcurrentHashMap<>();
+  }
+
+  private final List<Shard> shards = new CopyOnWriteArrayList<>();
+
+  private final ThreadLocal<Shard> shard = new ThreadLocal<Shard>() {
+    @Override
+    protected Shard initialValue() {
+      Shard s = new Shard();
+      shards.add(s);
+      return s;
+    }
+  };
+
+  public OneMeasurementShardedHdrHistogram(String name, Properties props) {
+    super(name, props, false);
+  }
+
+  @Override
+  public void measure(int latencyInMicros) {
+    shard.get().recorder.recordValue(latencyInMicros);
+  }
+
+  @Override
+  public void reportStatus(Status status) {
+    Map<Status, AtomicLong> returncodes = shard.get().returncodes;
+    AtomicLong counter = returncodes.get(status);
+    if (counter == null) {
+      counter = new AtomicLong();
+      returncodes.put(status, counter);
+    }
+    // Single writer, so no atomic increment is needed.
+    counter.lazySet(counter.get() + 1);
+  }
+
+  @Override
+  protected Histogram getIntervalHistogram() {
+    Histogram merged = new Histogram(3);
+    for (Shard s : shards) {
+      merged.add(s.recorder.getIntervalHistogram());
+    }
+    return merged;
+  }
+
+  @Override
+  protected Map<Status, Long> getStatusCounts() {
+    Map<Status, Long> counts = new HashMap<>();
+    for (Shard s : shards) {
+      for (Map.Entry<Status, AtomicLong> entry : s.returncodes.entrySet()) {
+        Long count = counts.get(entry.getKey());
+        counts.put(entry.getKey(), (count == null ? 0 : count) + entry.getValue().get());
+      }
+    }
+    return counts;
+  }
+}
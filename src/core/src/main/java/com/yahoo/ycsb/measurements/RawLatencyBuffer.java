@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores (timestamp, latency) samples in chunks of primitive arrays, 12
+ * bytes per sample and no object per sample. Once more than a given number
+ * of samples are held on the heap, full chunks are moved to a memory-mapped
+ * spill file and their arrays are reused.
+ *
+ * <br>
+ * Not thread safe.
+ */
+final class RawLatencyBuffer {
+  static final int CHUNK_SIZE = 1 << 16;
+  private static final int SAMPLE_BYTES = 12;
+
+  /** Receives samples in the order they were added. */
+  interface Visitor {
+    void visit(long timestamp, int latency);
+  }
+
+  /** A chunk of samples, on the heap or in the spill file. */
+  private abstract static class Chunk {
+    abstract long timestamp(int i);
+
+    abstract int latency(int i);
+  }
+
+  private static final class HeapChunk extends Chunk {
+    private final long[] timestamps = new long[CHUNK_SIZE];
+    private final int[] latencies = new int[CHUNK_SIZE];
+
+    @Override
+    long timestamp(int i) {
+      return timestamps[i];
+    }
+
+    @Override
+    int latency(int i) {
+      return latencies[i];
+    }
+  }
+
+  /** Timestamps followed by latencies, mapped from the spill file. */
+  private static final class MappedChunk extends Chunk {
+    private final MappedByteBuffer buffer;
+
+    MappedChunk(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    long timestamp(int i) {
+      return buffer.getLong(i * 8);
+    }
+
+    @Override
+    int latency(int i) {
+      return buffer.getInt(CHUNK_SIZE * 8 + i * 4);
+    }
+  }
+
+  private final List<Chunk> chunks = new ArrayList<>();
+  private final File spillFile;
+  private final int maxHeapChunks;
+  private RandomAccessFile spill;
+  private long spilledChunks;
+  private HeapChunk current;
+  private int currentSize;
+  private long size;
+  private int heapChunks;
+
+  /**
+   * @param spillFile Where to move samples once the heap limit is reached,
+   *                  or null to keep all samples on the heap.
+   * @param maxHeapSamples How many samples to keep on the heap before spilling.
+   */
+  RawLatencyBuffer(File spillFile, long maxHeapSamples) {
+    this.spillFile = spillFile;
+    this.maxHeapChunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxHeapSamples / CHUNK_SIZE));
+  }
+
+  void add(long timestamp, int latency) {
+    if (current == null || currentSize == CHUNK_SIZE) {
+      nextChunk();
+    }
+    current.timestamps[currentSize] = timestamp;
+    current.latencies[currentSize] = latency;
+    currentSize++;
+    size++;
+  }
+
+  private void nextChunk() {
+    HeapChunk reuse = null;
+    if (current != null && spillFile != null && heapChunks >= maxHeapChunks) {
+      try {
+        chunks.set(chunks.size() - 1, spill(current));
+        heapChunks--;
+        reuse = current;
+      } catch (IOException e) {
+        System.err.println("Could not spill raw measurements to " + spillFile + ", keeping them in memory: " + e);
+      }
+    }
+    current = reuse == null ? new HeapChunk() : reuse;
+    currentSize = 0;
+    heapChunks++;
+    chunks.add(current);
+  }
+
+  private MappedChunk spill(HeapChunk chunk) throws IOException {
+    if (spill == null) {
+      spill = new RandomAccessFile(spillFile, "rw");
+      spill.setLength(0);
+    }
+    long bytes = (long) CHUNK_SIZE * SAMPLE_BYTES;
+    MappedByteBuffer buffer = spill.getChannel().map(FileChannel.MapMode.READ_WRITE, spilledChunks * bytes, bytes);
+    spilledChunks++;
+    for (int i = 0; i < CHUNK_SIZE; i++) {
+      buffer.putLong(i * 8, chunk.timestamps[i]);
+      buffer.putInt(CHUNK_SIZE * 8 + i * 4, chunk.latencies[i]);
+    }
+    return new MappedChunk(buffer);
+  }
+
+  long size() {
+    return size;
+  }
+
+  /** Passes all samples to the visitor, oldest first. */
+  void forEach(Visitor visitor) {
+    for (int c = 0; c < chunks.size(); c++) {
+      Chunk chunk = chunks.get(c);
+      int n = c == chunks.size() - 1 ? currentSize : CHUNK_SIZE;
+      for (int i = 0; i < n; i++) {
+        visitor.visit(chunk.timestamp(i), chunk.latency(i));
+      }
+    }
+  }
+
+  /**
+   * Returns the latencies at the given ranks of the sorted samples, without
+   * sorting: one pass counts the samples by the upper 16 bits of their
+   * value, a second pass counts the lower 16 bits within the buckets that
+   * hold a wanted rank.
+   *
+   * @param ranks Zero based ranks, each less than {@link #size()}.
+   */
+  int[] select(long[] ranks) {
+    final long[] high = new long[1 << 16];
+    forEach(new Visitor() {
+      @Override
+      public void visit(long timestamp, int latency) {
+        high[(latency ^ Integer.MIN_VALUE) >>> 16]++;
+      }
+    });
+
+    int[] buckets = new int[ranks.length];
+    long[] within = new long[ranks.length];
+    final Map<Integer, long[]> low = new HashMap<>();
+    for (int r = 0; r < ranks.length; r++) {
+      long remaining = ranks[r];
+      int b = 0;
+      while (remaining >= high[b]) {
+        remaining -= high[b];
+        b++;
+      }
+      buckets[r] = b;
+      within[r] = remaining;
+      if (!low.containsKey(b)) {
+        low.put(b, new long[1 << 16]);
+      }
+    }
+
+    forEach(new Visitor() {
+      @Override
+      public void visit(long timestamp, int latency) {
+        int key = latency ^ Integer.MIN_VALUE;
+        long[] counts = low.get(key >>> 16);
+        if (counts != null) {
+          counts[key & 0xFFFF]++;
+        }
+      }
+    });
+
+    int[] values = new int[ranks.length];
+    for (int r = 0; r < ranks.length; r++) {
+      long[] counts = low.get(buckets[r]);
+      long remaining = within[r];
+      int l = 0;
+      while (remaining >= counts[l]) {
+        remaining -= counts[l];
+        l++;
+      }
+      values[r] = ((buckets[r] << 16) | l) ^ Integer.MIN_VALUE;
+    }
+    return values;
+  }
+
+  /** Releases the samples and deletes the spill file. */
+  void close() {
+    chunks.clear();
+    current = null;
+    if (spill != null) {
+      try {
+        spill.close();
+      } catch (IOException e) {
+        System.err.println("Could not close " + spillFile + ": " + e);
+      }
+      if (!spillFile.delete()) {
+        spillFile.deleteOnExit();
+      }
+    }
+  }
+}
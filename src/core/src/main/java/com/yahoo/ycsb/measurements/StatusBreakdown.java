@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latencies of one operation, split by the status it returned, e.g.
+ * reads that found their record and reads of records that had expired.
+ * Recording is wait-free; each status has its own HdrHistogram
+ * {@link Recorder}.
+ */
+public class StatusBreakdown {
+  private final String name;
+  private final List<Double> percentiles;
+  private final ConcurrentHashMap<Status, Recorder> recorders = new ConcurrentHashMap<>();
+  /** Everything read from the recorders so far, only used by the reading thread. */
+  private final Map<String, Histogram> totals = new TreeMap<>();
+
+  /**
+   * @param name The operation.
+   * @param percentiles The percentiles to export.
+   */
+  public StatusBreakdown(String name, List<Double> percentiles) {
+    this.name = name;
+    this.percentiles = percentiles;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void measure(Status status, int latencyInMicros) {
+    Recorder recorder = recorders.get(status);
+    if (recorder == null) {
+      recorder = new Recorder(3);
+      Recorder other = recorders.putIfAbsent(status, recorder);
+      if (other != null) {
+        recorder = other;
+      }
+    }
+    recorder.recordValue(latencyInMicros);
+  }
+
+  /**
+   * Returns copies of the latencies recorded so far by status name.
+   */
+  public synchronized Map<String, Histogram> getHistograms() {
+    for (Map.Entry<Status, Recorder> entry : recorders.entrySet()) {
+      String status = entry.getKey().getName();
+      Histogram interval = entry.getValue().getIntervalHistogram();
+      Histogram total = totals.get(status);
+      if (total == null) {
+        totals.put(status, interval);
+      } else {
+        total.add(interval);
+      }
+    }
+    Map<String, Histogram> copies = new TreeMap<>();
+    for (Map.Entry<String, Histogram> entry : totals.entrySet()) {
+      copies.put(entry.getKey(), entry.getValue().copy());
+    }
+    return copies;
+  }
+
+  /**
+   * Exports one metric per status, named operation:status, e.g.
+   * READ:NOT_FOUND.
+   */
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    for (Map.Entry<String, Histogram> entry : getHistograms().entrySet()) {
+      String metric = name + ":" + entry.getKey();
+      Histogram h = entry.getValue();
+      exporter.write(metric, "Operations", h.getTotalCount());
+      exporter.write(metric, "AverageLatency(us)", h.getMean());
+      exporter.write(metric, "MinLatency(us)", h.getMinValue());
+      exporter.write(metric, "MaxLatency(us)", h.getMaxValue());
+      for (Double percentile : percentiles) {
+        exporter.write(metric, OneMeasurementHdrHistogram.ordinal(percentile) + "PercentileLatency(us)",
+            h.getValueAtPercentile(percentile));
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count or size reported once per operation, e.g. the records an erasure
+ * removed. It is not a latency, so it is kept apart from the
+ * {@link OneMeasurement}s: it is exported with its own unit and left out of
+ * the status line.
+ */
+public class ValueSummary {
+  private final String name;
+  private final String unit;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+  private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+  /**
+   * @param name The metric, e.g. ERASEUSER-RECORDS.
+   * @param unit What the values count, e.g. records.
+   */
+  public ValueSummary(String name, String unit) {
+    this.name = name;
+    this.unit = unit;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void add(long value) {
+    count.increment();
+    total.add(value);
+    min.accumulate(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Exports how many values were reported, their total and the average,
+   * minimum and maximum value, e.g. [ERASEUSER-RECORDS], Total(records), 120.
+   */
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    long n = count.sum();
+    long sum = total.sum();
+    exporter.write(name, "Count", n);
+    exporter.write(name, "Total(" + unit + ")", sum);
+    exporter.write(name, "Average(" + unit + ")", n == 0 ? 0.0 : (double) sum / n);
+    exporter.write(name, "Min(" + unit + ")", n == 0 ? 0 : min.get());
+    exporter.write(name, "Max(" + unit + ")", n == 0 ? 0 : max.get());
+  }
+}
@@ -343,7 +343,9 @@ public class CoreWorkload extends Workload {
   public static final String FIELD_NAME_PREFIX_DEFAULT = "field";
 
   protected NumberGenerator keysequence;
-  protected DiscreteGenerator operationchooser;
+  protected AliasGenerator<OperationType> operationchooser;
+  /** What each operation does, indexed by {@link OperationType#ordinal()}. */
+  private final OperationType.Handler<Object>[] transactions = createTransactions();
   protected NumberGenerator keychooser;
   protected NumberGenerator fieldchooser;
   protected AcknowledgedCounterGenerator transactioninsertkeysequence;
@@ -464,7 +466,7 @@ public class CoreWorkload extends Workload {
     }
 
     keysequence = new CounterGenerator(insertstart);
-    operationchooser = createOperationGenerator(p);
+    operationchooser = new AliasGenerator<>(operationProportions(p));
 
     transactioninsertkeysequence = new AcknowledgedCounterGenerator(recordcount);
     if (requestdistrib.compareTo("uniform") == 0) {
@@ -642,31 +644,25 @@ public class CoreWorkload extends Workload {
    */
   @Override
   public boolean doTransaction(DB db, Object threadstate) {
-    String operation = operationchooser.nextString();
+    OperationType operation = operationchooser.nextValue();
     if(operation == null) {
       return false;
     }
 
-    switch (operation) {
-    case "READ":
-      doTransactionRead(db);
-      break;
-    case "UPDATE":
-      doTransactionUpdate(db);
-      break;
-    case "INSERT":
-      doTransactionInsert(db);
-      break;
-    case "SCAN":
-      doTransactionScan(db);
-      break;
-    default:
-      doTransactionReadModifyWrite(db);
-    }
-
+    transactions[operation.ordinal()].run(db, threadstate);
     return true;
   }
 
+  private OperationType.Handler<Object>[] createTransactions() {
+    OperationType.Handler<Object>[] handlers = OperationType.newHandlerTable();
+    handlers[OperationType.READ.ordinal()] = (db, state) -> doTransactionRead(db);
+    handlers[OperationType.UPDATE.ordinal()] = (db, state) -> doTransactionUpdate(db);
+    handlers[OperationType.INSERT.ordinal()] = (db, state) -> doTransactionInsert(db);
+    handlers[OperationType.SCAN.ordinal()] = (db, state) -> doTransactionScan(db);
+    handlers[OperationType.READMODIFYWRITE.ordinal()] = (db, state) -> doTransactionReadModifyWrite(db);
+    return handlers;
+  }
+
   /**
    * Results are reported in the first three buckets of the histogram under
    * the label "VERIFY".
@@ -836,6 +832,33 @@ public class CoreWorkload extends Workload {
     }
   }
 
+  /**
+   * Reads the proportion of each operation from the properties list, using
+   * the defaults when values are not configured. Current operations are
+   * READ, UPDATE, INSERT, SCAN and READMODIFYWRITE.
+   *
+   * @param p The properties list to pull weights from.
+   * @return The proportions, in {@link OperationType} order.
+   * @throws IllegalArgumentException if the properties object was null.
+   */
+  protected static EnumMap<OperationType, Double> operationProportions(final Properties p) {
+    if (p == null) {
+      throw new IllegalArgumentException("Properties object cannot be null");
+    }
+    final EnumMap<OperationType, Double> proportions = new EnumMap<>(OperationType.class);
+    proportions.put(OperationType.READ, Double.parseDouble(
+        p.getProperty(READ_PROPORTION_PROPERTY, READ_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.UPDATE, Double.parseDouble(
+        p.getProperty(UPDATE_PROPORTION_PROPERTY, UPDATE_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.INSERT, Double.parseDouble(
+        p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.SCAN, Double.parseDouble(
+        p.getProperty(SCAN_PROPORTION_PROPERTY, SCAN_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.READMODIFYWRITE, Double.parseDouble(p.getProperty(
+        READMODIFYWRITE_PROPORTION_PROPERTY, READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT)));
+    return proportions;
+  }
+
   /**
    * Creates a weighted discrete values with database operations for a workload to perform.
    * Weights/proportions are read from the properties list and defaults are used
@@ -847,39 +870,11 @@ public class CoreWorkload extends Workload {
    * @throws IllegalArgumentException if the properties object was null.
    */
   protected static DiscreteGenerator createOperationGenerator(final Properties p) {
-    if (p == null) {
-      throw new IllegalArgumentException("Properties object cannot be null");
-    }
-    final double readproportion = Double.parseDouble(
-        p.getProperty(READ_PROPORTION_PROPERTY, READ_PROPORTION_PROPERTY_DEFAULT));
-    final double updateproportion = Double.parseDouble(
-        p.getProperty(UPDATE_PROPORTION_PROPERTY, UPDATE_PROPORTION_PROPERTY_DEFAULT));
-    final double insertproportion = Double.parseDouble(
-        p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
-    final double scanproportion = Double.parseDouble(
-        p.getProperty(SCAN_PROPORTION_PROPERTY, SCAN_PROPORTION_PROPERTY_DEFAULT));
-    final double readmodifywriteproportion = Double.parseDouble(p.getProperty(
-        READMODIFYWRITE_PROPORTION_PROPERTY, READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
-
     final DiscreteGenerator operationchooser = new DiscreteGenerator();
-    if (readproportion > 0) {
-      operationchooser.addValue(readproportion, "READ");
-    }
-
-    if (updateproportion > 0) {
-      operationchooser.addValue(updateproportion, "UPDATE");
-    }
-
-    if (insertproportion > 0) {
-      operationchooser.addValue(insertproportion, "INSERT");
-    }
-
-    if (scanproportion > 0) {
-      operationchooser.addValue(scanproportion, "SCAN");
-    }
-
-    if (readmodifywriteproportion > 0) {
-      operationchooser.addValue(readmodifywriteproportion, "READMODIFYWRITE");
+    for (Map.Entry<OperationType, Double> proportion : operationProportions(p).entrySet()) {
+      if (proportion.getValue() > 0) {
+        operationchooser.addValue(proportion.getValue(), proportion.getKey().name());
+      }
     }
     return operationchooser;
   }
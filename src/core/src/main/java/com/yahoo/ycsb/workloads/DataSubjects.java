@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import com.yahoo.ycsb.Utils;
+
+import java.util.Arrays;
+
+/**
+ * Which data subject, i.e. user, each record of a {@link GDPRWorkload}
+ * belongs to when records are clustered by user.
+ *
+ * <br>
+ * Every user owns one contiguous range of record numbers. The ranges follow
+ * a Zipf distribution: user 0 owns the most records, and every user owns at
+ * least one while there are enough records. Records numbered beyond the
+ * loaded ones, i.e. inserted by transactions, wrap around onto the same
+ * users. A record's other metadata mostly follows its user: each user has
+ * one preferred value per field, which a record takes with the configured
+ * probability.
+ */
+public final class DataSubjects {
+  /** first[u] is the first record of user u, first[users] the record count. */
+  private final long[] first;
+  private final double correlation;
+
+  /**
+   * @param recordcount The number of records loaded.
+   * @param users The number of users.
+   * @param zipfconstant How skewed the number of records per user is; 0 for even.
+   * @param correlation The probability that a metadata field takes the value its user prefers.
+   */
+  public DataSubjects(long recordcount, int users, double zipfconstant, double correlation) {
+    if (recordcount <= 0 || users <= 0) {
+      throw new IllegalArgumentException("Need records and users, got " + recordcount + " and " + users);
+    }
+    this.correlation = correlation;
+    long[] counts = new long[users];
+    long rest = recordcount;
+    if (recordcount >= users) {
+      Arrays.fill(counts, 1);
+      rest -= users;
+    } else {
+      for (int u = 0; u < recordcount; u++) {
+        counts[u] = 1;
+      }
+      rest = 0;
+    }
+    double sum = 0;
+    for (int u = 0; u < users; u++) {
+      sum += 1 / Math.pow(u + 1, zipfconstant);
+    }
+    long spread = 0;
+    for (int u = 0; u < users && rest > 0; u++) {
+      long share = (long) (rest / Math.pow(u + 1, zipfconstant) / sum);
+      counts[u] += share;
+      spread += share;
+    }
+    counts[0] += rest - spread;
+
+    first = new long[users + 1];
+    for (int u = 0; u < users; u++) {
+      first[u + 1] = first[u] + counts[u];
+    }
+  }
+
+  public int getUserCount() {
+    return first.length - 1;
+  }
+
+  /** The first record of a user. */
+  public long firstRecord(int user) {
+    return first[user];
+  }
+
+  /** How many of the loaded records belong to a user. */
+  public long recordCount(int user) {
+    return first[user + 1] - first[user];
+  }
+
+  /** The user a record belongs to. */
+  public int userOf(long keynum) {
+    long loaded = first[first.length - 1];
+    long record = Math.floorMod(keynum, loaded);
+    int i = Arrays.binarySearch(first, record);
+    if (i >= 0) {
+      // Users without records share their first record with the next user that has any.
+      while (first[i + 1] == record) {
+        i++;
+      }
+      return i;
+    }
+    return -i - 2;
+  }
+
+  /**
+   * Returns the index of the value a record has for a metadata field with size possible values:
+   * mostly the one its user prefers, otherwise the one of the uniform model.
+   */
+  int metadataIndex(int user, long keynum, int fieldnum, int size) {
+    long draw = Utils.fnvhash64(keynum * 31 + fieldnum);
+    if ((draw & ((1L << 53) - 1)) * 0x1.0p-53 < correlation) {
+      return (int) Math.floorMod(Utils.fnvhash64((long) user * 31 + fieldnum), (long) size);
+    }
+    return (int) Math.floorMod(keynum, (long) size);
+  }
+}
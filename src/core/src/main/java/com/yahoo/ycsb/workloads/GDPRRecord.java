@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import com.yahoo.ycsb.ByteIterator;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The fields of one GDPR record, kept in an array indexed by field number.
+ *
+ * <br>
+ * The field names are shared by all records, so a record costs one small
+ * array and nothing is hashed. Lookups scan the ten names, which is faster
+ * than hashing them. Fields are iterated in field number order; like
+ * {@link java.util.EnumMap} did, the iterator returns itself as the entry, so
+ * an entry is only valid until the next call to next().
+ */
+final class GDPRRecord extends AbstractMap<String, ByteIterator> {
+  private final String[] names;
+  private final ByteIterator[] values;
+  private int size;
+
+  /**
+   * @param names The field names by field number, not copied.
+   */
+  GDPRRecord(String[] names) {
+    this.names = names;
+    this.values = new ByteIterator[names.length];
+  }
+
+  /** Sets a field by its number. */
+  void set(int fieldnum, ByteIterator value) {
+    if (value == null) {
+      throw new NullPointerException("value");
+    }
+    if (values[fieldnum] == null) {
+      size++;
+    }
+    values[fieldnum] = value;
+  }
+
+  private int indexOf(Object key) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] == key || names[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public ByteIterator get(Object key) {
+    int i = indexOf(key);
+    return i < 0 ? null : values[i];
+  }
+
+  @Override
+  public ByteIterator put(String key, ByteIterator value) {
+    int i = indexOf(key);
+    if (i < 0) {
+      throw new IllegalArgumentException("Not a GDPR field: " + key);
+    }
+    ByteIterator old = values[i];
+    set(i, value);
+    return old;
+  }
+
+  @Override
+  public ByteIterator remove(Object key) {
+    int i = indexOf(key);
+    if (i < 0 || values[i] == null) {
+      return null;
+    }
+    ByteIterator old = values[i];
+    values[i] = null;
+    size--;
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  @Override
+  public Set<Map.Entry<String, ByteIterator>> entrySet() {
+    return new AbstractSet<Map.Entry<String, ByteIterator>>() {
+      @Override
+      public Iterator<Map.Entry<String, ByteIterator>> iterator() {
+        return new Cursor();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /** Iterates the fields that are set, and is the entry of the current one. */
+  private final class Cursor implements Iterator<Map.Entry<String, ByteIterator>>, Map.Entry<String, ByteIterator> {
+    private int next = advance(0);
+    private int current = -1;
+
+    private int advance(int from) {
+      int i = from;
+      while (i < values.length && values[i] == null) {
+        i++;
+      }
+      return i;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < values.length;
+    }
+
+    @Override
+    public Map.Entry<String, ByteIterator> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      current = next;
+      next = advance(next + 1);
+      return this;
+    }
+
+    @Override
+    public void remove() {
+      if (current < 0 || values[current] == null) {
+        throw new IllegalStateException();
+      }
+      values[current] = null;
+      size--;
+    }
+
+    @Override
+    public String getKey() {
+      return names[current];
+    }
+
+    @Override
+    public ByteIterator getValue() {
+      return values[current];
+    }
+
+    @Override
+    public ByteIterator setValue(ByteIterator value) {
+      ByteIterator old = values[current];
+      set(current, value);
+      return old;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+      return getKey().equals(e.getKey()) && getValue().equals(e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ getValue().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
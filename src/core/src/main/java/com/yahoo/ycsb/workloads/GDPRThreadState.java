@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import com.yahoo.ycsb.generator.NumberGenerator;
+
+/**
+ * What one client thread of a {@link GDPRWorkload} draws from, returned by
+ * initThread. Each thread has its own generators, so they are not written to
+ * by other threads; the sequential and latest key choosers follow the insert
+ * sequence all threads share and are the only shared ones.
+ */
+public final class GDPRThreadState {
+  private final int threadid;
+  private final NumberGenerator keychooser;
+  private final NumberGenerator fieldchooser;
+  private final NumberGenerator metadatachooser;
+  private final NumberGenerator scanlength;
+  private final NumberGenerator fieldlengthgenerator;
+  /** Where exported records are read into; allocated by the first export. */
+  private byte[] exportbuffer;
+  /** Whether this thread has passed the one-time phase. */
+  private boolean started;
+
+  GDPRThreadState(int threadid, NumberGenerator keychooser, NumberGenerator fieldchooser,
+                  NumberGenerator metadatachooser, NumberGenerator scanlength,
+                  NumberGenerator fieldlengthgenerator) {
+    this.threadid = threadid;
+    this.keychooser = keychooser;
+    this.fieldchooser = fieldchooser;
+    this.metadatachooser = metadatachooser;
+    this.scanlength = scanlength;
+    this.fieldlengthgenerator = fieldlengthgenerator;
+  }
+
+  /** The client thread, or -1 for the state used when there is none. */
+  public int getThreadid() {
+    return threadid;
+  }
+
+  NumberGenerator getKeychooser() {
+    return keychooser;
+  }
+
+  NumberGenerator getFieldchooser() {
+    return fieldchooser;
+  }
+
+  NumberGenerator getMetadatachooser() {
+    return metadatachooser;
+  }
+
+  NumberGenerator getScanlength() {
+    return scanlength;
+  }
+
+  NumberGenerator getFieldlengthgenerator() {
+    return fieldlengthgenerator;
+  }
+
+  byte[] getExportbuffer() {
+    if (exportbuffer == null) {
+      exportbuffer = new byte[4096];
+    }
+    return exportbuffer;
+  }
+
+  boolean isStarted() {
+    return started;
+  }
+
+  void setStarted() {
+    started = true;
+  }
+}
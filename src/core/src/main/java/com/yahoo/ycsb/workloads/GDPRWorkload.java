@@ -23,7 +23,13 @@ import com.yahoo.ycsb.generator.UniformLongGenerator;
 import com.yahoo.ycsb.measurements.Measurements;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The core benchmark scenario. Represents a set of clients doing simple CRUD operations. The
@@ -48,6 +54,23 @@ import java.util.*;
  * <LI><b>scanproportion</b>: what proportion of operations should be scans (default: 0)
  * <LI><b>readmodifywriteproportion</b>: what proportion of operations should be read a record,
  * modify it, write it back (default: 0)
+ * <LI><b>eraseuserproportion</b>: what proportion of operations should erase all records of a user,
+ * measured as ERASEUSER, with the records removed summarized as ERASEUSER-RECORDS (default: 0)
+ * <LI><b>exportuserproportion</b>: what proportion of operations should stream all records of a
+ * user back, measured as EXPORTUSER, with the time to the first record as
+ * EXPORTUSER-FIRST-RECORD and the bytes exported summarized as EXPORTUSER-BYTES (default: 0)
+ * <LI><b>audituserproportion</b>, <b>auditkeyproportion</b>, <b>audittimeproportion</b>,
+ * <b>auditoperationproportion</b>: what proportion of operations should search the audit log for
+ * the entries about a user, about a key, of the last audittimewindow milliseconds or of one of the
+ * auditoperations, measured as AUDITUSER, AUDITKEY, AUDITTIME and AUDITOPERATION, with the entries
+ * found summarized as e.g. AUDITUSER-MATCHES (default: 0)
+ * <LI><b>auditlength</b>: how many of the most recent audit log entries each search covers
+ * (default: 10000)
+ * <LI><b>audittimewindow</b>: the milliseconds a search by time goes back (default: 60000)
+ * <LI><b>auditoperations</b>: the operations a search by operation picks from
+ * (default: READ,UPDATE,INSERT,DELETE,READMETA,UPDATEMETA,DELETEMETA)
+ * <LI><b>checkttlproportion</b>: what proportion of operations should check that expired records
+ * are gone, measured as VERIFYTTL (default: 0)
  * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate
  * on - uniform, zipfian, hotspot, sequential, exponential or latest (default: uniform)
  * <LI><b>minscanlength</b>: for scans, what is the minimum number of records to scan (default: 1)
@@ -65,8 +88,37 @@ import java.util.*;
  * digits in the record number.
  * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed
  * order ("hashed") (default: hashed)
+ * <LI><b>keytable</b>: precompute the keys of the first recordcount records, so building them
+ * allocates nothing; takes about 100 bytes of heap per record (default: false)
  * <LI><b>fieldnameprefix</b>: what should be a prefix for field names, the shorter may decrease the
  * required storage size (default: "field")
+ * <LI><b>seed</b>: seed the random numbers of each client thread, so a run with one thread can be
+ * repeated exactly (default: not seeded)
+ * <LI><b>datamodel</b>: "uniform" spreads the records of every user over the whole keyspace;
+ * "clustered" gives every user a contiguous range of records, prefixes their keys with the user and
+ * correlates their metadata with the user, see {@link DataSubjects} (default: uniform)
+ * <LI><b>userzipfconstant</b>: with the clustered model, how skewed the number of records per user
+ * is (default: 0.99)
+ * <LI><b>metadatacorrelation</b>: with the clustered model, the probability that a metadata field
+ * of a record takes the value its user prefers (default: 0.8)
+ * <LI><b>consentwithdrawalinterval</b>: every so many milliseconds, one client thread withdraws
+ * consent for the purpose of a record, rewriting every record with that purpose, while the other
+ * threads keep running the transaction mix. The rewrite is measured as WITHDRAWCONSENT, and every
+ * other transaction as FOREGROUND, or FOREGROUND-DURING-WITHDRAWAL if a rewrite was running
+ * when it started or ended; 0 for no withdrawals (default: 0)
+ * <LI><b>ttlvalues</b>: the TTLs in seconds records pick from, each optionally followed by :weight, an
+ * integer, e.g. 60:3,3600:1 (default: 30,10000,12000,14000,16000,18000,20000,22000,24000,1000000)
+ * <LI><b>ttldilation</b>: how much faster time passes for expiry; records are inserted with their TTL
+ * divided by it, at least one second, while their TTL field keeps the undivided value (default: 1)
+ * <LI><b>expiredkeys</b>: whether transactions pick keys regardless of expiry ("any"), avoid keys
+ * expected to have expired ("avoid") or pick only those ("target"), drawing again up to 64 times
+ * (default: any)
+ * <LI><b>ttlloadtime</b>: when the records were loaded, in milliseconds since the epoch, which
+ * expiredkeys counts their TTL from; the load phase prints it. Required in the run phase when
+ * expiredkeys is avoid or target (default: the start of the load phase)
+ * <LI><b>livekeys</b>: keep track of the records deleted and erased by transactions in a bitmap, so
+ * keys are picked among the live ones in one draw; when false, a key not inserted yet is drawn
+ * again and deleted keys are picked like any other, as before it was added (default: false)
  * </ul>
  */
 public class GDPRWorkload extends Workload {
@@ -95,6 +147,20 @@ public class GDPRWorkload extends Workload {
   private List<String> fieldnames;
 
   private List<String>[] fieldvalues;
+
+  /** The field names as an array, shared by every {@link GDPRRecord}. */
+  private String[] fieldnamearray;
+
+  /** The bytes of every value in fieldvalues, shared by all records. */
+  private byte[][][] fieldvaluebytes;
+
+  /** Scratch space for the digits of a Data value, one per thread. */
+  private static final ThreadLocal<byte[]> DIGITS = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[40];
+    }
+  };
   /**
    * The name of the property for the field length distribution. Options are "uniform", "zipfian"
    * (favouring short records), "constant", and "histogram".
@@ -354,6 +420,69 @@ public class GDPRWorkload extends Workload {
    */
   public static final String DELETEMETA_USER_PROPORTION_PROPERTY_DEFAULT = "0.0";
 
+  /**
+   * The name of the property for the proportion of transactions that erase a user.
+   */
+  public static final String ERASE_USER_PROPORTION_PROPERTY = "eraseuserproportion";
+
+  /**
+   * The default proportion of transactions that erase a user.
+   */
+  public static final String ERASE_USER_PROPORTION_PROPERTY_DEFAULT = "0.0";
+
+  /**
+   * The name of the property for the proportion of transactions that export a user.
+   */
+  public static final String EXPORT_USER_PROPORTION_PROPERTY = "exportuserproportion";
+
+  /**
+   * The default proportion of transactions that export a user.
+   */
+  public static final String EXPORT_USER_PROPORTION_PROPERTY_DEFAULT = "0.0";
+
+  /**
+   * The names of the properties for the proportions of transactions that search the audit log by
+   * user, by key, by time window and by operation.
+   */
+  public static final String AUDIT_USER_PROPORTION_PROPERTY = "audituserproportion";
+  public static final String AUDIT_KEY_PROPORTION_PROPERTY = "auditkeyproportion";
+  public static final String AUDIT_TIME_PROPORTION_PROPERTY = "audittimeproportion";
+  public static final String AUDIT_OPERATION_PROPORTION_PROPERTY = "auditoperationproportion";
+
+  /**
+   * The default proportion of transactions of each kind of audit log search.
+   */
+  public static final String AUDIT_PROPORTION_PROPERTY_DEFAULT = "0.0";
+
+  /**
+   * The name of the property for the proportion of transactions that check TTL compliance.
+   */
+  public static final String CHECK_TTL_PROPORTION_PROPERTY = "checkttlproportion";
+
+  /**
+   * The default proportion of transactions that check TTL compliance.
+   */
+  public static final String CHECK_TTL_PROPORTION_PROPERTY_DEFAULT = "0.0";
+
+  /**
+   * The name of the property for the number of most recent audit log entries a search covers.
+   */
+  public static final String AUDIT_LENGTH_PROPERTY = "auditlength";
+  public static final String AUDIT_LENGTH_PROPERTY_DEFAULT = "10000";
+
+  /**
+   * The name of the property for the milliseconds a search of the audit log by time goes back.
+   */
+  public static final String AUDIT_TIME_WINDOW_PROPERTY = "audittimewindow";
+  public static final String AUDIT_TIME_WINDOW_PROPERTY_DEFAULT = "60000";
+
+  /**
+   * The name of the property for the operations a search of the audit log by operation picks from.
+   */
+  public static final String AUDIT_OPERATIONS_PROPERTY = "auditoperations";
+  public static final String AUDIT_OPERATIONS_PROPERTY_DEFAULT =
+      "READ,UPDATE,INSERT,DELETE,READMETA,UPDATEMETA,DELETEMETA";
+
   /**
    * The name of the property for the the distribution of requests across the keyspace. Options are
    * "uniform", "zipfian" and "latest"
@@ -376,6 +505,16 @@ public class GDPRWorkload extends Workload {
    */
   public static final String ZERO_PADDING_PROPERTY_DEFAULT = "1";
 
+  /**
+   * The name of the property for precomputing the keys of the first recordcount records.
+   */
+  public static final String KEY_TABLE_PROPERTY = "keytable";
+
+  /**
+   * The default is to format every key when it is needed.
+   */
+  public static final String KEY_TABLE_PROPERTY_DEFAULT = "false";
+
 
   /**
    * The name of the property for the min scan length (number of records).
@@ -450,6 +589,80 @@ public class GDPRWorkload extends Workload {
   public static final String INSERTION_RETRY_INTERVAL = "core_workload_insertion_retry_interval";
   public static final String INSERTION_RETRY_INTERVAL_DEFAULT = "3";
 
+  /**
+   * The name of the property seeding the random numbers of the client threads. Every thread
+   * gets its own seed derived from it. Not seeded if unset.
+   */
+  public static final String SEED_PROPERTY = "seed";
+
+  /**
+   * The name of the property for how records relate to their users, "uniform" or "clustered".
+   */
+  public static final String DATA_MODEL_PROPERTY = "datamodel";
+  public static final String DATA_MODEL_PROPERTY_DEFAULT = "uniform";
+
+  /**
+   * The name of the property for the Zipf constant of the number of records per user.
+   */
+  public static final String USER_ZIPF_CONSTANT_PROPERTY = "userzipfconstant";
+  public static final String USER_ZIPF_CONSTANT_PROPERTY_DEFAULT = "0.99";
+
+  /**
+   * The name of the property for the probability that metadata takes the value the user prefers.
+   */
+  public static final String METADATA_CORRELATION_PROPERTY = "metadatacorrelation";
+  public static final String METADATA_CORRELATION_PROPERTY_DEFAULT = "0.8";
+
+  /**
+   * The name of the property for the milliseconds between consent withdrawals, each of which
+   * rewrites the purpose of every record that has it while the other transactions keep running.
+   * 0 for none.
+   */
+  public static final String CONSENT_WITHDRAWAL_INTERVAL_PROPERTY = "consentwithdrawalinterval";
+  public static final String CONSENT_WITHDRAWAL_INTERVAL_PROPERTY_DEFAULT = "0";
+
+  /**
+   * The purpose that records get when consent for theirs is withdrawn.
+   */
+  public static final String WITHDRAWN_PURPOSE = "withdrawn";
+
+  /**
+   * The name of the property for the TTLs in seconds records pick from, each optionally with an
+   * integer weight after a colon.
+   */
+  public static final String TTL_VALUES_PROPERTY = "ttlvalues";
+  public static final String TTL_VALUES_PROPERTY_DEFAULT =
+      "30,10000,12000,14000,16000,18000,20000,22000,24000,1000000";
+
+  /**
+   * The name of the property for the factor the TTLs of inserted records are divided by.
+   */
+  public static final String TTL_DILATION_PROPERTY = "ttldilation";
+  public static final String TTL_DILATION_PROPERTY_DEFAULT = "1";
+
+  /**
+   * The name of the property for how transactions treat keys expected to have expired: "any",
+   * "avoid" or "target".
+   */
+  public static final String EXPIRED_KEYS_PROPERTY = "expiredkeys";
+  public static final String EXPIRED_KEYS_PROPERTY_DEFAULT = "any";
+
+  /**
+   * The name of the property for when the records were loaded, in milliseconds since the epoch.
+   * The load phase prints it for the run phase, which needs it to avoid or target expired keys.
+   */
+  public static final String TTL_LOAD_TIME_PROPERTY = "ttlloadtime";
+
+  /**
+   * The name of the property for whether transactions keep track of the keys they delete and
+   * only pick live keys.
+   */
+  public static final String LIVE_KEYS_PROPERTY = "livekeys";
+  public static final String LIVE_KEYS_PROPERTY_DEFAULT = "false";
+
+  /** How often a key chooser that avoids or targets expired keys draws before taking any key. */
+  private static final int EXPIRY_DRAWS = 64;
+
   /**
    * Field name prefix.
    */
@@ -461,7 +674,9 @@ public class GDPRWorkload extends Workload {
   public static final String FIELD_NAME_PREFIX_DEFAULT = "myfield";
 
   protected NumberGenerator keysequence;
-  protected DiscreteGenerator operationchooser;
+  protected AliasGenerator<OperationType> operationchooser;
+  /** What each operation does, indexed by {@link OperationType#ordinal()}. */
+  private final OperationType.Handler<GDPRThreadState>[] transactions = createTransactions();
   protected NumberGenerator keychooser;
   protected NumberGenerator metadatachooser;
   protected NumberGenerator fieldchooser;
@@ -471,10 +686,41 @@ public class GDPRWorkload extends Workload {
   protected long fieldcount;
   protected long recordcount;
   protected int zeropadding;
+  protected KeyFormatter keyformatter;
+  /** The users of the records with the clustered data model, null with the uniform one. */
+  protected DataSubjects subjects;
+  /** The key prefix of each user with the clustered data model. */
+  private String[] userkeyprefixes;
   protected int insertionRetryLimit;
   protected int insertionRetryInterval;
 
-  private boolean isFirst = true;
+  private Properties properties;
+  private long insertstart;
+  private long insertcount;
+  /** Whether the key chooser follows the shared insert sequence, rather than being one per thread. */
+  private boolean sharedkeychooser;
+  /** The state of threads that did not get one from initThread. */
+  private GDPRThreadState sharedstate;
+  private final AtomicBoolean oncephaseclaimed = new AtomicBoolean();
+  private final CountDownLatch oncephasedone = new CountDownLatch(1);
+  /** The nanoseconds between consent withdrawals, 0 for none. */
+  private long withdrawalinterval;
+  /** When the next consent withdrawal is due, in System.nanoTime. */
+  private final AtomicLong nextwithdrawal = new AtomicLong();
+  private final AtomicInteger withdrawalsrunning = new AtomicInteger();
+  private int auditlength;
+  /** The TTL each index of fieldvalues[1] stands for when inserted, in seconds, after dilation. */
+  private int[] ttlseconds;
+  /** Whether nextKeynum avoids keys expected to have expired. */
+  private boolean avoidexpired;
+  /** Whether nextKeynum picks only keys expected to have expired. */
+  private boolean targetexpired;
+  /** When the records were loaded, in milliseconds since the epoch. */
+  private long ttlloadtime;
+  /** The records deleted by transactions, null without livekeys. */
+  private LiveKeys livekeys;
+  private long audittimewindow;
+  private String[] auditoperations;
   private Measurements measurements = Measurements.getMeasurements();
 
   protected static NumberGenerator getFieldLengthGenerator(Properties p) throws WorkloadException {
@@ -513,6 +759,7 @@ public class GDPRWorkload extends Workload {
    */
   @Override
   public void init(Properties p) throws WorkloadException {
+    properties = p;
     table = p.getProperty(TABLENAME_PROPERTY, TABLENAME_PROPERTY_DEFAULT);
 
     fieldcount =
@@ -528,16 +775,10 @@ public class GDPRWorkload extends Workload {
     }
     String requestdistrib =
         p.getProperty(REQUEST_DISTRIBUTION_PROPERTY, REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
-    int minscanlength =
-        Integer.parseInt(p.getProperty(MIN_SCAN_LENGTH_PROPERTY, MIN_SCAN_LENGTH_PROPERTY_DEFAULT));
-    int maxscanlength =
-        Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY, MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
-    String scanlengthdistrib =
-        p.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY, SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
 
-    long insertstart =
+    insertstart =
         Long.parseLong(p.getProperty(INSERT_START_PROPERTY, INSERT_START_PROPERTY_DEFAULT));
-    long insertcount=
+    insertcount=
         Integer.parseInt(p.getProperty(INSERT_COUNT_PROPERTY, String.valueOf(recordcount - insertstart)));
     // Confirm valid values for insertstart and insertcount in relation to recordcount
     if (recordcount < (insertstart + insertcount)) {
@@ -583,14 +824,97 @@ public class GDPRWorkload extends Workload {
       orderedinserts = true;
     }
 
+    keyformatter = new KeyFormatter("key", zeropadding, !orderedinserts);
+    if (Boolean.parseBoolean(p.getProperty(KEY_TABLE_PROPERTY, KEY_TABLE_PROPERTY_DEFAULT))) {
+      if (recordcount > KeyFormatter.MAX_TABLE_SIZE) {
+        throw new WorkloadException("Cannot precompute the keys of more than " + KeyFormatter.MAX_TABLE_SIZE
+            + " records, recordcount is " + recordcount);
+      }
+      keyformatter.precompute((int) recordcount);
+    }
+
+    String datamodel = p.getProperty(DATA_MODEL_PROPERTY, DATA_MODEL_PROPERTY_DEFAULT);
+    if (datamodel.equals("clustered")) {
+      subjects = new DataSubjects(recordcount, fieldvalues[2].size(),
+          Double.parseDouble(p.getProperty(USER_ZIPF_CONSTANT_PROPERTY, USER_ZIPF_CONSTANT_PROPERTY_DEFAULT)),
+          Double.parseDouble(p.getProperty(METADATA_CORRELATION_PROPERTY, METADATA_CORRELATION_PROPERTY_DEFAULT)));
+      userkeyprefixes = new String[fieldvalues[2].size()];
+      for (int u = 0; u < userkeyprefixes.length; u++) {
+        userkeyprefixes[u] = fieldvalues[2].get(u) + ":";
+      }
+    } else if (!datamodel.equals("uniform")) {
+      throw new WorkloadException("Unknown data model \"" + datamodel + "\"");
+    }
+
+    withdrawalinterval = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(p.getProperty(
+        CONSENT_WITHDRAWAL_INTERVAL_PROPERTY, CONSENT_WITHDRAWAL_INTERVAL_PROPERTY_DEFAULT)));
+    nextwithdrawal.set(System.nanoTime() + withdrawalinterval);
+
+    double dilation = Double.parseDouble(p.getProperty(TTL_DILATION_PROPERTY, TTL_DILATION_PROPERTY_DEFAULT));
+    if (dilation <= 0) {
+      throw new WorkloadException("Invalid " + TTL_DILATION_PROPERTY + " " + dilation);
+    }
+    ttlseconds = new int[fieldvalues[1] == null ? 0 : fieldvalues[1].size()];
+    for (int i = 0; i < ttlseconds.length; i++) {
+      int ttl = Integer.parseInt(fieldvalues[1].get(i));
+      ttlseconds[i] = ttl <= 0 ? ttl : (int) Math.max(1, Math.round(ttl / dilation));
+    }
+    String expiredkeys = p.getProperty(EXPIRED_KEYS_PROPERTY, EXPIRED_KEYS_PROPERTY_DEFAULT);
+    avoidexpired = expiredkeys.equals("avoid");
+    targetexpired = expiredkeys.equals("target");
+    if (!avoidexpired && !targetexpired && !expiredkeys.equals("any")) {
+      throw new WorkloadException("Unknown " + EXPIRED_KEYS_PROPERTY + " \"" + expiredkeys + "\"");
+    }
+    if (Boolean.parseBoolean(p.getProperty(LIVE_KEYS_PROPERTY, LIVE_KEYS_PROPERTY_DEFAULT))) {
+      livekeys = new LiveKeys();
+    }
+    boolean dotransactions = Boolean.parseBoolean(p.getProperty(Client.DO_TRANSACTIONS_PROPERTY, "true"));
+    String loadtime = p.getProperty(TTL_LOAD_TIME_PROPERTY);
+    if (loadtime != null) {
+      ttlloadtime = Long.parseLong(loadtime);
+    } else if (dotransactions && (avoidexpired || targetexpired)) {
+      // The start of the run would make every record look younger than it is.
+      throw new WorkloadException(EXPIRED_KEYS_PROPERTY + "=" + expiredkeys + " needs " + TTL_LOAD_TIME_PROPERTY
+          + ", the time the records were loaded, which the load phase prints");
+    } else {
+      ttlloadtime = System.currentTimeMillis();
+      if (!dotransactions) {
+        System.err.println("Loading records at " + TTL_LOAD_TIME_PROPERTY + "=" + ttlloadtime
+            + ", pass it to the run phase to avoid or target expired keys");
+      }
+    }
+
+    auditlength = Integer.parseInt(p.getProperty(AUDIT_LENGTH_PROPERTY, AUDIT_LENGTH_PROPERTY_DEFAULT));
+    audittimewindow = Long.parseLong(p.getProperty(AUDIT_TIME_WINDOW_PROPERTY, AUDIT_TIME_WINDOW_PROPERTY_DEFAULT));
+    auditoperations = p.getProperty(AUDIT_OPERATIONS_PROPERTY, AUDIT_OPERATIONS_PROPERTY_DEFAULT).split(",");
+
     keysequence = new CounterGenerator(insertstart);
-    operationchooser = createOperationGenerator(p);
+    operationchooser = new AliasGenerator<>(operationProportions(p));
 
     transactioninsertkeysequence = new AcknowledgedCounterGenerator(recordcount);
+    sharedkeychooser = requestdistrib.equals("sequential") || requestdistrib.equals("latest");
+    keychooser = newKeyChooser(requestdistrib);
+    fieldchooser = new UniformLongGenerator(0, fieldcount - 1);
+    metadatachooser = new UniformLongGenerator(1, 8);
+    scanlength = newScanLength();
+    sharedstate = new GDPRThreadState(-1, keychooser, fieldchooser, metadatachooser, scanlength,
+        fieldlengthgenerator);
+
+    insertionRetryLimit = Integer.parseInt(p.getProperty(
+        INSERTION_RETRY_LIMIT, INSERTION_RETRY_LIMIT_DEFAULT));
+    insertionRetryInterval = Integer.parseInt(p.getProperty(
+        INSERTION_RETRY_INTERVAL, INSERTION_RETRY_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * Creates a key chooser for the request distribution. The sequential and latest ones are only
+   * created once and shared, the others once per thread.
+   */
+  private NumberGenerator newKeyChooser(String requestdistrib) throws WorkloadException {
     if (requestdistrib.compareTo("uniform") == 0) {
-      keychooser = new UniformLongGenerator(insertstart, insertstart + insertcount - 1);
+      return new UniformLongGenerator(insertstart, insertstart + insertcount - 1);
     } else if (requestdistrib.compareTo("sequential") == 0) {
-      keychooser = new SequentialGenerator(insertstart, insertstart + insertcount - 1);
+      return new SequentialGenerator(insertstart, insertstart + insertcount - 1);
     } else if (requestdistrib.compareTo("zipfian") == 0) {
       // it does this by generating a random "next key" in part by taking the modulus over the
       // number of keys.
@@ -602,53 +926,97 @@ public class GDPRWorkload extends Workload {
       // that hasn't been inserted yet, will just ignore it and pick another key. this way, the size of
       // the keyspace doesn't change from the perspective of the scrambled zipfian generator
       final double insertproportion = Double.parseDouble(
-          p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
-      int opcount = Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
+          properties.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
+      int opcount = Integer.parseInt(properties.getProperty(Client.OPERATION_COUNT_PROPERTY));
       int expectednewkeys = (int) ((opcount) * insertproportion * 2.0); // 2 is fudge factor
 
-      keychooser = new ScrambledZipfianGenerator(insertstart, insertstart + insertcount + expectednewkeys);
+      return new ScrambledZipfianGenerator(insertstart, insertstart + insertcount + expectednewkeys);
     } else if (requestdistrib.compareTo("latest") == 0) {
-      keychooser = new SkewedLatestGenerator(transactioninsertkeysequence);
+      return new SkewedLatestGenerator(transactioninsertkeysequence);
     } else if (requestdistrib.equals("hotspot")) {
       double hotsetfraction =
-          Double.parseDouble(p.getProperty(HOTSPOT_DATA_FRACTION, HOTSPOT_DATA_FRACTION_DEFAULT));
+          Double.parseDouble(properties.getProperty(HOTSPOT_DATA_FRACTION, HOTSPOT_DATA_FRACTION_DEFAULT));
       double hotopnfraction =
-          Double.parseDouble(p.getProperty(HOTSPOT_OPN_FRACTION, HOTSPOT_OPN_FRACTION_DEFAULT));
-      keychooser = new HotspotIntegerGenerator(insertstart, insertstart + insertcount - 1,
+          Double.parseDouble(properties.getProperty(HOTSPOT_OPN_FRACTION, HOTSPOT_OPN_FRACTION_DEFAULT));
+      return new HotspotIntegerGenerator(insertstart, insertstart + insertcount - 1,
           hotsetfraction, hotopnfraction);
     } else {
       throw new WorkloadException("Unknown request distribution \"" + requestdistrib + "\"");
     }
+  }
 
-    fieldchooser = new UniformLongGenerator(0, fieldcount - 1);
-    metadatachooser = new UniformLongGenerator(1, 8);
-
+  private NumberGenerator newScanLength() throws WorkloadException {
+    int minscanlength = Integer.parseInt(
+        properties.getProperty(MIN_SCAN_LENGTH_PROPERTY, MIN_SCAN_LENGTH_PROPERTY_DEFAULT));
+    int maxscanlength = Integer.parseInt(
+        properties.getProperty(MAX_SCAN_LENGTH_PROPERTY, MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
+    String scanlengthdistrib =
+        properties.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY, SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
     if (scanlengthdistrib.compareTo("uniform") == 0) {
-      scanlength = new UniformLongGenerator(minscanlength, maxscanlength);
+      return new UniformLongGenerator(minscanlength, maxscanlength);
     } else if (scanlengthdistrib.compareTo("zipfian") == 0) {
-      scanlength = new ZipfianGenerator(minscanlength, maxscanlength);
-    } else {
-      throw new WorkloadException(
-          "Distribution \"" + scanlengthdistrib + "\" not allowed for scan length");
+      return new ZipfianGenerator(minscanlength, maxscanlength);
     }
+    throw new WorkloadException(
+        "Distribution \"" + scanlengthdistrib + "\" not allowed for scan length");
+  }
 
-    insertionRetryLimit = Integer.parseInt(p.getProperty(
-        INSERTION_RETRY_LIMIT, INSERTION_RETRY_LIMIT_DEFAULT));
-    insertionRetryInterval = Integer.parseInt(p.getProperty(
-        INSERTION_RETRY_INTERVAL, INSERTION_RETRY_INTERVAL_DEFAULT));
+  /**
+   * Creates the generators of one client thread, and seeds its random numbers if a seed was set.
+   */
+  @Override
+  public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException {
+    String seed = p.getProperty(SEED_PROPERTY);
+    if (seed != null) {
+      Utils.seedThread(Long.parseLong(seed) + mythreadid * 0x9E3779B97F4A7C15L);
+    }
+    String requestdistrib =
+        properties.getProperty(REQUEST_DISTRIBUTION_PROPERTY, REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
+    NumberGenerator threadkeychooser = sharedkeychooser ? keychooser : newKeyChooser(requestdistrib);
+    return new GDPRThreadState(mythreadid, threadkeychooser, new UniformLongGenerator(0, fieldcount - 1),
+        new UniformLongGenerator(1, 8), newScanLength(), getFieldLengthGenerator(properties));
+  }
+
+  private GDPRThreadState threadState(Object threadstate) {
+    return threadstate instanceof GDPRThreadState ? (GDPRThreadState) threadstate : sharedstate;
   }
 
   protected String buildKeyName(long keynum) {
-    if (!orderedinserts) {
-      keynum = Utils.hash(keynum);
+    if (subjects != null) {
+      return userkeyprefixes[subjects.userOf(keynum)] + keyformatter.format(keynum);
     }
-    String value = Long.toString(keynum);
-    int fill = zeropadding - value.length();
-    String prekey = "key";
-    for (int i = 0; i < fill; i++) {
-      prekey += '0';
+    return keyformatter.format(keynum);
+  }
+
+  /**
+   * Returns the keymatch of a metadata operation on the records that share metadata field
+   * metadatanum with record keynum. Keys are "key..." with the uniform data model. With the
+   * clustered one they start with their user, so an operation on a user's records matches that
+   * user's prefix, and any other matches every key.
+   */
+  protected String buildKeyMatch(long keynum, int metadatanum) {
+    if (subjects == null) {
+      return "key*";
+    }
+    if (metadatanum == DB.USER_FIELD) {
+      return userkeyprefixes[subjects.userOf(keynum)] + "*";
+    }
+    return "*";
+  }
+
+  /**
+   * Returns the index into fieldvalues[fieldnum] of the value of a metadata field of a record.
+   */
+  private int metadataIndex(long keynum, int fieldnum) {
+    int size = fieldvalues[fieldnum].size();
+    if (subjects == null) {
+      return (int)keynum%size;
+    }
+    int user = subjects.userOf(keynum);
+    if (fieldnum == 2) {
+      return user;
     }
-    return prekey + value;
+    return subjects.metadataIndex(user, keynum, fieldnum, size);
   }
 
 
@@ -657,7 +1025,9 @@ public class GDPRWorkload extends Workload {
    */
   private void populateValues(final Properties p) {
     fieldnames = new ArrayList<>();
-    fieldvalues = new ArrayList[10];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    List<String>[] values = new ArrayList[10];
+    fieldvalues = values;
     int x = 0;
     for (int i = 0; i < fieldcount; i++) {
       //fieldnames.add(fieldnameprefix + i);
@@ -674,8 +1044,7 @@ public class GDPRWorkload extends Workload {
         }
         break;
       case 1: fieldnames.add("TTL");
-        fieldvalues[i]=new ArrayList<>(
-        Arrays.asList("30", "10000", "12000", "14000", "16000", "18000", "20000", "22000", "24000", "1000000"));
+        fieldvalues[i] = parseTTLValues(p.getProperty(TTL_VALUES_PROPERTY, TTL_VALUES_PROPERTY_DEFAULT));
         break;
       case 2: fieldnames.add("USR"); 
         int usrlength =
@@ -760,71 +1129,148 @@ public class GDPRWorkload extends Workload {
               break;
       }
     }
+    fieldnamearray = fieldnames.toArray(new String[0]);
+    fieldvaluebytes = new byte[fieldnamearray.length][][];
+    for (int i = 0; i < fieldnamearray.length; i++) {
+      fieldvaluebytes[i] = new byte[fieldvalues[i].size()][];
+      for (x = 0; x < fieldvaluebytes[i].length; x++) {
+        fieldvaluebytes[i][x] = fieldvalues[i].get(x).getBytes(StandardCharsets.UTF_8);
+      }
+    }
   }
 
   /**
-   * Builds a value for a randomly chosen field.
+   * Parses the TTL values; a value with weight w is listed w times, so records pick it w times as
+   * often when they pick an index of the list.
    */
-  private HashMap<String, ByteIterator> buildSingleValue(long keynum, String key) {
-    HashMap<String, ByteIterator> value = new HashMap<>();
-
-    int fieldnum = fieldchooser.nextValue().intValue();
-    String fieldkey = fieldnames.get(fieldnum);
-    ByteIterator data;
-    if (dataintegrity) {
-      data = new StringByteIterator(buildDeterministicValue(keynum, fieldnum, fieldkey));
-    } else {
-      // fill with random data
-      data = new RandomByteIterator(fieldlengthgenerator.nextValue().longValue());
+  static List<String> parseTTLValues(String ttlvalues) {
+    List<String> values = new ArrayList<>();
+    for (String entry : ttlvalues.split(",")) {
+      String[] parts = entry.trim().split(":");
+      int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+      String ttl = String.valueOf(Integer.parseInt(parts[0].trim()));
+      for (int w = 0; w < weight; w++) {
+        values.add(ttl);
+      }
+    }
+    if (values.isEmpty()) {
+      throw new IllegalArgumentException("No TTL values in \"" + ttlvalues + "\"");
     }
-    value.put(fieldkey, data);
+    return values;
+  }
 
+  /**
+   * Builds a value for a randomly chosen field.
+   */
+  private Map<String, ByteIterator> buildSingleValue(long keynum, String key, GDPRThreadState state) {
+    GDPRRecord value = new GDPRRecord(fieldnamearray);
+    int fieldnum = state.getFieldchooser().nextValue().intValue();
+    value.set(fieldnum, buildFieldValue(keynum, fieldnum, state.getFieldlengthgenerator()));
     return value;
   }
 
   /**
    * Builds values for all fields.
    */
-  private HashMap<String, ByteIterator> buildValues(long keynum, String key) {
-    HashMap<String, ByteIterator> values = new HashMap<>();
+  protected Map<String, ByteIterator> buildValues(long keynum, String key) {
+    return buildValues(keynum, key, sharedstate);
+  }
 
-    for (int i=0; i< fieldnames.size(); i++) {
-      ByteIterator data;
-      String fieldkey = fieldnames.get(i);
-      if (dataintegrity) {
-        data = new StringByteIterator(buildDeterministicValue(keynum, i, fieldkey));
-      } else {
-        // fill with random data
-        data = new RandomByteIterator(fieldlengthgenerator.nextValue().longValue());
-      }
-      values.put(fieldkey, data);
+  /**
+   * Builds values for all fields, drawing field lengths from the generator of a thread.
+   */
+  protected Map<String, ByteIterator> buildValues(long keynum, String key, GDPRThreadState state) {
+    GDPRRecord values = new GDPRRecord(fieldnamearray);
+    for (int i = 0; i < fieldnamearray.length; i++) {
+      values.set(i, buildFieldValue(keynum, i, state.getFieldlengthgenerator()));
     }
     return values;
   }
 
+  private ByteIterator buildFieldValue(long keynum, int fieldnum, NumberGenerator fieldlength) {
+    if (!dataintegrity) {
+      // fill with random data
+      return new RandomByteIterator(fieldlength.nextValue().longValue());
+    }
+    if (fieldnum == 9) {
+      return new ByteArrayByteIterator(buildPayload(keynum, fieldlength.nextValue().intValue()));
+    }
+    return new ByteArrayByteIterator(fieldvaluebytes[fieldnum][metadataIndex(keynum, fieldnum)]);
+  }
+
   /**
    * Build a deterministic value given the key information.
    */
-  private String buildDeterministicValue(long keynum, int fieldnum, String fieldkey) {
-    int size = fieldlengthgenerator.nextValue().intValue();
-    StringBuilder sb = new StringBuilder(size);
-    //sb.append(fieldkey);
-    //sb.append('=');
+  protected String buildDeterministicValue(long keynum, int fieldnum, String fieldkey) {
     if (fieldnum == 9) { //field10 is data; rest are metadata
-      while (sb.length() < size) {
-        sb.append(String.valueOf(keynum));
-        sb.append(sb.toString().hashCode());
+      byte[] payload = buildPayload(keynum, fieldlengthgenerator.nextValue().intValue());
+      return new String(payload, StandardCharsets.ISO_8859_1);
+    }
+    return fieldvalues[fieldnum].get(metadataIndex(keynum, fieldnum));
+  }
+
+  /**
+   * Builds the Data value of a record: the key number followed by the String
+   * hash code of everything so far, repeated and cut to size bytes. The hash
+   * is updated as each digit is written, so this is linear in size.
+   */
+  static byte[] buildPayload(long keynum, int size) {
+    byte[] payload = new byte[Math.max(size, 0)];
+    byte[] digits = DIGITS.get();
+    int keylength = writeDigits(keynum, digits, 0);
+    int hash = 0;
+    int pos = 0;
+    while (pos < payload.length) {
+      for (int i = 0; i < keylength && pos < payload.length; i++) {
+        payload[pos++] = digits[i];
+        hash = 31 * hash + digits[i];
       }
-      sb.setLength(size);
+      int hashlength = writeDigits(hash, digits, 20);
+      for (int i = 20; i < 20 + hashlength && pos < payload.length; i++) {
+        payload[pos++] = digits[i];
+        hash = 31 * hash + digits[i];
+      }
+    }
+    return payload;
+  }
+
+  /** Writes the decimal digits of value at off and returns how many there are. */
+  private static int writeDigits(long value, byte[] buf, int off) {
+    int pos = off;
+    long v = value;
+    if (v < 0) {
+      buf[pos++] = '-';
     } else {
-      sb.append(fieldvalues[fieldnum].get((int)keynum%fieldvalues[fieldnum].size()));
+      // Counting down leaves room for Long.MIN_VALUE.
+      v = -v;
+    }
+    int count = 1;
+    for (long rest = v / 10; rest != 0; rest /= 10) {
+      count++;
+    }
+    for (int p = pos + count - 1; p >= pos; p--) {
+      buf[p] = (byte) ('0' - v % 10);
+      v /= 10;
     }
-    return sb.toString();
+    return pos + count - off;
   }
 
-  private int buildTTLValue(long keynum) {
+  /** The TTL a record is inserted with, in seconds, divided by ttldilation. */
+  int buildTTLValue(long keynum) {
     // fieldvalue[1] = TTL
-    return Integer.parseInt(fieldvalues[1].get((int)keynum%fieldvalues[1].size()));
+    return ttlseconds[metadataIndex(keynum, 1)];
+  }
+
+  /**
+   * Whether a record is expected to have expired by now. Only loaded records are, since when the
+   * others were inserted is not kept.
+   */
+  boolean isExpired(long keynum) {
+    if (keynum >= recordcount) {
+      return false;
+    }
+    int ttl = buildTTLValue(keynum);
+    return ttl > 0 && System.currentTimeMillis() - ttlloadtime >= ttl * 1000L;
   }
 
   /**
@@ -838,7 +1284,7 @@ public class GDPRWorkload extends Workload {
     int keynum = keysequence.nextValue().intValue();
     String dbkey = buildKeyName(keynum);
     int ttl = buildTTLValue(keynum);
-    HashMap<String, ByteIterator> values = buildValues(keynum, dbkey);
+    Map<String, ByteIterator> values = buildValues(keynum, dbkey, threadState(threadstate));
 
     Status status;
     int numOfRetries = 0;
@@ -879,63 +1325,107 @@ public class GDPRWorkload extends Workload {
    */
   @Override
   public boolean doTransaction(DB db, Object threadstate) {
-    String operation = operationchooser.nextString();
+    OperationType operation = operationchooser.nextValue();
     if(operation == null) {
       return false;
     }
 
-    if (isFirst) {
+    GDPRThreadState state = threadState(threadstate);
+    if (!state.isStarted()) {
+      doOncePhase(db, state);
+      state.setStarted();
+    }
+
+    if (withdrawalinterval <= 0) {
+      transactions[operation.ordinal()].run(db, state);
+      return true;
+    }
+    doConsentWithdrawal(db, state);
+    boolean during = withdrawalsrunning.get() > 0;
+    long st = System.nanoTime();
+    transactions[operation.ordinal()].run(db, state);
+    long en = System.nanoTime();
+    during |= withdrawalsrunning.get() > 0;
+    measurements.measure(during ? "FOREGROUND-DURING-WITHDRAWAL" : "FOREGROUND", (int) ((en - st) / 1000));
+    return true;
+  }
+
+  /**
+   * Withdraws consent for the purpose of a record if a withdrawal is due. The thread that claims
+   * it runs the rewrite before its own transaction, so the other threads carry on meanwhile.
+   */
+  private void doConsentWithdrawal(DB db, GDPRThreadState state) {
+    long due = nextwithdrawal.get();
+    if (System.nanoTime() - due < 0 || !nextwithdrawal.compareAndSet(due, due + withdrawalinterval)) {
+      return;
+    }
+    withdrawalsrunning.incrementAndGet();
+    try {
+      long keynum = nextKeynum(state);
+      String purpose = buildDeterministicValue(keynum, DB.PURPOSE_FIELD, fieldnames.get(DB.PURPOSE_FIELD));
+      db.withdrawConsent(table, purpose, WITHDRAWN_PURPOSE, new RecordCount());
+    } finally {
+      withdrawalsrunning.decrementAndGet();
+    }
+  }
+
+  /**
+   * Checks compliance and reads the log, as configured, once for the whole run before the first
+   * transaction. The first thread to get here runs them and the others wait for it, so the phase
+   * does not overlap the measured transactions; it is measured as ONCE-PHASE.
+   */
+  private void doOncePhase(DB db, GDPRThreadState state) {
+    if (!checkcompliance && !readlog) {
+      return;
+    }
+    if (!oncephaseclaimed.compareAndSet(false, true)) {
+      if (readlog) {
+        // Draw the log length too, so which thread ran the phase does not change seeded runs.
+        state.getScanlength().nextValue();
+      }
+      try {
+        oncephasedone.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return;
+    }
+    try {
+      long st = System.nanoTime();
       if (checkcompliance) {
         doTransactionCheckCompliance(db);
-      } 
+      }
       if (readlog) {
-        doTransactionReadLog(db);
+        doTransactionReadLog(db, state);
       }
-      isFirst = false;
-    }
-
-    switch (operation) {
-    case "READMETAPURPOSE":
-      doTransactionReadMeta(db, 0);
-      break;
-    case "READMETAUSER":
-      doTransactionReadMeta(db, 2);
-      break;
-    case "READ":
-      doTransactionRead(db);
-      break;
-    case "UPDATEMETAPURPOSE":
-      doTransactionUpdateMeta(db, 0);
-      break;
-    case "UPDATEMETAUSER":
-      doTransactionUpdateMeta(db, 2);
-      break;
-    case "UPDATE":
-      doTransactionUpdate(db);
-      break;
-    case "INSERT":
-      doTransactionInsert(db);
-      break;
-    case "SCAN":
-      doTransactionScan(db);
-      break;
-    case "DELETEMETAPURPOSE":
-      doTransactionDeleteMeta(db, 0);
-      break;
-    case "DELETEMETAUSER":
-      doTransactionDeleteMeta(db, 2);
-      break;
-    case "DELETE":
-      doTransactionDelete(db);
-      break;
-    /*case "CHECKCOMPLIANCE":
-      doTransactionCheckCompliance(db);
-      break;*/
-    default:
-      doTransactionReadModifyWrite(db);
+      measurements.measure("ONCE-PHASE", (int) ((System.nanoTime() - st) / 1000));
+    } finally {
+      oncephasedone.countDown();
     }
+  }
 
-    return true;
+  private OperationType.Handler<GDPRThreadState>[] createTransactions() {
+    OperationType.Handler<GDPRThreadState>[] handlers = OperationType.newHandlerTable();
+    handlers[OperationType.READ.ordinal()] = this::doTransactionRead;
+    handlers[OperationType.READMETAPURPOSE.ordinal()] = (db, state) -> doTransactionReadMeta(db, state, 0);
+    handlers[OperationType.READMETAUSER.ordinal()] = (db, state) -> doTransactionReadMeta(db, state, 2);
+    handlers[OperationType.UPDATE.ordinal()] = this::doTransactionUpdate;
+    handlers[OperationType.UPDATEMETAPURPOSE.ordinal()] = (db, state) -> doTransactionUpdateMeta(db, state, 0);
+    handlers[OperationType.UPDATEMETAUSER.ordinal()] = (db, state) -> doTransactionUpdateMeta(db, state, 2);
+    handlers[OperationType.INSERT.ordinal()] = this::doTransactionInsert;
+    handlers[OperationType.DELETE.ordinal()] = this::doTransactionDelete;
+    handlers[OperationType.DELETEMETAPURPOSE.ordinal()] = (db, state) -> doTransactionDeleteMeta(db, state, 0);
+    handlers[OperationType.DELETEMETAUSER.ordinal()] = (db, state) -> doTransactionDeleteMeta(db, state, 2);
+    handlers[OperationType.SCAN.ordinal()] = this::doTransactionScan;
+    handlers[OperationType.READMODIFYWRITE.ordinal()] = this::doTransactionReadModifyWrite;
+    handlers[OperationType.ERASEUSER.ordinal()] = this::doTransactionEraseUser;
+    handlers[OperationType.EXPORTUSER.ordinal()] = this::doTransactionExportUser;
+    handlers[OperationType.AUDITUSER.ordinal()] = this::doTransactionAuditUser;
+    handlers[OperationType.AUDITKEY.ordinal()] = this::doTransactionAuditKey;
+    handlers[OperationType.AUDITTIME.ordinal()] = this::doTransactionAuditTime;
+    handlers[OperationType.AUDITOPERATION.ordinal()] = this::doTransactionAuditOperation;
+    handlers[OperationType.CHECKTTL.ordinal()] = (db, state) -> db.verifyTTL(table, complianceCount());
+    return handlers;
   }
 
   /**
@@ -965,23 +1455,59 @@ public class GDPRWorkload extends Workload {
     measurements.reportStatus("VERIFY", verifyStatus);
   }
 
-  long nextKeynum() {
+  /**
+   * Draws the key of a transaction. With expiredkeys set to avoid or target, draws again while the
+   * key is expected to have expired, or not to have, up to {@link #EXPIRY_DRAWS} times.
+   */
+  long nextKeynum(GDPRThreadState state) {
+    long keynum = drawKeynum(state);
+    if (avoidexpired || targetexpired) {
+      for (int draw = 1; draw < EXPIRY_DRAWS && isExpired(keynum) != targetexpired; draw++) {
+        keynum = drawKeynum(state);
+      }
+    }
+    return keynum;
+  }
+
+  /**
+   * Draws a key from the key chooser. With livekeys, a key not inserted yet is folded onto the
+   * inserted ones and a removed key passes the draw on to the next live one, so it takes one draw
+   * whatever the chooser was sized for and however many keys were deleted; otherwise the chooser
+   * draws again until it gets an inserted key.
+   */
+  private long drawKeynum(GDPRThreadState state) {
+    NumberGenerator chooser = state.getKeychooser();
     long keynum;
-    if (keychooser instanceof ExponentialGenerator) {
+    if (livekeys != null) {
+      long last = transactioninsertkeysequence.lastValue();
+      if (chooser instanceof ExponentialGenerator) {
+        keynum = last - chooser.nextValue().longValue();
+      } else {
+        keynum = chooser.nextValue().longValue();
+      }
+      // Fold draws outside this client's records back onto them, keeping clear of other clients'.
+      long first = Math.min(insertstart, last);
+      if (keynum < first || keynum > last) {
+        keynum = first + Math.floorMod(keynum - first, last - first + 1);
+      }
+      long live = livekeys.nextLive(keynum, first, last);
+      return live < 0 ? keynum : live;
+    }
+    if (chooser instanceof ExponentialGenerator) {
       do {
-        keynum = transactioninsertkeysequence.lastValue() - keychooser.nextValue().intValue();
+        keynum = transactioninsertkeysequence.lastValue() - chooser.nextValue().intValue();
       } while (keynum < 0);
     } else {
       do {
-        keynum = keychooser.nextValue().intValue();
+        keynum = chooser.nextValue().intValue();
       } while (keynum > transactioninsertkeysequence.lastValue());
     }
     return keynum;
   }
 
-  public void doTransactionRead(DB db) {
+  public void doTransactionRead(DB db, GDPRThreadState state) {
     // choose a random key
-    long keynum = nextKeynum();
+    long keynum = nextKeynum(state);
 
     String keyname = buildKeyName(keynum);
 
@@ -990,7 +1516,7 @@ public class GDPRWorkload extends Workload {
     //System.err.println("Transaction read got called!");
     if (!readallfields) {
       // read a random field
-      String fieldname = fieldnames.get(fieldchooser.nextValue().intValue());
+      String fieldname = fieldnames.get(state.getFieldchooser().nextValue().intValue());
 
       fields = new HashSet<String>();
       fields.add(fieldname);
@@ -1007,21 +1533,22 @@ public class GDPRWorkload extends Workload {
     }*/
   }
 
-  public void doTransactionReadMeta(DB db, int metadatanum) {
+  public void doTransactionReadMeta(DB db, GDPRThreadState state, int metadatanum) {
 
-    long keynum = nextKeynum();
+    long keynum = nextKeynum(state);
 
     // match on meta data field passed
     String metadatacond = buildDeterministicValue(keynum, metadatanum, fieldnames.get(metadatanum));
 
     //System.err.println("Read metadata called with cond: "+ metadatacond + " Field num: " + metadatanum);
 
-    db.readMeta(table, metadatanum, metadatacond, "key*", new Vector<HashMap<String, ByteIterator>>());
+    String keymatch = buildKeyMatch(keynum, metadatanum);
+    db.readMeta(table, metadatanum, metadatacond, keymatch, new Vector<HashMap<String, ByteIterator>>());
   }
 
-  public void doTransactionReadLog(DB db) {
+  public void doTransactionReadLog(DB db, GDPRThreadState state) {
     // choose a random scan length
-    int len = scanlength.nextValue().intValue();
+    int len = state.getScanlength().nextValue().intValue();
 
     System.err.println("Read log called with scan len: "+ len);
 
@@ -1030,16 +1557,47 @@ public class GDPRWorkload extends Workload {
 
   public void doTransactionCheckCompliance(DB db) {
 
-    long count = (long) (recordcount * 0.9);
+    long count = complianceCount();
 
     System.err.println("Verify conformance called with recordcount "+ count);
 
     db.verifyTTL(table, count);
   }
 
-  public void doTransactionReadModifyWrite(DB db) {
+  /** The number of records verifyTTL expects to remain. */
+  private long complianceCount() {
+    return (long) (recordcount * 0.9);
+  }
+
+  public void doTransactionAuditUser(DB db, GDPRThreadState state) {
+    long keynum = nextKeynum(state);
+
+    String user = buildDeterministicValue(keynum, DB.USER_FIELD, fieldnames.get(DB.USER_FIELD));
+
+    db.queryLog(table, AuditQuery.byUser(user), auditlength, new RecordCount());
+  }
+
+  public void doTransactionAuditKey(DB db, GDPRThreadState state) {
+    String keyname = buildKeyName(nextKeynum(state));
+
+    db.queryLog(table, AuditQuery.byKey(keyname), auditlength, new RecordCount());
+  }
+
+  public void doTransactionAuditTime(DB db, GDPRThreadState state) {
+    long now = System.currentTimeMillis();
+
+    db.queryLog(table, AuditQuery.byTime(now - audittimewindow, now + 1), auditlength, new RecordCount());
+  }
+
+  public void doTransactionAuditOperation(DB db, GDPRThreadState state) {
+    String operation = auditoperations[Utils.random().nextInt(auditoperations.length)];
+
+    db.queryLog(table, AuditQuery.byOperation(operation), auditlength, new RecordCount());
+  }
+
+  public void doTransactionReadModifyWrite(DB db, GDPRThreadState state) {
     // choose a random key
-    long keynum = nextKeynum();
+    long keynum = nextKeynum(state);
 
     String keyname = buildKeyName(keynum);
 
@@ -1047,20 +1605,20 @@ public class GDPRWorkload extends Workload {
 
     if (!readallfields) {
       // read a random field
-      String fieldname = fieldnames.get(fieldchooser.nextValue().intValue());
+      String fieldname = fieldnames.get(state.getFieldchooser().nextValue().intValue());
 
       fields = new HashSet<String>();
       fields.add(fieldname);
     }
 
-    HashMap<String, ByteIterator> values;
+    Map<String, ByteIterator> values;
 
     if (writeallfields) {
       // new data for all the fields
-      values = buildValues(keynum, keyname);
+      values = buildValues(keynum, keyname, state);
     } else {
       // update a random field
-      values = buildSingleValue(keynum, keyname);
+      values = buildSingleValue(keynum, keyname, state);
     }
 
     // do the transaction
@@ -1084,20 +1642,20 @@ public class GDPRWorkload extends Workload {
     measurements.measureIntended("READ-MODIFY-WRITE", (int) ((en - ist) / 1000));
   }
 
-  public void doTransactionScan(DB db) {
+  public void doTransactionScan(DB db, GDPRThreadState state) {
     // choose a random key
-    long keynum = nextKeynum();
+    long keynum = nextKeynum(state);
 
     String startkeyname = buildKeyName(keynum);
 
     // choose a random scan length
-    int len = scanlength.nextValue().intValue();
+    int len = state.getScanlength().nextValue().intValue();
 
     HashSet<String> fields = null;
 
     if (!readallfields) {
       // read a random field
-      String fieldname = fieldnames.get(fieldchooser.nextValue().intValue());
+      String fieldname = fieldnames.get(state.getFieldchooser().nextValue().intValue());
 
       fields = new HashSet<String>();
       fields.add(fieldname);
@@ -1106,17 +1664,17 @@ public class GDPRWorkload extends Workload {
     db.scan(table, startkeyname, len, fields, new Vector<HashMap<String, ByteIterator>>());
   }
 
-  public void doTransactionUpdateMeta(DB db, int metadatanum) {
+  public void doTransactionUpdateMeta(DB db, GDPRThreadState state, int metadatanum) {
 
     //String startkeyname = buildKeyName(0);
 
-    long keynum = nextKeynum();
+    long keynum = nextKeynum(state);
 
     // match on metadata field
     String metadatacond = buildDeterministicValue(keynum, metadatanum, fieldnames.get(metadatanum));
 
     // pick another field to be updated
-    int fieldnum = metadatachooser.nextValue().intValue();
+    int fieldnum = state.getMetadatachooser().nextValue().intValue();
     String fieldkey = fieldnames.get(fieldnum);
 
     // new value for another meta data field
@@ -1125,52 +1683,111 @@ public class GDPRWorkload extends Workload {
     //System.err.println("Update metadata called with cond: "+ metadatacond +
     //                   " value: " + metadatavalue + " metadatanum " + metadatanum);
     
-    db.updateMeta(table, metadatanum, metadatacond, "key*", fieldkey, metadatavalue);
+    db.updateMeta(table, metadatanum, metadatacond, buildKeyMatch(keynum, metadatanum), fieldkey, metadatavalue);
   }
 
-  public void doTransactionUpdate(DB db) {
+  public void doTransactionUpdate(DB db, GDPRThreadState state) {
     // choose a random key
-    long keynum = nextKeynum();
+    long keynum = nextKeynum(state);
 
     String keyname = buildKeyName(keynum);
 
-    HashMap<String, ByteIterator> values;
+    Map<String, ByteIterator> values;
 
     if (writeallfields) {
       // new data for all the fields
-      values = buildValues(keynum, keyname);
+      values = buildValues(keynum, keyname, state);
     } else {
       // update a random field
-      values = buildSingleValue(keynum, keyname);
+      values = buildSingleValue(keynum, keyname, state);
     }
 
     db.update(table, keyname, values);
   }
 
-  public void doTransactionDelete(DB db) {
+  public void doTransactionDelete(DB db, GDPRThreadState state) {
     // choose a random key
-    long keynum = nextKeynum();
+    long keynum = nextKeynum(state);
     
     String keyname = buildKeyName(keynum);
     
     //System.err.println("Transaction delete called for: "+ keyname);
     
     db.delete(table, keyname);
+    if (livekeys != null) {
+      livekeys.remove(keynum);
+    }
   }
 
-  public void doTransactionDeleteMeta(DB db, int metadatanum) {
+  public void doTransactionDeleteMeta(DB db, GDPRThreadState state, int metadatanum) {
     // choose a random key
-    long keynum = nextKeynum();
+    long keynum = nextKeynum(state);
 
     // match on metadata field
     String metadatacond = buildDeterministicValue(keynum, metadatanum, fieldnames.get(metadatanum));
     
     //System.err.println("Transaction delete meta called for: "+ metadatacond + " metadatanum: " + metadatanum);
     
-    db.deleteMeta(table, metadatanum, metadatacond, "key*");
+    db.deleteMeta(table, metadatanum, metadatacond, buildKeyMatch(keynum, metadatanum));
+  }
+
+  /**
+   * Erases the user of a record chosen like the key of any other transaction, so users with more
+   * records, or hotter ones, are erased more often.
+   */
+  public void doTransactionEraseUser(DB db, GDPRThreadState state) {
+    long keynum = nextKeynum(state);
+
+    String user = buildDeterministicValue(keynum, DB.USER_FIELD, fieldnames.get(DB.USER_FIELD));
+
+    db.eraseUser(table, user, new RecordCount());
+    if (livekeys != null) {
+      removeRecordsOfUser(metadataIndex(keynum, DB.USER_FIELD));
+    }
   }
 
-  public void doTransactionInsert(DB db) {
+  /**
+   * Marks the records of a user removed: its range of loaded records with the clustered data
+   * model, every usrcount-th record inserted with the uniform one.
+   */
+  private void removeRecordsOfUser(int user) {
+    if (subjects != null) {
+      long first = subjects.firstRecord(user);
+      for (long keynum = first; keynum < first + subjects.recordCount(user); keynum++) {
+        livekeys.remove(keynum);
+      }
+    } else {
+      long last = transactioninsertkeysequence.lastValue();
+      for (long keynum = user; keynum <= last; keynum += fieldvalues[DB.USER_FIELD].size()) {
+        livekeys.remove(keynum);
+      }
+    }
+  }
+
+  /**
+   * Exports the user of a record chosen like the key of any other transaction. Each record is
+   * read through one buffer of the thread and dropped, so the client needs the same memory
+   * however many records the user has.
+   */
+  public void doTransactionExportUser(DB db, GDPRThreadState state) {
+    long keynum = nextKeynum(state);
+
+    String user = buildDeterministicValue(keynum, DB.USER_FIELD, fieldnames.get(DB.USER_FIELD));
+
+    final byte[] buffer = state.getExportbuffer();
+    db.exportUser(table, user, record -> drain(record, buffer));
+  }
+
+  /** Reads every value of a record to its end. */
+  private static void drain(Map<String, ByteIterator> record, byte[] buffer) {
+    for (ByteIterator value : record.values()) {
+      while (value.hasNext()) {
+        value.nextBuf(buffer, 0);
+      }
+    }
+  }
+
+  public void doTransactionInsert(DB db, GDPRThreadState state) {
     // choose the next key
     long keynum = transactioninsertkeysequence.nextValue();
 
@@ -1178,7 +1795,7 @@ public class GDPRWorkload extends Workload {
       String dbkey = buildKeyName(keynum);
 
       int ttl = buildTTLValue(keynum);
-      HashMap<String, ByteIterator> values = buildValues(keynum, dbkey);
+      Map<String, ByteIterator> values = buildValues(keynum, dbkey, state);
       db.insertTTL(table, dbkey, values, ttl);
     } finally {
       transactioninsertkeysequence.acknowledge(keynum);
@@ -1186,94 +1803,59 @@ public class GDPRWorkload extends Workload {
   }
 
   /**
-   * Creates a weighted discrete values with database operations for a workload to perform.
-   * Weights/proportions are read from the properties list and defaults are used
-   * when values are not configured.
-   * Current operations are "READ", "READMETA", "UPDATE", "UPDATEMETA", 
-   *  "INSERT", "SCAN" and "READMODIFYWRITE".
+   * Reads the proportion of each operation from the properties list, using
+   * the defaults when values are not configured. Current operations are
+   * READ, READMETA, UPDATE, UPDATEMETA, INSERT, DELETE, DELETEMETA, SCAN,
+   * READMODIFYWRITE, ERASEUSER, EXPORTUSER, the four audit log searches and CHECKTTL, the metadata
+   * ones each by purpose and by user.
    *
    * @param p The properties list to pull weights from.
-   * @return A generator that can be used to determine the next operation to perform.
+   * @return The proportions, in {@link OperationType} order.
    * @throws IllegalArgumentException if the properties object was null.
    */
-  protected static DiscreteGenerator createOperationGenerator(final Properties p) {
+  protected static EnumMap<OperationType, Double> operationProportions(final Properties p) {
     if (p == null) {
       throw new IllegalArgumentException("Properties object cannot be null");
     }
-    final double readproportion = Double.parseDouble(
-        p.getProperty(READ_PROPORTION_PROPERTY, READ_PROPORTION_PROPERTY_DEFAULT));
-    final double readmetapurproportion = Double.parseDouble(
-        p.getProperty(READMETA_PURPOSE_PROPORTION_PROPERTY, READMETA_PURPOSE_PROPORTION_PROPERTY_DEFAULT));
-    final double readmetauserproportion = Double.parseDouble(
-        p.getProperty(READMETA_USER_PROPORTION_PROPERTY, READMETA_USER_PROPORTION_PROPERTY_DEFAULT));
-    final double updateproportion = Double.parseDouble(
-        p.getProperty(UPDATE_PROPORTION_PROPERTY, UPDATE_PROPORTION_PROPERTY_DEFAULT));
-    final double updatemetapurproportion = Double.parseDouble(
-        p.getProperty(UPDATEMETA_PURPOSE_PROPORTION_PROPERTY, UPDATEMETA_PURPOSE_PROPORTION_PROPERTY_DEFAULT));
-    final double updatemetauserproportion = Double.parseDouble(
-        p.getProperty(UPDATEMETA_USER_PROPORTION_PROPERTY, UPDATEMETA_USER_PROPORTION_PROPERTY_DEFAULT));
-    final double insertproportion = Double.parseDouble(
-        p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
-    final double deleteproportion = Double.parseDouble(
-        p.getProperty(DELETE_PROPORTION_PROPERTY, DELETE_PROPORTION_PROPERTY_DEFAULT));
-    final double deletemetapurproportion = Double.parseDouble(
-        p.getProperty(DELETEMETA_PURPOSE_PROPORTION_PROPERTY, DELETEMETA_PURPOSE_PROPORTION_PROPERTY_DEFAULT));
-    final double deletemetauserproportion = Double.parseDouble(
-        p.getProperty(DELETEMETA_USER_PROPORTION_PROPERTY, DELETEMETA_USER_PROPORTION_PROPERTY_DEFAULT));
-    final double scanproportion = Double.parseDouble(
-        p.getProperty(SCAN_PROPORTION_PROPERTY, SCAN_PROPORTION_PROPERTY_DEFAULT));
-    final double readmodifywriteproportion = Double.parseDouble(p.getProperty(
-        READMODIFYWRITE_PROPORTION_PROPERTY, READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
-
-    final DiscreteGenerator operationchooser = new DiscreteGenerator();
-    if (readproportion > 0) {
-      operationchooser.addValue(readproportion, "READ");
-    }
-
-    if (readmetapurproportion > 0) {
-      operationchooser.addValue(readmetapurproportion, "READMETAPURPOSE");
-    }
-
-    if (readmetauserproportion > 0) {
-      operationchooser.addValue(readmetauserproportion, "READMETAUSER");
-    }
-
-    if (updateproportion > 0) {
-      operationchooser.addValue(updateproportion, "UPDATE");
-    }
-
-    if (updatemetapurproportion > 0) {
-      operationchooser.addValue(updatemetapurproportion, "UPDATEMETAPURPOSE");
-    }
-
-    if (updatemetauserproportion > 0) {
-      operationchooser.addValue(updatemetauserproportion, "UPDATEMETAUSER");
-    }
-
-    if (insertproportion > 0) {
-      operationchooser.addValue(insertproportion, "INSERT");
-    }
-
-    if (deleteproportion > 0) {
-      operationchooser.addValue(deleteproportion, "DELETE");
-    }
-
-    if (deletemetapurproportion > 0) {
-      operationchooser.addValue(deletemetapurproportion, "DELETEMETAPURPOSE");
-    }
-
-    if (deletemetauserproportion > 0) {
-      operationchooser.addValue(deletemetauserproportion, "DELETEMETAUSER");
-    }
-
-    if (scanproportion > 0) {
-      operationchooser.addValue(scanproportion, "SCAN");
-    }
-
-    if (readmodifywriteproportion > 0) {
-      operationchooser.addValue(readmodifywriteproportion, "READMODIFYWRITE");
-    }
-
-    return operationchooser;
+    final EnumMap<OperationType, Double> proportions = new EnumMap<>(OperationType.class);
+    proportions.put(OperationType.READ, Double.parseDouble(
+        p.getProperty(READ_PROPORTION_PROPERTY, READ_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.READMETAPURPOSE, Double.parseDouble(
+        p.getProperty(READMETA_PURPOSE_PROPORTION_PROPERTY, READMETA_PURPOSE_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.READMETAUSER, Double.parseDouble(
+        p.getProperty(READMETA_USER_PROPORTION_PROPERTY, READMETA_USER_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.UPDATE, Double.parseDouble(
+        p.getProperty(UPDATE_PROPORTION_PROPERTY, UPDATE_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.UPDATEMETAPURPOSE, Double.parseDouble(
+        p.getProperty(UPDATEMETA_PURPOSE_PROPORTION_PROPERTY, UPDATEMETA_PURPOSE_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.UPDATEMETAUSER, Double.parseDouble(
+        p.getProperty(UPDATEMETA_USER_PROPORTION_PROPERTY, UPDATEMETA_USER_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.INSERT, Double.parseDouble(
+        p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.DELETE, Double.parseDouble(
+        p.getProperty(DELETE_PROPORTION_PROPERTY, DELETE_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.DELETEMETAPURPOSE, Double.parseDouble(
+        p.getProperty(DELETEMETA_PURPOSE_PROPORTION_PROPERTY, DELETEMETA_PURPOSE_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.DELETEMETAUSER, Double.parseDouble(
+        p.getProperty(DELETEMETA_USER_PROPORTION_PROPERTY, DELETEMETA_USER_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.SCAN, Double.parseDouble(
+        p.getProperty(SCAN_PROPORTION_PROPERTY, SCAN_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.READMODIFYWRITE, Double.parseDouble(p.getProperty(
+        READMODIFYWRITE_PROPORTION_PROPERTY, READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.ERASEUSER, Double.parseDouble(
+        p.getProperty(ERASE_USER_PROPORTION_PROPERTY, ERASE_USER_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.EXPORTUSER, Double.parseDouble(
+        p.getProperty(EXPORT_USER_PROPORTION_PROPERTY, EXPORT_USER_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.AUDITUSER, Double.parseDouble(
+        p.getProperty(AUDIT_USER_PROPORTION_PROPERTY, AUDIT_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.AUDITKEY, Double.parseDouble(
+        p.getProperty(AUDIT_KEY_PROPORTION_PROPERTY, AUDIT_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.AUDITTIME, Double.parseDouble(
+        p.getProperty(AUDIT_TIME_PROPORTION_PROPERTY, AUDIT_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.AUDITOPERATION, Double.parseDouble(
+        p.getProperty(AUDIT_OPERATION_PROPORTION_PROPERTY, AUDIT_PROPORTION_PROPERTY_DEFAULT)));
+    proportions.put(OperationType.CHECKTTL, Double.parseDouble(
+        p.getProperty(CHECK_TTL_PROPORTION_PROPERTY, CHECK_TTL_PROPORTION_PROPERTY_DEFAULT)));
+    return proportions;
   }
 }
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Which records of a {@link GDPRWorkload} are live, i.e. inserted and not
+ * deleted since. Every record up to the insert sequence is live unless it was
+ * removed, so only removed records take a bit: one per record in chunks of
+ * {@link #CHUNK_KEYS}, allocated by the first removal in a chunk. Without
+ * removals a lookup touches no bitmap at all.
+ *
+ * <br>
+ * All methods are thread safe and take no locks, except when a new chunk is
+ * allocated.
+ */
+public final class LiveKeys {
+  private static final int CHUNK_SHIFT = 16;
+  /** The number of records a chunk of the bitmap covers. */
+  static final int CHUNK_KEYS = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_WORDS = CHUNK_KEYS / 64;
+
+  /** The removed records of one chunk, one bit each, and how many there are. */
+  private static final class Chunk {
+    private final AtomicLongArray words = new AtomicLongArray(CHUNK_WORDS);
+    private final AtomicInteger removed = new AtomicInteger();
+  }
+
+  private volatile Chunk[] chunks = new Chunk[0];
+  private final AtomicLong removed = new AtomicLong();
+
+  private Chunk chunk(int id) {
+    Chunk[] current = chunks;
+    if (id < current.length && current[id] != null) {
+      return current[id];
+    }
+    synchronized (this) {
+      Chunk[] grown = Arrays.copyOf(chunks, Math.max(id + 1, chunks.length));
+      if (grown[id] == null) {
+        grown[id] = new Chunk();
+        chunks = grown;
+      }
+      return grown[id];
+    }
+  }
+
+  /** Marks a record removed, e.g. deleted. */
+  public void remove(long keynum) {
+    if (keynum < 0) {
+      return;
+    }
+    Chunk c = chunk((int) (keynum >>> CHUNK_SHIFT));
+    int word = (int) (keynum & (CHUNK_KEYS - 1)) >>> 6;
+    long bit = 1L << keynum;
+    long old;
+    do {
+      old = c.words.get(word);
+      if ((old & bit) != 0) {
+        return;
+      }
+    } while (!c.words.compareAndSet(word, old, old | bit));
+    c.removed.incrementAndGet();
+    removed.incrementAndGet();
+  }
+
+  /** Marks a record live again, e.g. inserted. */
+  public void add(long keynum) {
+    Chunk[] current = chunks;
+    int id = (int) (keynum >>> CHUNK_SHIFT);
+    if (keynum < 0 || id >= current.length || current[id] == null) {
+      return;
+    }
+    Chunk c = current[id];
+    int word = (int) (keynum & (CHUNK_KEYS - 1)) >>> 6;
+    long bit = 1L << keynum;
+    long old;
+    do {
+      old = c.words.get(word);
+      if ((old & bit) == 0) {
+        return;
+      }
+    } while (!c.words.compareAndSet(word, old, old & ~bit));
+    c.removed.decrementAndGet();
+    removed.decrementAndGet();
+  }
+
+  /** Whether a record up to the insert sequence is live. */
+  public boolean isLive(long keynum) {
+    Chunk[] current = chunks;
+    int id = (int) (keynum >>> CHUNK_SHIFT);
+    if (id >= current.length || current[id] == null) {
+      return true;
+    }
+    int word = (int) (keynum & (CHUNK_KEYS - 1)) >>> 6;
+    return (current[id].words.get(word) & (1L << keynum)) == 0;
+  }
+
+  /** The number of records removed and not added again. */
+  public long getRemoved() {
+    return removed.get();
+  }
+
+  /**
+   * Returns the first live record from keynum to last, or if there is none,
+   * from first to keynum, so each removed record passes its draws on to the
+   * next live one. Fully removed chunks are skipped whole.
+   *
+   * @param keynum A record from first to last.
+   * @param first The first record of this client, i.e. insertstart.
+   * @param last The last record inserted.
+   * @return The record, or -1 if none is live.
+   */
+  public long nextLive(long keynum, long first, long last) {
+    long found = scan(keynum, last);
+    if (found < 0 && keynum > first) {
+      found = scan(first, keynum - 1);
+    }
+    return found;
+  }
+
+  /** The first live record from from to to, or -1. */
+  private long scan(long from, long to) {
+    Chunk[] current = chunks;
+    long keynum = from;
+    while (keynum <= to) {
+      int id = (int) (keynum >>> CHUNK_SHIFT);
+      if (id >= current.length || current[id] == null) {
+        return keynum;
+      }
+      Chunk c = current[id];
+      long chunkend = ((long) id + 1) << CHUNK_SHIFT;
+      if (c.removed.get() < CHUNK_KEYS) {
+        int word = (int) (keynum & (CHUNK_KEYS - 1)) >>> 6;
+        long live = ~c.words.get(word) & (-1L << keynum);
+        while (live == 0 && word + 1 < CHUNK_WORDS) {
+          word++;
+          live = ~c.words.get(word);
+        }
+        if (live != 0) {
+          long candidate = ((long) id << CHUNK_SHIFT) + ((long) word << 6) + Long.numberOfTrailingZeros(live);
+          return candidate <= to ? candidate : -1;
+        }
+      }
+      keynum = chunkend;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import com.yahoo.ycsb.DB;
+
+/**
+ * The transactions a workload chooses from. {@link CoreWorkload} uses READ,
+ * UPDATE, INSERT, SCAN and READMODIFYWRITE; {@link GDPRWorkload} uses all of
+ * them.
+ */
+public enum OperationType {
+  READ,
+  READMETAPURPOSE,
+  READMETAUSER,
+  UPDATE,
+  UPDATEMETAPURPOSE,
+  UPDATEMETAUSER,
+  INSERT,
+  DELETE,
+  DELETEMETAPURPOSE,
+  DELETEMETAUSER,
+  SCAN,
+  READMODIFYWRITE,
+  ERASEUSER,
+  EXPORTUSER,
+  AUDITUSER,
+  AUDITKEY,
+  AUDITTIME,
+  AUDITOPERATION,
+  CHECKTTL;
+
+  /**
+   * Runs one transaction of a type; workloads keep them in an array indexed by ordinal.
+   * @param <S> The thread state of the workload.
+   */
+  public interface Handler<S> {
+    void run(DB db, S state);
+  }
+
+  /** Returns an empty handler table with one slot per type. */
+  public static <S> Handler<S>[] newHandlerTable() {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Handler<S>[] table = new Handler[values().length];
+    return table;
+  }
+}
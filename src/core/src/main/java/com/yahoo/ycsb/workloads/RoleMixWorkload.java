@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs several roles, e.g. the customer, controller and processor of a
+ * {@link GDPRWorkload}, concurrently against the same store. Each role is a
+ * workload of its own, gets its own share of the client threads and its own
+ * target throughput, and reports its operations under its own name, e.g.
+ * CUSTOMER.READ and CONTROLLER.UPDATEMETAPURPOSE.
+ * <p>
+ * Properties to control the client:
+ * <UL>
+ * <LI><b>roles</b>: the names of the roles, separated by commas (required)
+ * <LI><b>role.&lt;name&gt;.file</b>: a workload file with the properties of the role, as for -P (default: none)
+ * <LI><b>role.&lt;name&gt;.threads</b>: the share of the client threads the role gets, relative to the other
+ * roles; every role gets at least one thread (default: 1)
+ * <LI><b>role.&lt;name&gt;.target</b>: the operations per second of the role, over all its threads; 0 for as
+ * many as possible (default: 0)
+ * <LI><b>role.&lt;name&gt;.&lt;property&gt;</b>: sets any other property for the role only
+ * </ul>
+ * A role sees the properties of the run, overridden by its file, overridden by its own properties, and its
+ * file or properties must name its workload class. Its threads are numbered from 0 within the role. The
+ * roles pace themselves, so leave target unset unless it should cap the whole run on top of that. The load
+ * phase runs the first role on all threads, since the roles share the records.
+ * <p>
+ * Each role has its own key chooser and insert sequence, so the records one role inserts during the run are
+ * not chosen by the others. Two inserting roles would insert the same keys from recordcount on, so at most
+ * one role may have a non-zero insertproportion.
+ */
+public class RoleMixWorkload extends Workload {
+  public static final String ROLES_PROPERTY = "roles";
+
+  public static final String ROLE_PROPERTY_PREFIX = "role.";
+
+  public static final String ROLE_FILE_PROPERTY = "file";
+
+  public static final String ROLE_THREADS_PROPERTY = "threads";
+  public static final String ROLE_THREADS_PROPERTY_DEFAULT = "1";
+
+  public static final String ROLE_TARGET_PROPERTY = "target";
+  public static final String ROLE_TARGET_PROPERTY_DEFAULT = "0";
+
+  private String[] names;
+  private Workload[] workloads;
+  private Properties[] roleprops;
+  private double[] shares;
+  private double[] targets;
+  private boolean dotransactions;
+
+  /**
+   * What one client thread runs: the role it belongs to, the thread state of
+   * the role's workload and the pacing of the thread.
+   */
+  static final class RoleState {
+    private final int role;
+    private final Object state;
+    /** Nanoseconds between operations; 0 if not paced. */
+    private final long tickns;
+    private long startns;
+    private long opsdone;
+
+    RoleState(int role, Object state, long tickns) {
+      this.role = role;
+      this.state = state;
+      this.tickns = tickns;
+    }
+
+    int getRole() {
+      return role;
+    }
+  }
+
+  @Override
+  public void init(Properties p) throws WorkloadException {
+    String roles = p.getProperty(ROLES_PROPERTY);
+    if (roles == null || roles.trim().isEmpty()) {
+      throw new WorkloadException("Missing property: " + ROLES_PROPERTY);
+    }
+    names = roles.trim().split("\\s*,\\s*");
+    workloads = new Workload[names.length];
+    roleprops = new Properties[names.length];
+    shares = new double[names.length];
+    targets = new double[names.length];
+    dotransactions = Boolean.parseBoolean(p.getProperty(Client.DO_TRANSACTIONS_PROPERTY, String.valueOf(true)));
+    String inserting = null;
+
+    for (int i = 0; i < names.length; i++) {
+      Properties props = roleProperties(p, names[i]);
+      String workloadclass = props.getProperty(Client.WORKLOAD_PROPERTY);
+      if (workloadclass == null || workloadclass.equals(getClass().getName())) {
+        throw new WorkloadException("Role " + names[i] + " does not name a workload of its own");
+      }
+      try {
+        workloads[i] = (Workload) getClass().getClassLoader().loadClass(workloadclass).newInstance();
+      } catch (ReflectiveOperationException | ClassCastException e) {
+        throw new WorkloadException("Cannot create workload " + workloadclass + " of role " + names[i], e);
+      }
+      if (Double.parseDouble(props.getProperty(CoreWorkload.INSERT_PROPORTION_PROPERTY,
+          CoreWorkload.INSERT_PROPORTION_PROPERTY_DEFAULT)) > 0) {
+        if (inserting != null) {
+          throw new WorkloadException("Roles " + inserting + " and " + names[i]
+              + " both insert, which would insert the same keys; give only one a non-zero "
+              + CoreWorkload.INSERT_PROPORTION_PROPERTY);
+        }
+        inserting = names[i];
+      }
+      roleprops[i] = props;
+      String prefix = ROLE_PROPERTY_PREFIX + names[i] + ".";
+      shares[i] = Double.parseDouble(p.getProperty(prefix + ROLE_THREADS_PROPERTY, ROLE_THREADS_PROPERTY_DEFAULT));
+      targets[i] = Double.parseDouble(p.getProperty(prefix + ROLE_TARGET_PROPERTY, ROLE_TARGET_PROPERTY_DEFAULT));
+      if (shares[i] <= 0) {
+        throw new WorkloadException("Role " + names[i] + " needs a positive share of the threads");
+      }
+      workloads[i].init(props);
+    }
+  }
+
+  /**
+   * The properties of a role: those of the run, overridden by the role's
+   * file, overridden by the properties prefixed with the role's name.
+   */
+  static Properties roleProperties(Properties p, String name) throws WorkloadException {
+    Properties props = new Properties();
+    props.putAll(p);
+    String prefix = ROLE_PROPERTY_PREFIX + name + ".";
+    String file = p.getProperty(prefix + ROLE_FILE_PROPERTY);
+    if (file != null) {
+      try (InputStream in = new FileInputStream(file)) {
+        props.load(in);
+      } catch (IOException e) {
+        throw new WorkloadException("Cannot read workload file " + file + " of role " + name, e);
+      }
+    }
+    for (String key : p.stringPropertyNames()) {
+      if (key.startsWith(prefix)) {
+        props.setProperty(key.substring(prefix.length()), p.getProperty(key));
+      }
+    }
+    return props;
+  }
+
+  /**
+   * How many of threadcount client threads each role gets: in proportion to
+   * its share, but at least one.
+   */
+  static int[] apportion(double[] shares, int threadcount) throws WorkloadException {
+    if (threadcount < shares.length) {
+      throw new WorkloadException("Need at least one thread per role, got " + threadcount + " threads for "
+          + shares.length + " roles");
+    }
+    double total = 0;
+    for (double share : shares) {
+      total += share;
+    }
+    int[] counts = new int[shares.length];
+    int assigned = 0;
+    for (int i = 0; i < shares.length; i++) {
+      counts[i] = Math.max(1, (int) (threadcount * shares[i] / total));
+      assigned += counts[i];
+    }
+    // Hand out what rounding left over, or take back what the minimum of one added, by largest remainder.
+    while (assigned != threadcount) {
+      int step = assigned < threadcount ? 1 : -1;
+      int best = -1;
+      double bestremainder = 0;
+      for (int i = 0; i < shares.length; i++) {
+        double remainder = (threadcount * shares[i] / total - counts[i]) * step;
+        if ((step > 0 || counts[i] > 1) && (best < 0 || remainder > bestremainder)) {
+          best = i;
+          bestremainder = remainder;
+        }
+      }
+      counts[best] += step;
+      assigned += step;
+    }
+    return counts;
+  }
+
+  @Override
+  public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException {
+    int role = 0;
+    int roleid = mythreadid;
+    int rolethreads = threadcount;
+    if (dotransactions) {
+      int[] counts = apportion(shares, threadcount);
+      while (roleid >= counts[role]) {
+        roleid -= counts[role];
+        role++;
+      }
+      rolethreads = counts[role];
+    }
+    Measurements.getMeasurements().setNamespace(names[role].toUpperCase(Locale.ROOT));
+    long tickns = targets[role] > 0 ? (long) (1e9 * rolethreads / targets[role]) : 0;
+    return new RoleState(role, workloads[role].initThread(roleprops[role], roleid, rolethreads), tickns);
+  }
+
+  @Override
+  public boolean doInsert(DB db, Object threadstate) {
+    RoleState state = (RoleState) threadstate;
+    pace(state);
+    return workloads[state.role].doInsert(db, state.state);
+  }
+
+  @Override
+  public boolean doTransaction(DB db, Object threadstate) {
+    RoleState state = (RoleState) threadstate;
+    pace(state);
+    return workloads[state.role].doTransaction(db, state.state);
+  }
+
+  /**
+   * Waits until the next operation of the thread is due at the target of its
+   * role, and makes that its intended start time, as the client does.
+   */
+  private void pace(RoleState state) {
+    if (state.tickns == 0) {
+      return;
+    }
+    if (state.opsdone == 0) {
+      state.startns = System.nanoTime();
+    }
+    long deadline = state.startns + state.opsdone * state.tickns;
+    state.opsdone++;
+    while (System.nanoTime() < deadline) {
+      LockSupport.parkNanos(deadline - System.nanoTime());
+    }
+    Measurements.getMeasurements().setIntendedStartTimeNs(deadline);
+  }
+
+  @Override
+  public void requestStop() {
+    super.requestStop();
+    for (Workload workload : workloads) {
+      workload.requestStop();
+    }
+  }
+
+  @Override
+  public void cleanup() throws WorkloadException {
+    for (Workload workload : workloads) {
+      workload.cleanup();
+    }
+  }
+
+  /** The workload of a role, by its position in the roles property. */
+  Workload getWorkload(int role) {
+    return workloads[role];
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link ArrivalSchedule}.
+ */
+public class TestArrivalSchedule {
+
+  @Test
+  public void constantArrivalsAreEvenlySpaced() throws InterruptedException {
+    ArrivalSchedule schedule = new ArrivalSchedule(ArrivalSchedule.CONSTANT, 1000, 3, 1);
+    schedule.awaitStart();
+    long first = schedule.next();
+    assertEquals(schedule.next() - first, 1000000L);
+    assertEquals(schedule.next() - first, 2000000L);
+    assertEquals(schedule.next(), -1L);
+  }
+
+  @Test
+  public void poissonArrivalsHaveTheTargetRate() throws InterruptedException {
+    ArrivalSchedule schedule = new ArrivalSchedule(ArrivalSchedule.POISSON, 1000, 0, 1);
+    schedule.awaitStart();
+    long first = schedule.next();
+    long previous = first;
+    for (int i = 1; i < 100000; i++) {
+      long next = schedule.next();
+      assertTrue(next >= previous);
+      previous = next;
+    }
+    // 100000 arrivals at 1000/s take about 100 s.
+    double seconds = (previous - first) / 1e9;
+    assertTrue(seconds > 98 && seconds < 102, "took " + seconds);
+  }
+
+  @Test
+  public void startsWhenAllWorkersAreReady() throws InterruptedException {
+    ArrivalSchedule schedule = new ArrivalSchedule(ArrivalSchedule.CONSTANT, 1000, 0, 2);
+    schedule.leave();
+    long before = System.nanoTime();
+    schedule.awaitStart();
+    assertTrue(schedule.next() >= before);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void needsATarget() {
+    new ArrivalSchedule(ArrivalSchedule.POISSON, 0, 0, 1);
+  }
+}
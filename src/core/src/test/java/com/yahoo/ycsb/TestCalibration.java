@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+import org.apache.htrace.core.HTraceConfiguration;
+import org.apache.htrace.core.Tracer;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link Calibration}.
+ */
+public class TestCalibration {
+
+  /** Keeps what was written as "metric, measurement". */
+  private static final class Lines implements MeasurementsExporter {
+    private final List<String> lines = new ArrayList<>();
+
+    @Override
+    public void write(String metric, String measurement, int i) {
+      lines.add(metric + ", " + measurement);
+    }
+
+    @Override
+    public void write(String metric, String measurement, long i) {
+      lines.add(metric + ", " + measurement);
+    }
+
+    @Override
+    public void write(String metric, String measurement, double d) {
+      lines.add(metric + ", " + measurement);
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close.
+    }
+  }
+
+  @Test
+  public void measuresTheClientAndAnnotatesTheRun() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Client.WORKLOAD_PROPERTY, CoreWorkload.class.getName());
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "1000");
+    props.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0.5");
+    props.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0.5");
+    Tracer tracer = new Tracer.Builder("test").conf(HTraceConfiguration.EMPTY).build();
+
+    Calibration calibration = Calibration.run(props, 2, 10000, tracer);
+    assertTrue(calibration.getCeiling() > 0);
+    assertTrue(calibration.getCpuNanosPerOp() > 0);
+
+    // The benchmark starts with fresh measurements.
+    Measurements.setProperties(props);
+    Measurements.getMeasurements().measure("READ", 100);
+
+    Lines lines = new Lines();
+    MeasurementsExporter exporter = calibration.export(lines, 2, 10000, 1000);
+    Measurements.getMeasurements().exportMeasurements(exporter);
+
+    assertTrue(lines.lines.contains("CALIBRATION, Operations"));
+    assertTrue(lines.lines.contains("CALIBRATION, CeilingThroughput(ops/sec)"));
+    assertTrue(lines.lines.contains("CALIBRATION, ClientShare(%)"));
+    int average = lines.lines.indexOf("READ, AverageLatency(us)");
+    assertEquals(lines.lines.get(average + 1), "READ, ClientAverageLatency(us)");
+    assertEquals(lines.lines.get(average + 2), "READ, ClientShare(%)");
+    assertTrue(lines.lines.contains("READ, Operations"));
+    assertTrue(!lines.lines.contains("UPDATE, Operations"), "calibration operations leaked into the run");
+  }
+}
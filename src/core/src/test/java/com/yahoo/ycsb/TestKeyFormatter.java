@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Test class for {@link KeyFormatter}.
+ */
+public class TestKeyFormatter {
+
+  /** How keys were built by string concatenation. */
+  private static String concatenated(long keynum, int zeropadding, boolean hashed) {
+    if (hashed) {
+      keynum = Utils.hash(keynum);
+    }
+    String value = Long.toString(keynum);
+    String prekey = "key";
+    for (int i = value.length(); i < zeropadding; i++) {
+      prekey += '0';
+    }
+    return prekey + value;
+  }
+
+  @Test
+  public void formatsLikeConcatenation() {
+    long[] keynums = {0, 5, 9, 10, 12345, Long.MAX_VALUE, -1, -42, Long.MIN_VALUE};
+    for (int zeropadding : new int[] {1, 8, 25}) {
+      for (boolean hashed : new boolean[] {false, true}) {
+        KeyFormatter formatter = new KeyFormatter("key", zeropadding, hashed);
+        for (long keynum : keynums) {
+          String expected = concatenated(keynum, zeropadding, hashed);
+          assertEquals(formatter.format(keynum), expected);
+          assertEquals(formatter.toBytes(keynum), expected.getBytes(StandardCharsets.UTF_8));
+          assertEquals(formatter.toByteIterator(keynum).toString(), expected);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void tableKeysAreShared() {
+    KeyFormatter formatter = new KeyFormatter("key", 8, true);
+    formatter.precompute(100);
+    assertSame(formatter.format(42), formatter.format(42));
+    assertEquals(formatter.format(42), concatenated(42, 8, true));
+    assertSame(formatter.toBytes(42), formatter.toBytes(42));
+    assertEquals(formatter.format(100), concatenated(100, 8, true));
+    assertNotSame(formatter.format(100), formatter.format(100));
+  }
+
+  @Test
+  public void bytesOfReusesTheLastKey() {
+    KeyFormatter formatter = new KeyFormatter("key", 1, false);
+    String key = formatter.format(7);
+    byte[] bytes = KeyFormatter.bytesOf(key);
+    assertEquals(bytes, "key7".getBytes(StandardCharsets.UTF_8));
+    assertSame(KeyFormatter.bytesOf(key), bytes);
+    // An equal key that was not formatted last is encoded.
+    String other = new String("key7");
+    assertNotSame(KeyFormatter.bytesOf(other), bytes);
+    assertEquals(KeyFormatter.bytesOf(other), bytes);
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link KeyMatcher}.
+ */
+public class TestKeyMatcher {
+
+  @Test
+  public void matchAllPatternsShareOneMatcher() {
+    assertSame(KeyMatcher.of("*"), KeyMatcher.ALL);
+    assertSame(KeyMatcher.of(""), KeyMatcher.ALL);
+    assertSame(KeyMatcher.of(null), KeyMatcher.ALL);
+    assertTrue(KeyMatcher.ALL.matches("user3:key12"));
+  }
+
+  @Test
+  public void prefixesAndGlobsMatchLikeRedis() {
+    KeyMatcher prefix = KeyMatcher.of("user3:*");
+    assertTrue(prefix.matches("user3:key12"));
+    assertFalse(prefix.matches("user31:key12"));
+    assertFalse(KeyMatcher.of("key*").matches("user3:key12"));
+
+    KeyMatcher glob = KeyMatcher.of("user?:*12");
+    assertTrue(glob.matches("user3:key12"));
+    assertFalse(glob.matches("user31:key13"));
+    assertSame(KeyMatcher.of("user?:*12"), glob);
+  }
+}
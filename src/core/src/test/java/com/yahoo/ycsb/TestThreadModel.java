@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link ThreadModel}.
+ */
+public class TestThreadModel {
+
+  private static boolean runsVirtual(ThreadModel model) throws InterruptedException {
+    final AtomicBoolean virtual = new AtomicBoolean();
+    Thread t = model.newThread(new Runnable() {
+      @Override
+      public void run() {
+        virtual.set(ThreadModel.isCurrentVirtual());
+      }
+    }, "test");
+    assertEquals(t.getName(), "test");
+    t.start();
+    t.join();
+    return virtual.get();
+  }
+
+  @Test
+  public void platformThreads() throws InterruptedException {
+    ThreadModel model = ThreadModel.forName(ThreadModel.PLATFORM);
+    assertFalse(model.isVirtual());
+    assertFalse(runsVirtual(model));
+  }
+
+  @Test
+  public void virtualThreads() throws InterruptedException {
+    if (!ThreadModel.isVirtualSupported()) {
+      try {
+        ThreadModel.forName(ThreadModel.VIRTUAL);
+      } catch (IllegalArgumentException e) {
+        return;
+      }
+      throw new AssertionError("Virtual threads are not supported by this runtime");
+    }
+    assertTrue(runsVirtual(ThreadModel.forName(ThreadModel.VIRTUAL)));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void unknownModel() {
+    ThreadModel.forName("green");
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2015-2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.generator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class TestAliasGenerator {
+
+  @Test
+  public void drawsValuesInProportionToTheirWeights() {
+    Map<String, Double> weights = new LinkedHashMap<>();
+    weights.put("a", 0.5);
+    weights.put("b", 0.3);
+    weights.put("c", 0.15);
+    weights.put("d", 0.05);
+    weights.put("never", 0.0);
+    AliasGenerator<String> generator = new AliasGenerator<>(weights);
+
+    int draws = 200000;
+    Map<String, Integer> counts = new LinkedHashMap<>();
+    for (int i = 0; i < draws; i++) {
+      String value = generator.nextValue();
+      Integer count = counts.get(value);
+      counts.put(value, count == null ? 1 : count + 1);
+    }
+    assertTrue(!counts.containsKey("never"));
+    for (Map.Entry<String, Double> weight : weights.entrySet()) {
+      if (weight.getValue() > 0) {
+        double share = counts.get(weight.getKey()) / (double) draws;
+        assertEquals(share, weight.getValue(), 0.01, weight.getKey());
+      }
+    }
+  }
+
+  @Test
+  public void weightsNeedNotAddUpToOne() {
+    Map<String, Double> weights = new LinkedHashMap<>();
+    weights.put("only", 3.0);
+    AliasGenerator<String> generator = new AliasGenerator<>(weights);
+    assertEquals(generator.nextValue(), "only");
+    assertEquals(generator.lastValue(), "only");
+  }
+
+  @Test
+  public void returnsNullWithoutValues() {
+    assertNull(new AliasGenerator<String>(new LinkedHashMap<String, Double>()).nextValue());
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Test class for {@link EventLog} and {@link EventLogAnalyzer}.
+ */
+public class TestEventLog {
+
+  @Test
+  public void analyzesWhatWasLogged() throws Exception {
+    File file = File.createTempFile("events", ".bin");
+    file.deleteOnExit();
+    final EventLog log = new EventLog(file, 1 << 20);
+    final long start = System.nanoTime();
+
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; i++) {
+            String op = i % 2 == 0 ? "READ" : "UPDATE";
+            String status = i % 10 == 1 ? "ERROR" : "OK";
+            // Every operation starts 1 ms late and takes 2 ms.
+            long st = start + i * 1000L;
+            log.log(op, status, st - 1000000, st, st + 2000000, i);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    log.close();
+    assertEquals(log.getWritten() + log.getDropped(), 40000);
+    assertEquals(log.getDropped(), 0);
+
+    EventLogAnalyzer.Analysis analysis = EventLogAnalyzer.analyze(file, 1000000000L, false);
+    assertEquals(analysis.getEvents(), 40000);
+    EventLogAnalyzer.OpStats read = analysis.getOps().get("READ");
+    assertEquals(read.getLatencies().getTotalCount(), 20000);
+    assertEquals(read.getLatencies().getValueAtPercentile(50), 2000, 2);
+    assertEquals((long) analysis.getOps().get("UPDATE").getStatuses().get("ERROR"), 4000);
+    assertEquals((long) analysis.getOps().get("UPDATE").getStatuses().get("OK"), 16000);
+
+    EventLogAnalyzer.Analysis intended = EventLogAnalyzer.analyze(file, 1000000000L, true);
+    assertEquals(intended.getOps().get("READ").getLatencies().getValueAtPercentile(50), 3000, 3);
+  }
+}
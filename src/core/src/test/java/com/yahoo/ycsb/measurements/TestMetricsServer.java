@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.Status;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link MetricsServer}.
+ */
+public class TestMetricsServer {
+
+  @Test
+  public void servesLatenciesCountersAndGauges() throws Exception {
+    Properties props = new Properties();
+    props.put(MetricsServer.PORT_PROPERTY, "0");
+    Measurements mm = new Measurements(props);
+    for (int i = 1; i <= 100; i++) {
+      mm.measureStatus("READ", Status.OK, i);
+    }
+    mm.measureStatus("READ", Status.NOT_FOUND, 5000);
+    Gauges.register("test_lag_ms", () -> 42);
+
+    MetricsServer server = new MetricsServer("127.0.0.1", 0, mm, () -> 101);
+    server.start();
+    try {
+      HttpURLConnection connection =
+          (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + "/metrics").openConnection();
+      assertEquals(connection.getResponseCode(), 200);
+      assertTrue(connection.getContentType().startsWith("text/plain"));
+      String body;
+      try (InputStream in = connection.getInputStream()) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+          bytes.write(buffer, 0, n);
+        }
+        body = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+      }
+
+      assertTrue(body.contains("ycsb_operations_total 101\n"), body);
+      assertTrue(body.contains("# TYPE ycsb_latency_microseconds summary\n"), body);
+      assertTrue(body.contains("ycsb_latency_microseconds_count{operation=\"READ\",status=\"OK\"} 100\n"), body);
+      assertTrue(body.contains("ycsb_latency_microseconds{operation=\"READ\",status=\"OK\",quantile=\"0.5\"} 50\n"),
+          body);
+      assertTrue(body.contains("ycsb_latency_microseconds_count{operation=\"READ\",status=\"NOT_FOUND\"} 1\n"), body);
+      assertTrue(body.contains("ycsb_heap_used_bytes "), body);
+      assertTrue(body.contains("ycsb_test_lag_ms 42.0\n"), body);
+    } finally {
+      server.stop();
+      Gauges.unregister("test_lag_ms");
+    }
+  }
+
+  @Test
+  public void breakdownsAreCollectedForTheEndpoint() {
+    Properties props = new Properties();
+    props.put(MetricsServer.PORT_PROPERTY, "0");
+    Measurements mm = new Measurements(props);
+    mm.measureStatus("READ", Status.OK, 10);
+    assertEquals(mm.getStatusBreakdowns().size(), 1);
+  }
+}
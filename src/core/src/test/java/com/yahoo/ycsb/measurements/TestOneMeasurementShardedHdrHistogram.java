@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link OneMeasurementShardedHdrHistogram}.
+ */
+public class TestOneMeasurementShardedHdrHistogram {
+
+  @Test
+  public void mergesAllThreads() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "shardedhdrhistogram");
+    final Measurements mm = new Measurements(props);
+
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int latency = 100 * (t + 1);
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 1000; i++) {
+            mm.measure("READ", latency);
+            mm.reportStatus("READ", i % 10 == 0 ? Status.NOT_FOUND : Status.OK);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    String summary = mm.getSummary();
+    assertTrue(summary.contains("Count=4000"), summary);
+    assertTrue(summary.contains("Max=400"), summary);
+
+    String text = export(mm);
+    // Values seen by the summary are kept for the final report.
+    assertTrue(text.contains("[READ], Operations, 4000"), text);
+    assertTrue(text.contains("[READ], MinLatency(us), 100"), text);
+    assertTrue(text.contains("[READ], Return=OK, 3600"), text);
+    assertTrue(text.contains("[READ], Return=NOT_FOUND, 400"), text);
+  }
+
+  private static String export(Measurements mm) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextMeasurementsExporter exporter = new TextMeasurementsExporter(out);
+    mm.exportMeasurements(exporter);
+    exporter.close();
+    return out.toString("UTF-8");
+  }
+}
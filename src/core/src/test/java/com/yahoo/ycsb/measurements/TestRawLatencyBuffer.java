@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link RawLatencyBuffer}.
+ */
+public class TestRawLatencyBuffer {
+
+  private static void check(RawLatencyBuffer buffer, final int[] latencies) {
+    assertEquals(buffer.size(), latencies.length);
+
+    final int[] seen = {0};
+    buffer.forEach(new RawLatencyBuffer.Visitor() {
+      @Override
+      public void visit(long timestamp, int latency) {
+        assertEquals(timestamp, 1000L + seen[0]);
+        assertEquals(latency, latencies[seen[0]]);
+        seen[0]++;
+      }
+    });
+    assertEquals(seen[0], latencies.length);
+
+    int[] sorted = latencies.clone();
+    Arrays.sort(sorted);
+    long[] ranks = {0, sorted.length - 1, sorted.length / 2, (long) (sorted.length * 0.99), 17};
+    int[] values = buffer.select(ranks);
+    for (int i = 0; i < ranks.length; i++) {
+      assertEquals(values[i], sorted[(int) ranks[i]], "rank " + ranks[i]);
+    }
+  }
+
+  private static int[] fill(RawLatencyBuffer buffer, int count, int bound) {
+    Random random = new Random(42);
+    int[] latencies = new int[count];
+    for (int i = 0; i < count; i++) {
+      latencies[i] = random.nextInt(bound) - (i % 100 == 0 ? bound : 0);
+      buffer.add(1000L + i, latencies[i]);
+    }
+    return latencies;
+  }
+
+  @Test
+  public void selectsFromHeap() {
+    RawLatencyBuffer buffer = new RawLatencyBuffer(null, 0);
+    check(buffer, fill(buffer, 3 * RawLatencyBuffer.CHUNK_SIZE + 5, 1 << 20));
+  }
+
+  @Test
+  public void selectsFromSpillFile() throws Exception {
+    File spill = File.createTempFile("raw", ".bin");
+    RawLatencyBuffer buffer = new RawLatencyBuffer(spill, RawLatencyBuffer.CHUNK_SIZE);
+    check(buffer, fill(buffer, 4 * RawLatencyBuffer.CHUNK_SIZE + 1, 5000));
+    assertTrue(spill.length() >= 3L * RawLatencyBuffer.CHUNK_SIZE * 12);
+    buffer.close();
+    assertFalse(spill.exists());
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link ValueSummary}.
+ */
+public class TestValueSummary {
+
+  @Test
+  public void summariesAreKeptApartFromLatencies() throws Exception {
+    Measurements mm = new Measurements(new Properties());
+    mm.measure("ERASEUSER", 500);
+    mm.summarize("ERASEUSER-RECORDS", "records", 10);
+    mm.summarize("ERASEUSER-RECORDS", "records", 0);
+    mm.summarize("ERASEUSER-RECORDS", "records", 20);
+
+    assertFalse(mm.getSummary().contains("ERASEUSER-RECORDS"), mm.getSummary());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextMeasurementsExporter exporter = new TextMeasurementsExporter(out);
+    mm.exportMeasurements(exporter);
+    exporter.close();
+    String text = out.toString("UTF-8");
+    assertTrue(text.contains("[ERASEUSER], Operations, 1"), text);
+    assertTrue(text.contains("[ERASEUSER-RECORDS], Count, 3"), text);
+    assertTrue(text.contains("[ERASEUSER-RECORDS], Total(records), 30"), text);
+    assertTrue(text.contains("[ERASEUSER-RECORDS], Average(records), 10.0"), text);
+    assertTrue(text.contains("[ERASEUSER-RECORDS], Min(records), 0"), text);
+    assertTrue(text.contains("[ERASEUSER-RECORDS], Max(records), 20"), text);
+    assertFalse(text.contains("[ERASEUSER-RECORDS], Operations"), text);
+  }
+}
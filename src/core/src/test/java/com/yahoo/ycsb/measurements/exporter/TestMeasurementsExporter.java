@@ -16,6 +16,7 @@
  */
 package com.yahoo.ycsb.measurements.exporter;
 
+import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.generator.ZipfianGenerator;
 import com.yahoo.ycsb.measurements.Measurements;
 import com.yahoo.ycsb.measurements.OneMeasurementHistogram;
@@ -58,4 +59,39 @@ public class TestMeasurementsExporter {
         assertEquals(json.get(4).get("measurement").asText(), "MaxLatency(us)");
         assertEquals(json.get(11).get("measurement").asText(), "4");
     }
+
+    @Test
+    public void testStatusBreakdownIsExported() throws IOException {
+        Properties props = new Properties();
+        props.put(Measurements.STATUS_BREAKDOWN_PROPERTY, "true");
+        Measurements mm = new Measurements(props);
+        for (int i = 0; i < 100; i++) {
+            mm.measureStatus("READ", i < 90 ? Status.OK : Status.NOT_FOUND, i < 90 ? 100 : 5000);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONArrayMeasurementsExporter export = new JSONArrayMeasurementsExporter(out);
+        mm.exportMeasurements(export);
+        export.close();
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode json = mapper.readTree(out.toString("UTF-8"));
+        int found = 0;
+        for (JsonNode node : json) {
+            String metric = node.get("metric").asText();
+            if (node.get("measurement").asText().equals("Operations")) {
+                if (metric.equals("READ:OK")) {
+                    assertEquals(90, node.get("value").asInt());
+                    found++;
+                } else if (metric.equals("READ:NOT_FOUND")) {
+                    assertEquals(10, node.get("value").asInt());
+                    found++;
+                }
+            }
+            if (metric.equals("READ:NOT_FOUND") && node.get("measurement").asText().equals("MinLatency(us)")) {
+                assertEquals(5000, node.get("value").asInt());
+            }
+        }
+        assertEquals(2, found);
+    }
 }
@@ -0,0 +1,528 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.AuditQuery;
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.RecordCount;
+import com.yahoo.ycsb.NoopDB;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestGDPRWorkload {
+
+  /** The Data value as it was built with a StringBuilder. */
+  private static String quadraticPayload(long keynum, int size) {
+    StringBuilder sb = new StringBuilder(size);
+    while (sb.length() < size) {
+      sb.append(String.valueOf(keynum));
+      sb.append(sb.toString().hashCode());
+    }
+    sb.setLength(size);
+    return sb.toString();
+  }
+
+  @Test
+  public void payloadMatchesTheStringBuilderVersion() {
+    long[] keynums = {0, 7, 42, 123456789L, -5, Long.MAX_VALUE, Long.MIN_VALUE};
+    int[] sizes = {0, 1, 5, 100, 1000};
+    for (long keynum : keynums) {
+      for (int size : sizes) {
+        String payload = new String(GDPRWorkload.buildPayload(keynum, size), StandardCharsets.ISO_8859_1);
+        assertEquals(payload, quadraticPayload(keynum, size), "keynum " + keynum + " size " + size);
+      }
+    }
+  }
+
+  @Test
+  public void valuesAreAMapOfAllFields() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(GDPRWorkload.DATA_INTEGRITY_PROPERTY, "true");
+    p.setProperty(GDPRWorkload.FIELD_LENGTH_DISTRIBUTION_PROPERTY, "constant");
+    p.setProperty(GDPRWorkload.FIELD_LENGTH_PROPERTY, "100");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+
+    Map<String, ByteIterator> values = workload.buildValues(42, "user42");
+    assertEquals(values.size(), 10);
+    assertTrue(values.containsKey("PUR"));
+    assertFalse(values.containsKey("nope"));
+    assertNull(values.get("nope"));
+    assertEquals(values.get("USR").toString(), "user42");
+    assertEquals(values.get("Data").toString(), quadraticPayload(42, 100));
+
+    List<String> names = new ArrayList<>();
+    Map<String, ByteIterator> copy = new HashMap<>();
+    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+      names.add(entry.getKey());
+      copy.put(entry.getKey(), entry.getValue());
+    }
+    assertEquals(names.get(0), "PUR");
+    assertEquals(names.get(9), "Data");
+    assertEquals(copy.size(), 10);
+
+    values.put("OBJ", new StringByteIterator("obj9"));
+    assertEquals(values.get("OBJ").toString(), "obj9");
+    values.remove("OBJ");
+    assertEquals(values.size(), 9);
+    assertFalse(values.containsKey("OBJ"));
+  }
+
+  @Test
+  public void seededThreadsRepeatTheirKeys() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "100000");
+    p.setProperty(Client.OPERATION_COUNT_PROPERTY, "1000");
+    p.setProperty(GDPRWorkload.REQUEST_DISTRIBUTION_PROPERTY, "zipfian");
+    p.setProperty(GDPRWorkload.SEED_PROPERTY, "42");
+    Measurements.setProperties(p);
+
+    long[][] keys = new long[2][100];
+    for (long[] run : keys) {
+      GDPRWorkload workload = new GDPRWorkload();
+      workload.init(p);
+      GDPRThreadState state = (GDPRThreadState) workload.initThread(p, 3, 4);
+      for (int i = 0; i < run.length; i++) {
+        run[i] = workload.nextKeynum(state);
+      }
+    }
+    assertEquals(keys[0], keys[1]);
+  }
+
+  /** Counts the one-time operations. */
+  private static final class OnceDB extends NoopDB {
+    private final AtomicInteger verifications = new AtomicInteger();
+    private final AtomicInteger logreads = new AtomicInteger();
+
+    @Override
+    public Status verifyTTL(String table, long recordcount) {
+      verifications.incrementAndGet();
+      return Status.OK;
+    }
+
+    @Override
+    public Status readLog(String table, int logCount) {
+      logreads.incrementAndGet();
+      return Status.OK;
+    }
+  }
+
+  @Test
+  public void oncePhaseRunsOnceForAllThreads() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(GDPRWorkload.CHECK_COMPL_PROPERTY, "true");
+    p.setProperty(GDPRWorkload.READ_LOG_PROPERTY, "true");
+    p.setProperty(GDPRWorkload.READ_PROPORTION_PROPERTY, "1");
+    p.setProperty(GDPRWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    Measurements.setProperties(p);
+    final GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+    final OnceDB db = new OnceDB();
+
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final Object state = workload.initThread(p, t, threads.length);
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 100; i++) {
+            workload.doTransaction(db, state);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(db.verifications.get(), 1);
+    assertEquals(db.logreads.get(), 1);
+  }
+
+  @Test
+  public void dataSubjectsOwnSkewedContiguousRanges() {
+    DataSubjects subjects = new DataSubjects(100000, 1000, 0.99, 0.8);
+    long total = 0;
+    for (int u = 0; u < subjects.getUserCount(); u++) {
+      assertTrue(subjects.recordCount(u) >= 1);
+      assertEquals(subjects.firstRecord(u), total);
+      assertEquals(subjects.userOf(total), u);
+      total += subjects.recordCount(u);
+      assertEquals(subjects.userOf(total - 1), u);
+    }
+    assertEquals(total, 100000);
+    assertTrue(subjects.recordCount(0) > 50 * subjects.recordCount(999));
+    // Inserted records wrap around.
+    assertEquals(subjects.userOf(100000), 0);
+
+    DataSubjects few = new DataSubjects(3, 10, 0.99, 0.8);
+    assertEquals(few.userOf(2), 2);
+    assertEquals(few.recordCount(9), 0);
+  }
+
+  @Test
+  public void clusteredRecordsFollowTheirUser() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "10000");
+    p.setProperty(GDPRWorkload.USER_COUNT_PROPERTY, "100");
+    p.setProperty(GDPRWorkload.DATA_MODEL_PROPERTY, "clustered");
+    p.setProperty(GDPRWorkload.DATA_INTEGRITY_PROPERTY, "true");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+
+    // Tells which value each user prefers.
+    DataSubjects always = new DataSubjects(10000, 100, 0.99, 1.0);
+    int preferred = 0;
+    for (long keynum = 0; keynum < 10000; keynum++) {
+      int user = workload.subjects.userOf(keynum);
+      String key = workload.buildKeyName(keynum);
+      assertTrue(key.startsWith("user" + user + ":"), key);
+      assertEquals(workload.buildDeterministicValue(keynum, 2, "USR"), "user" + user);
+      assertEquals(workload.buildKeyMatch(keynum, 2), "user" + user + ":*");
+      String purpose = "purpose" + always.metadataIndex(user, keynum, 0, 100);
+      if (workload.buildDeterministicValue(keynum, 0, "PUR").equals(purpose)) {
+        preferred++;
+      }
+    }
+    // Records mostly share the purpose of their user, rather than 1 in 100.
+    assertTrue(preferred > 6000, "records with the purpose of their user: " + preferred);
+    assertEquals(workload.buildKeyMatch(0, 0), "*");
+  }
+
+  /**
+   * Keeps the USR field of each record, for the default eraseUser to work on. Like the JDBC
+   * binding, readMeta reports NOT_FOUND when no record matches.
+   */
+  private static final class UserDB extends NoopDB {
+    private final Map<String, String> users = new HashMap<>();
+    private final List<String> erased = new ArrayList<>();
+    private final List<ByteIterator> returned = new ArrayList<>();
+
+    @Override
+    public Status readMeta(String table, int fieldnum, String cond, String keymatch,
+                           Vector<HashMap<String, ByteIterator>> result) {
+      boolean found = false;
+      for (String user : users.values()) {
+        if (user.equals(cond)) {
+          HashMap<String, ByteIterator> record = new HashMap<>();
+          record.put("Data", new StringByteIterator("payload of " + user));
+          returned.add(record.get("Data"));
+          result.add(record);
+          found = true;
+        }
+      }
+      return found ? Status.OK : Status.NOT_FOUND;
+    }
+
+    @Override
+    public Status deleteMeta(String table, int fieldnum, String cond, String keymatch) {
+      erased.add(cond);
+      users.values().removeIf(cond::equals);
+      return Status.OK;
+    }
+  }
+
+  @Test
+  public void eraseUserDeletesTheRecordsOfOneUser() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "100");
+    p.setProperty(GDPRWorkload.USER_COUNT_PROPERTY, "10");
+    p.setProperty(GDPRWorkload.CHECK_COMPL_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_LOG_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_PROPORTION_PROPERTY, "0");
+    p.setProperty(GDPRWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty(GDPRWorkload.ERASE_USER_PROPORTION_PROPERTY, "1");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+    UserDB db = new UserDB();
+    for (long keynum = 0; keynum < 100; keynum++) {
+      db.users.put(workload.buildKeyName(keynum), workload.buildDeterministicValue(keynum, 2, "USR"));
+    }
+
+    workload.doTransaction(db, workload.initThread(p, 0, 1));
+    assertEquals(db.erased.size(), 1);
+    assertEquals(db.users.size(), 90);
+    assertFalse(db.users.containsValue(db.erased.get(0)));
+
+    RecordCount removed = new RecordCount();
+    assertEquals(db.eraseUser("usertable", "user3", removed), Status.OK);
+    assertEquals(removed.get(), db.erased.get(0).equals("user3") ? 0 : 10);
+    // Erasing a user without records is a no-op.
+    int deletes = db.erased.size();
+    removed = new RecordCount();
+    assertEquals(db.eraseUser("usertable", "user3", removed), Status.OK);
+    assertEquals(removed.get(), 0);
+    assertEquals(db.erased.size(), deletes);
+  }
+
+  @Test
+  public void exportUserReadsEveryRecordToTheEnd() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "100");
+    p.setProperty(GDPRWorkload.USER_COUNT_PROPERTY, "10");
+    p.setProperty(GDPRWorkload.CHECK_COMPL_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_LOG_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_PROPORTION_PROPERTY, "0");
+    p.setProperty(GDPRWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty(GDPRWorkload.EXPORT_USER_PROPORTION_PROPERTY, "1");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+    UserDB db = new UserDB();
+    for (long keynum = 0; keynum < 100; keynum++) {
+      db.users.put(workload.buildKeyName(keynum), workload.buildDeterministicValue(keynum, 2, "USR"));
+    }
+
+    workload.doTransaction(db, workload.initThread(p, 0, 1));
+    assertEquals(db.returned.size(), 10);
+    for (ByteIterator value : db.returned) {
+      assertEquals(value.bytesLeft(), 0);
+    }
+    assertEquals(db.users.size(), 100);
+  }
+
+  @Test
+  public void consentIsWithdrawnWhenDue() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(GDPRWorkload.CHECK_COMPL_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_LOG_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_PROPORTION_PROPERTY, "1");
+    p.setProperty(GDPRWorkload.CONSENT_WITHDRAWAL_INTERVAL_PROPERTY, "50");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+    final List<String> withdrawn = new ArrayList<>();
+    NoopDB db = new NoopDB() {
+      @Override
+      public Status withdrawConsent(String table, String purpose, String replacement, RecordCount rewritten) {
+        withdrawn.add(purpose + "=" + replacement);
+        return Status.OK;
+      }
+    };
+    Object state = workload.initThread(p, 0, 1);
+
+    workload.doTransaction(db, state);
+    assertTrue(withdrawn.isEmpty());
+    Thread.sleep(60);
+    workload.doTransaction(db, state);
+    workload.doTransaction(db, state);
+    assertEquals(withdrawn.size(), 1);
+    assertTrue(withdrawn.get(0).matches("purpose\\d+=" + GDPRWorkload.WITHDRAWN_PURPOSE), withdrawn.get(0));
+  }
+
+  @Test
+  public void regulatorSearchesTheAuditLogByEachKind() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(GDPRWorkload.CHECK_COMPL_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_LOG_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_PROPORTION_PROPERTY, "0");
+    p.setProperty(GDPRWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty(GDPRWorkload.AUDIT_USER_PROPORTION_PROPERTY, "1");
+    p.setProperty(GDPRWorkload.AUDIT_KEY_PROPORTION_PROPERTY, "1");
+    p.setProperty(GDPRWorkload.AUDIT_TIME_PROPORTION_PROPERTY, "1");
+    p.setProperty(GDPRWorkload.AUDIT_OPERATION_PROPORTION_PROPERTY, "1");
+    p.setProperty(GDPRWorkload.CHECK_TTL_PROPORTION_PROPERTY, "1");
+    p.setProperty(GDPRWorkload.AUDIT_LENGTH_PROPERTY, "500");
+    p.setProperty(GDPRWorkload.AUDIT_OPERATIONS_PROPERTY, "ERASEUSER");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+    final List<AuditQuery> queries = new ArrayList<>();
+    final AtomicInteger checks = new AtomicInteger();
+    NoopDB db = new NoopDB() {
+      @Override
+      public Status queryLog(String table, AuditQuery query, int logCount, RecordCount matched) {
+        assertEquals(logCount, 500);
+        queries.add(query);
+        return Status.OK;
+      }
+
+      @Override
+      public Status verifyTTL(String table, long recordcount) {
+        checks.incrementAndGet();
+        return Status.OK;
+      }
+    };
+    Object state = workload.initThread(p, 0, 1);
+
+    for (int i = 0; i < 200; i++) {
+      workload.doTransaction(db, state);
+    }
+    assertEquals(queries.size() + checks.get(), 200);
+    assertTrue(checks.get() > 0);
+    Map<AuditQuery.Kind, Integer> kinds = new HashMap<>();
+    long now = System.currentTimeMillis();
+    for (AuditQuery query : queries) {
+      kinds.merge(query.getKind(), 1, Integer::sum);
+      switch (query.getKind()) {
+      case USER:
+        assertTrue(query.getValue().matches("user\\d+"), query.toString());
+        break;
+      case KEY:
+        assertTrue(query.getValue().startsWith("key"), query.toString());
+        break;
+      case TIME:
+        assertTrue(query.matches(now - 1000, "READ", "user1"), query.toString());
+        assertFalse(query.matches(now - 120000, "READ", "user1"), query.toString());
+        break;
+      default:
+        assertEquals(query.getValue(), "ERASEUSER");
+      }
+    }
+    assertEquals(kinds.size(), 4);
+  }
+
+  @Test
+  public void ttlValuesAreWeightedAndDilated() throws Exception {
+    assertEquals(GDPRWorkload.parseTTLValues("60:3, 3600"), Arrays.asList("60", "60", "60", "3600"));
+
+    Properties p = new Properties();
+    p.setProperty(GDPRWorkload.TTL_VALUES_PROPERTY, "60:3,3600:1");
+    p.setProperty(GDPRWorkload.TTL_DILATION_PROPERTY, "120");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+
+    Map<Integer, Integer> ttls = new HashMap<>();
+    for (long keynum = 0; keynum < 400; keynum++) {
+      ttls.merge(workload.buildTTLValue(keynum), 1, Integer::sum);
+      String field = workload.buildDeterministicValue(keynum, 1, "TTL");
+      assertEquals(field, workload.buildTTLValue(keynum) == 1 ? "60" : "3600");
+    }
+    assertEquals(ttls.get(1).intValue(), 300);
+    assertEquals(ttls.get(30).intValue(), 100);
+  }
+
+  @Test(expectedExceptions = WorkloadException.class)
+  public void expiredKeysNeedTheLoadTimeInTheRunPhase() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(GDPRWorkload.EXPIRED_KEYS_PROPERTY, "avoid");
+    Measurements.setProperties(p);
+    GDPRWorkload loading = new GDPRWorkload();
+    p.setProperty(Client.DO_TRANSACTIONS_PROPERTY, "false");
+    loading.init(p);
+    p.setProperty(Client.DO_TRANSACTIONS_PROPERTY, "true");
+    new GDPRWorkload().init(p);
+  }
+
+  @Test
+  public void expiredKeysAreAvoidedOrTargeted() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "100");
+    p.setProperty(GDPRWorkload.TTL_VALUES_PROPERTY, "10,1000000");
+    p.setProperty(GDPRWorkload.TTL_LOAD_TIME_PROPERTY, String.valueOf(System.currentTimeMillis() - 60000));
+    p.setProperty(GDPRWorkload.EXPIRED_KEYS_PROPERTY, "avoid");
+    Measurements.setProperties(p);
+    GDPRWorkload avoiding = new GDPRWorkload();
+    avoiding.init(p);
+    p.setProperty(GDPRWorkload.EXPIRED_KEYS_PROPERTY, "target");
+    GDPRWorkload targeting = new GDPRWorkload();
+    targeting.init(p);
+
+    GDPRThreadState avoidstate = (GDPRThreadState) avoiding.initThread(p, 0, 1);
+    GDPRThreadState targetstate = (GDPRThreadState) targeting.initThread(p, 0, 1);
+    for (int i = 0; i < 100; i++) {
+      long live = avoiding.nextKeynum(avoidstate);
+      assertFalse(avoiding.isExpired(live), "key " + live);
+      assertEquals(avoiding.buildTTLValue(live), 1000000);
+      long expired = targeting.nextKeynum(targetstate);
+      assertTrue(targeting.isExpired(expired), "key " + expired);
+    }
+  }
+
+  @Test
+  public void deletedKeysAreNotPickedAgain() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "100");
+    p.setProperty(Client.OPERATION_COUNT_PROPERTY, "1000");
+    p.setProperty(GDPRWorkload.CHECK_COMPL_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_LOG_PROPERTY, "false");
+    p.setProperty(GDPRWorkload.READ_PROPORTION_PROPERTY, "0");
+    p.setProperty(GDPRWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty(GDPRWorkload.DELETE_PROPORTION_PROPERTY, "1");
+    // Sized for 200 inserts, of which about 10 come.
+    p.setProperty(GDPRWorkload.INSERT_PROPORTION_PROPERTY, "0.1");
+    p.setProperty(GDPRWorkload.REQUEST_DISTRIBUTION_PROPERTY, "zipfian");
+    p.setProperty(GDPRWorkload.LIVE_KEYS_PROPERTY, "true");
+    p.setProperty(GDPRWorkload.INSERT_ORDER_PROPERTY, "ordered");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+    final List<String> deleted = new ArrayList<>();
+    NoopDB db = new NoopDB() {
+      @Override
+      public Status delete(String table, String key) {
+        deleted.add(key);
+        return Status.OK;
+      }
+    };
+    Object state = workload.initThread(p, 0, 1);
+
+    for (int i = 0; i < 1000 && deleted.size() < 100; i++) {
+      workload.doTransaction(db, state);
+    }
+    assertEquals(deleted.size(), 100);
+    assertEquals(new HashSet<>(deleted).size(), 100);
+  }
+
+  @Test
+  public void drawsStayWithinThePartitionOfTheClient() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "2000");
+    p.setProperty(Client.OPERATION_COUNT_PROPERTY, "10000");
+    p.setProperty(Workload.INSERT_START_PROPERTY, "1000");
+    p.setProperty(Workload.INSERT_COUNT_PROPERTY, "1000");
+    // Sized for 10000 inserts, so most draws fall past the records and are folded.
+    p.setProperty(GDPRWorkload.INSERT_PROPORTION_PROPERTY, "0.5");
+    p.setProperty(GDPRWorkload.REQUEST_DISTRIBUTION_PROPERTY, "zipfian");
+    p.setProperty(GDPRWorkload.LIVE_KEYS_PROPERTY, "true");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+    GDPRThreadState state = (GDPRThreadState) workload.initThread(p, 0, 1);
+
+    for (int i = 0; i < 10000; i++) {
+      long keynum = workload.nextKeynum(state);
+      assertTrue(keynum >= 1000 && keynum < 2000, "key " + keynum);
+    }
+  }
+}
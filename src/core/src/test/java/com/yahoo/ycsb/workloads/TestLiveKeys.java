@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class TestLiveKeys {
+
+  @Test
+  public void everyKeyIsLiveUntilRemoved() {
+    LiveKeys keys = new LiveKeys();
+    assertTrue(keys.isLive(5));
+    assertEquals(keys.nextLive(5, 0, 10), 5);
+
+    keys.remove(5);
+    keys.remove(5);
+    assertFalse(keys.isLive(5));
+    assertEquals(keys.getRemoved(), 1);
+    assertEquals(keys.nextLive(5, 0, 10), 6);
+
+    keys.add(5);
+    assertTrue(keys.isLive(5));
+    assertEquals(keys.getRemoved(), 0);
+    assertEquals(keys.nextLive(5, 0, 10), 5);
+  }
+
+  @Test
+  public void nextLiveCrossesWordsAndWrapsAround() {
+    LiveKeys keys = new LiveKeys();
+    for (long keynum = 60; keynum <= 200; keynum++) {
+      keys.remove(keynum);
+    }
+    assertEquals(keys.nextLive(60, 0, 300), 201);
+    assertEquals(keys.nextLive(100, 0, 200), 0);
+    assertEquals(keys.nextLive(130, 0, 200), 0);
+    // Wrapping stops at the first record of the client.
+    assertEquals(keys.nextLive(100, 59, 200), 59);
+    assertEquals(keys.nextLive(100, 60, 200), -1);
+    for (long keynum = 0; keynum < 60; keynum++) {
+      keys.remove(keynum);
+    }
+    assertEquals(keys.nextLive(130, 0, 200), -1);
+  }
+
+  @Test
+  public void removedChunksAreSkippedWhole() {
+    LiveKeys keys = new LiveKeys();
+    long end = 2L * LiveKeys.CHUNK_KEYS + 17;
+    for (long keynum = 0; keynum < end; keynum++) {
+      keys.remove(keynum);
+    }
+    assertEquals(keys.nextLive(3, 0, end + 100), end);
+    assertEquals(keys.nextLive(LiveKeys.CHUNK_KEYS, 0, end - 1), -1);
+    // Keys of chunks that never had a removal are live.
+    long untouched = 10L * LiveKeys.CHUNK_KEYS + 3;
+    assertEquals(keys.nextLive(untouched, 0, untouched + LiveKeys.CHUNK_KEYS), untouched);
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.NoopDB;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestRoleMixWorkload {
+
+  /** Measures each transaction as OP and remembers what it was set up with. */
+  public static class CountingWorkload extends Workload {
+    private Properties props;
+    private int threads;
+    private int transactions;
+
+    @Override
+    public void init(Properties p) {
+      props = p;
+    }
+
+    @Override
+    public Object initThread(Properties p, int mythreadid, int threadcount) {
+      threads = threadcount;
+      return mythreadid;
+    }
+
+    @Override
+    public boolean doInsert(DB db, Object threadstate) {
+      return true;
+    }
+
+    @Override
+    public boolean doTransaction(DB db, Object threadstate) {
+      transactions++;
+      Measurements.getMeasurements().measure("OP", 1);
+      return true;
+    }
+  }
+
+  private static Properties twoRoles() {
+    Properties p = new Properties();
+    p.setProperty(RoleMixWorkload.ROLES_PROPERTY, "customer, controller");
+    p.setProperty(Client.WORKLOAD_PROPERTY, RoleMixWorkload.class.getName());
+    p.setProperty("role.customer.workload", CountingWorkload.class.getName());
+    p.setProperty("role.customer.threads", "3");
+    p.setProperty("role.customer.readproportion", "1");
+    p.setProperty("role.controller.workload", CountingWorkload.class.getName());
+    p.setProperty("readproportion", "0.5");
+    return p;
+  }
+
+  @Test
+  public void threadsAreSharedByWeight() throws Exception {
+    assertEquals(RoleMixWorkload.apportion(new double[] {3, 1}, 4), new int[] {3, 1});
+    assertEquals(RoleMixWorkload.apportion(new double[] {1, 1, 1}, 4), new int[] {2, 1, 1});
+    assertEquals(RoleMixWorkload.apportion(new double[] {100, 1}, 4), new int[] {3, 1});
+    assertEquals(RoleMixWorkload.apportion(new double[] {1, 2}, 2), new int[] {1, 1});
+  }
+
+  @Test(expectedExceptions = WorkloadException.class)
+  public void everyRoleNeedsAThread() throws Exception {
+    RoleMixWorkload.apportion(new double[] {1, 1, 1}, 2);
+  }
+
+  @Test(expectedExceptions = WorkloadException.class)
+  public void onlyOneRoleMayInsert() throws Exception {
+    Properties p = twoRoles();
+    p.setProperty("role.customer.insertproportion", "0.1");
+    p.setProperty("role.controller.insertproportion", "0.2");
+    Measurements.setProperties(p);
+    new RoleMixWorkload().init(p);
+  }
+
+  @Test
+  public void roleOverridesTheRunProperties() throws Exception {
+    Properties p = twoRoles();
+    Measurements.setProperties(p);
+    RoleMixWorkload workload = new RoleMixWorkload();
+    workload.init(p);
+
+    CountingWorkload customer = (CountingWorkload) workload.getWorkload(0);
+    CountingWorkload controller = (CountingWorkload) workload.getWorkload(1);
+    assertEquals(customer.props.getProperty("readproportion"), "1");
+    assertEquals(controller.props.getProperty("readproportion"), "0.5");
+  }
+
+  @Test
+  public void eachRoleMeasuresUnderItsName() throws Exception {
+    Properties p = twoRoles();
+    Measurements.setProperties(p);
+    RoleMixWorkload workload = new RoleMixWorkload();
+    workload.init(p);
+    DB db = new NoopDB();
+
+    try {
+      Object controllerthread = workload.initThread(p, 3, 4);
+      assertEquals(((RoleMixWorkload.RoleState) controllerthread).getRole(), 1);
+      workload.doTransaction(db, controllerthread);
+      Object customerthread = workload.initThread(p, 2, 4);
+      assertEquals(((RoleMixWorkload.RoleState) customerthread).getRole(), 0);
+      workload.doTransaction(db, customerthread);
+      workload.doTransaction(db, customerthread);
+    } finally {
+      Measurements.getMeasurements().setNamespace(null);
+    }
+
+    CountingWorkload customer = (CountingWorkload) workload.getWorkload(0);
+    CountingWorkload controller = (CountingWorkload) workload.getWorkload(1);
+    assertEquals(customer.transactions, 2);
+    assertEquals(customer.threads, 3);
+    assertEquals(controller.transactions, 1);
+    assertEquals(controller.threads, 1);
+    String summary = Measurements.getMeasurements().getSummary();
+    assertTrue(summary.contains("[CUSTOMER.OP: Count=2"), summary);
+    assertTrue(summary.contains("[CONTROLLER.OP: Count=1"), summary);
+  }
+
+  @Test
+  public void roleIsPacedToItsTarget() throws Exception {
+    Properties p = twoRoles();
+    p.setProperty("role.controller.target", "1000");
+    Measurements.setProperties(p);
+    RoleMixWorkload workload = new RoleMixWorkload();
+    workload.init(p);
+    DB db = new NoopDB();
+
+    try {
+      Object state = workload.initThread(p, 1, 2);
+      long start = System.nanoTime();
+      for (int i = 0; i < 21; i++) {
+        workload.doTransaction(db, state);
+      }
+      // 1000 per second on the one thread of the role: the 21st operation is due 20ms after the first.
+      assertTrue(System.nanoTime() - start >= 20000000L);
+    } finally {
+      Measurements.getMeasurements().setNamespace(null);
+    }
+  }
+}
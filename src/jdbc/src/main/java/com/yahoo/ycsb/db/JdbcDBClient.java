@@ -19,13 +19,25 @@ package com.yahoo.ycsb.db;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
 
+import com.yahoo.ycsb.measurements.Measurements;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import com.yahoo.ycsb.db.flavors.DBFlavor;
 
 /**
@@ -41,6 +53,21 @@ import com.yahoo.ycsb.db.flavors.DBFlavor;
  * This interface expects a schema <key> <field1> <field2> <field3> ... All
  * attributes are of type TEXT. All accesses are through the primary key.
  * Therefore, only one index on the primary key is needed.
+ *
+ * <br>
+ * When several comma separated URLs are given, keys are routed to a shard
+ * through a consistent-hash ring. Metadata statements match rows on every
+ * shard, so they are executed on all shards in parallel and their results
+ * merged; the latency of each shard is reported as e.g. READMETA-SHARD0.
+ * They run on a pool shared by all clients of the JVM, with
+ * jdbc.scatterthreads threads, by default one per shard for each client
+ * thread.
+ *
+ * <br>
+ * With jdbc.batchupdateapi inserts, and with jdbc.batchwrites also updates,
+ * deletes and metadata updates, are collected by a {@link StatementBatcher}.
+ * Reads, and writes that do not go through the batcher, flush it first, so
+ * they are ordered after the client's own pending writes.
  */
 public class JdbcDBClient extends DB {
 
@@ -67,6 +94,28 @@ public class JdbcDBClient extends DB {
 
   public static final String JDBC_BATCH_UPDATES = "jdbc.batchupdateapi";
 
+  /** Also batch update, delete and updateMeta statements; uses db.batchsize as the batch size. */
+  public static final String JDBC_BATCH_WRITES = "jdbc.batchwrites";
+
+  /**
+   * The longest time in milliseconds a batched operation may wait before its batch is flushed.
+   * It is only checked when a batched write is added; reads and unbatched writes flush the
+   * batch anyway.
+   */
+  public static final String JDBC_BATCH_FLUSH_MS = "jdbc.batchflushms";
+
+  /**
+   * The number of threads running metadata statements on the shards, shared by all clients.
+   * Defaults to threadcount times the number of shards, so no client waits for another's.
+   */
+  public static final String JDBC_SCATTER_THREADS = "jdbc.scatterthreads";
+
+  /** The number of consistent-hash ring positions given to each shard. */
+  public static final String JDBC_VIRTUAL_NODES = "jdbc.virtualnodes";
+
+  /** Default number of ring positions per shard. */
+  public static final int JDBC_VIRTUAL_NODES_DEFAULT = 128;
+
   /** The name of the property for the number of fields in a record. */
   public static final String FIELD_COUNT_PROPERTY = "fieldcount";
 
@@ -82,13 +131,25 @@ public class JdbcDBClient extends DB {
   /** The field name prefix in the table. */
   public static final String COLUMN_PREFIX = "FIELD";
 
+  /** Runs metadata statements on all shards at once, for all clients; null until a client has several shards. */
+  private static ExecutorService sharedShardExecutor;
+  /** How many clients use sharedShardExecutor. */
+  private static int shardExecutorReferences;
+
   private List<Connection> conns;
+  private ShardRing shardRing;
+  /** The shared executor while this client has several shards, otherwise null. */
+  private ExecutorService shardExecutor;
   private boolean initialized = false;
   private Properties props;
   private int jdbcFetchSize;
   private int batchSize;
   private boolean autoCommit;
   private boolean batchUpdates;
+  private boolean batchWrites;
+  private StatementBatcher batcher;
+  /** Plain statements of each shard for batched metadata updates; null until first used. */
+  private Statement[] metaBatchStatements;
   private static final String DEFAULT_PROP = "";
   private ConcurrentMap<StatementType, PreparedStatement> cachedStatements;
   private long numRowsInBatch = 0;
@@ -124,8 +185,99 @@ public class JdbcDBClient extends DB {
    * @return Shard index
    */
   private int getShardIndexByKey(String key) {
-    int ret = Math.abs(key.hashCode()) % conns.size();
-    return ret;
+    if (conns.size() == 1) {
+      return 0;
+    }
+    return shardRing.shardFor(key);
+  }
+
+  /**
+   * Work done against a single shard as part of a scatter/gather statement.
+   */
+  private interface ShardTask<T> {
+    T run(int shardIndex) throws SQLException;
+  }
+
+  /**
+   * Runs the task on every shard, in parallel when there is more than one,
+   * and returns the per-shard results in shard index order. The latency of
+   * each shard, from submission to completion, is measured as <op>-SHARD<index>.
+   *
+   * @param op Operation name used for the per-shard measurements
+   * @param task The work to do against one shard
+   * @return The result of each shard
+   * @throws SQLException The first failure of any shard
+   */
+  private <T> List<T> scatterGather(final String op, final ShardTask<T> task) throws SQLException {
+    List<T> results = new ArrayList<T>(conns.size());
+    if (shardExecutor == null) {
+      results.add(task.run(0));
+      return results;
+    }
+
+    List<Future<T>> futures = new ArrayList<Future<T>>(conns.size());
+    for (int i = 0; i < conns.size(); i++) {
+      final int shard = i;
+      // Started at submission, so the time spent queued for a pool thread counts.
+      final long st = System.nanoTime();
+      futures.add(shardExecutor.submit(new Callable<T>() {
+        @Override
+        public T call() throws SQLException {
+          try {
+            return task.run(shard);
+          } finally {
+            Measurements.getMeasurements().measure(op + "-SHARD" + shard,
+                (int) ((System.nanoTime() - st) / 1000));
+          }
+        }
+      }));
+    }
+
+    SQLException failure = null;
+    for (Future<T> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted while waiting for shards", e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause() instanceof SQLException ?
+              (SQLException) e.getCause() : new SQLException(e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return results;
+  }
+
+  /**
+   * Returns the executor shared by the clients of this JVM, creating it with
+   * the given number of threads for the first client.
+   */
+  private static synchronized ExecutorService acquireShardExecutor(int threads) {
+    if (sharedShardExecutor == null) {
+      sharedShardExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "JdbcDBClient-shard");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    shardExecutorReferences++;
+    return sharedShardExecutor;
+  }
+
+  /** Shuts the shared executor down once its last client has released it. */
+  private static synchronized void releaseShardExecutor() {
+    if (--shardExecutorReferences == 0) {
+      sharedShardExecutor.shutdown();
+      sharedShardExecutor = null;
+    }
   }
 
   /**
@@ -139,6 +291,13 @@ public class JdbcDBClient extends DB {
     return conns.get(getShardIndexByKey(key));
   }
 
+  /** Commits the open transaction of every shard. */
+  private void commitAllConnections() throws SQLException {
+    for (Connection conn : conns) {
+      conn.commit();
+    }
+  }
+
   private void cleanupAllConnections() throws SQLException {
     for (Connection conn : conns) {
       if (!autoCommit) {
@@ -188,6 +347,13 @@ public class JdbcDBClient extends DB {
 
     this.autoCommit = getBoolProperty(props, JDBC_AUTO_COMMIT, true);
     this.batchUpdates = getBoolProperty(props, JDBC_BATCH_UPDATES, false);
+    this.batchWrites = getBoolProperty(props, JDBC_BATCH_WRITES, false);
+    int batchFlushMs = getIntProperty(props, JDBC_BATCH_FLUSH_MS);
+    this.batcher = new StatementBatcher(batchSize, Math.max(batchFlushMs, 0), autoCommit);
+    int virtualNodes = getIntProperty(props, JDBC_VIRTUAL_NODES);
+    if (virtualNodes <= 0) {
+      virtualNodes = JDBC_VIRTUAL_NODES_DEFAULT;
+    }
 
     try {
       if (driver != null) {
@@ -212,6 +378,16 @@ public class JdbcDBClient extends DB {
 
       System.out.println("Using shards: " + shardCount + ", batchSize:" + batchSize + ", fetchSize: " + jdbcFetchSize);
 
+      shardRing = new ShardRing(Arrays.asList(urlArr), virtualNodes);
+      if (shardCount > 1) {
+        int scatterThreads = getIntProperty(props, JDBC_SCATTER_THREADS);
+        if (scatterThreads <= 0) {
+          int threadCount = Integer.parseInt(props.getProperty(Client.THREAD_COUNT_PROPERTY, "1"));
+          scatterThreads = Math.max(threadCount, 1) * shardCount;
+        }
+        shardExecutor = acquireShardExecutor(scatterThreads);
+      }
+
       cachedStatements = new ConcurrentHashMap<StatementType, PreparedStatement>();
 
       this.dbFlavor = DBFlavor.fromJdbcUrl(urlArr[0]);
@@ -231,13 +407,16 @@ public class JdbcDBClient extends DB {
 
   @Override
   public void cleanup() throws DBException {
-    if (batchSize > 0) {
+    if (shardExecutor != null) {
+      shardExecutor = null;
+      releaseShardExecutor();
+    }
+    // commit un-finished batches
+    batcher.flushAll();
+    if (metaBatchStatements != null) {
       try {
-        // commit un-finished batches
-        for (PreparedStatement st : cachedStatements.values()) {
-          if (!st.getConnection().isClosed() && !st.isClosed() && (numRowsInBatch % batchSize != 0)) {
-            st.executeBatch();
-          }
+        for (Statement st : metaBatchStatements) {
+          st.close();
         }
       } catch (SQLException e) {
         System.err.println("Error in cleanup execution. " + e);
@@ -275,25 +454,15 @@ public class JdbcDBClient extends DB {
     return stmt;
   }
 
-  private PreparedStatement createAndCacheReadMetaStatement(StatementType readType, String key)
-      throws SQLException {
-    String read = dbFlavor.createReadMetaStatement(readType, key);
-    PreparedStatement readStatement = getShardConnectionByKey(key).prepareStatement(read);
-      return readStatement;
-  }
-
   private PreparedStatement createAndCacheDeleteStatement(StatementType deleteType, String key)
       throws SQLException {
     String delete = dbFlavor.createDeleteStatement(deleteType, key);
     PreparedStatement deleteStatement = getShardConnectionByKey(key).prepareStatement(delete);
-    return deleteStatement;
-  }
-
-  private PreparedStatement createAndCacheDeleteMetaStatement(StatementType deleteType, String key)
-      throws SQLException {
-    String delete = dbFlavor.createDeleteMetaStatement(deleteType, key);
-    PreparedStatement deleteStatement = getShardConnectionByKey(key).prepareStatement(delete);
+    PreparedStatement stmt = cachedStatements.putIfAbsent(deleteType, deleteStatement);
+    if (stmt == null) {
       return deleteStatement;
+    }
+    return stmt;
   }
 
   private PreparedStatement createAndCacheUpdateStatement(StatementType updateType, String key)
@@ -307,13 +476,6 @@ public class JdbcDBClient extends DB {
     return stmt;
   }
 
-  private PreparedStatement createAndCacheUpdateMetaStatement(StatementType updateType, String key)
-      throws SQLException {
-    String update = dbFlavor.createUpdateMetaStatement(updateType, key);
-    PreparedStatement insertStatement = getShardConnectionByKey(key).prepareStatement(update);
-    return insertStatement;
-  }
-
   private PreparedStatement createAndCacheScanStatement(StatementType scanType, String key)
       throws SQLException {
     String select = dbFlavor.createScanStatement(scanType, key);
@@ -330,6 +492,7 @@ public class JdbcDBClient extends DB {
 
   @Override
   public Status read(String tableName, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    batcher.flushAll();
     try {
       StatementType type = new StatementType(StatementType.Type.READ, tableName, 1, "", getShardIndexByKey(key));
       PreparedStatement readStatement = cachedStatements.get(type);
@@ -359,10 +522,8 @@ public class JdbcDBClient extends DB {
   @Override
   public Status readLog(String table, int logcount){
     try {
-      String s = null
-      String query = null;
-      Process p = null;
-      query = "tail -n " + logcount + " /home/audit_logs/audit_dump.xm";
+      String s = null;
+      String query = "tail -n " + logcount + " /home/audit_logs/audit_dump.xm";
       Process p = Runtime.getRuntime().exec(query);
       BufferedReader stdInput = new BufferedReader(new
            InputStreamReader(p.getInputStream()));
@@ -385,37 +546,40 @@ public class JdbcDBClient extends DB {
   }
 
   @Override
-  public Status readMeta(String tableName, int fieldnum, String cond, 
-      String keymatch, Vector<HashMap<String, ByteIterator>> result) {
+  public Status readMeta(final String tableName, int fieldnum, String cond,
+      final String keymatch, Vector<HashMap<String, ByteIterator>> result) {
     //TODO: No use for keyMatch whatsoever, so check if without queering for keys this will work.
+    batcher.flushAll();
+    // The flavor picks the predicate at random, so it is built once and run on every shard.
+    final String read = dbFlavor.createReadMetaStatement(
+        new StatementType(StatementType.Type.READ, tableName, 1, "", -1), keymatch);
     try {
-      HashSet<String> fields = null;
-      StatementType type = new StatementType(StatementType.Type.READ, tableName, 1, "", getShardIndexByKey(keymatch));
-      PreparedStatement readStatement = createAndCacheReadMetaStatement(type, keymatch);
-      ResultSet resultSet = readStatement.executeQuery();
-      if (!resultSet.next()) {
-        resultSet.close();
-        return Status.NOT_FOUND;
-      }
+      List<List<HashMap<String, ByteIterator>>> shardRows = scatterGather("READMETA",
+          new ShardTask<List<HashMap<String, ByteIterator>>>() {
+            @Override
+            public List<HashMap<String, ByteIterator>> run(int shardIndex) throws SQLException {
+              List<HashMap<String, ByteIterator>> rows = new ArrayList<HashMap<String, ByteIterator>>();
+              try (PreparedStatement readStatement = conns.get(shardIndex).prepareStatement(read);
+                   ResultSet resultSet = readStatement.executeQuery()) {
+                while (resultSet.next()) {
+                  HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+                  String value = resultSet.getString("field0");
+                  values.put("field0", new StringByteIterator(value));
+                  rows.add(values);
+                }
+              }
+              return rows;
+            }
+          });
 
-//    if (result != null && fields != null) {
-//        HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
-//        for (String field : fields) {
-//          String value = resultSet.getString(field);
-//          values.put(field, new StringByteIterator(value));
-//        }
-//        result.add(values);
-//      }
-
-      if(result != null){
-        HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
-        String value = resultSet.getString("field0");
-        values.put("field0", new StringByteIterator(value));
-        result.add(values);
+      boolean found = false;
+      for (List<HashMap<String, ByteIterator>> rows : shardRows) {
+        found |= !rows.isEmpty();
+        if (result != null) {
+          result.addAll(rows);
+        }
       }
-
-      resultSet.close();
-      return Status.OK;
+      return found ? Status.OK : Status.NOT_FOUND;
     } catch (SQLException e) {
       System.err.println("Error in processing read of table " + tableName + ": " + e);
       return Status.ERROR;
@@ -425,6 +589,7 @@ public class JdbcDBClient extends DB {
   @Override
   public Status scan(String tableName, String startKey, int recordcount, Set<String> fields,
                      Vector<HashMap<String, ByteIterator>> result) {
+    batcher.flushAll();
     try {
       StatementType type = new StatementType(StatementType.Type.SCAN, tableName, 1, "", getShardIndexByKey(startKey));
       PreparedStatement scanStatement = cachedStatements.get(type);
@@ -468,6 +633,13 @@ public class JdbcDBClient extends DB {
         updateStatement.setString(index++, value);
       }
       updateStatement.setString(index, key);
+      if (batchWrites) {
+        StatementBatcher.PendingOp op = batcher.begin(batchKind(type), "UPDATE", true);
+        updateStatement.addBatch();
+        batcher.addRow(op, updateStatement);
+        return batcher.finish(op);
+      }
+      batcher.flushAll();
       int result = updateStatement.executeUpdate();
       if (result == 1) {
         return Status.OK;
@@ -481,18 +653,25 @@ public class JdbcDBClient extends DB {
   }
 
   @Override
-  public Status updateMeta(String table, int fieldnum, String condition, 
-      String keymatch, String fieldname, String metadatavalue) {
-    try{
-      StatementType type = new StatementType(StatementType.Type.UPDATE, table,
-          1, "", getShardIndexByKey(keymatch));
-      //System.out.println(type.getFieldString());
-      PreparedStatement updateStatement = createAndCacheUpdateMetaStatement(type,keymatch);
-      //updateStatement.setString(1,keymatch);
-      int result = updateStatement.executeUpdate();
-      //System.err.println("UpdateMeta statement "+updateStatement+" Result "+result);
+  public Status updateMeta(final String table, int fieldnum, String condition,
+      final String keymatch, String fieldname, String metadatavalue) {
+    try {
+      if (batchWrites) {
+        return batchUpdateMeta(table, keymatch);
+      }
+      batcher.flushAll();
+      final String update = dbFlavor.createUpdateMetaStatement(
+          new StatementType(StatementType.Type.UPDATE, table, 1, "", -1), keymatch);
+      scatterGather("UPDATEMETA", new ShardTask<Integer>() {
+        @Override
+        public Integer run(int shardIndex) throws SQLException {
+          try (PreparedStatement updateStatement = conns.get(shardIndex).prepareStatement(update)) {
+            return updateStatement.executeUpdate();
+          }
+        }
+      });
       return Status.OK;
-    } catch(SQLException e) {
+    } catch (SQLException e) {
       System.err.println("Error in processing update to table: " + table + e);
       e.printStackTrace();
       return Status.ERROR;
@@ -518,43 +697,21 @@ public class JdbcDBClient extends DB {
       }
       // Using the batch insert API
       if (batchUpdates) {
+        // The batch is sent once it holds batchSize rows; a batch size of -1 or
+        // nonsense is treated as an infinitely large batch, flushed on cleanup.
+        StatementBatcher.PendingOp op = batcher.begin(batchKind(type), "INSERT", true);
         insertStatement.addBatch();
-        // Check for a sane batch size
-        if (batchSize > 0) {
-          // Commit the batch after it grows beyond the configured size
-          if (++numRowsInBatch % batchSize == 0) {
-            int[] results = insertStatement.executeBatch();
-            for (int r : results) {
-              // Acceptable values are 1 and SUCCESS_NO_INFO (-2) from reWriteBatchedInserts=true
-              if (r != 1 && r != -2) { 
-                return Status.ERROR;
-              }
-            }
-            // If autoCommit is off, make sure we commit the batch
-            if (!autoCommit) {
-              getShardConnectionByKey(key).commit();
-            }
-            return Status.OK;
-          } // else, the default value of -1 or a nonsense. Treat it as an infinitely large batch.
-        } // else, we let the batch accumulate
-        // Added element to the batch, potentially committing the batch too.
-        return Status.BATCHED_OK;
+        batcher.addRow(op, insertStatement);
+        return batcher.finish(op);
       } else {
         // Normal update
+        batcher.flushAll();
         int result = insertStatement.executeUpdate();
         // If we are not autoCommit, we might have to commit now
         if (!autoCommit) {
-          // Let updates be batcher locally
-          if (batchSize > 0) {
-            if (++numRowsInBatch % batchSize == 0) {
-              // Send the batch of updates
-              getShardConnectionByKey(key).commit();
-            }
-            // uhh
-            return Status.OK;
-          } else {
-            // Commit each update
-            getShardConnectionByKey(key).commit();
+          // Group the commits of batchSize inserts
+          if (batchSize <= 0 || ++numRowsInBatch % batchSize == 0) {
+            commitAllConnections();
           }
         }
         if (result == 1) {
@@ -577,6 +734,13 @@ public class JdbcDBClient extends DB {
         deleteStatement = createAndCacheDeleteStatement(type, key);
       }
       deleteStatement.setString(1, key);
+      if (batchWrites) {
+        StatementBatcher.PendingOp op = batcher.begin(batchKind(type), "DELETE", true);
+        deleteStatement.addBatch();
+        batcher.addRow(op, deleteStatement);
+        return batcher.finish(op);
+      }
+      batcher.flushAll();
       int result = deleteStatement.executeUpdate();
       //System.err.println("Delete Jdbc key "+key+ "result "+ result);
       if (result == 1) {
@@ -590,19 +754,58 @@ public class JdbcDBClient extends DB {
   }
 
   @Override
-  public Status deleteMeta(String table, int fieldnum, String condition, String keymatch) {
-    try{
-      StatementType type = new StatementType(StatementType.Type.DELETE, table, 1, "", getShardIndexByKey(keymatch));
-      PreparedStatement deleteStatement = createAndCacheDeleteMetaStatement(type, keymatch);
-      int result = deleteStatement.executeUpdate();
-      //System.err.println("DeleteMeta Jdbc key "+keymatch+ "result "+ result);
-        return Status.OK;
+  public Status deleteMeta(final String table, int fieldnum, String condition, final String keymatch) {
+    batcher.flushAll();
+    final String delete = dbFlavor.createDeleteMetaStatement(
+        new StatementType(StatementType.Type.DELETE, table, 1, "", -1), keymatch);
+    try {
+      scatterGather("DELETEMETA", new ShardTask<Integer>() {
+        @Override
+        public Integer run(int shardIndex) throws SQLException {
+          try (PreparedStatement deleteStatement = conns.get(shardIndex).prepareStatement(delete)) {
+            return deleteStatement.executeUpdate();
+          }
+        }
+      });
+      return Status.OK;
     } catch (SQLException e) {
       System.err.println("Error in processing delete to table: " + table + e);
       return Status.ERROR;
     }
   }
 
+  /**
+   * Returns the key under which operations are batched together: the
+   * statement type without its shard, so rows for different shards share
+   * one batch.
+   */
+  private static StatementType batchKind(StatementType type) {
+    return new StatementType(type.getType(), type.getTableName(), type.getNumFields(), type.getFieldString(), -1);
+  }
+
+  /**
+   * Adds a metadata update to the batch of every shard. The statement text
+   * differs per call, so it is built once and added to a plain statement of
+   * each shard.
+   */
+  private Status batchUpdateMeta(String table, String keymatch) throws SQLException {
+    if (metaBatchStatements == null) {
+      metaBatchStatements = new Statement[conns.size()];
+      for (int i = 0; i < conns.size(); i++) {
+        metaBatchStatements[i] = conns.get(i).createStatement();
+      }
+    }
+    StatementBatcher.PendingOp op = batcher.begin(
+        new StatementType(StatementType.Type.UPDATE, table, 0, "", -1), "UPDATEMETA", false);
+    String update = dbFlavor.createUpdateMetaStatement(
+        new StatementType(StatementType.Type.UPDATE, table, 1, "", -1), keymatch);
+    for (int i = 0; i < conns.size(); i++) {
+      metaBatchStatements[i].addBatch(update);
+      batcher.addRow(op, metaBatchStatements[i]);
+    }
+    return batcher.finish(op);
+  }
+
   private OrderedFieldInfo getFieldInfo(Map<String, ByteIterator> values) {
     String fieldKeys = "";
     List<String> fieldValues = new ArrayList<>();
@@ -627,6 +830,6 @@ public class JdbcDBClient extends DB {
   @Override
   public Status insertTTL(String table, String key,
                          Map<String, ByteIterator> values, int ttl) {
-   return Status.OK;
+    return Status.OK;
   }
 }
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A consistent-hash ring that maps record keys onto shard indexes.
+ *
+ * <br>
+ * Every shard is placed on the ring at a number of virtual node positions
+ * derived from its connection URL, so keys spread evenly over the shards and
+ * the key to shard mapping does not depend on the order the URLs are listed
+ * in. Adding or removing a shard only moves the keys adjacent to its points.
+ */
+final class ShardRing {
+  private static final long FNV_OFFSET_BASIS_64 = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME_64 = 1099511628211L;
+
+  /** Sorted positions of all virtual nodes on the ring. */
+  private final long[] points;
+
+  /** Shard index owning the virtual node at the same position in points. */
+  private final int[] owners;
+
+  /**
+   * @param shardUrls The connection URL of each shard, in shard index order.
+   * @param virtualNodes The number of ring positions per shard.
+   */
+  ShardRing(List<String> shardUrls, int virtualNodes) {
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+    }
+    int total = shardUrls.size() * virtualNodes;
+    long[] keyed = new long[total];
+    int[] shardOf = new int[total];
+    int n = 0;
+    for (int shard = 0; shard < shardUrls.size(); shard++) {
+      for (int v = 0; v < virtualNodes; v++) {
+        keyed[n] = hash(shardUrls.get(shard) + "#" + v);
+        shardOf[n] = shard;
+        n++;
+      }
+    }
+
+    // Sort the positions and carry the owners along with them.
+    Integer[] order = new Integer[total];
+    for (int i = 0; i < total; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(keyed[a], keyed[b]));
+    points = new long[total];
+    owners = new int[total];
+    for (int i = 0; i < total; i++) {
+      points[i] = keyed[order[i]];
+      owners[i] = shardOf[order[i]];
+    }
+  }
+
+  /**
+   * Returns the shard owning the given key, i.e. the owner of the first
+   * virtual node at or after the key's position, wrapping around the ring.
+   */
+  int shardFor(String key) {
+    if (owners.length == 0) {
+      return 0;
+    }
+    int idx = Arrays.binarySearch(points, hash(key));
+    if (idx < 0) {
+      idx = -idx - 1;
+    }
+    if (idx == points.length) {
+      idx = 0;
+    }
+    return owners[idx];
+  }
+
+  /**
+   * 64 bit FNV-1a hash over the characters of a string, followed by the
+   * MurmurHash3 finalizer. FNV alone leaves the high bits nearly unchanged
+   * for keys that only differ in their last digits, which would cluster
+   * them on the ring.
+   */
+  static long hash(String s) {
+    long hashval = FNV_OFFSET_BASIS_64;
+    for (int i = 0; i < s.length(); i++) {
+      hashval ^= s.charAt(i);
+      hashval *= FNV_PRIME_64;
+    }
+    hashval ^= hashval >>> 33;
+    hashval *= 0xFF51AFD7ED558CCDL;
+    hashval ^= hashval >>> 33;
+    hashval *= 0xC4CEB9FE1A85EC53L;
+    hashval ^= hashval >>> 33;
+    return hashval;
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.Measurements;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates write statements of one kind with addBatch() and sends them to
+ * the database with executeBatch().
+ *
+ * <br>
+ * A batch is flushed when it holds batchSize operations, when its oldest
+ * operation has waited longer than the flush interval, or when an operation
+ * of a different kind is added. One operation may add a row to several
+ * statements, e.g. a metadata update sent to every shard.
+ *
+ * <br>
+ * The operation that triggers a flush gets the status of its own rows. All
+ * other operations of the batch have already returned BATCHED_OK, so their
+ * final status is reported as &lt;OP&gt;-BATCHED.
+ *
+ * <br>
+ * Like the client owning it, this class is not thread safe.
+ */
+final class StatementBatcher {
+  /** Suffix of the measurement that collects the status of deferred operations. */
+  static final String DEFERRED_SUFFIX = "-BATCHED";
+
+  /** The outcome of one operation in the batch. */
+  static final class PendingOp {
+    private final String op;
+    private final boolean singleRow;
+    private Status status = Status.OK;
+
+    PendingOp(String op, boolean singleRow) {
+      this.op = op;
+      this.singleRow = singleRow;
+    }
+
+    void rowResult(int count) {
+      Status rowStatus;
+      if (count == Statement.EXECUTE_FAILED) {
+        rowStatus = Status.ERROR;
+      } else if (count == Statement.SUCCESS_NO_INFO || !singleRow || count == 1) {
+        rowStatus = Status.OK;
+      } else {
+        rowStatus = Status.UNEXPECTED_STATE;
+      }
+      // Keep the first failure of an operation spanning several statements.
+      if (status.isOk()) {
+        status = rowStatus;
+      }
+    }
+  }
+
+  private final int batchSize;
+  private final long flushIntervalNanos;
+  private final boolean autoCommit;
+
+  /** Operations of every statement in the batch, in the order they were added. */
+  private final Map<Statement, List<PendingOp>> pending = new LinkedHashMap<Statement, List<PendingOp>>();
+  private final List<PendingOp> ops = new ArrayList<PendingOp>();
+  private Object pendingKind;
+  private long firstOpNanos;
+
+  /**
+   * @param batchSize Operations per batch; values &lt;= 0 never flush on size.
+   * @param flushIntervalMs Longest time an operation may wait in the batch; 0 disables it.
+   * @param autoCommit Whether the connections auto commit; if not, they are committed on flush.
+   */
+  StatementBatcher(int batchSize, long flushIntervalMs, boolean autoCommit) {
+    this.batchSize = batchSize;
+    this.flushIntervalNanos = flushIntervalMs * 1000000L;
+    this.autoCommit = autoCommit;
+  }
+
+  /**
+   * Starts a new operation. Flushes the current batch first if it holds
+   * operations of another kind.
+   *
+   * @param kind Identifies the statement shape; operations are only batched with equal kinds.
+   * @param op Operation name used to report the deferred status.
+   * @param singleRow Whether each row must affect exactly one database row.
+   * @return The operation, to pass to {@link #addRow} and {@link #finish}.
+   */
+  PendingOp begin(Object kind, String op, boolean singleRow) {
+    if (pendingKind != null && !pendingKind.equals(kind)) {
+      flush(null);
+    }
+    if (ops.isEmpty()) {
+      firstOpNanos = System.nanoTime();
+    }
+    pendingKind = kind;
+    PendingOp pendingOp = new PendingOp(op, singleRow);
+    ops.add(pendingOp);
+    return pendingOp;
+  }
+
+  /**
+   * Records that the operation added a row to the statement; the caller has
+   * already called addBatch() on it.
+   */
+  void addRow(PendingOp op, Statement statement) {
+    List<PendingOp> rows = pending.get(statement);
+    if (rows == null) {
+      rows = new ArrayList<PendingOp>();
+      pending.put(statement, rows);
+    }
+    rows.add(op);
+  }
+
+  /**
+   * Completes the operation, flushing the batch if it is full or too old.
+   *
+   * @return BATCHED_OK if the operation is still pending, otherwise its own status.
+   */
+  Status finish(PendingOp op) {
+    if ((batchSize > 0 && ops.size() >= batchSize) || isDue()) {
+      return flush(op);
+    }
+    return Status.BATCHED_OK;
+  }
+
+  /**
+   * Flushes any pending operations, e.g. before a read or a write that does
+   * not go through the batcher, and on cleanup.
+   */
+  void flushAll() {
+    if (!ops.isEmpty()) {
+      flush(null);
+    }
+  }
+
+  private boolean isDue() {
+    return flushIntervalNanos > 0 && !ops.isEmpty() && System.nanoTime() - firstOpNanos >= flushIntervalNanos;
+  }
+
+  /**
+   * Executes every pending statement and maps the per-row update counts back
+   * to the operations that added them.
+   */
+  private Status flush(PendingOp caller) {
+    for (Map.Entry<Statement, List<PendingOp>> entry : pending.entrySet()) {
+      Statement statement = entry.getKey();
+      List<PendingOp> rows = entry.getValue();
+      int[] counts;
+      try {
+        counts = statement.executeBatch();
+        if (!autoCommit) {
+          statement.getConnection().commit();
+        }
+      } catch (BatchUpdateException e) {
+        System.err.println("Error in executing batch: " + e);
+        counts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+      } catch (SQLException e) {
+        System.err.println("Error in executing batch: " + e);
+        counts = new int[0];
+      }
+      for (int i = 0; i < rows.size(); i++) {
+        rows.get(i).rowResult(i < counts.length ? counts[i] : Statement.EXECUTE_FAILED);
+      }
+    }
+
+    for (PendingOp op : ops) {
+      if (op != caller) {
+        Measurements.getMeasurements().reportStatus(op.op + DEFERRED_SUFFIX, op.status);
+      }
+    }
+    pending.clear();
+    ops.clear();
+    pendingKind = null;
+    return caller == null ? Status.OK : caller.status;
+  }
+}
@@ -52,6 +52,10 @@ public class StatementType {
     this.shardIndex = shardIndex;
   }
 
+  Type getType() {
+    return type;
+  }
+
   public String getTableName() {
     return tableName;
   }
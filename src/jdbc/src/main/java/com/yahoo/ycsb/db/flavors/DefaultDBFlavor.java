@@ -30,14 +30,14 @@ public class DefaultDBFlavor extends DBFlavor {
   public DefaultDBFlavor() {
     super(DBName.DEFAULT);
   }
-  Random rand = new Random();
+  private final Random rand = new Random();
   public DefaultDBFlavor(DBName dbName) {
     super(dbName);
   }
 
-  ArrayList<String> purpose = new ArrayList<String>(
-      Arrays.asList("ads", "2fa", "msg", "backup","random1", "random2", "random3", "random4", "random5", "random6"));
-  ArrayList<String> Dec = new ArrayList<>(
+  private final ArrayList<String> purpose = new ArrayList<String>(
+      Arrays.asList("ads", "2fa", "msg", "backup", "random1", "random2", "random3", "random4", "random5", "random6"));
+  private final ArrayList<String> decisions = new ArrayList<>(
       Arrays.asList("allow", "disallow", "inform"));
 
   @Override
@@ -133,7 +133,7 @@ public class DefaultDBFlavor extends DBFlavor {
     update.append("field4");
     update.append(" = ");
     update.append("'");
-    update.append(Dec.get(rand.nextInt(Dec.size())));
+    update.append(decisions.get(rand.nextInt(decisions.size())));
     update.append("'");
     update.append(" WHERE ");
     update.append("field0");
@@ -21,10 +21,13 @@ import static org.junit.Assert.*;
 
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.measurements.Measurements;
 import org.junit.*;
 
 import java.sql.*;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.HashSet;
@@ -52,6 +55,10 @@ public class JdbcDBClientTest {
     }
 
     public static void setupWithBatch(int batchSize, boolean autoCommit) {
+      setupWithBatch(batchSize, autoCommit, false);
+    }
+
+    public static void setupWithBatch(int batchSize, boolean autoCommit, boolean batchWrites) {
       try {
         jdbcConnection = DriverManager.getConnection(TEST_DB_URL);
         jdbcDBClient = new JdbcDBClient();
@@ -63,7 +70,9 @@ public class JdbcDBClientTest {
         p.setProperty(JdbcDBClient.DB_BATCH_SIZE, Integer.toString(batchSize));
         p.setProperty(JdbcDBClient.JDBC_BATCH_UPDATES, "true");
         p.setProperty(JdbcDBClient.JDBC_AUTO_COMMIT, Boolean.toString(autoCommit));
+        p.setProperty(JdbcDBClient.JDBC_BATCH_WRITES, Boolean.toString(batchWrites));
 
+        Measurements.setProperties(p);
         jdbcDBClient.setProperties(p);
         jdbcDBClient.init();
       } catch (SQLException e) {
@@ -378,6 +387,243 @@ public class JdbcDBClientTest {
       }
     }
 
+    @Test
+    public void unbatchedInsertsCommitInGroups() throws DBException {
+      teardown();
+      JdbcDBClient client = null;
+      try {
+        jdbcConnection = DriverManager.getConnection(TEST_DB_URL);
+        // Lets this connection read while the client's transaction is open.
+        jdbcConnection.prepareStatement("SET DATABASE TRANSACTION CONTROL MVCC").execute();
+        Properties p = new Properties();
+        p.setProperty(JdbcDBClient.CONNECTION_URL, TEST_DB_URL);
+        p.setProperty(JdbcDBClient.DRIVER_CLASS, TEST_DB_DRIVER);
+        p.setProperty(JdbcDBClient.CONNECTION_USER, TEST_DB_USER);
+        p.setProperty(JdbcDBClient.DB_BATCH_SIZE, "3");
+        p.setProperty(JdbcDBClient.JDBC_AUTO_COMMIT, "false");
+        client = new JdbcDBClient();
+        client.setProperties(p);
+        client.init();
+        jdbcDBClient = client;
+
+        for (int i = 0; i < 5; i++) {
+          assertEquals(Status.OK, client.insert(TABLE_NAME, "user" + i, new HashMap<String, ByteIterator>(
+              Collections.singletonMap(FIELD_PREFIX + 0, new StringByteIterator("value")))));
+          // The rows are committed three at a time.
+          assertNumRows(3 * ((i + 1) / 3));
+        }
+        client.cleanup();
+        jdbcDBClient = null;
+        assertNumRows(5);
+      } catch (SQLException e) {
+        e.printStackTrace();
+        fail("Failed unbatchedInsertsCommitInGroups");
+      } finally {
+        try {
+          jdbcConnection.prepareStatement("SET DATABASE TRANSACTION CONTROL LOCKS").execute();
+        } catch (SQLException e) {
+          e.printStackTrace();
+        }
+        teardown(); // for next tests
+        setup();
+      }
+    }
+
+    @Test
+    public void batchedWritesTest() throws DBException {
+      teardown();
+      setupWithBatch(4, false, true);
+      try {
+        for (int i = 0; i < 6; i++) {
+          insertRow("user" + i);
+        }
+
+        HashMap<String, ByteIterator> updateMap = new HashMap<String, ByteIterator>();
+        updateMap.put(FIELD_PREFIX + 0, new StringByteIterator("updated"));
+        // The update flushes the two pending inserts as the statement type changes.
+        assertEquals(Status.BATCHED_OK, jdbcDBClient.update(TABLE_NAME, "user0", updateMap));
+        assertNumRows(6);
+        assertEquals(Status.BATCHED_OK, jdbcDBClient.update(TABLE_NAME, "user1", updateMap));
+        assertEquals(Status.BATCHED_OK, jdbcDBClient.update(TABLE_NAME, "user2", updateMap));
+        assertNumUpdated(0);
+
+        // The fourth update fills the batch and gets the status of its own row.
+        assertEquals(Status.UNEXPECTED_STATE, jdbcDBClient.update(TABLE_NAME, "missing", updateMap));
+        assertNumUpdated(3);
+
+        assertEquals(Status.BATCHED_OK, jdbcDBClient.delete(TABLE_NAME, "user5"));
+        assertNumRows(6);
+
+        // call cleanup, which should execute the pending delete
+        jdbcDBClient.cleanup();
+        // Prevent a teardown() from printing an error
+        jdbcDBClient = null;
+        assertNumRows(5);
+      } catch (SQLException e) {
+        e.printStackTrace();
+        fail("Failed batchedWritesTest");
+      } finally {
+        teardown(); // for next tests
+        setup();
+      }
+    }
+
+    @Test
+    public void batchedWritesAreReadBack() throws DBException {
+      teardown();
+      setupWithBatch(4, false, true);
+      try {
+        insertRow("user0");
+        HashMap<String, ByteIterator> updateMap = new HashMap<String, ByteIterator>();
+        updateMap.put(FIELD_PREFIX + 0, new StringByteIterator("updated"));
+        assertEquals(Status.BATCHED_OK, jdbcDBClient.update(TABLE_NAME, "user0", updateMap));
+
+        // The read flushes the pending insert and update before it runs.
+        HashMap<String, ByteIterator> readResultMap = new HashMap<String, ByteIterator>();
+        assertEquals(Status.OK, jdbcDBClient.read(TABLE_NAME, "user0",
+            Collections.singleton(FIELD_PREFIX + 0), readResultMap));
+        assertEquals("updated", readResultMap.get(FIELD_PREFIX + 0).toString());
+      } finally {
+        teardown(); // for next tests
+        setup();
+      }
+    }
+
+    @Test
+    public void clientsShareOneScatterPool() throws Exception {
+      String secondUrl = "jdbc:hsqldb:mem:ycsbshard1";
+      Connection second = DriverManager.getConnection(secondUrl);
+      JdbcDBClient[] clients = new JdbcDBClient[2];
+      try {
+        second.prepareStatement(String.format("CREATE TABLE %s (%s VARCHAR(100) PRIMARY KEY, %s0 VARCHAR(100))",
+            TABLE_NAME, KEY_FIELD, FIELD_PREFIX)).execute();
+        Properties p = new Properties();
+        p.setProperty(JdbcDBClient.CONNECTION_URL, TEST_DB_URL + "," + secondUrl);
+        p.setProperty(JdbcDBClient.DRIVER_CLASS, TEST_DB_DRIVER);
+        p.setProperty(JdbcDBClient.CONNECTION_USER, TEST_DB_USER);
+        for (int i = 0; i < clients.length; i++) {
+          clients[i] = new JdbcDBClient();
+          clients[i].setProperties(p);
+          clients[i].init();
+        }
+
+        Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+        assertEquals(Status.NOT_FOUND, clients[0].readMeta(TABLE_NAME, 0, "", "*", result));
+        // The first client to leave must not shut the pool down under the other.
+        clients[0].cleanup();
+        clients[0] = null;
+        assertEquals(Status.NOT_FOUND, clients[1].readMeta(TABLE_NAME, 0, "", "*", result));
+      } finally {
+        for (JdbcDBClient client : clients) {
+          if (client != null) {
+            client.cleanup();
+          }
+        }
+        second.close();
+      }
+    }
+
+    @Test
+    public void shardsRunTheSameMetaQuery() throws Exception {
+      String secondUrl = "jdbc:hsqldb:mem:ycsbshard2";
+      Connection second = DriverManager.getConnection(secondUrl);
+      JdbcDBClient client = null;
+      try {
+        second.prepareStatement(String.format("CREATE TABLE %s (%s VARCHAR(100) PRIMARY KEY, %s0 VARCHAR(100))",
+            TABLE_NAME, KEY_FIELD, FIELD_PREFIX)).execute();
+        // Every purpose the default flavor may query for is present on both shards.
+        String[] purposes = {"ads", "2fa", "msg", "backup", "random1", "random2", "random3", "random4", "random5",
+            "random6"};
+        for (Connection shard : new Connection[] {jdbcConnection, second}) {
+          for (String purpose : purposes) {
+            shard.prepareStatement(String.format("INSERT INTO %s (%s, %s0) VALUES ('%s', '%s')",
+                TABLE_NAME, KEY_FIELD, FIELD_PREFIX, KEY_PREFIX + purpose, purpose)).execute();
+          }
+        }
+        Properties p = new Properties();
+        p.setProperty(JdbcDBClient.CONNECTION_URL, TEST_DB_URL + "," + secondUrl);
+        p.setProperty(JdbcDBClient.DRIVER_CLASS, TEST_DB_DRIVER);
+        p.setProperty(JdbcDBClient.CONNECTION_USER, TEST_DB_USER);
+        client = new JdbcDBClient();
+        client.setProperties(p);
+        client.init();
+
+        for (int i = 0; i < 20; i++) {
+          Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+          assertEquals(Status.OK, client.readMeta(TABLE_NAME, 0, "", "*", result));
+          assertEquals(2, result.size());
+          assertEquals(result.get(0).get("field0").toString(), result.get(1).get("field0").toString());
+        }
+      } finally {
+        if (client != null) {
+          client.cleanup();
+        }
+        second.close();
+      }
+    }
+
+    @Test
+    public void batchedMetaUpdateIsTheSameOnEveryShard() throws Exception {
+      String metaTable = "METATABLE";
+      String secondUrl = "jdbc:hsqldb:mem:ycsbshard3";
+      Connection second = DriverManager.getConnection(secondUrl);
+      Connection[] shards = {jdbcConnection, second};
+      JdbcDBClient client = null;
+      try {
+        String[] purposes = {"ads", "2fa", "msg", "backup", "random1", "random2", "random3", "random4", "random5",
+            "random6"};
+        for (Connection shard : shards) {
+          shard.prepareStatement(String.format("CREATE TABLE %s (%s VARCHAR(100) PRIMARY KEY, %s0 VARCHAR(100), "
+              + "%s4 VARCHAR(100))", metaTable, KEY_FIELD, FIELD_PREFIX, FIELD_PREFIX)).execute();
+          for (String purpose : purposes) {
+            shard.prepareStatement(String.format("INSERT INTO %s (%s, %s0) VALUES ('%s', '%s')",
+                metaTable, KEY_FIELD, FIELD_PREFIX, KEY_PREFIX + purpose, purpose)).execute();
+          }
+        }
+        Properties p = new Properties();
+        p.setProperty(JdbcDBClient.CONNECTION_URL, TEST_DB_URL + "," + secondUrl);
+        p.setProperty(JdbcDBClient.DRIVER_CLASS, TEST_DB_DRIVER);
+        p.setProperty(JdbcDBClient.CONNECTION_USER, TEST_DB_USER);
+        p.setProperty(JdbcDBClient.DB_BATCH_SIZE, "100");
+        p.setProperty(JdbcDBClient.JDBC_BATCH_WRITES, "true");
+        client = new JdbcDBClient();
+        client.setProperties(p);
+        client.init();
+
+        for (int i = 0; i < 10; i++) {
+          assertEquals(Status.BATCHED_OK, client.updateMeta(metaTable, 0, "", "*", "", ""));
+          // The read flushes the pending update to both shards.
+          client.readMeta(metaTable, 0, "", "*", null);
+          String[] updated = new String[shards.length];
+          for (int s = 0; s < shards.length; s++) {
+            ResultSet resultSet = shards[s].prepareStatement(String.format("SELECT %s, %s4 FROM %s WHERE %s4 IS NOT NULL",
+                KEY_FIELD, FIELD_PREFIX, metaTable, FIELD_PREFIX)).executeQuery();
+            assertTrue(resultSet.next());
+            updated[s] = resultSet.getString(1) + "=" + resultSet.getString(2);
+            assertFalse(resultSet.next());
+            resultSet.close();
+            shards[s].prepareStatement(String.format("UPDATE %s SET %s4 = NULL", metaTable, FIELD_PREFIX)).execute();
+          }
+          assertEquals(updated[0], updated[1]);
+        }
+      } finally {
+        if (client != null) {
+          client.cleanup();
+        }
+        jdbcConnection.prepareStatement("DROP TABLE " + metaTable).execute();
+        second.close();
+      }
+    }
+
+    private void assertNumUpdated(long numRows) throws SQLException {
+      ResultSet resultSet = jdbcConnection.prepareStatement(
+        String.format("SELECT COUNT(*) FROM %s WHERE %s0 = 'updated'", TABLE_NAME, FIELD_PREFIX)
+          ).executeQuery();
+      assertTrue(resultSet.next());
+      assertEquals(numRows, resultSet.getLong(1));
+      resultSet.close();
+    }
+
     private void assertNumRows(long numRows) throws SQLException {
       ResultSet resultSet = jdbcConnection.prepareStatement(
         String.format("SELECT * FROM %s", TABLE_NAME)
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.jmh;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.workloads.GDPRWorkload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds keys and records the way {@link GDPRWorkload} does for every
+ * insert and update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GDPRWorkloadBenchmark {
+
+  /** Exposes the protected key and value builders. */
+  static final class Workload extends GDPRWorkload {
+    String keyName(long keynum) {
+      return buildKeyName(keynum);
+    }
+
+    Map<String, ByteIterator> values(long keynum, String key) {
+      return buildValues(keynum, key);
+    }
+
+    String deterministicValue(long keynum, int fieldnum, String fieldkey) {
+      return buildDeterministicValue(keynum, fieldnum, fieldkey);
+    }
+  }
+
+  @Param({"false", "true"})
+  private boolean dataintegrity;
+
+  @Param({"false", "true"})
+  private boolean keytable;
+
+  private Workload workload;
+  private long keynum;
+
+  @Setup
+  public void setup() throws WorkloadException {
+    Properties props = new Properties();
+    props.setProperty("recordcount", "1000000");
+    props.setProperty("dataintegrity", String.valueOf(dataintegrity));
+    props.setProperty(GDPRWorkload.KEY_TABLE_PROPERTY, String.valueOf(keytable));
+    Measurements.setProperties(props);
+    workload = new Workload();
+    workload.init(props);
+  }
+
+  @Benchmark
+  public String buildKeyName() {
+    return workload.keyName(keynum++ % 1000000);
+  }
+
+  @Benchmark
+  public Map<String, ByteIterator> buildValues() {
+    long k = keynum++;
+    return workload.values(k, "key" + k);
+  }
+
+  @Benchmark
+  public String buildDeterministicValue() {
+    long k = keynum++;
+    return workload.deterministicValue(k, (int) (k % 10), "PUR");
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.jmh;
+
+import com.yahoo.ycsb.generator.AcknowledgedCounterGenerator;
+import com.yahoo.ycsb.generator.AliasGenerator;
+import com.yahoo.ycsb.generator.DiscreteGenerator;
+import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The generators every client thread draws from for each operation: the
+ * operation chooser, the key chooser and the insert key sequence, shared
+ * by all threads as in the client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class GeneratorBenchmark {
+
+  private DiscreteGenerator operationChooser;
+  private AliasGenerator<String> aliasChooser;
+  private ScrambledZipfianGenerator keyChooser;
+  private AcknowledgedCounterGenerator insertKeys;
+
+  @Setup
+  public void setup() {
+    // The mix of workload a.
+    operationChooser = new DiscreteGenerator();
+    operationChooser.addValue(0.5, "READ");
+    operationChooser.addValue(0.5, "UPDATE");
+    Map<String, Double> weights = new LinkedHashMap<>();
+    weights.put("READ", 0.5);
+    weights.put("UPDATE", 0.5);
+    aliasChooser = new AliasGenerator<>(weights);
+    keyChooser = new ScrambledZipfianGenerator(1000000);
+    insertKeys = new AcknowledgedCounterGenerator(0);
+  }
+
+  @Benchmark
+  public String discreteNextValue() {
+    return operationChooser.nextValue();
+  }
+
+  @Benchmark
+  public String aliasNextValue() {
+    return aliasChooser.nextValue();
+  }
+
+  @Benchmark
+  public Long scrambledZipfianNextValue() {
+    return keyChooser.nextValue();
+  }
+
+  /**
+   * One thread only: on a busy machine a preempted thread would fall more
+   * than the window of pending keys behind the others, failing the insert.
+   */
+  @Benchmark
+  @Threads(1)
+  public void acknowledgedCounterAcknowledge() {
+    insertKeys.acknowledge(insertKeys.nextValue());
+  }
+}
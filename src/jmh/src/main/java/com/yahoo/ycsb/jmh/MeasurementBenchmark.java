@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+package com.yahoo.ycsb.jmh;
+
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.Measurements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What DBWrapper records after every operation, with all threads measuring
+ * the same operation, for each measurement type.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MeasurementBenchmark {
+
+  @Param({"histogram", "hdrhistogram", "shardedhdrhistogram", "hdrhistogram+histogram", "hdrhistogram+raw",
+      "timeseries", "raw"})
+  private String measurementtype;
+
+  private Measurements measurements;
+
+  /** A new instance per iteration, so the raw measurements do not grow without bound. */
+  @Setup(Level.Iteration)
+  public void setup() {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, measurementtype);
+    measurements = new Measurements(props);
+  }
+
+  @Benchmark
+  public void measure() {
+    int latency = ThreadLocalRandom.current().nextInt(10000);
+    measurements.measure("READ", latency);
+    measurements.reportStatus("READ", Status.OK);
+  }
+}
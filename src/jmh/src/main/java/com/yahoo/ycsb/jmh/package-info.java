@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+
+/**
+ * JMH microbenchmarks of the client side hot paths of YCSB: key and value
+ * generation, the generators choosing operations and keys, and the
+ * measurements. Run them with {@link com.yahoo.ycsb.jmh.BenchmarkMain}.
+ */
+package com.yahoo.ycsb.jmh;
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.memstore;
+
+import com.yahoo.ycsb.AuditQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size, append-only audit log. Writers claim a sequence number and
+ * store their entry in the slot it maps to, overwriting the oldest entry once
+ * the ring is full; no locks are taken.
+ */
+final class AuditRing {
+
+  /** One audited access. */
+  static final class Entry {
+    private final long timestamp;
+    private final String op;
+    private final String table;
+    private final String subject;
+
+    Entry(long timestamp, String op, String table, String subject) {
+      this.timestamp = timestamp;
+      this.op = op;
+      this.table = table;
+      this.subject = subject;
+    }
+
+    String getOp() {
+      return op;
+    }
+
+    String getSubject() {
+      return subject;
+    }
+
+    @Override
+    public String toString() {
+      return timestamp + " " + op + " " + table + " " + subject;
+    }
+  }
+
+  private final AtomicReferenceArray<Entry> ring;
+  private final int mask;
+  private final AtomicLong next = new AtomicLong();
+
+  /**
+   * @param capacity The number of entries kept, rounded up to a power of two.
+   */
+  AuditRing(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 1) - 1) << 1;
+    if (size <= 0) {
+      size = 1;
+    }
+    ring = new AtomicReferenceArray<Entry>(size);
+    mask = size - 1;
+  }
+
+  void append(String op, String table, String subject) {
+    long seq = next.getAndIncrement();
+    ring.set((int) (seq & mask), new Entry(System.currentTimeMillis(), op, table, subject));
+  }
+
+  /**
+   * Returns up to count of the most recent entries, oldest first. Entries
+   * overwritten by concurrent writers while reading may be skipped.
+   */
+  List<Entry> tail(int count) {
+    long end = next.get();
+    long start = Math.max(0, end - Math.min(count, ring.length()));
+    List<Entry> entries = new ArrayList<Entry>((int) (end - start));
+    for (long seq = start; seq < end; seq++) {
+      Entry e = ring.get((int) (seq & mask));
+      if (e != null) {
+        entries.add(e);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Counts the entries of a table among up to count of the most recent ones
+   * that a query selects, without copying them.
+   */
+  long count(String table, AuditQuery query, int count) {
+    long end = next.get();
+    long start = Math.max(0, end - Math.min(count, ring.length()));
+    long matched = 0;
+    for (long seq = start; seq < end; seq++) {
+      Entry e = ring.get((int) (seq & mask));
+      if (e != null && e.table.equals(table) && query.matches(e.timestamp, e.op, e.subject)) {
+        matched++;
+      }
+    }
+    return matched;
+  }
+
+  /** The number of entries appended since the ring was created. */
+  long appended() {
+    return next.get();
+  }
+}
@@ -0,0 +1,453 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.memstore;
+
+import com.yahoo.ycsb.KeyMatcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * The shared state behind all {@link MemStoreClient} instances of a JVM.
+ *
+ * <br>
+ * Records are immutable snapshots kept in a concurrent map; writers build a
+ * new record and swap it in while holding the lock stripe of the key, which
+ * also keeps the secondary indexes in step with the record. Readers never
+ * lock: they take the current snapshot and, for index lookups, re-check that
+ * it still matches.
+ */
+final class MemStore implements TtlWheel.Expirer {
+
+  /** An immutable record. */
+  static final class Record {
+    private final Map<String, byte[]> fields;
+    /** Expiry time in milliseconds since the epoch, 0 if the record does not expire. */
+    private final long expireAt;
+
+    Record(Map<String, byte[]> fields, long expireAt) {
+      this.fields = fields;
+      this.expireAt = expireAt;
+    }
+
+    Map<String, byte[]> getFields() {
+      return fields;
+    }
+
+    long getExpireAt() {
+      return expireAt;
+    }
+
+    boolean isExpired(long now) {
+      return expireAt != 0 && expireAt <= now;
+    }
+
+    String stringValue(String field) {
+      byte[] value = fields.get(field);
+      return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** A table: its records, the key order for scans and the metadata indexes. */
+  private static final class Table {
+    private final ConcurrentHashMap<String, Record> records = new ConcurrentHashMap<String, Record>();
+    private final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<String>();
+    /** Indexed field name to field value to the keys holding that value. */
+    private final Map<String, ConcurrentHashMap<String, Set<String>>> indexes =
+        new HashMap<String, ConcurrentHashMap<String, Set<String>>>();
+
+    Table(Collection<String> indexedFields) {
+      for (String field : indexedFields) {
+        indexes.put(field, new ConcurrentHashMap<String, Set<String>>());
+      }
+    }
+  }
+
+
+  private static final int SNAPSHOT_MAGIC = 0x59435342;
+
+  private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<String, Table>();
+  private final Set<String> indexedFields;
+  private final Object[] stripes;
+  private final int stripeMask;
+  private final AuditRing audit;
+  private final TtlWheel wheel;
+
+  /**
+   * @param indexedFields Fields with a secondary index.
+   * @param lockStripes Number of lock stripes, rounded up to a power of two.
+   * @param audit The audit log, or null to not audit.
+   * @param ttlTickMs Tick of the TTL wheel, or 0 to not expire records.
+   * @param ttlSlots Number of slots of the TTL wheel.
+   */
+  MemStore(Collection<String> indexedFields, int lockStripes, AuditRing audit, long ttlTickMs, int ttlSlots) {
+    this.indexedFields = new HashSet<String>(indexedFields);
+    int size = Integer.highestOneBit(Math.max(lockStripes, 2) - 1) << 1;
+    this.stripes = new Object[size];
+    for (int i = 0; i < size; i++) {
+      stripes[i] = new Object();
+    }
+    this.stripeMask = size - 1;
+    this.audit = audit;
+    this.wheel = ttlTickMs > 0 ? new TtlWheel(ttlTickMs, ttlSlots, this) : null;
+  }
+
+  void start() {
+    if (wheel != null) {
+      wheel.start();
+    }
+  }
+
+  void stop() {
+    if (wheel != null) {
+      wheel.stop();
+    }
+  }
+
+  /** See {@link TtlWheel#getLagMs()}; 0 if records do not expire. */
+  long getTtlLagMs() {
+    return wheel == null ? 0 : wheel.getLagMs();
+  }
+
+  AuditRing getAudit() {
+    return audit;
+  }
+
+  void audit(String op, String table, String subject) {
+    if (audit != null) {
+      audit.append(op, table, subject);
+    }
+  }
+
+  private Table table(String name) {
+    Table t = tables.get(name);
+    if (t == null) {
+      Table created = new Table(indexedFields);
+      t = tables.putIfAbsent(name, created);
+      if (t == null) {
+        t = created;
+      }
+    }
+    return t;
+  }
+
+  private Object lockFor(String key) {
+    int h = key.hashCode();
+    return stripes[(h ^ (h >>> 16)) & stripeMask];
+  }
+
+  /** Returns the record if it exists and has not expired, otherwise null. */
+  Record get(String table, String key) {
+    Record r = table(table).records.get(key);
+    if (r == null || r.isExpired(System.currentTimeMillis())) {
+      return null;
+    }
+    return r;
+  }
+
+  /** Inserts or replaces a record. */
+  void put(String table, String key, Map<String, byte[]> fields, long expireAt) {
+    Table t = table(table);
+    Record r = new Record(fields, expireAt);
+    synchronized (lockFor(key)) {
+      Record old = t.records.put(key, r);
+      if (old == null) {
+        t.keys.add(key);
+      }
+      reindex(t, key, old, r);
+    }
+    if (expireAt != 0 && wheel != null) {
+      wheel.schedule(table, key, expireAt);
+    }
+  }
+
+  /**
+   * Merges the given fields into a live record.
+   *
+   * @return false if there is no such record.
+   */
+  boolean update(String table, String key, Map<String, byte[]> fields) {
+    Table t = table(table);
+    synchronized (lockFor(key)) {
+      Record old = t.records.get(key);
+      if (old == null || old.isExpired(System.currentTimeMillis())) {
+        return false;
+      }
+      replace(t, key, old, fields);
+      return true;
+    }
+  }
+
+  /**
+   * Removes a live record.
+   *
+   * @return false if there is no such record.
+   */
+  boolean delete(String table, String key) {
+    Table t = table(table);
+    synchronized (lockFor(key)) {
+      Record old = t.records.get(key);
+      if (old == null || old.isExpired(System.currentTimeMillis())) {
+        return false;
+      }
+      remove(t, key, old);
+      return true;
+    }
+  }
+
+  @Override
+  public void expire(String table, String key, long expireAt) {
+    Table t = table(table);
+    synchronized (lockFor(key)) {
+      Record old = t.records.get(key);
+      // The record may have been replaced since it was scheduled.
+      if (old == null || old.getExpireAt() != expireAt) {
+        return;
+      }
+      remove(t, key, old);
+    }
+    audit("EXPIRE", table, key);
+  }
+
+  /** Expires every record that is due now, without waiting for the wheel thread. */
+  void expireDue() {
+    if (wheel != null) {
+      wheel.advance(System.currentTimeMillis());
+    }
+  }
+
+  /** Returns up to count live records with keys at or after startKey, in key order. */
+  List<Record> scan(String table, String startKey, int count) {
+    Table t = table(table);
+    long now = System.currentTimeMillis();
+    List<Record> result = new ArrayList<Record>(Math.min(count, 1024));
+    for (String key : t.keys.tailSet(startKey)) {
+      if (result.size() >= count) {
+        break;
+      }
+      Record r = t.records.get(key);
+      if (r != null && !r.isExpired(now)) {
+        result.add(r);
+      }
+    }
+    return result;
+  }
+
+  /** Returns the live records whose field equals value and whose key matches. */
+  List<Record> find(String table, String field, String value, KeyMatcher keys) {
+    List<Record> result = new ArrayList<Record>();
+    forEach(table, field, value, keys, result::add);
+    return result;
+  }
+
+  /**
+   * Passes each live record whose field equals value and whose key matches to visitor, as it
+   * walks the index, without collecting them.
+   */
+  void forEach(String table, String field, String value, KeyMatcher keys, Consumer<Record> visitor) {
+    Table t = table(table);
+    long now = System.currentTimeMillis();
+    for (String key : candidates(t, field, value)) {
+      Record r = t.records.get(key);
+      if (r != null && !r.isExpired(now) && keys.matches(key) && value.equals(r.stringValue(field))) {
+        visitor.accept(r);
+      }
+    }
+  }
+
+  /**
+   * Sets newField to newValue in every live record whose field equals value
+   * and whose key matches.
+   *
+   * @return The number of records changed.
+   */
+  int updateWhere(String table, String field, String value, KeyMatcher keys, String newField, byte[] newValue) {
+    Table t = table(table);
+    Map<String, byte[]> change = Collections.singletonMap(newField, newValue);
+    int updated = 0;
+    for (String key : new ArrayList<String>(candidates(t, field, value))) {
+      if (!keys.matches(key)) {
+        continue;
+      }
+      synchronized (lockFor(key)) {
+        Record old = t.records.get(key);
+        if (old != null && !old.isExpired(System.currentTimeMillis()) && value.equals(old.stringValue(field))) {
+          replace(t, key, old, change);
+          updated++;
+        }
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Removes every live record whose field equals value and whose key matches.
+   *
+   * @return The number of records removed.
+   */
+  int deleteWhere(String table, String field, String value, KeyMatcher keys) {
+    Table t = table(table);
+    int deleted = 0;
+    for (String key : new ArrayList<String>(candidates(t, field, value))) {
+      if (!keys.matches(key)) {
+        continue;
+      }
+      synchronized (lockFor(key)) {
+        Record old = t.records.get(key);
+        if (old != null && !old.isExpired(System.currentTimeMillis()) && value.equals(old.stringValue(field))) {
+          remove(t, key, old);
+          deleted++;
+        }
+      }
+    }
+    return deleted;
+  }
+
+  /** The number of records of a table, including expired ones not removed yet. */
+  long size(String table) {
+    return table(table).records.size();
+  }
+
+  /** Keys that may hold the value: from the index, or all keys if the field is not indexed. */
+  private Collection<String> candidates(Table t, String field, String value) {
+    ConcurrentHashMap<String, Set<String>> index = t.indexes.get(field);
+    if (index == null) {
+      return t.keys;
+    }
+    Set<String> keys = index.get(value);
+    return keys == null ? Collections.<String>emptySet() : keys;
+  }
+
+  /** Must hold the lock of key. */
+  private void replace(Table t, String key, Record old, Map<String, byte[]> changes) {
+    Map<String, byte[]> fields = new HashMap<String, byte[]>(old.getFields());
+    fields.putAll(changes);
+    Record r = new Record(fields, old.getExpireAt());
+    t.records.put(key, r);
+    reindex(t, key, old, r);
+  }
+
+  /** Must hold the lock of key. */
+  private void remove(Table t, String key, Record old) {
+    t.records.remove(key);
+    t.keys.remove(key);
+    reindex(t, key, old, null);
+  }
+
+  /** Moves key between index entries for every indexed field whose value changed. Must hold the lock of key. */
+  private void reindex(Table t, String key, Record old, Record r) {
+    for (Map.Entry<String, ConcurrentHashMap<String, Set<String>>> index : t.indexes.entrySet()) {
+      String field = index.getKey();
+      String oldValue = old == null ? null : old.stringValue(field);
+      String newValue = r == null ? null : r.stringValue(field);
+      if (oldValue != null ? oldValue.equals(newValue) : newValue == null) {
+        continue;
+      }
+      if (oldValue != null) {
+        Set<String> keys = index.getValue().get(oldValue);
+        if (keys != null) {
+          keys.remove(key);
+        }
+      }
+      if (newValue != null) {
+        Set<String> keys = index.getValue().get(newValue);
+        if (keys == null) {
+          Set<String> created = ConcurrentHashMap.<String>newKeySet();
+          keys = index.getValue().putIfAbsent(newValue, created);
+          if (keys == null) {
+            keys = created;
+          }
+        }
+        keys.add(key);
+      }
+    }
+  }
+
+  /** Writes all live records to the file. */
+  void save(File file) throws IOException {
+    long now = System.currentTimeMillis();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(tables.size());
+      for (Map.Entry<String, Table> table : tables.entrySet()) {
+        List<Map.Entry<String, Record>> live = new ArrayList<Map.Entry<String, Record>>();
+        for (Map.Entry<String, Record> e : table.getValue().records.entrySet()) {
+          if (!e.getValue().isExpired(now)) {
+            live.add(e);
+          }
+        }
+        out.writeUTF(table.getKey());
+        out.writeInt(live.size());
+        for (Map.Entry<String, Record> e : live) {
+          out.writeUTF(e.getKey());
+          out.writeLong(e.getValue().getExpireAt());
+          out.writeInt(e.getValue().getFields().size());
+          for (Map.Entry<String, byte[]> field : e.getValue().getFields().entrySet()) {
+            out.writeUTF(field.getKey());
+            out.writeInt(field.getValue().length);
+            out.write(field.getValue());
+          }
+        }
+      }
+    }
+  }
+
+  /** Adds the records of a file written by {@link #save}. */
+  void load(File file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a memstore snapshot: " + file);
+      }
+      int tableCount = in.readInt();
+      for (int i = 0; i < tableCount; i++) {
+        String table = in.readUTF();
+        int recordCount = in.readInt();
+        for (int j = 0; j < recordCount; j++) {
+          String key = in.readUTF();
+          long expireAt = in.readLong();
+          int fieldCount = in.readInt();
+          Map<String, byte[]> fields = new HashMap<String, byte[]>(fieldCount * 2);
+          for (int k = 0; k < fieldCount; k++) {
+            String name = in.readUTF();
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            fields.put(name, value);
+          }
+          put(table, key, fields, expireAt);
+        }
+      }
+    }
+  }
+}
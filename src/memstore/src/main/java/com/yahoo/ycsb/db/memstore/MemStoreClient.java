@@ -0,0 +1,388 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.memstore;
+
+import com.yahoo.ycsb.AuditQuery;
+import com.yahoo.ycsb.ByteArrayByteIterator;
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.KeyMatcher;
+import com.yahoo.ycsb.RecordCount;
+import com.yahoo.ycsb.RecordSink;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.Gauges;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * YCSB binding for an embedded, in-memory store implementing the GDPR
+ * extensions of {@link DB}.
+ *
+ * <br>
+ * All client threads of a JVM share one store. It has no network hop and no
+ * persistence beyond an optional snapshot file, so it serves as a local
+ * stand-in for testing workload changes and as a performance ceiling when
+ * measuring the client's own overhead.
+ *
+ * <br>
+ * Metadata operations use secondary indexes on the metadata fields, records
+ * inserted with a TTL are removed by a timer wheel and every access is
+ * appended to an in-memory audit ring that readLog() reads back.
+ */
+public class MemStoreClient extends DB {
+
+  /** Comma separated list of the fields with a secondary index. */
+  public static final String INDEXED_FIELDS_PROPERTY = "memstore.indexedfields";
+  public static final String INDEXED_FIELDS_PROPERTY_DEFAULT = "PUR,TTL,USR,OBJ,DEC,ACL,SHR,SRC,CAT";
+
+  /** Number of lock stripes serializing writers of the same key. */
+  public static final String LOCK_STRIPES_PROPERTY = "memstore.lockstripes";
+  public static final String LOCK_STRIPES_PROPERTY_DEFAULT = "1024";
+
+  /** Whether insertTTL() records expire. */
+  public static final String TTL_ENABLED_PROPERTY = "memstore.ttlenabled";
+  public static final String TTL_ENABLED_PROPERTY_DEFAULT = "true";
+
+  /** Resolution of the TTL timer wheel in milliseconds. */
+  public static final String TTL_TICK_MS_PROPERTY = "memstore.ttltickms";
+  public static final String TTL_TICK_MS_PROPERTY_DEFAULT = "1000";
+
+  /** Number of slots of the TTL timer wheel. */
+  public static final String TTL_SLOTS_PROPERTY = "memstore.ttlslots";
+  public static final String TTL_SLOTS_PROPERTY_DEFAULT = "512";
+
+  /** Whether accesses are written to the audit ring. */
+  public static final String AUDIT_PROPERTY = "memstore.audit";
+  public static final String AUDIT_PROPERTY_DEFAULT = "true";
+
+  /** Number of entries kept in the audit ring. */
+  public static final String AUDIT_CAPACITY_PROPERTY = "memstore.auditcapacity";
+  public static final String AUDIT_CAPACITY_PROPERTY_DEFAULT = "65536";
+
+  /** Whether readLog() prints the entries it reads. */
+  public static final String AUDIT_PRINT_PROPERTY = "memstore.auditprint";
+  public static final String AUDIT_PRINT_PROPERTY_DEFAULT = "false";
+
+  /**
+   * File the store is loaded from on start and saved to when the last client
+   * is cleaned up, so a run phase can follow a load phase in another JVM.
+   */
+  public static final String SNAPSHOT_PROPERTY = "memstore.snapshot";
+
+  /** Seconds verifyTTL() waits for expired records to be removed. */
+  public static final String VERIFY_TTL_TIMEOUT_PROPERTY = "memstore.verifyttltimeout";
+  public static final String VERIFY_TTL_TIMEOUT_PROPERTY_DEFAULT = "0";
+
+  private static final String[] FIELDNAMES = {
+      "PUR", "TTL", "USR", "OBJ", "DEC", "ACL", "SHR", "SRC", "CAT", "Data"
+  };
+
+  /** Gauge of how late expired records are removed, served by the metrics endpoint. */
+  private static final String TTL_LAG_GAUGE = "memstore_ttl_lag_ms";
+
+  /** The store shared by all clients, and how many clients use it. */
+  private static MemStore sharedStore;
+  private static int references;
+  private static File snapshot;
+
+  private MemStore store;
+  private boolean ttlEnabled;
+  private boolean auditPrint;
+  private long verifyTtlTimeoutMs;
+
+  @Override
+  public void init() throws DBException {
+    Properties props = getProperties();
+    try {
+      ttlEnabled = Boolean.parseBoolean(props.getProperty(TTL_ENABLED_PROPERTY, TTL_ENABLED_PROPERTY_DEFAULT));
+      auditPrint = Boolean.parseBoolean(props.getProperty(AUDIT_PRINT_PROPERTY, AUDIT_PRINT_PROPERTY_DEFAULT));
+      verifyTtlTimeoutMs = 1000L * Long.parseLong(
+          props.getProperty(VERIFY_TTL_TIMEOUT_PROPERTY, VERIFY_TTL_TIMEOUT_PROPERTY_DEFAULT));
+    } catch (NumberFormatException e) {
+      throw new DBException("Invalid memstore property: " + e, e);
+    }
+
+    synchronized (MemStoreClient.class) {
+      if (references == 0) {
+        sharedStore = openStore(props, ttlEnabled);
+      }
+      references++;
+      store = sharedStore;
+    }
+  }
+
+  /** Creates the shared store, loads the snapshot if there is one and starts the TTL wheel. */
+  private static MemStore openStore(Properties props, boolean ttlEnabled) throws DBException {
+    try {
+      List<String> indexed = Arrays.asList(
+          props.getProperty(INDEXED_FIELDS_PROPERTY, INDEXED_FIELDS_PROPERTY_DEFAULT).split(","));
+      int stripes = Integer.parseInt(props.getProperty(LOCK_STRIPES_PROPERTY, LOCK_STRIPES_PROPERTY_DEFAULT));
+      AuditRing audit = null;
+      if (Boolean.parseBoolean(props.getProperty(AUDIT_PROPERTY, AUDIT_PROPERTY_DEFAULT))) {
+        audit = new AuditRing(
+            Integer.parseInt(props.getProperty(AUDIT_CAPACITY_PROPERTY, AUDIT_CAPACITY_PROPERTY_DEFAULT)));
+      }
+      long tickMs = ttlEnabled ?
+          Long.parseLong(props.getProperty(TTL_TICK_MS_PROPERTY, TTL_TICK_MS_PROPERTY_DEFAULT)) : 0;
+      int slots = Integer.parseInt(props.getProperty(TTL_SLOTS_PROPERTY, TTL_SLOTS_PROPERTY_DEFAULT));
+      MemStore newStore = new MemStore(indexed, stripes, audit, tickMs, slots);
+
+      String snapshotPath = props.getProperty(SNAPSHOT_PROPERTY);
+      snapshot = snapshotPath == null ? null : new File(snapshotPath);
+      if (snapshot != null && snapshot.exists()) {
+        newStore.load(snapshot);
+        System.out.println("Loaded memstore snapshot " + snapshot);
+      }
+      newStore.start();
+      Gauges.register(TTL_LAG_GAUGE, () -> newStore.getTtlLagMs());
+      return newStore;
+    } catch (NumberFormatException e) {
+      throw new DBException("Invalid memstore property: " + e, e);
+    } catch (IOException e) {
+      throw new DBException("Could not load memstore snapshot: " + e, e);
+    }
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    synchronized (MemStoreClient.class) {
+      if (--references > 0) {
+        return;
+      }
+      sharedStore.stop();
+      Gauges.unregister(TTL_LAG_GAUGE);
+      try {
+        if (snapshot != null) {
+          sharedStore.save(snapshot);
+          System.out.println("Saved memstore snapshot " + snapshot);
+        }
+      } catch (IOException e) {
+        throw new DBException("Could not save memstore snapshot: " + e, e);
+      } finally {
+        sharedStore = null;
+      }
+    }
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    store.audit("READ", table, key);
+    MemStore.Record r = store.get(table, key);
+    if (r == null) {
+      return Status.NOT_FOUND;
+    }
+    copy(r, fields, result);
+    return Status.OK;
+  }
+
+  @Override
+  public Status readLog(String table, int logcount) {
+    AuditRing audit = store.getAudit();
+    if (audit == null) {
+      return Status.NOT_IMPLEMENTED;
+    }
+    List<AuditRing.Entry> entries = audit.tail(logcount);
+    if (auditPrint) {
+      for (AuditRing.Entry e : entries) {
+        System.out.println(e);
+      }
+    }
+    return Status.OK;
+  }
+
+  /**
+   * Counts the matching entries of the audit ring in place; the ring keeps
+   * memstore.auditcapacity entries, so older ones are not searched.
+   */
+  @Override
+  public Status queryLog(String table, AuditQuery query, int logCount, RecordCount matched) {
+    AuditRing audit = store.getAudit();
+    if (audit == null) {
+      return Status.NOT_IMPLEMENTED;
+    }
+    matched.add(audit.count(table, query, logCount));
+    return Status.OK;
+  }
+
+  @Override
+  public Status readMeta(String table, int fieldnum, String cond, String keymatch,
+      Vector<HashMap<String, ByteIterator>> result) {
+    store.audit("READMETA", table, FIELDNAMES[fieldnum] + "=" + cond);
+    for (MemStore.Record r : store.find(table, FIELDNAMES[fieldnum], cond, KeyMatcher.of(keymatch))) {
+      HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+      copy(r, null, values);
+      result.add(values);
+    }
+    return Status.OK;
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+      Vector<HashMap<String, ByteIterator>> result) {
+    store.audit("SCAN", table, startkey);
+    for (MemStore.Record r : store.scan(table, startkey, recordcount)) {
+      HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+      copy(r, fields, values);
+      result.add(values);
+    }
+    return Status.OK;
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    store.audit("UPDATE", table, key);
+    return store.update(table, key, toBytes(values)) ? Status.OK : Status.NOT_FOUND;
+  }
+
+  @Override
+  public Status updateMeta(String table, int fieldnum, String cond, String keymatch,
+      String fieldkey, String fieldvalue) {
+    store.audit("UPDATEMETA", table, FIELDNAMES[fieldnum] + "=" + cond);
+    store.updateWhere(table, FIELDNAMES[fieldnum], cond, KeyMatcher.of(keymatch),
+        fieldkey, fieldvalue.getBytes(StandardCharsets.UTF_8));
+    return Status.OK;
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    return insertTTL(table, key, values, 0);
+  }
+
+  @Override
+  public Status insertTTL(String table, String key, Map<String, ByteIterator> values, int ttl) {
+    store.audit("INSERT", table, key);
+    long expireAt = ttlEnabled && ttl > 0 ? System.currentTimeMillis() + ttl * 1000L : 0;
+    store.put(table, key, toBytes(values), expireAt);
+    return Status.OK;
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    store.audit("DELETE", table, key);
+    return store.delete(table, key) ? Status.OK : Status.NOT_FOUND;
+  }
+
+  @Override
+  public Status deleteMeta(String table, int fieldnum, String cond, String keymatch) {
+    store.audit("DELETEMETA", table, FIELDNAMES[fieldnum] + "=" + cond);
+    store.deleteWhere(table, FIELDNAMES[fieldnum], cond, KeyMatcher.of(keymatch));
+    return Status.OK;
+  }
+
+  /**
+   * Removes the records of the user through the USR index in one pass, and audits it as one
+   * ERASEUSER entry rather than a read and a delete per record.
+   */
+  @Override
+  public Status eraseUser(String table, String user, RecordCount removed) {
+    store.audit("ERASEUSER", table, user);
+    removed.add(store.deleteWhere(table, FIELDNAMES[USER_FIELD], user, KeyMatcher.ALL));
+    return Status.OK;
+  }
+
+  /**
+   * Rewrites the records of the purpose through the PUR index in one pass, and audits it as one
+   * WITHDRAWCONSENT entry.
+   */
+  @Override
+  public Status withdrawConsent(String table, String purpose, String replacement, RecordCount rewritten) {
+    store.audit("WITHDRAWCONSENT", table, purpose);
+    rewritten.add(store.updateWhere(table, FIELDNAMES[PURPOSE_FIELD], purpose, KeyMatcher.ALL,
+        FIELDNAMES[PURPOSE_FIELD], replacement.getBytes(StandardCharsets.UTF_8)));
+    return Status.OK;
+  }
+
+  /**
+   * Streams the records of the user from the USR index as it walks it, passing each one to sink
+   * in the same map.
+   */
+  @Override
+  public Status exportUser(String table, String user, final RecordSink sink) {
+    store.audit("EXPORTUSER", table, user);
+    final HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    store.forEach(table, FIELDNAMES[USER_FIELD], user, KeyMatcher.ALL, r -> emit(r, values, sink));
+    return Status.OK;
+  }
+
+  private static void emit(MemStore.Record r, HashMap<String, ByteIterator> values, RecordSink sink) {
+    values.clear();
+    copy(r, null, values);
+    sink.accept(values);
+  }
+
+  /**
+   * Removes the records that are due and checks that at most recordcount
+   * records remain, waiting up to memstore.verifyttltimeout seconds for
+   * expiring records.
+   */
+  @Override
+  public Status verifyTTL(String table, long recordcount) {
+    if (!ttlEnabled) {
+      return Status.OK;
+    }
+    long deadline = System.currentTimeMillis() + verifyTtlTimeoutMs;
+    while (true) {
+      store.expireDue();
+      if (store.size(table) <= recordcount) {
+        return Status.OK;
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        return Status.UNEXPECTED_STATE;
+      }
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return Status.ERROR;
+      }
+    }
+  }
+
+
+  private static Map<String, byte[]> toBytes(Map<String, ByteIterator> values) {
+    Map<String, byte[]> fields = new HashMap<String, byte[]>(values.size() * 2);
+    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+      fields.put(entry.getKey(), entry.getValue().toArray());
+    }
+    return fields;
+  }
+
+  private static void copy(MemStore.Record r, Set<String> fields, Map<String, ByteIterator> result) {
+    if (fields == null) {
+      for (Map.Entry<String, byte[]> entry : r.getFields().entrySet()) {
+        result.put(entry.getKey(), new ByteArrayByteIterator(entry.getValue()));
+      }
+    } else {
+      for (String field : fields) {
+        byte[] value = r.getFields().get(field);
+        if (value != null) {
+          result.put(field, new ByteArrayByteIterator(value));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.memstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A hashed timer wheel that expires records.
+ *
+ * <br>
+ * Every tick of tickMs milliseconds owns one slot, slots are reused after a
+ * full turn of the wheel. Scheduling a record is O(1); when a slot's tick
+ * comes around, entries that are due are expired and the others, due in a
+ * later turn, stay in the slot.
+ */
+final class TtlWheel {
+
+  /** Removes a record if it still carries the given expiry time. */
+  interface Expirer {
+    void expire(String table, String key, long expireAt);
+  }
+
+  private static final class Entry {
+    private final String table;
+    private final String key;
+    private final long expireAt;
+
+    Entry(String table, String key, long expireAt) {
+      this.table = table;
+      this.key = key;
+      this.expireAt = expireAt;
+    }
+  }
+
+  private final long tickMs;
+  private final ConcurrentLinkedQueue<Entry>[] slots;
+  private final int mask;
+  private final Expirer expirer;
+  /** The last tick whose slot has been processed. */
+  private volatile long processedTick;
+  /** How late the latest sweep that expired anything was, at most. */
+  private volatile long lagMs;
+  private Thread thread;
+
+  /**
+   * @param tickMs Length of one tick in milliseconds.
+   * @param slotCount Number of slots, rounded up to a power of two.
+   * @param expirer Called for each entry that is due.
+   */
+  @SuppressWarnings("unchecked")
+  TtlWheel(long tickMs, int slotCount, Expirer expirer) {
+    int size = Integer.highestOneBit(Math.max(slotCount, 2) - 1) << 1;
+    this.tickMs = Math.max(tickMs, 1);
+    this.slots = new ConcurrentLinkedQueue[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new ConcurrentLinkedQueue<Entry>();
+    }
+    this.mask = size - 1;
+    this.expirer = expirer;
+    this.processedTick = System.currentTimeMillis() / this.tickMs;
+  }
+
+  void schedule(String table, String key, long expireAt) {
+    // A tick that has already been processed would only be seen a turn later.
+    long tick = Math.max(expireAt / tickMs, processedTick + 1);
+    slots[(int) (tick & mask)].add(new Entry(table, key, expireAt));
+  }
+
+  /** Expires everything due up to now. */
+  synchronized void advance(long now) {
+    long nowTick = now / tickMs;
+    long from = Math.max(processedTick + 1, nowTick - mask);
+    List<Entry> later = new ArrayList<Entry>();
+    long maxLate = -1;
+    for (long tick = from; tick <= nowTick; tick++) {
+      ConcurrentLinkedQueue<Entry> slot = slots[(int) (tick & mask)];
+      Entry e;
+      while ((e = slot.poll()) != null) {
+        if (e.expireAt <= now) {
+          expirer.expire(e.table, e.key, e.expireAt);
+          maxLate = Math.max(maxLate, now - e.expireAt);
+        } else {
+          later.add(e);
+        }
+      }
+      slot.addAll(later);
+      later.clear();
+    }
+    // The current tick may still hold entries due later in it, so it is
+    // visited again by the next advance.
+    if (nowTick - 1 > processedTick) {
+      processedTick = nowTick - 1;
+    }
+    if (maxLate >= 0) {
+      lagMs = maxLate;
+    }
+  }
+
+  /** How long after their expiry time the records of the latest sweep that expired any were removed. */
+  long getLagMs() {
+    return lagMs;
+  }
+
+  /** Starts a daemon thread advancing the wheel once per tick. */
+  synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+          advance(System.currentTimeMillis());
+          try {
+            Thread.sleep(tickMs);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    }, "MemStore-TTL");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  synchronized void stop() {
+    if (thread != null) {
+      thread.interrupt();
+      thread = null;
+    }
+  }
+}
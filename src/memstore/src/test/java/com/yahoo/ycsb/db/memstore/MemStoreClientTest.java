@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.memstore;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.ycsb.AuditQuery;
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.RecordCount;
+import com.yahoo.ycsb.RecordSink;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.workloads.GDPRThreadState;
+import com.yahoo.ycsb.workloads.GDPRWorkload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+
+public class MemStoreClientTest {
+  private static final String TABLE = "usertable";
+
+  private MemStoreClient client;
+
+  private MemStoreClient open(Properties p) throws DBException {
+    MemStoreClient c = new MemStoreClient();
+    c.setProperties(p);
+    c.init();
+    return c;
+  }
+
+  @Before
+  public void setUp() throws DBException {
+    Properties p = new Properties();
+    p.setProperty(MemStoreClient.TTL_TICK_MS_PROPERTY, "50");
+    client = open(p);
+  }
+
+  @After
+  public void tearDown() throws DBException {
+    if (client != null) {
+      client.cleanup();
+    }
+  }
+
+  private static HashMap<String, ByteIterator> record(String purpose, String user) {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("PUR", new StringByteIterator(purpose));
+    values.put("USR", new StringByteIterator(user));
+    values.put("Data", new StringByteIterator("payload"));
+    return values;
+  }
+
+  @Test
+  public void readUpdateDelete() {
+    assertEquals(Status.OK, client.insert(TABLE, "key1", record("purpose1", "user1")));
+
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(Status.OK, client.read(TABLE, "key1", null, result));
+    assertEquals("user1", result.get("USR").toString());
+
+    assertEquals(Status.OK, client.update(TABLE, "key1", record("purpose2", "user1")));
+    assertEquals(Status.NOT_FOUND, client.update(TABLE, "key2", record("purpose2", "user1")));
+
+    assertEquals(Status.OK, client.delete(TABLE, "key1"));
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "key1", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void metadataOperationsFollowTheIndex() {
+    client.insert(TABLE, "key1", record("purpose1", "user1"));
+    client.insert(TABLE, "key2", record("purpose1", "user2"));
+    client.insert(TABLE, "key3", record("purpose2", "user1"));
+    client.insert(TABLE, "other4", record("purpose1", "user1"));
+
+    Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    assertEquals(Status.OK, client.readMeta(TABLE, 0, "purpose1", "key*", result));
+    assertEquals(2, result.size());
+
+    // Change the purpose of user1's records; the index must follow.
+    client.updateMeta(TABLE, 2, "user1", "key*", "PUR", "purpose3");
+    result.clear();
+    client.readMeta(TABLE, 0, "purpose3", "*", result);
+    assertEquals(2, result.size());
+    result.clear();
+    client.readMeta(TABLE, 0, "purpose1", "*", result);
+    assertEquals(2, result.size());
+
+    client.deleteMeta(TABLE, 0, "purpose3", "key*");
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "key1", null, new HashMap<String, ByteIterator>()));
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "key3", null, new HashMap<String, ByteIterator>()));
+    assertEquals(Status.OK, client.read(TABLE, "key2", null, new HashMap<String, ByteIterator>()));
+  }
+
+  /** Counts the records the metadata operations of a workload find and delete. */
+  private static final class CountingClient extends MemStoreClient {
+    private int found;
+    private int deleted;
+
+    @Override
+    public Status readMeta(String table, int fieldnum, String cond, String keymatch,
+        Vector<HashMap<String, ByteIterator>> result) {
+      Status status = super.readMeta(table, fieldnum, cond, keymatch, result);
+      found += result.size();
+      return status;
+    }
+
+    @Override
+    public Status deleteMeta(String table, int fieldnum, String cond, String keymatch) {
+      Vector<HashMap<String, ByteIterator>> matching = new Vector<HashMap<String, ByteIterator>>();
+      super.readMeta(table, fieldnum, cond, keymatch, matching);
+      Status status = super.deleteMeta(table, fieldnum, cond, keymatch);
+      deleted += matching.size();
+      matching.clear();
+      super.readMeta(table, fieldnum, cond, "*", matching);
+      assertTrue(matching.isEmpty());
+      return status;
+    }
+  }
+
+  @Test
+  public void clusteredMetadataOperationsFindTheirRecords() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "500");
+    p.setProperty(GDPRWorkload.USER_COUNT_PROPERTY, "20");
+    p.setProperty(GDPRWorkload.DATA_MODEL_PROPERTY, "clustered");
+    // Build the metadata from the key, as the conditions of the metadata operations are.
+    p.setProperty(GDPRWorkload.DATA_INTEGRITY_PROPERTY, "true");
+    Measurements.setProperties(p);
+    GDPRWorkload workload = new GDPRWorkload();
+    workload.init(p);
+    CountingClient counting = new CountingClient();
+    counting.setProperties(p);
+    counting.init();
+    try {
+      GDPRThreadState state = (GDPRThreadState) workload.initThread(p, 0, 1);
+      for (int i = 0; i < 500; i++) {
+        assertTrue(workload.doInsert(counting, state));
+      }
+
+      workload.doTransactionReadMeta(counting, state, DB.PURPOSE_FIELD);
+      assertTrue(counting.found > 0);
+      counting.found = 0;
+      workload.doTransactionReadMeta(counting, state, DB.USER_FIELD);
+      assertTrue(counting.found > 0);
+      workload.doTransactionDeleteMeta(counting, state, DB.USER_FIELD);
+      assertTrue(counting.deleted > 0);
+    } finally {
+      counting.cleanup();
+    }
+  }
+
+  @Test
+  public void eraseUserRemovesAllRecordsOfTheUser() {
+    client.insert(TABLE, "key1", record("purpose1", "user1"));
+    client.insert(TABLE, "key2", record("purpose1", "user2"));
+    client.insert(TABLE, "other3", record("purpose2", "user1"));
+
+    RecordCount removed = new RecordCount();
+    assertEquals(Status.OK, client.eraseUser(TABLE, "user1", removed));
+    assertEquals(2, removed.get());
+    Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    client.readMeta(TABLE, 2, "user1", "*", result);
+    assertTrue(result.isEmpty());
+    assertEquals(Status.OK, client.read(TABLE, "key2", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void exportUserStreamsTheRecordsOfTheUser() {
+    client.insert(TABLE, "key1", record("purpose1", "user1"));
+    client.insert(TABLE, "key2", record("purpose1", "user2"));
+    client.insert(TABLE, "other3", record("purpose2", "user1"));
+
+    final List<String> purposes = new ArrayList<String>();
+    assertEquals(Status.OK, client.exportUser(TABLE, "user1", new RecordSink() {
+      @Override
+      public void accept(Map<String, ByteIterator> values) {
+        assertEquals("user1", values.get("USR").toString());
+        purposes.add(values.get("PUR").toString());
+      }
+    }));
+    Collections.sort(purposes);
+    assertEquals(Arrays.asList("purpose1", "purpose2"), purposes);
+  }
+
+  @Test
+  public void withdrawConsentRewritesThePurpose() {
+    client.insert(TABLE, "key1", record("purpose1", "user1"));
+    client.insert(TABLE, "key2", record("purpose1", "user2"));
+    client.insert(TABLE, "key3", record("purpose2", "user1"));
+
+    RecordCount rewritten = new RecordCount();
+    assertEquals(Status.OK, client.withdrawConsent(TABLE, "purpose1", "withdrawn", rewritten));
+    assertEquals(2, rewritten.get());
+    Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    client.readMeta(TABLE, 0, "purpose1", "*", result);
+    assertTrue(result.isEmpty());
+    client.readMeta(TABLE, 0, "withdrawn", "*", result);
+    assertEquals(2, result.size());
+  }
+
+  @Test
+  public void queryLogCountsTheMatchingEntries() {
+    long start = System.currentTimeMillis();
+    client.insert(TABLE, "audited1", record("purpose1", "auditeduser"));
+    client.insert(TABLE, "audited2", record("purpose1", "auditeduser"));
+    client.read(TABLE, "audited1", null, new HashMap<String, ByteIterator>());
+    client.readMeta(TABLE, 2, "auditeduser", "*", new Vector<HashMap<String, ByteIterator>>());
+    client.eraseUser(TABLE, "auditeduser", new RecordCount());
+
+    assertEquals(2, matches(AuditQuery.byKey("audited1"), 1000));
+    assertEquals(2, matches(AuditQuery.byUser("auditeduser"), 1000));
+    assertEquals(1, matches(AuditQuery.byUser("auditeduser"), 1));
+    assertTrue(matches(AuditQuery.byTime(start, Long.MAX_VALUE), 1000) >= 5);
+    assertEquals(0, matches(AuditQuery.byTime(0, start), 5));
+    assertEquals(1, matches(AuditQuery.byOperation("ERASEUSER"), 1));
+  }
+
+  private long matches(AuditQuery query, int logCount) {
+    RecordCount matched = new RecordCount();
+    assertEquals(Status.OK, client.queryLog(TABLE, query, logCount, matched));
+    return matched.get();
+  }
+
+  @Test
+  public void scanReturnsKeysInOrder() {
+    for (int i = 9; i >= 0; i--) {
+      client.insert(TABLE, "key" + i, record("purpose1", "user" + i));
+    }
+    Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    assertEquals(Status.OK, client.scan(TABLE, "key3", 4, null, result));
+    assertEquals(4, result.size());
+    assertEquals("user3", result.get(0).get("USR").toString());
+    assertEquals("user6", result.get(3).get("USR").toString());
+  }
+
+  @Test
+  public void ttlExpiresRecords() throws InterruptedException {
+    client.insertTTL(TABLE, "key1", record("purpose1", "user1"), 1);
+    client.insertTTL(TABLE, "key2", record("purpose1", "user2"), 0);
+    assertEquals(Status.UNEXPECTED_STATE, client.verifyTTL(TABLE, 1));
+
+    Thread.sleep(1100);
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "key1", null, new HashMap<String, ByteIterator>()));
+    assertEquals(Status.OK, client.verifyTTL(TABLE, 1));
+    assertEquals(Status.OK, client.read(TABLE, "key2", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void accessesAreAudited() {
+    client.insert(TABLE, "key1", record("purpose1", "user1"));
+    client.read(TABLE, "key1", null, new HashMap<String, ByteIterator>());
+    assertEquals(Status.OK, client.readLog(TABLE, 10));
+
+    AuditRing audit = new AuditRing(4);
+    for (int i = 0; i < 6; i++) {
+      audit.append("READ", TABLE, "key" + i);
+    }
+    assertEquals(6, audit.appended());
+    assertEquals(4, audit.tail(10).size());
+    assertEquals("key2", audit.tail(10).get(0).getSubject());
+    assertEquals("key5", audit.tail(1).get(0).getSubject());
+  }
+
+  @Test
+  public void snapshotSurvivesRestart() throws Exception {
+    File file = File.createTempFile("memstore", ".snapshot");
+    file.delete();
+    try {
+      client.cleanup();
+      Properties p = new Properties();
+      p.setProperty(MemStoreClient.SNAPSHOT_PROPERTY, file.getPath());
+      client = open(p);
+      client.insert(TABLE, "key1", record("purpose1", "user1"));
+      client.cleanup();
+
+      client = open(p);
+      Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+      client.readMeta(TABLE, 0, "purpose1", "key*", result);
+      assertEquals(1, result.size());
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.mmapstore;
+
+import com.yahoo.ycsb.AuditQuery;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent audit log of fixed size entries in memory-mapped segment
+ * files. Entry n lives at a known position, so appending is a single atomic
+ * increment and the last n entries can be read without scanning.
+ *
+ * <br>
+ * An entry holds the time, the operation and up to {@link #SUBJECT_BYTES}
+ * bytes of its subject, e.g. the record key.
+ */
+final class AuditLog {
+  static final int ENTRY_BYTES = 64;
+  static final int SUBJECT_BYTES = ENTRY_BYTES - 10;
+
+  static final String[] OPS = {
+      "READ", "SCAN", "INSERT", "UPDATE", "DELETE", "READMETA", "UPDATEMETA", "DELETEMETA", "EXPIRE",
+      "ERASEUSER", "EXPORTUSER", "WITHDRAWCONSENT"
+  };
+
+  private static final String PREFIX = "audit";
+
+  private final File dir;
+  private final int entriesPerSegment;
+  private final int segmentSize;
+  private volatile MappedSegment[] segments = new MappedSegment[0];
+  private final AtomicLong next = new AtomicLong();
+
+  AuditLog(File dir, int segmentSize) throws IOException {
+    this.dir = dir;
+    this.entriesPerSegment = segmentSize / ENTRY_BYTES;
+    this.segmentSize = entriesPerSegment * ENTRY_BYTES;
+    List<Integer> ids = MappedSegment.list(dir, PREFIX);
+    for (int i = 0; i < ids.size(); i++) {
+      segment(i);
+    }
+    // Entries are written in order, so the first empty slot of the last segment ends the log.
+    long count = 0;
+    if (segments.length > 0) {
+      MappedSegment last = segments[segments.length - 1];
+      int slot = 0;
+      while (slot < entriesPerSegment && last.getLong(slot * ENTRY_BYTES) != 0) {
+        slot++;
+      }
+      count = (long) (segments.length - 1) * entriesPerSegment + slot;
+    }
+    next.set(count);
+  }
+
+  private MappedSegment segment(int id) throws IOException {
+    MappedSegment[] current = segments;
+    if (id < current.length) {
+      return current[id];
+    }
+    synchronized (this) {
+      while (segments.length <= id) {
+        MappedSegment[] grown = Arrays.copyOf(segments, segments.length + 1);
+        grown[segments.length] = MappedSegment.open(dir, PREFIX, segments.length, segmentSize);
+        segments = grown;
+      }
+      return segments[id];
+    }
+  }
+
+  /**
+   * @param op Index of the operation in {@link #OPS}.
+   * @param subject What was accessed.
+   */
+  void append(int op, String subject) throws IOException {
+    long seq = next.getAndIncrement();
+    MappedSegment segment = segment((int) (seq / entriesPerSegment));
+    int offset = (int) (seq % entriesPerSegment) * ENTRY_BYTES;
+    byte[] bytes = subject.getBytes(StandardCharsets.UTF_8);
+    int length = Math.min(bytes.length, SUBJECT_BYTES);
+    ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES - 8);
+    entry.put((byte) op).put((byte) length).put(bytes, 0, length).position(0);
+    segment.put(offset + 8, entry);
+    // The time goes last, a zero time marks a slot that was not written.
+    segment.putLong(offset, System.currentTimeMillis());
+  }
+
+  /** Returns up to count of the most recent entries as text, oldest first. */
+  List<String> tail(int count) throws IOException {
+    long end = next.get();
+    long start = Math.max(0, end - count);
+    List<String> entries = new ArrayList<String>((int) (end - start));
+    for (long seq = start; seq < end; seq++) {
+      MappedSegment segment = segment((int) (seq / entriesPerSegment));
+      int offset = (int) (seq % entriesPerSegment) * ENTRY_BYTES;
+      long time = segment.getLong(offset);
+      if (time == 0) {
+        // Claimed but not written yet.
+        continue;
+      }
+      ByteBuffer entry = segment.slice(offset + 8, ENTRY_BYTES - 8);
+      int op = entry.get();
+      byte[] subject = new byte[entry.get()];
+      entry.get(subject);
+      entries.add(time + " " + OPS[op] + " " + new String(subject, StandardCharsets.UTF_8));
+    }
+    return entries;
+  }
+
+  /**
+   * Counts the entries among up to count of the most recent ones that a
+   * query selects. Subjects are compared as stored, so a subject longer than
+   * {@link #SUBJECT_BYTES} only matches its truncated form.
+   */
+  long count(AuditQuery query, int count) throws IOException {
+    long end = next.get();
+    long start = Math.max(0, end - count);
+    byte[] subject = new byte[SUBJECT_BYTES];
+    long matched = 0;
+    for (long seq = start; seq < end; seq++) {
+      MappedSegment segment = segment((int) (seq / entriesPerSegment));
+      int offset = (int) (seq % entriesPerSegment) * ENTRY_BYTES;
+      long time = segment.getLong(offset);
+      if (time == 0) {
+        continue;
+      }
+      ByteBuffer entry = segment.slice(offset + 8, ENTRY_BYTES - 8);
+      int op = entry.get();
+      int length = entry.get();
+      entry.get(subject, 0, length);
+      if (query.matches(time, OPS[op], new String(subject, 0, length, StandardCharsets.UTF_8))) {
+        matched++;
+      }
+    }
+    return matched;
+  }
+
+  /** The number of entries written, including earlier runs. */
+  long size() {
+    return next.get();
+  }
+
+  void close() throws IOException {
+    for (MappedSegment segment : segments) {
+      segment.close();
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.mmapstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed size file mapped into memory. Writers claim space with
+ * {@link #claim} and then write into it with absolute puts, so several
+ * threads can append to the same segment without locking.
+ */
+final class MappedSegment {
+  private final int id;
+  private final RandomAccessFile file;
+  private final MappedByteBuffer buffer;
+  /** Next free byte; may run past the end once the segment is full. */
+  private final AtomicInteger position = new AtomicInteger();
+
+  private MappedSegment(int id, File path, int size) throws IOException {
+    this.id = id;
+    this.file = new RandomAccessFile(path, "rw");
+    if (file.length() < size) {
+      file.setLength(size);
+    }
+    this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+  }
+
+  /** Maps the file, creating it zero filled if needed. */
+  static MappedSegment open(File dir, String prefix, int id, int size) throws IOException {
+    return new MappedSegment(id, new File(dir, String.format("%s-%06d.log", prefix, id)), size);
+  }
+
+  /** Returns the ids of the existing segments with the given prefix, in order. */
+  static List<Integer> list(File dir, final String prefix) {
+    List<Integer> ids = new ArrayList<Integer>();
+    String[] names = dir.list();
+    if (names == null) {
+      return ids;
+    }
+    Arrays.sort(names);
+    for (String name : names) {
+      if (name.startsWith(prefix + "-") && name.endsWith(".log")) {
+        try {
+          ids.add(Integer.parseInt(name.substring(prefix.length() + 1, name.length() - 4)));
+        } catch (NumberFormatException e) {
+          // Not one of ours.
+          continue;
+        }
+      }
+    }
+    return ids;
+  }
+
+  int getId() {
+    return id;
+  }
+
+  int capacity() {
+    return buffer.capacity();
+  }
+
+  /**
+   * Reserves size bytes.
+   *
+   * @return The offset of the reserved bytes, or -1 if the segment is full.
+   */
+  int claim(int size) {
+    int offset = position.getAndAdd(size);
+    return offset + size <= buffer.capacity() && offset >= 0 ? offset : -1;
+  }
+
+  /** Sets the append position, e.g. after recovering the segment's contents. */
+  void setPosition(int offset) {
+    position.set(offset);
+  }
+
+  int getPosition() {
+    return Math.min(position.get(), buffer.capacity());
+  }
+
+  int getInt(int offset) {
+    return buffer.getInt(offset);
+  }
+
+  void putInt(int offset, int value) {
+    buffer.putInt(offset, value);
+  }
+
+  long getLong(int offset) {
+    return buffer.getLong(offset);
+  }
+
+  void putLong(int offset, long value) {
+    buffer.putLong(offset, value);
+  }
+
+  /** Returns a view of length bytes at offset; the view has its own position. */
+  ByteBuffer slice(int offset, int length) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.limit(offset + length);
+    return view.slice();
+  }
+
+  void put(int offset, ByteBuffer src) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.put(src);
+  }
+
+  void close() throws IOException {
+    buffer.force();
+    file.close();
+  }
+}
@@ -0,0 +1,560 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.mmapstore;
+
+import com.yahoo.ycsb.KeyFormatter;
+import com.yahoo.ycsb.KeyMatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A persistent record store made of a {@link RecordLog}, an
+ * {@link OffHeapIndex} pointing at the latest entry of every key and an
+ * optional {@link AuditLog}.
+ *
+ * <br>
+ * A log entry is a type byte, the expiry time, the key and, for puts, the
+ * record's fields, encrypted by the {@link PayloadCipher}. On open the log
+ * is replayed to rebuild the index, the key order used by scans and the
+ * metadata indexes, which are kept on the heap. Writers of the same key are
+ * serialized by lock stripes; readers do not lock beyond the index segment.
+ * The log is never compacted.
+ */
+final class MmapStore {
+
+  /** A decoded record. */
+  static final class Record {
+    private final Map<String, byte[]> fields;
+    private final long expireAt;
+
+    Record(Map<String, byte[]> fields, long expireAt) {
+      this.fields = fields;
+      this.expireAt = expireAt;
+    }
+
+    Map<String, byte[]> getFields() {
+      return fields;
+    }
+
+    String stringValue(String field) {
+      byte[] value = fields.get(field);
+      return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+  }
+
+
+  /** A pending expiry, ordered by time. */
+  private static final class Expiry implements Delayed {
+    private final String key;
+    private final long expireAt;
+
+    Expiry(String key, long expireAt) {
+      this.key = key;
+      this.expireAt = expireAt;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(expireAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+      return Long.compare(expireAt, ((Expiry) o).expireAt);
+    }
+  }
+
+  private static final byte PUT = 1;
+  private static final byte DELETE = 2;
+  /** Offset of the key length in an entry: type byte and expiry time. */
+  private static final int KEY_OFFSET = 9;
+
+  static final int OP_READ = 0;
+  static final int OP_SCAN = 1;
+  static final int OP_INSERT = 2;
+  static final int OP_UPDATE = 3;
+  static final int OP_DELETE = 4;
+  static final int OP_READMETA = 5;
+  static final int OP_UPDATEMETA = 6;
+  static final int OP_DELETEMETA = 7;
+  static final int OP_EXPIRE = 8;
+  static final int OP_ERASEUSER = 9;
+  static final int OP_EXPORTUSER = 10;
+  static final int OP_WITHDRAWCONSENT = 11;
+
+  private final RecordLog log;
+  private final OffHeapIndex index;
+  private final AuditLog audit;
+  private final PayloadCipher cipher;
+  private final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<String>();
+  /** Indexed field name to field value to the keys holding that value. */
+  private final Map<String, ConcurrentHashMap<String, Set<String>>> metaIndexes =
+      new HashMap<String, ConcurrentHashMap<String, Set<String>>>();
+  private final Object[] stripes = new Object[1024];
+  private final DelayQueue<Expiry> expiries;
+  private Thread sweeper;
+  /** How long after its expiry time the latest expired record was removed. */
+  private volatile long ttlLagMs;
+
+  /**
+   * Opens the store in dir, replaying any existing log.
+   *
+   * @param segmentSize Size of each log and audit file.
+   * @param indexCapacity Expected number of keys.
+   * @param cipher Encrypts the stored fields.
+   * @param indexedFields Fields with a metadata index; may be empty.
+   * @param ttl Whether records expire.
+   * @param audited Whether accesses are written to the audit log.
+   */
+  MmapStore(File dir, int segmentSize, int indexCapacity, PayloadCipher cipher,
+      Collection<String> indexedFields, boolean ttl, boolean audited) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create " + dir);
+    }
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Object();
+    }
+    for (String field : indexedFields) {
+      metaIndexes.put(field, new ConcurrentHashMap<String, Set<String>>());
+    }
+    this.cipher = cipher;
+    this.expiries = ttl ? new DelayQueue<Expiry>() : null;
+    this.log = new RecordLog(dir, "records", segmentSize);
+    this.index = new OffHeapIndex(indexCapacity, new OffHeapIndex.KeyCheck() {
+      @Override
+      public boolean hasKey(long address, byte[] key) {
+        ByteBuffer entry = log.read(address);
+        if (entry.getShort(KEY_OFFSET) != key.length) {
+          return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+          if (entry.get(KEY_OFFSET + 2 + i) != key[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+    });
+    this.audit = audited ? new AuditLog(dir, segmentSize) : null;
+    recover();
+  }
+
+  private void recover() throws IOException {
+    final long now = System.currentTimeMillis();
+    try {
+      log.replay(new RecordLog.Visitor() {
+        @Override
+        public void visit(long address, ByteBuffer entry) {
+          try {
+            byte type = entry.get(0);
+            long expireAt = entry.getLong(1);
+            String key = keyOf(entry);
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            if (type == PUT && (expireAt == 0 || expireAt > now)) {
+              long previous = index.put(keyBytes, address);
+              keys.add(key);
+              if (!metaIndexes.isEmpty()) {
+                reindex(key, previous == OffHeapIndex.NONE ? null : decode(previous), decode(address));
+              }
+              if (expireAt != 0 && expiries != null) {
+                expiries.add(new Expiry(key, expireAt));
+              }
+            } else {
+              long previous = index.remove(keyBytes);
+              if (previous != OffHeapIndex.NONE) {
+                keys.remove(key);
+                if (!metaIndexes.isEmpty()) {
+                  reindex(key, decode(previous), null);
+                }
+              }
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Starts the thread removing expired records. */
+  synchronized void start() {
+    if (expiries == null || sweeper != null) {
+      return;
+    }
+    sweeper = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            Expiry e = expiries.take();
+            ttlLagMs = System.currentTimeMillis() - e.expireAt;
+            expire(e.key, e.expireAt);
+          }
+        } catch (InterruptedException e) {
+          return;
+        } catch (IOException e) {
+          System.err.println("Error expiring records: " + e);
+        }
+      }
+    }, "MmapStore-TTL");
+    sweeper.setDaemon(true);
+    sweeper.start();
+  }
+
+  synchronized void close() throws IOException {
+    if (sweeper != null) {
+      sweeper.interrupt();
+      try {
+        sweeper.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      sweeper = null;
+    }
+    log.close();
+    if (audit != null) {
+      audit.close();
+    }
+  }
+
+  void audit(int op, String subject) throws IOException {
+    if (audit != null) {
+      audit.append(op, subject);
+    }
+  }
+
+  AuditLog getAudit() {
+    return audit;
+  }
+
+  private Object lockFor(String key) {
+    int h = key.hashCode();
+    return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+  }
+
+  /** Returns the live record of the key, or null. */
+  Record get(String key) throws IOException {
+    long address = index.get(KeyFormatter.bytesOf(key));
+    if (address == OffHeapIndex.NONE) {
+      return null;
+    }
+    Record r = decode(address);
+    return r.expireAt != 0 && r.expireAt <= System.currentTimeMillis() ? null : r;
+  }
+
+  /** Inserts or replaces a record. */
+  void put(String key, Map<String, byte[]> fields, long expireAt) throws IOException {
+    byte[] keyBytes = KeyFormatter.bytesOf(key);
+    synchronized (lockFor(key)) {
+      long address = log.append(encode(PUT, keyBytes, fields, expireAt));
+      long previous = index.put(keyBytes, address);
+      keys.add(key);
+      if (!metaIndexes.isEmpty()) {
+        reindex(key, previous == OffHeapIndex.NONE ? null : decode(previous), new Record(fields, expireAt));
+      }
+    }
+    if (expireAt != 0 && expiries != null) {
+      expiries.add(new Expiry(key, expireAt));
+    }
+  }
+
+  /**
+   * Merges the fields into the live record of the key.
+   *
+   * @return false if there is no such record.
+   */
+  boolean update(String key, Map<String, byte[]> changes) throws IOException {
+    synchronized (lockFor(key)) {
+      Record old = get(key);
+      if (old == null) {
+        return false;
+      }
+      replace(key, old, changes);
+      return true;
+    }
+  }
+
+  /**
+   * Removes the live record of the key.
+   *
+   * @return false if there is no such record.
+   */
+  boolean delete(String key) throws IOException {
+    synchronized (lockFor(key)) {
+      Record old = get(key);
+      if (old == null) {
+        return false;
+      }
+      remove(key, old);
+      return true;
+    }
+  }
+
+  private void expire(String key, long expireAt) throws IOException {
+    synchronized (lockFor(key)) {
+      long address = index.get(KeyFormatter.bytesOf(key));
+      // The record may have been replaced since it was scheduled.
+      if (address == OffHeapIndex.NONE || log.read(address).getLong(1) != expireAt) {
+        return;
+      }
+      remove(key, decode(address));
+    }
+    audit(OP_EXPIRE, key);
+  }
+
+  /** Removes every record that is due now, without waiting for the sweeper. */
+  void expireDue() throws IOException {
+    if (expiries == null) {
+      return;
+    }
+    Expiry e;
+    while ((e = expiries.poll()) != null) {
+      expire(e.key, e.expireAt);
+    }
+  }
+
+  /** Returns up to count live records with keys at or after startKey, in key order. */
+  List<Record> scan(String startKey, int count) throws IOException {
+    List<Record> result = new ArrayList<Record>(Math.min(count, 1024));
+    for (String key : keys.tailSet(startKey)) {
+      if (result.size() >= count) {
+        break;
+      }
+      Record r = get(key);
+      if (r != null) {
+        result.add(r);
+      }
+    }
+    return result;
+  }
+
+  /** Returns the live records whose field equals value and whose key matches. */
+  List<Record> find(String field, String value, KeyMatcher matcher) throws IOException {
+    List<Record> result = new ArrayList<Record>();
+    forEach(field, value, matcher, result::add);
+    return result;
+  }
+
+  /**
+   * Passes each live record whose field equals value and whose key matches to visitor, reading
+   * one record at a time from the log rather than collecting them.
+   */
+  void forEach(String field, String value, KeyMatcher matcher, Consumer<Record> visitor) throws IOException {
+    for (String key : candidates(field, value)) {
+      if (matcher.matches(key)) {
+        Record r = get(key);
+        if (r != null && value.equals(r.stringValue(field))) {
+          visitor.accept(r);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets newField to newValue in every live record whose field equals value
+   * and whose key matches.
+   *
+   * @return The number of records changed.
+   */
+  int updateWhere(String field, String value, KeyMatcher matcher, String newField, byte[] newValue)
+      throws IOException {
+    Map<String, byte[]> change = Collections.singletonMap(newField, newValue);
+    int updated = 0;
+    for (String key : new ArrayList<String>(candidates(field, value))) {
+      if (!matcher.matches(key)) {
+        continue;
+      }
+      synchronized (lockFor(key)) {
+        Record old = get(key);
+        if (old != null && value.equals(old.stringValue(field))) {
+          replace(key, old, change);
+          updated++;
+        }
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Removes every live record whose field equals value and whose key matches.
+   *
+   * @return The number of records removed.
+   */
+  int deleteWhere(String field, String value, KeyMatcher matcher) throws IOException {
+    int deleted = 0;
+    for (String key : new ArrayList<String>(candidates(field, value))) {
+      if (!matcher.matches(key)) {
+        continue;
+      }
+      synchronized (lockFor(key)) {
+        Record old = get(key);
+        if (old != null && value.equals(old.stringValue(field))) {
+          remove(key, old);
+          deleted++;
+        }
+      }
+    }
+    return deleted;
+  }
+
+  /** How long after its expiry time the latest expired record was removed. */
+  long getTtlLagMs() {
+    return ttlLagMs;
+  }
+
+  /** The number of records waiting to expire. */
+  int getTtlPending() {
+    return expiries == null ? 0 : expiries.size();
+  }
+
+  /** The number of records, including expired ones not removed yet. */
+  long size() {
+    return index.size();
+  }
+
+  /** The number of bytes used by the record log. */
+  long logSize() {
+    return log.size();
+  }
+
+  private Collection<String> candidates(String field, String value) {
+    ConcurrentHashMap<String, Set<String>> metaIndex = metaIndexes.get(field);
+    if (metaIndex == null) {
+      return keys;
+    }
+    Set<String> matching = metaIndex.get(value);
+    return matching == null ? Collections.<String>emptySet() : matching;
+  }
+
+  /** Must hold the lock of key. */
+  private void replace(String key, Record old, Map<String, byte[]> changes) throws IOException {
+    Map<String, byte[]> fields = new HashMap<String, byte[]>(old.fields);
+    fields.putAll(changes);
+    byte[] keyBytes = KeyFormatter.bytesOf(key);
+    Record r = new Record(fields, old.expireAt);
+    index.put(keyBytes, log.append(encode(PUT, keyBytes, fields, old.expireAt)));
+    reindex(key, old, r);
+  }
+
+  /** Must hold the lock of key. */
+  private void remove(String key, Record old) throws IOException {
+    byte[] keyBytes = KeyFormatter.bytesOf(key);
+    log.append(encode(DELETE, keyBytes, null, 0));
+    index.remove(keyBytes);
+    keys.remove(key);
+    reindex(key, old, null);
+  }
+
+  /** Moves key between metadata index entries for every indexed field whose value changed. */
+  private void reindex(String key, Record old, Record r) {
+    for (Map.Entry<String, ConcurrentHashMap<String, Set<String>>> metaIndex : metaIndexes.entrySet()) {
+      String field = metaIndex.getKey();
+      String oldValue = old == null ? null : old.stringValue(field);
+      String newValue = r == null ? null : r.stringValue(field);
+      if (oldValue != null ? oldValue.equals(newValue) : newValue == null) {
+        continue;
+      }
+      if (oldValue != null) {
+        Set<String> holders = metaIndex.getValue().get(oldValue);
+        if (holders != null) {
+          holders.remove(key);
+        }
+      }
+      if (newValue != null) {
+        Set<String> holders = metaIndex.getValue().get(newValue);
+        if (holders == null) {
+          Set<String> created = ConcurrentHashMap.<String>newKeySet();
+          holders = metaIndex.getValue().putIfAbsent(newValue, created);
+          if (holders == null) {
+            holders = created;
+          }
+        }
+        holders.add(key);
+      }
+    }
+  }
+
+  private static String keyOf(ByteBuffer entry) {
+    byte[] key = new byte[entry.getShort(KEY_OFFSET)];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = entry.get(KEY_OFFSET + 2 + i);
+    }
+    return new String(key, StandardCharsets.UTF_8);
+  }
+
+  private ByteBuffer encode(byte type, byte[] key, Map<String, byte[]> fields, long expireAt) throws IOException {
+    ByteBuffer payload = null;
+    if (fields != null) {
+      int size = 2;
+      for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+        size += 2 + field.getKey().length() * 3 + 4 + field.getValue().length;
+      }
+      ByteBuffer plain = ByteBuffer.allocate(size);
+      plain.putShort((short) fields.size());
+      for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+        byte[] name = field.getKey().getBytes(StandardCharsets.UTF_8);
+        plain.putShort((short) name.length).put(name);
+        plain.putInt(field.getValue().length).put(field.getValue());
+      }
+      plain.flip();
+      payload = cipher.encrypt(plain);
+    }
+    ByteBuffer entry = ByteBuffer.allocate(KEY_OFFSET + 2 + key.length + (payload == null ? 0 : payload.remaining()));
+    entry.put(type).putLong(expireAt).putShort((short) key.length).put(key);
+    if (payload != null) {
+      entry.put(payload);
+    }
+    entry.flip();
+    return entry;
+  }
+
+  private Record decode(long address) throws IOException {
+    ByteBuffer entry = log.read(address);
+    long expireAt = entry.getLong(1);
+    entry.position(KEY_OFFSET + 2 + entry.getShort(KEY_OFFSET));
+    ByteBuffer plain = cipher.decrypt(entry.slice());
+    int count = plain.getShort();
+    Map<String, byte[]> fields = new HashMap<String, byte[]>(count * 2);
+    for (int i = 0; i < count; i++) {
+      byte[] name = new byte[plain.getShort()];
+      plain.get(name);
+      byte[] value = new byte[plain.getInt()];
+      plain.get(value);
+      fields.put(new String(name, StandardCharsets.UTF_8), value);
+    }
+    return new Record(fields, expireAt);
+  }
+}
@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.mmapstore;
+
+import com.yahoo.ycsb.AuditQuery;
+import com.yahoo.ycsb.ByteArrayByteIterator;
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.KeyMatcher;
+import com.yahoo.ycsb.RecordCount;
+import com.yahoo.ycsb.RecordSink;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.Gauges;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * YCSB binding for an embedded store that keeps its records in
+ * memory-mapped files and implements the GDPR extensions of {@link DB}.
+ *
+ * <br>
+ * Records are appended to a log of memory-mapped segment files and found
+ * through a hash index in direct memory. TTL expiry, the metadata indexes,
+ * the persistent audit log and payload encryption can each be switched on
+ * and off, so the cost of every GDPR feature can be measured on its own
+ * without a database server or network hop in the way.
+ *
+ * <br>
+ * All client threads of a JVM share one store. The table name is ignored;
+ * a store directory holds a single table.
+ */
+public class MmapStoreClient extends DB {
+
+  /** Directory holding the log, audit and key files. */
+  public static final String DIR_PROPERTY = "mmapstore.dir";
+  public static final String DIR_PROPERTY_DEFAULT = "mmapstore-data";
+
+  /** Delete any existing data when the store is opened. */
+  public static final String TRUNCATE_PROPERTY = "mmapstore.truncate";
+  public static final String TRUNCATE_PROPERTY_DEFAULT = "false";
+
+  /** Size of each log and audit file in megabytes. */
+  public static final String SEGMENT_SIZE_PROPERTY = "mmapstore.segmentsizemb";
+  public static final String SEGMENT_SIZE_PROPERTY_DEFAULT = "64";
+
+  /** Expected number of records, used to size the hash index. */
+  public static final String INDEX_CAPACITY_PROPERTY = "mmapstore.indexcapacity";
+  public static final String INDEX_CAPACITY_PROPERTY_DEFAULT = "1048576";
+
+  /** Payload encryption: none or aes-gcm. */
+  public static final String ENCRYPTION_PROPERTY = "mmapstore.encryption";
+  public static final String ENCRYPTION_PROPERTY_DEFAULT = PayloadCipher.NONE;
+
+  /** AES key in hex; if not set a random key is kept in the store directory. */
+  public static final String ENCRYPTION_KEY_PROPERTY = "mmapstore.encryptionkey";
+
+  /** Whether insertTTL() records expire. */
+  public static final String TTL_ENABLED_PROPERTY = "mmapstore.ttlenabled";
+  public static final String TTL_ENABLED_PROPERTY_DEFAULT = "true";
+
+  /** Whether metadata operations use secondary indexes instead of scanning all keys. */
+  public static final String META_INDEX_PROPERTY = "mmapstore.metaindex";
+  public static final String META_INDEX_PROPERTY_DEFAULT = "true";
+
+  /** Comma separated list of the fields with a metadata index. */
+  public static final String INDEXED_FIELDS_PROPERTY = "mmapstore.indexedfields";
+  public static final String INDEXED_FIELDS_PROPERTY_DEFAULT = "PUR,TTL,USR,OBJ,DEC,ACL,SHR,SRC,CAT";
+
+  /** Whether accesses are written to the audit log. */
+  public static final String AUDIT_PROPERTY = "mmapstore.audit";
+  public static final String AUDIT_PROPERTY_DEFAULT = "true";
+
+  /** Whether readLog() prints the entries it reads. */
+  public static final String AUDIT_PRINT_PROPERTY = "mmapstore.auditprint";
+  public static final String AUDIT_PRINT_PROPERTY_DEFAULT = "false";
+
+  /** Seconds verifyTTL() waits for expired records to be removed. */
+  public static final String VERIFY_TTL_TIMEOUT_PROPERTY = "mmapstore.verifyttltimeout";
+  public static final String VERIFY_TTL_TIMEOUT_PROPERTY_DEFAULT = "0";
+
+  private static final String KEY_FILE = "store.key";
+
+  private static final String[] FIELDNAMES = {
+      "PUR", "TTL", "USR", "OBJ", "DEC", "ACL", "SHR", "SRC", "CAT", "Data"
+  };
+
+  /** Prefix of the gauges served by the metrics endpoint. */
+  private static final String GAUGE_PREFIX = "mmapstore_";
+
+  /** The store shared by all clients, and how many clients use it. */
+  private static MmapStore sharedStore;
+  private static int references;
+
+  private MmapStore store;
+  private boolean ttlEnabled;
+  private boolean auditPrint;
+  private long verifyTtlTimeoutMs;
+
+  @Override
+  public void init() throws DBException {
+    Properties props = getProperties();
+    try {
+      ttlEnabled = Boolean.parseBoolean(props.getProperty(TTL_ENABLED_PROPERTY, TTL_ENABLED_PROPERTY_DEFAULT));
+      auditPrint = Boolean.parseBoolean(props.getProperty(AUDIT_PRINT_PROPERTY, AUDIT_PRINT_PROPERTY_DEFAULT));
+      verifyTtlTimeoutMs = 1000L * Long.parseLong(
+          props.getProperty(VERIFY_TTL_TIMEOUT_PROPERTY, VERIFY_TTL_TIMEOUT_PROPERTY_DEFAULT));
+    } catch (NumberFormatException e) {
+      throw new DBException("Invalid mmapstore property: " + e, e);
+    }
+
+    synchronized (MmapStoreClient.class) {
+      if (references == 0) {
+        sharedStore = openStore(props, ttlEnabled);
+      }
+      references++;
+      store = sharedStore;
+    }
+  }
+
+  /** Opens the shared store, replaying its log, and starts the TTL sweeper. */
+  private static MmapStore openStore(Properties props, boolean ttlEnabled) throws DBException {
+    try {
+      File dir = new File(props.getProperty(DIR_PROPERTY, DIR_PROPERTY_DEFAULT));
+      if (Boolean.parseBoolean(props.getProperty(TRUNCATE_PROPERTY, TRUNCATE_PROPERTY_DEFAULT))) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+          for (File f : files) {
+            if (f.getName().endsWith(".log") && !f.delete()) {
+              throw new IOException("Could not delete " + f);
+            }
+          }
+        }
+      }
+      int segmentSize = Integer.parseInt(
+          props.getProperty(SEGMENT_SIZE_PROPERTY, SEGMENT_SIZE_PROPERTY_DEFAULT)) << 20;
+      int capacity = Integer.parseInt(props.getProperty(INDEX_CAPACITY_PROPERTY, INDEX_CAPACITY_PROPERTY_DEFAULT));
+      List<String> indexed = Collections.emptyList();
+      if (Boolean.parseBoolean(props.getProperty(META_INDEX_PROPERTY, META_INDEX_PROPERTY_DEFAULT))) {
+        indexed = Arrays.asList(props.getProperty(INDEXED_FIELDS_PROPERTY, INDEXED_FIELDS_PROPERTY_DEFAULT).split(","));
+      }
+      boolean audited = Boolean.parseBoolean(props.getProperty(AUDIT_PROPERTY, AUDIT_PROPERTY_DEFAULT));
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Could not create " + dir);
+      }
+      PayloadCipher cipher = PayloadCipher.create(
+          props.getProperty(ENCRYPTION_PROPERTY, ENCRYPTION_PROPERTY_DEFAULT),
+          props.getProperty(ENCRYPTION_KEY_PROPERTY), new File(dir, KEY_FILE));
+
+      long st = System.nanoTime();
+      MmapStore newStore = new MmapStore(dir, segmentSize, capacity, cipher, indexed, ttlEnabled, audited);
+      System.out.println("Opened mmapstore " + dir + " with " + newStore.size() + " records in "
+          + (System.nanoTime() - st) / 1000000 + " ms");
+      newStore.start();
+      Gauges.register(GAUGE_PREFIX + "ttl_lag_ms", () -> newStore.getTtlLagMs());
+      Gauges.register(GAUGE_PREFIX + "ttl_pending", () -> newStore.getTtlPending());
+      Gauges.register(GAUGE_PREFIX + "records", () -> newStore.size());
+      Gauges.register(GAUGE_PREFIX + "log_bytes", () -> newStore.logSize());
+      return newStore;
+    } catch (NumberFormatException e) {
+      throw new DBException("Invalid mmapstore property: " + e, e);
+    } catch (IOException e) {
+      throw new DBException("Could not open mmapstore: " + e, e);
+    }
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    synchronized (MmapStoreClient.class) {
+      if (--references > 0) {
+        return;
+      }
+      for (String gauge : new String[] {"ttl_lag_ms", "ttl_pending", "records", "log_bytes"}) {
+        Gauges.unregister(GAUGE_PREFIX + gauge);
+      }
+      try {
+        sharedStore.close();
+      } catch (IOException e) {
+        throw new DBException("Could not close mmapstore: " + e, e);
+      } finally {
+        sharedStore = null;
+      }
+    }
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    try {
+      store.audit(MmapStore.OP_READ, key);
+      MmapStore.Record r = store.get(key);
+      if (r == null) {
+        return Status.NOT_FOUND;
+      }
+      copy(r, fields, result);
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error reading key " + key + ": " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status readLog(String table, int logcount) {
+    AuditLog audit = store.getAudit();
+    if (audit == null) {
+      return Status.NOT_IMPLEMENTED;
+    }
+    try {
+      List<String> entries = audit.tail(logcount);
+      if (auditPrint) {
+        for (String e : entries) {
+          System.out.println(e);
+        }
+      }
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error reading audit log: " + e);
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Counts the matching entries among the most recent logCount of the audit
+   * log by reading them in place from the mapped segments.
+   */
+  @Override
+  public Status queryLog(String table, AuditQuery query, int logCount, RecordCount matched) {
+    AuditLog audit = store.getAudit();
+    if (audit == null) {
+      return Status.NOT_IMPLEMENTED;
+    }
+    try {
+      matched.add(audit.count(query, logCount));
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error reading audit log: " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status readMeta(String table, int fieldnum, String cond, String keymatch,
+      Vector<HashMap<String, ByteIterator>> result) {
+    try {
+      store.audit(MmapStore.OP_READMETA, FIELDNAMES[fieldnum] + "=" + cond);
+      for (MmapStore.Record r : store.find(FIELDNAMES[fieldnum], cond, KeyMatcher.of(keymatch))) {
+        HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+        copy(r, null, values);
+        result.add(values);
+      }
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error in readMeta: " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+      Vector<HashMap<String, ByteIterator>> result) {
+    try {
+      store.audit(MmapStore.OP_SCAN, startkey);
+      for (MmapStore.Record r : store.scan(startkey, recordcount)) {
+        HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+        copy(r, fields, values);
+        result.add(values);
+      }
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error scanning from key " + startkey + ": " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    try {
+      store.audit(MmapStore.OP_UPDATE, key);
+      return store.update(key, toBytes(values)) ? Status.OK : Status.NOT_FOUND;
+    } catch (IOException e) {
+      System.err.println("Error updating key " + key + ": " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status updateMeta(String table, int fieldnum, String cond, String keymatch,
+      String fieldkey, String fieldvalue) {
+    try {
+      store.audit(MmapStore.OP_UPDATEMETA, FIELDNAMES[fieldnum] + "=" + cond);
+      store.updateWhere(FIELDNAMES[fieldnum], cond, KeyMatcher.of(keymatch),
+          fieldkey, fieldvalue.getBytes(StandardCharsets.UTF_8));
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error in updateMeta: " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    return insertTTL(table, key, values, 0);
+  }
+
+  @Override
+  public Status insertTTL(String table, String key, Map<String, ByteIterator> values, int ttl) {
+    try {
+      store.audit(MmapStore.OP_INSERT, key);
+      long expireAt = ttlEnabled && ttl > 0 ? System.currentTimeMillis() + ttl * 1000L : 0;
+      store.put(key, toBytes(values), expireAt);
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error inserting key " + key + ": " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    try {
+      store.audit(MmapStore.OP_DELETE, key);
+      return store.delete(key) ? Status.OK : Status.NOT_FOUND;
+    } catch (IOException e) {
+      System.err.println("Error deleting key " + key + ": " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status deleteMeta(String table, int fieldnum, String cond, String keymatch) {
+    try {
+      store.audit(MmapStore.OP_DELETEMETA, FIELDNAMES[fieldnum] + "=" + cond);
+      store.deleteWhere(FIELDNAMES[fieldnum], cond, KeyMatcher.of(keymatch));
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error in deleteMeta: " + e);
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Removes the records of the user through the USR index in one pass, and audits it as one
+   * ERASEUSER entry rather than a read and a delete per record.
+   */
+  @Override
+  public Status eraseUser(String table, String user, RecordCount removed) {
+    try {
+      store.audit(MmapStore.OP_ERASEUSER, user);
+      removed.add(store.deleteWhere(FIELDNAMES[USER_FIELD], user, KeyMatcher.ALL));
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error in eraseUser: " + e);
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Rewrites the records of the purpose through the PUR index in one pass, and audits it as one
+   * WITHDRAWCONSENT entry.
+   */
+  @Override
+  public Status withdrawConsent(String table, String purpose, String replacement, RecordCount rewritten) {
+    try {
+      store.audit(MmapStore.OP_WITHDRAWCONSENT, purpose);
+      rewritten.add(store.updateWhere(FIELDNAMES[PURPOSE_FIELD], purpose, KeyMatcher.ALL,
+          FIELDNAMES[PURPOSE_FIELD], replacement.getBytes(StandardCharsets.UTF_8)));
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error in withdrawConsent: " + e);
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Streams the records of the user from the USR index as it walks it, passing each one to sink
+   * in the same map.
+   */
+  @Override
+  public Status exportUser(String table, String user, final RecordSink sink) {
+    try {
+      store.audit(MmapStore.OP_EXPORTUSER, user);
+      final HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+      store.forEach(FIELDNAMES[USER_FIELD], user, KeyMatcher.ALL, r -> emit(r, values, sink));
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("Error in exportUser: " + e);
+      return Status.ERROR;
+    }
+  }
+
+  private static void emit(MmapStore.Record r, HashMap<String, ByteIterator> values, RecordSink sink) {
+    values.clear();
+    copy(r, null, values);
+    sink.accept(values);
+  }
+
+  /**
+   * Removes the records that are due and checks that at most recordcount
+   * records remain, waiting up to mmapstore.verifyttltimeout seconds for
+   * expiring records.
+   */
+  @Override
+  public Status verifyTTL(String table, long recordcount) {
+    if (!ttlEnabled) {
+      return Status.OK;
+    }
+    long deadline = System.currentTimeMillis() + verifyTtlTimeoutMs;
+    try {
+      while (true) {
+        store.expireDue();
+        if (store.size() <= recordcount) {
+          return Status.OK;
+        }
+        if (System.currentTimeMillis() >= deadline) {
+          return Status.UNEXPECTED_STATE;
+        }
+        Thread.sleep(100);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Status.ERROR;
+    } catch (IOException e) {
+      System.err.println("Error in verifyTTL: " + e);
+      return Status.ERROR;
+    }
+  }
+
+
+  private static Map<String, byte[]> toBytes(Map<String, ByteIterator> values) {
+    Map<String, byte[]> fields = new HashMap<String, byte[]>(values.size() * 2);
+    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+      fields.put(entry.getKey(), entry.getValue().toArray());
+    }
+    return fields;
+  }
+
+  private static void copy(MmapStore.Record r, Set<String> fields, Map<String, ByteIterator> result) {
+    if (fields == null) {
+      for (Map.Entry<String, byte[]> entry : r.getFields().entrySet()) {
+        result.put(entry.getKey(), new ByteArrayByteIterator(entry.getValue()));
+      }
+    } else {
+      for (String field : fields) {
+        byte[] value = r.getFields().get(field);
+        if (value != null) {
+          result.put(field, new ByteArrayByteIterator(value));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.mmapstore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A hash index from record keys to log addresses, kept in direct memory.
+ *
+ * <br>
+ * The index is split into independently locked segments. Each is an open
+ * addressing table with linear probing whose slots hold the 64 bit hash of
+ * a key and the address of its record; the key itself is only in the log,
+ * so lookups confirm a hash match through a {@link KeyCheck}.
+ */
+final class OffHeapIndex {
+
+  /** Tells whether the record at an address has the given key. */
+  interface KeyCheck {
+    boolean hasKey(long address, byte[] key);
+  }
+
+  /** Returned when a key is not in the index. */
+  static final long NONE = -1;
+
+  private static final int SLOT_BYTES = 16;
+  private static final int SEGMENT_COUNT = 64;
+
+  private static final class Segment {
+    private ByteBuffer table;
+    private int mask;
+    private int size;
+
+    Segment(int capacity) {
+      allocate(capacity);
+    }
+
+    void allocate(int capacity) {
+      table = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+      mask = capacity - 1;
+      size = 0;
+    }
+
+    long hashAt(int slot) {
+      return table.getLong(slot * SLOT_BYTES);
+    }
+
+    long addressAt(int slot) {
+      return table.getLong(slot * SLOT_BYTES + 8);
+    }
+
+    void set(int slot, long hash, long address) {
+      table.putLong(slot * SLOT_BYTES, hash);
+      table.putLong(slot * SLOT_BYTES + 8, address);
+    }
+  }
+
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+  private final KeyCheck check;
+
+  /**
+   * @param capacity The expected number of keys; the index grows past it.
+   * @param check Compares the key of a record with a looked up key.
+   */
+  OffHeapIndex(int capacity, KeyCheck check) {
+    int perSegment = Integer.highestOneBit(Math.max(capacity / SEGMENT_COUNT * 2, 16) - 1) << 1;
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment(perSegment);
+    }
+    this.check = check;
+  }
+
+  /** 64 bit FNV-1a over the key followed by the MurmurHash3 finalizer; never 0, which marks empty slots. */
+  static long hash(byte[] key) {
+    long h = 0xCBF29CE484222325L;
+    for (byte b : key) {
+      h ^= b & 0xFF;
+      h *= 1099511628211L;
+    }
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h == 0 ? 1 : h;
+  }
+
+  private Segment segmentFor(long hash) {
+    return segments[(int) (hash >>> 58)];
+  }
+
+  /** Returns the address of the key's record, or {@link #NONE}. */
+  long get(byte[] key) {
+    long hash = hash(key);
+    Segment s = segmentFor(hash);
+    synchronized (s) {
+      int slot = find(s, hash, key);
+      return slot < 0 ? NONE : s.addressAt(slot);
+    }
+  }
+
+  /**
+   * Points the key at a new address.
+   *
+   * @return The previous address, or {@link #NONE}.
+   */
+  long put(byte[] key, long address) {
+    long hash = hash(key);
+    Segment s = segmentFor(hash);
+    synchronized (s) {
+      int slot = find(s, hash, key);
+      if (slot >= 0) {
+        long previous = s.addressAt(slot);
+        s.set(slot, hash, address);
+        return previous;
+      }
+      if ((s.size + 1) * 4 > (s.mask + 1) * 3) {
+        grow(s);
+      }
+      insert(s, hash, address);
+      s.size++;
+      return NONE;
+    }
+  }
+
+  /**
+   * Removes the key.
+   *
+   * @return The address it pointed at, or {@link #NONE}.
+   */
+  long remove(byte[] key) {
+    long hash = hash(key);
+    Segment s = segmentFor(hash);
+    synchronized (s) {
+      int slot = find(s, hash, key);
+      if (slot < 0) {
+        return NONE;
+      }
+      long previous = s.addressAt(slot);
+      // Backward shift deletion: move later entries of the probe run into the gap.
+      int gap = slot;
+      int next = (gap + 1) & s.mask;
+      while (s.hashAt(next) != 0) {
+        int home = (int) s.hashAt(next) & s.mask;
+        boolean stays = gap <= next ? (gap < home && home <= next) : (gap < home || home <= next);
+        if (!stays) {
+          s.set(gap, s.hashAt(next), s.addressAt(next));
+          gap = next;
+        }
+        next = (next + 1) & s.mask;
+      }
+      s.set(gap, 0, 0);
+      s.size--;
+      return previous;
+    }
+  }
+
+  /** The number of keys in the index. */
+  long size() {
+    long size = 0;
+    for (Segment s : segments) {
+      synchronized (s) {
+        size += s.size;
+      }
+    }
+    return size;
+  }
+
+  private int find(Segment s, long hash, byte[] key) {
+    int slot = (int) hash & s.mask;
+    while (true) {
+      long h = s.hashAt(slot);
+      if (h == 0) {
+        return -1;
+      }
+      if (h == hash && check.hasKey(s.addressAt(slot), key)) {
+        return slot;
+      }
+      slot = (slot + 1) & s.mask;
+    }
+  }
+
+  private static void insert(Segment s, long hash, long address) {
+    int slot = (int) hash & s.mask;
+    while (s.hashAt(slot) != 0) {
+      slot = (slot + 1) & s.mask;
+    }
+    s.set(slot, hash, address);
+  }
+
+  private static void grow(Segment s) {
+    ByteBuffer old = s.table;
+    int oldCapacity = s.mask + 1;
+    int size = s.size;
+    s.allocate(oldCapacity * 2);
+    for (int slot = 0; slot < oldCapacity; slot++) {
+      long hash = old.getLong(slot * SLOT_BYTES);
+      if (hash != 0) {
+        insert(s, hash, old.getLong(slot * SLOT_BYTES + 8));
+      }
+    }
+    s.size = size;
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.mmapstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts record payloads before they are written to the log.
+ */
+abstract class PayloadCipher {
+
+  /** Payloads are stored as they are. */
+  static final String NONE = "none";
+
+  /** Payloads are encrypted with AES-GCM. */
+  static final String AES_GCM = "aes-gcm";
+
+  /**
+   * @param mode {@link #NONE} or {@link #AES_GCM}.
+   * @param hexKey A 128, 192 or 256 bit key in hex, or null to use the key file.
+   * @param keyFile Holds the key; created with a random key if missing and no key is given.
+   */
+  static PayloadCipher create(String mode, String hexKey, File keyFile) throws IOException {
+    if (NONE.equals(mode)) {
+      return new PayloadCipher() {
+        @Override
+        ByteBuffer encrypt(ByteBuffer plain) {
+          return plain;
+        }
+
+        @Override
+        ByteBuffer decrypt(ByteBuffer stored) {
+          return stored;
+        }
+      };
+    }
+    if (!AES_GCM.equals(mode)) {
+      throw new IOException("Unknown encryption mode: " + mode);
+    }
+    byte[] key;
+    if (hexKey != null) {
+      key = fromHex(hexKey);
+    } else if (keyFile.exists()) {
+      key = Files.readAllBytes(keyFile.toPath());
+    } else {
+      key = new byte[16];
+      new SecureRandom().nextBytes(key);
+      Files.write(keyFile.toPath(), key);
+    }
+    return new AesGcm(key);
+  }
+
+  abstract ByteBuffer encrypt(ByteBuffer plain) throws IOException;
+
+  abstract ByteBuffer decrypt(ByteBuffer stored) throws IOException;
+
+  private static byte[] fromHex(String hex) throws IOException {
+    if (hex.length() % 2 != 0) {
+      throw new IOException("Encryption key must have an even number of hex digits");
+    }
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+
+  /**
+   * AES-GCM with a 96 bit IV made of a random value chosen when the store is
+   * opened and a counter, so no IV repeats within a run. The stored payload
+   * is the IV followed by the cipher text and the authentication tag.
+   */
+  private static final class AesGcm extends PayloadCipher {
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final int ivPrefix = new SecureRandom().nextInt();
+    private final AtomicLong ivCounter = new AtomicLong();
+    /** Cipher instances are not thread safe. */
+    private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>() {
+      @Override
+      protected Cipher initialValue() {
+        try {
+          return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+
+    AesGcm(byte[] key) throws IOException {
+      this.key = new SecretKeySpec(key, "AES");
+      // Fail on open rather than on the first write if the key is unusable.
+      encrypt(ByteBuffer.allocate(0));
+    }
+
+    @Override
+    ByteBuffer encrypt(ByteBuffer plain) throws IOException {
+      byte[] iv = ByteBuffer.allocate(IV_BYTES).putInt(ivPrefix).putLong(ivCounter.getAndIncrement()).array();
+      try {
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        ByteBuffer out = ByteBuffer.allocate(IV_BYTES + cipher.getOutputSize(plain.remaining()));
+        out.put(iv);
+        cipher.doFinal(plain, out);
+        out.flip();
+        return out;
+      } catch (GeneralSecurityException e) {
+        throw new IOException("Could not encrypt payload", e);
+      }
+    }
+
+    @Override
+    ByteBuffer decrypt(ByteBuffer stored) throws IOException {
+      byte[] iv = new byte[IV_BYTES];
+      stored.get(iv);
+      try {
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        ByteBuffer out = ByteBuffer.allocate(cipher.getOutputSize(stored.remaining()));
+        cipher.doFinal(stored, out);
+        out.flip();
+        return out;
+      } catch (GeneralSecurityException e) {
+        throw new IOException("Could not decrypt payload", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.mmapstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An append-only log of variable length entries spread over memory-mapped
+ * segment files.
+ *
+ * <br>
+ * Each entry is stored as its length followed by its bytes. The length is
+ * written last, and segments start out zero filled, so replaying the log
+ * stops at the first entry that was not completely written. An entry is
+ * addressed by its segment id in the upper and its offset in the lower 32
+ * bits of a long.
+ */
+final class RecordLog {
+
+  /** Receives every entry of the log during {@link RecordLog#replay}. */
+  interface Visitor {
+    void visit(long address, ByteBuffer entry);
+  }
+
+  private final File dir;
+  private final String prefix;
+  private final int segmentSize;
+  /** All segments by id; replaced as a whole when a segment is added. */
+  private volatile MappedSegment[] segments = new MappedSegment[0];
+  private volatile MappedSegment current;
+
+  RecordLog(File dir, String prefix, int segmentSize) throws IOException {
+    this.dir = dir;
+    this.prefix = prefix;
+    this.segmentSize = segmentSize;
+    List<Integer> ids = MappedSegment.list(dir, prefix);
+    for (int i = 0; i < ids.size(); i++) {
+      if (ids.get(i) != i) {
+        throw new IOException("Missing segment " + i + " of " + prefix + " in " + dir);
+      }
+      addSegment(MappedSegment.open(dir, prefix, i, segmentSize));
+    }
+    if (current == null) {
+      addSegment(MappedSegment.open(dir, prefix, 0, segmentSize));
+    }
+  }
+
+  private void addSegment(MappedSegment segment) {
+    MappedSegment[] grown = Arrays.copyOf(segments, segments.length + 1);
+    grown[segment.getId()] = segment;
+    segments = grown;
+    current = segment;
+  }
+
+  static long address(int segment, int offset) {
+    return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Appends the remaining bytes of the entry.
+   *
+   * @return The address of the entry.
+   */
+  long append(ByteBuffer entry) throws IOException {
+    int length = entry.remaining();
+    if (length + 4 > segmentSize) {
+      throw new IOException("Entry of " + length + " bytes does not fit a segment of " + segmentSize);
+    }
+    while (true) {
+      MappedSegment segment = current;
+      int offset = segment.claim(length + 4);
+      if (offset >= 0) {
+        segment.put(offset + 4, entry);
+        segment.putInt(offset, length);
+        return address(segment.getId(), offset);
+      }
+      roll(segment);
+    }
+  }
+
+  private synchronized void roll(MappedSegment full) throws IOException {
+    if (current == full) {
+      addSegment(MappedSegment.open(dir, prefix, full.getId() + 1, segmentSize));
+    }
+  }
+
+  /** Returns a read-only view of the entry at the address. */
+  ByteBuffer read(long address) {
+    MappedSegment segment = segments[(int) (address >>> 32)];
+    int offset = (int) address;
+    return segment.slice(offset + 4, segment.getInt(offset)).asReadOnlyBuffer();
+  }
+
+  /** Visits every complete entry in log order and positions appends after the last one. */
+  void replay(Visitor visitor) {
+    for (MappedSegment segment : segments) {
+      int offset = 0;
+      while (offset + 4 <= segment.capacity()) {
+        int length = segment.getInt(offset);
+        if (length <= 0 || offset + 4 + length > segment.capacity()) {
+          break;
+        }
+        visitor.visit(address(segment.getId(), offset), segment.slice(offset + 4, length).asReadOnlyBuffer());
+        offset += 4 + length;
+      }
+      segment.setPosition(offset);
+    }
+  }
+
+  /** The number of bytes used by all segments. */
+  long size() {
+    long size = 0;
+    for (MappedSegment segment : segments) {
+      size += segment.getPosition();
+    }
+    return size;
+  }
+
+  void close() throws IOException {
+    for (MappedSegment segment : segments) {
+      segment.close();
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2016 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db.mmapstore;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.ycsb.AuditQuery;
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.RecordCount;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.StringByteIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+
+public class MmapStoreClientTest {
+  private static final String TABLE = "usertable";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File dir;
+  private MmapStoreClient client;
+
+  private MmapStoreClient open(Properties p) throws DBException {
+    p.setProperty(MmapStoreClient.DIR_PROPERTY, dir.getPath());
+    p.setProperty(MmapStoreClient.SEGMENT_SIZE_PROPERTY, "1");
+    p.setProperty(MmapStoreClient.INDEX_CAPACITY_PROPERTY, "16");
+    MmapStoreClient c = new MmapStoreClient();
+    c.setProperties(p);
+    c.init();
+    return c;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    dir = folder.newFolder("store");
+    client = open(new Properties());
+  }
+
+  @After
+  public void tearDown() throws DBException {
+    if (client != null) {
+      client.cleanup();
+    }
+  }
+
+  private void reopen(Properties p) throws DBException {
+    client.cleanup();
+    client = null;
+    client = open(p);
+  }
+
+  private static HashMap<String, ByteIterator> record(String purpose, String user) {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("PUR", new StringByteIterator(purpose));
+    values.put("USR", new StringByteIterator(user));
+    values.put("Data", new StringByteIterator("payload"));
+    return values;
+  }
+
+  @Test
+  public void readUpdateDelete() {
+    assertEquals(Status.OK, client.insert(TABLE, "key1", record("purpose1", "user1")));
+
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(Status.OK, client.read(TABLE, "key1", null, result));
+    assertEquals("user1", result.get("USR").toString());
+
+    HashMap<String, ByteIterator> change = new HashMap<String, ByteIterator>();
+    change.put("USR", new StringByteIterator("user2"));
+    assertEquals(Status.OK, client.update(TABLE, "key1", change));
+    assertEquals(Status.NOT_FOUND, client.update(TABLE, "key2", change));
+    result.clear();
+    assertEquals(Status.OK, client.read(TABLE, "key1", null, result));
+    assertEquals("user2", result.get("USR").toString());
+    assertEquals("purpose1", result.get("PUR").toString());
+
+    assertEquals(Status.OK, client.delete(TABLE, "key1"));
+    assertEquals(Status.NOT_FOUND, client.delete(TABLE, "key1"));
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "key1", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void scanReturnsKeysInOrder() {
+    for (int i = 0; i < 50; i++) {
+      assertEquals(Status.OK, client.insert(TABLE, String.format("key%03d", i), record("p", "u" + i)));
+    }
+    Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    assertEquals(Status.OK, client.scan(TABLE, "key010", 5, null, result));
+    assertEquals(5, result.size());
+    assertEquals("u10", result.get(0).get("USR").toString());
+    assertEquals("u14", result.get(4).get("USR").toString());
+  }
+
+  @Test
+  public void metadataOperations() {
+    client.insert(TABLE, "key1", record("purpose1", "user1"));
+    client.insert(TABLE, "key2", record("purpose1", "user2"));
+    client.insert(TABLE, "key3", record("purpose2", "user1"));
+
+    Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    assertEquals(Status.OK, client.readMeta(TABLE, 0, "purpose1", "key*", result));
+    assertEquals(2, result.size());
+
+    assertEquals(Status.OK, client.updateMeta(TABLE, 2, "user1", "key*", "PUR", "purpose3"));
+    result.clear();
+    client.readMeta(TABLE, 0, "purpose3", "key*", result);
+    assertEquals(2, result.size());
+
+    assertEquals(Status.OK, client.deleteMeta(TABLE, 0, "purpose3", "key*"));
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "key1", null, new HashMap<String, ByteIterator>()));
+    assertEquals(Status.OK, client.read(TABLE, "key2", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void metadataOperationsWithoutIndex() throws DBException {
+    Properties p = new Properties();
+    p.setProperty(MmapStoreClient.META_INDEX_PROPERTY, "false");
+    reopen(p);
+    client.insert(TABLE, "key1", record("purpose1", "user1"));
+    client.insert(TABLE, "key2", record("purpose2", "user1"));
+
+    Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    client.readMeta(TABLE, 2, "user1", "key*", result);
+    assertEquals(2, result.size());
+    client.deleteMeta(TABLE, 0, "purpose1", "key*");
+    result.clear();
+    client.readMeta(TABLE, 2, "user1", "key*", result);
+    assertEquals(1, result.size());
+  }
+
+  @Test
+  public void recordsSurviveReopen() throws DBException {
+    // Enough records to fill several 1 MB segments.
+    String data = new String(new char[1000]).replace('\0', 'x');
+    for (int i = 0; i < 3000; i++) {
+      HashMap<String, ByteIterator> values = record("purpose1", "user1");
+      values.put("Data", new StringByteIterator(data));
+      assertEquals(Status.OK, client.insert(TABLE, "key" + i, values));
+    }
+    client.delete(TABLE, "key7");
+    client.updateMeta(TABLE, 2, "user1", "key1*", "PUR", "purpose2");
+    reopen(new Properties());
+
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "key7", null, new HashMap<String, ByteIterator>()));
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(Status.OK, client.read(TABLE, "key2999", null, result));
+    assertEquals(1000, result.get("Data").toArray().length);
+
+    Vector<HashMap<String, ByteIterator>> found = new Vector<HashMap<String, ByteIterator>>();
+    client.readMeta(TABLE, 0, "purpose2", "*", found);
+    // key1, key10-19, key100-199, key1000-1999
+    assertEquals(1111, found.size());
+  }
+
+  @Test
+  public void encryptedPayloads() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(MmapStoreClient.ENCRYPTION_PROPERTY, "aes-gcm");
+    p.setProperty(MmapStoreClient.TRUNCATE_PROPERTY, "true");
+    reopen(p);
+    client.insert(TABLE, "key1", record("secretpurpose", "user1"));
+
+    // The key is kept in the store directory, so the records can be read after a restart.
+    p.setProperty(MmapStoreClient.TRUNCATE_PROPERTY, "false");
+    reopen(p);
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(Status.OK, client.read(TABLE, "key1", null, result));
+    assertEquals("secretpurpose", result.get("PUR").toString());
+
+    byte[] log = Files.readAllBytes(new File(dir, "records-000000.log").toPath());
+    assertFalse(new String(log, StandardCharsets.ISO_8859_1).contains("secretpurpose"));
+  }
+
+  @Test
+  public void insertTTLExpires() throws Exception {
+    client.insertTTL(TABLE, "key1", record("purpose1", "user1"), 1);
+    client.insertTTL(TABLE, "key2", record("purpose1", "user1"), 3600);
+    assertEquals(Status.UNEXPECTED_STATE, client.verifyTTL(TABLE, 1));
+    Thread.sleep(1100);
+    assertEquals(Status.OK, client.verifyTTL(TABLE, 1));
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "key1", null, new HashMap<String, ByteIterator>()));
+    assertEquals(Status.OK, client.read(TABLE, "key2", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void readLogReturnsAuditEntries() throws DBException {
+    client.insert(TABLE, "key1", record("purpose1", "user1"));
+    client.read(TABLE, "key1", null, new HashMap<String, ByteIterator>());
+    assertEquals(Status.OK, client.readLog(TABLE, 10));
+    client.readMeta(TABLE, 2, "user1", "*", new Vector<HashMap<String, ByteIterator>>());
+
+    RecordCount matched = new RecordCount();
+    assertEquals(Status.OK, client.queryLog(TABLE, AuditQuery.byKey("key1"), 10, matched));
+    assertEquals(2, matched.get());
+    matched = new RecordCount();
+    client.queryLog(TABLE, AuditQuery.byUser("user1"), 10, matched);
+    assertEquals(1, matched.get());
+    matched = new RecordCount();
+    client.queryLog(TABLE, AuditQuery.byOperation("READ"), 2, matched);
+    assertEquals(1, matched.get());
+
+    Properties p = new Properties();
+    p.setProperty(MmapStoreClient.AUDIT_PROPERTY, "false");
+    reopen(p);
+    assertEquals(Status.NOT_IMPLEMENTED, client.readLog(TABLE, 10));
+    assertEquals(Status.NOT_IMPLEMENTED, client.queryLog(TABLE, AuditQuery.byKey("key1"), 10, new RecordCount()));
+  }
+}
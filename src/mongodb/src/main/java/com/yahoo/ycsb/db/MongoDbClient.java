@@ -44,6 +44,8 @@ import com.yahoo.ycsb.ByteArrayByteIterator;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.RecordCount;
+import com.yahoo.ycsb.RecordSink;
 import com.yahoo.ycsb.Status;
 
 import org.bson.Document;
@@ -683,11 +685,7 @@ public class MongoDbClient extends DB {
       final Vector<HashMap<String, ByteIterator>> result) {
     try {
       MongoCollection<Document> collection = database.getCollection(table);
-      Document query = new Document();
-      if (keymatch != null && !keymatch.isEmpty()) {
-        query.put("_id", new Document("$regex", keymatch));
-      }
-      query.put(fieldnames[fieldnum], condition);
+      Document query = metaQuery(fieldnum, condition, keymatch);
 
       FindIterable<Document> findIterable = collection.find(query);
       MongoCursor<Document> cursor = findIterable.iterator();
@@ -712,11 +710,7 @@ public class MongoDbClient extends DB {
       final String newmetadatavalue) {
     try {
       MongoCollection<Document> collection = database.getCollection(table);
-      Document query = new Document();
-      if (keymatch != null && !keymatch.isEmpty()) {
-        query.put("_id", new Document("$regex", keymatch));
-      }
-      query.put(fieldnames[fieldnum], condition);
+      Document query = metaQuery(fieldnum, condition, keymatch);
 
       Document update = new Document("$set",
           new Document(newfieldname, newmetadatavalue));
@@ -734,11 +728,7 @@ public class MongoDbClient extends DB {
       final String condition, final String keymatch) {
     try {
       MongoCollection<Document> collection = database.getCollection(table);
-      Document query = new Document();
-      if (keymatch != null && !keymatch.isEmpty()) {
-        query.put("_id", new Document("$regex", keymatch));
-      }
-      query.put(fieldnames[fieldnum], condition);
+      Document query = metaQuery(fieldnum, condition, keymatch);
 
       DeleteResult result = collection.deleteMany(query);
       return Status.OK;
@@ -748,6 +738,70 @@ public class MongoDbClient extends DB {
     }
   }
 
+  /**
+   * Rewrites the purpose of all its records with one updateMany, which also
+   * counts them.
+   */
+  @Override
+  public final Status withdrawConsent(final String table, final String purpose,
+      final String replacement, final RecordCount rewritten) {
+    try {
+      UpdateResult result = database.getCollection(table).updateMany(
+          metaQuery(PURPOSE_FIELD, purpose, "*"),
+          new Document("$set", new Document(fieldnames[PURPOSE_FIELD],
+              replacement)));
+      rewritten.add(result.getModifiedCount());
+      return Status.OK;
+    } catch (Exception e) {
+      System.err.println(e.toString());
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Streams the records of the user from the cursor, so only the batch the
+   * driver has fetched is held at a time.
+   */
+  @Override
+  public final Status exportUser(final String table, final String user,
+      final RecordSink sink) {
+    try (MongoCursor<Document> cursor = database.getCollection(table)
+        .find(metaQuery(USER_FIELD, user, "*")).iterator()) {
+      HashMap<String, ByteIterator> resultMap =
+          new HashMap<String, ByteIterator>();
+      while (cursor.hasNext()) {
+        resultMap.clear();
+        fillMap(resultMap, cursor.next());
+        sink.accept(resultMap);
+      }
+      return Status.OK;
+    } catch (Exception e) {
+      System.err.println(e.toString());
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Returns the query for the records whose metadata field equals condition
+   * and whose key matches keymatch. The key is matched as a regular
+   * expression, except that "*", which means any key to the other bindings,
+   * matches every key.
+   *
+   * @param fieldnum  The metadata field to match.
+   * @param condition The value it must have.
+   * @param keymatch  The keys to match.
+   * @return The query.
+   */
+  private static Document metaQuery(final int fieldnum, final String condition,
+      final String keymatch) {
+    Document query = new Document();
+    if (keymatch != null && !keymatch.isEmpty() && !"*".equals(keymatch)) {
+      query.put("_id", new Document("$regex", keymatch));
+    }
+    query.put(fieldnames[fieldnum], condition);
+    return query;
+  }
+
   /**
    * Fills the map with the values from the DBObject.
    * 